@@ -0,0 +1,24 @@
+-- =====================================================
+-- STEP 4: Add Location Columns to RDCs Table
+-- =====================================================
+-- Database: isdn_db
+-- Table: rdcs
+-- Description: Adds site coordinates used to allocate orders
+--              to the nearest RDC holding the stock
+-- =====================================================
+
+USE isdn_db;
+
+ALTER TABLE rdcs
+ADD COLUMN IF NOT EXISTS latitude DECIMAL(10, 7) NULL,
+ADD COLUMN IF NOT EXISTS longitude DECIMAL(10, 7) NULL;
+
+-- Set the coordinates of each RDC, for example:
+-- UPDATE rdcs SET latitude = 6.9271000, longitude = 79.8612000 WHERE name = 'Colombo RDC';
+
+-- RDCs without coordinates are still used, but are scored by region only
+SELECT rdc_id, name, region, latitude, longitude
+FROM rdcs
+ORDER BY rdc_id;
+
+SELECT 'RDC location columns added successfully!' AS Status;
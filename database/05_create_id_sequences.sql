@@ -0,0 +1,40 @@
+-- =====================================================
+-- STEP 5: Create Id Sequence Tables
+-- =====================================================
+-- Database: isdn_db
+-- Tables: orders_seq, order_items_seq, stock_movements_seq, cart_items_seq
+-- Description: Orders, order items, stock movements and cart items
+--              take ids from pooled sequences (blocks of 50) so Hibernate
+--              can batch their inserts. MySQL has no sequences, so each
+--              one is a single-row table. The application moves them past
+--              existing ids on startup; this script does the same by hand.
+-- =====================================================
+
+USE isdn_db;
+
+CREATE TABLE IF NOT EXISTS orders_seq (next_val BIGINT);
+CREATE TABLE IF NOT EXISTS order_items_seq (next_val BIGINT);
+CREATE TABLE IF NOT EXISTS stock_movements_seq (next_val BIGINT);
+CREATE TABLE IF NOT EXISTS cart_items_seq (next_val BIGINT);
+
+-- Seed each sequence above the highest existing id (plus one allocation block)
+INSERT INTO orders_seq (next_val)
+SELECT COALESCE(MAX(order_id), 0) + 51 FROM orders
+WHERE NOT EXISTS (SELECT 1 FROM orders_seq);
+
+INSERT INTO order_items_seq (next_val)
+SELECT COALESCE(MAX(order_item_id), 0) + 51 FROM order_items
+WHERE NOT EXISTS (SELECT 1 FROM order_items_seq);
+
+INSERT INTO stock_movements_seq (next_val)
+SELECT COALESCE(MAX(movement_id), 0) + 51 FROM stock_movements
+WHERE NOT EXISTS (SELECT 1 FROM stock_movements_seq);
+
+INSERT INTO cart_items_seq (next_val)
+SELECT COALESCE(MAX(cart_item_id), 0) + 51 FROM cart_items
+WHERE NOT EXISTS (SELECT 1 FROM cart_items_seq);
+
+SELECT 'orders_seq' AS sequence_table, next_val FROM orders_seq
+UNION ALL SELECT 'order_items_seq', next_val FROM order_items_seq
+UNION ALL SELECT 'stock_movements_seq', next_val FROM stock_movements_seq
+UNION ALL SELECT 'cart_items_seq', next_val FROM cart_items_seq;
@@ -0,0 +1,64 @@
+-- =====================================================
+-- STEP 6: Create Order Event Log and Dashboard Projections
+-- =====================================================
+-- Database: isdn_db
+-- Tables: order_events, rdc_order_status_counts,
+--         customer_order_summaries, projection_checkpoints
+-- Description: Every order placement and status change is appended
+--              to order_events in the same transaction. A scheduled
+--              projector folds new events into the per-RDC status
+--              counts and per-customer summaries the dashboards read.
+--              Hibernate creates these tables on startup; this script
+--              does the same by hand and seeds history for orders
+--              placed before the event log existed.
+-- =====================================================
+
+USE isdn_db;
+
+CREATE TABLE IF NOT EXISTS order_events (
+    event_id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    rdc_id BIGINT NULL,
+    from_status VARCHAR(30) NULL,
+    to_status VARCHAR(30) NOT NULL,
+    total_amount DECIMAL(10, 2) NOT NULL,
+    occurred_at DATETIME(6) NOT NULL,
+    INDEX idx_order_events_order (order_id, event_id)
+);
+
+CREATE TABLE IF NOT EXISTS rdc_order_status_counts (
+    rdc_id BIGINT NOT NULL,
+    status VARCHAR(30) NOT NULL,
+    order_count BIGINT NOT NULL,
+    PRIMARY KEY (rdc_id, status)
+);
+
+CREATE TABLE IF NOT EXISTS customer_order_summaries (
+    user_id BIGINT NOT NULL PRIMARY KEY,
+    total_orders BIGINT NOT NULL,
+    open_orders BIGINT NOT NULL,
+    delivered_orders BIGINT NOT NULL,
+    cancelled_orders BIGINT NOT NULL,
+    total_spent DECIMAL(14, 2) NOT NULL,
+    last_order_at DATETIME(6) NULL,
+    updated_at DATETIME(6) NULL,
+    INDEX idx_customer_summaries_spent (total_spent)
+);
+
+CREATE TABLE IF NOT EXISTS projection_checkpoints (
+    name VARCHAR(50) NOT NULL PRIMARY KEY,
+    last_event_id BIGINT NOT NULL,
+    updated_at DATETIME(6) NULL
+);
+
+-- One "placed in its current status" event per existing order; the projector picks them up on its next run
+INSERT INTO order_events (order_id, user_id, rdc_id, from_status, to_status, total_amount, occurred_at)
+SELECT o.order_id, o.user_id, o.rdc_id, NULL, o.status, o.total_amount, o.order_date
+FROM orders o
+WHERE NOT EXISTS (SELECT 1 FROM order_events e WHERE e.order_id = o.order_id)
+ORDER BY o.order_date, o.order_id;
+
+SELECT COUNT(*) AS order_events FROM order_events;
+
+SELECT 'Order event log created successfully!' AS Status;
@@ -0,0 +1,36 @@
+-- =====================================================
+-- STEP 7: Create Sales Rollups
+-- =====================================================
+-- Database: isdn_db
+-- Table: sales_rollups
+-- Description: Hourly, daily and monthly sales per RDC and product
+--              category, kept up to date from the order event log.
+--              Hibernate creates this table on startup. A new rollup
+--              starts from the beginning of the event log, so run
+--              06_create_order_events.sql first to seed history; a
+--              rebuild can also be started at any time with
+--              POST /api/dashboard/projections/sales-rollups/rebuild
+-- =====================================================
+
+USE isdn_db;
+
+CREATE TABLE IF NOT EXISTS sales_rollups (
+    granularity VARCHAR(10) NOT NULL,
+    bucket_start DATETIME(6) NOT NULL,
+    rdc_id BIGINT NOT NULL,
+    category VARCHAR(30) NOT NULL,
+    region VARCHAR(20) NULL,
+    booked_orders BIGINT NOT NULL,
+    booked_units BIGINT NOT NULL,
+    booked_revenue DECIMAL(16, 2) NOT NULL,
+    delivered_orders BIGINT NOT NULL,
+    delivered_revenue DECIMAL(16, 2) NOT NULL,
+    cancelled_orders BIGINT NOT NULL,
+    cancelled_revenue DECIMAL(16, 2) NOT NULL,
+    PRIMARY KEY (granularity, bucket_start, rdc_id, category),
+    INDEX idx_sales_rollups_region (granularity, region, bucket_start)
+);
+
+SELECT name, last_event_id, updated_at FROM projection_checkpoints;
+
+SELECT 'Sales rollups table created successfully!' AS Status;
@@ -0,0 +1,29 @@
+-- =====================================================
+-- STEP 8: Create Idempotency Records Table
+-- =====================================================
+-- Database: isdn_db
+-- Table: idempotency_records
+-- Description: Remembers requests sent with an Idempotency-Key header
+--              (order placement, payment initiation) so retries get
+--              the original response instead of creating duplicates.
+--              Expired rows are purged by the application.
+-- =====================================================
+
+USE isdn_db;
+
+CREATE TABLE IF NOT EXISTS idempotency_records (
+    record_id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    scope VARCHAR(50) NOT NULL,
+    user_id BIGINT NOT NULL,
+    idempotency_key VARCHAR(100) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    response_body MEDIUMTEXT NULL,
+    claimed_at DATETIME(6) NOT NULL,
+    completed_at DATETIME(6) NULL,
+    expires_at DATETIME(6) NOT NULL,
+    CONSTRAINT uk_idempotency_scope_user_key UNIQUE (scope, user_id, idempotency_key),
+    INDEX idx_idempotency_expires (expires_at)
+);
+
+SELECT 'Idempotency records table created successfully!' AS Status;
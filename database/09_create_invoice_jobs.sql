@@ -0,0 +1,28 @@
+-- =====================================================
+-- STEP 9: Create Invoice Jobs Table
+-- =====================================================
+-- Database: isdn_db
+-- Table: invoice_jobs
+-- Description: Queue of invoice PDF + email deliveries. A job is
+--              written in the same transaction that confirms the
+--              order and worked off by the application after commit,
+--              with retries and backoff on failure.
+-- =====================================================
+
+USE isdn_db;
+
+CREATE TABLE IF NOT EXISTS invoice_jobs (
+    job_id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME(6) NOT NULL,
+    last_error TEXT NULL,
+    created_at DATETIME(6) NULL,
+    updated_at DATETIME(6) NULL,
+    completed_at DATETIME(6) NULL,
+    INDEX idx_invoice_jobs_due (status, next_attempt_at),
+    INDEX idx_invoice_jobs_order (order_id)
+);
+
+SELECT 'Invoice jobs table created successfully!' AS Status;
@@ -0,0 +1,23 @@
+-- =====================================================
+-- STEP 10: Create Invoice Archive Table
+-- =====================================================
+-- Database: isdn_db
+-- Table: invoice_archive
+-- Description: Points each order at its rendered invoice PDF, stored
+--              on disk under invoice.archive.dir and named by the
+--              SHA-256 of its content. order_updated_at records the
+--              order version the PDF was rendered from.
+-- =====================================================
+
+USE isdn_db;
+
+CREATE TABLE IF NOT EXISTS invoice_archive (
+    order_id BIGINT NOT NULL PRIMARY KEY,
+    content_hash CHAR(64) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    order_updated_at DATETIME(6) NULL,
+    archived_at DATETIME(6) NOT NULL,
+    INDEX idx_invoice_archive_hash (content_hash)
+);
+
+SELECT 'Invoice archive table created successfully!' AS Status;
@@ -0,0 +1,35 @@
+-- =====================================================
+-- STEP 11: Create Email Outbox Table
+-- =====================================================
+-- Database: isdn_db
+-- Table: email_outbox
+-- Description: Durable queue of outgoing email. Messages are written
+--              in the transaction that triggers them and sent by the
+--              application in batches, with retries and backoff.
+-- =====================================================
+
+USE isdn_db;
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+    message_id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    recipient VARCHAR(255) NOT NULL,
+    recipient_domain VARCHAR(255) NOT NULL,
+    subject VARCHAR(255) NOT NULL,
+    body MEDIUMTEXT NOT NULL,
+    html BIT NOT NULL,
+    attachment_name VARCHAR(255) NULL,
+    attachment_path VARCHAR(500) NULL,
+    attachment_data LONGBLOB NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME(6) NOT NULL,
+    claim_token VARCHAR(36) NULL,
+    last_error TEXT NULL,
+    created_at DATETIME(6) NULL,
+    updated_at DATETIME(6) NULL,
+    sent_at DATETIME(6) NULL,
+    INDEX idx_email_outbox_due (status, next_attempt_at),
+    INDEX idx_email_outbox_claim (claim_token)
+);
+
+SELECT 'Email outbox table created successfully!' AS Status;
@@ -0,0 +1,52 @@
+-- =====================================================
+-- STEP 12: Denormalize RDC onto Stock Movements
+-- =====================================================
+-- Database: isdn_db
+-- Table: stock_movements
+-- Description: Stock movement history is paged by (timestamp,
+--              movement_id) per inventory row or per RDC. The RDC is
+--              copied onto each movement so an RDC's history is read
+--              from one index without joining inventory. Hibernate
+--              adds the column and indexes on startup; this script does
+--              the same by hand and fills rdc_id for existing rows.
+-- =====================================================
+
+USE isdn_db;
+
+ALTER TABLE stock_movements
+ADD COLUMN IF NOT EXISTS rdc_id BIGINT NULL;
+
+-- Backfill from the inventory row each movement belongs to
+UPDATE stock_movements sm
+JOIN inventory i ON i.inventory_id = sm.inventory_id
+SET sm.rdc_id = i.rdc_id
+WHERE sm.rdc_id IS NULL;
+
+-- Keyset pagination indexes; MySQL has no CREATE INDEX IF NOT EXISTS, so each one
+-- is only created when Hibernate has not already added it
+SET @ddl = IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE()
+       AND table_name = 'stock_movements'
+       AND index_name = 'idx_stock_movements_inventory_ts_id') = 0,
+    'CREATE INDEX idx_stock_movements_inventory_ts_id ON stock_movements (inventory_id, timestamp, movement_id)',
+    'SELECT ''idx_stock_movements_inventory_ts_id already exists'' AS Status');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE()
+       AND table_name = 'stock_movements'
+       AND index_name = 'idx_stock_movements_rdc_ts_id') = 0,
+    'CREATE INDEX idx_stock_movements_rdc_ts_id ON stock_movements (rdc_id, timestamp, movement_id)',
+    'SELECT ''idx_stock_movements_rdc_ts_id already exists'' AS Status');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Verify no movement is left without an RDC
+SELECT COUNT(*) AS movements_without_rdc FROM stock_movements WHERE rdc_id IS NULL;
+
+SELECT 'Stock movement RDC column and indexes added successfully!' AS Status;
@@ -0,0 +1,42 @@
+-- =====================================================
+-- STEP 13: Create Stock Movement Archive Tables
+-- =====================================================
+-- Database: isdn_db
+-- Tables: stock_movement_archives, stock_balance_checkpoints
+-- Description: Stock movements older than inventory.archive.horizon-months
+--              are moved out of stock_movements into one gzipped
+--              JSON-lines file per RDC and month under
+--              inventory.archive.dir. stock_movement_archives lists
+--              those files; stock_balance_checkpoints keeps each
+--              inventory row's stock as of its newest archived
+--              movement. Run 12_add_stock_movement_rdc_id.sql first:
+--              movements without an rdc_id are never archived.
+--              Archive files must be backed up with the database.
+-- =====================================================
+
+USE isdn_db;
+
+CREATE TABLE IF NOT EXISTS stock_movement_archives (
+    archive_id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    rdc_id BIGINT NOT NULL,
+    month_start DATE NOT NULL,
+    file_path VARCHAR(500) NOT NULL,
+    movement_count BIGINT NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    oldest_timestamp DATETIME(6) NOT NULL,
+    newest_timestamp DATETIME(6) NOT NULL,
+    archived_at DATETIME(6) NOT NULL,
+    UNIQUE KEY uk_stock_movement_archives_rdc_month (rdc_id, month_start)
+);
+
+CREATE TABLE IF NOT EXISTS stock_balance_checkpoints (
+    inventory_id BIGINT NOT NULL PRIMARY KEY,
+    rdc_id BIGINT NOT NULL,
+    balance INT NOT NULL,
+    last_movement_id BIGINT NOT NULL,
+    last_movement_at DATETIME(6) NOT NULL,
+    archived_movements BIGINT NOT NULL,
+    updated_at DATETIME(6) NOT NULL
+);
+
+SELECT 'Stock movement archive tables created successfully!' AS Status;
@@ -0,0 +1,20 @@
+-- =====================================================
+-- STEP 14: Flag Payments Taken for Cancelled Orders
+-- =====================================================
+-- Database: isdn_db
+-- Table: payments
+-- Description: A PayHere success notification can arrive after the
+--              order's payment hold expired and its stock went back
+--              on sale. The payment is kept as SUCCESS and flagged
+--              with refund_required for head office to refund
+--              (GET /api/payments/refunds-required). Hibernate adds
+--              the column on startup; this script does the same by
+--              hand.
+-- =====================================================
+
+USE isdn_db;
+
+ALTER TABLE payments
+ADD COLUMN IF NOT EXISTS refund_required BOOLEAN NOT NULL DEFAULT FALSE;
+
+SELECT 'Payment refund flag added successfully!' AS Status;
@@ -0,0 +1,27 @@
+-- =====================================================
+-- STEP 15: Track Event Ids Projections Read Past
+-- =====================================================
+-- Database: isdn_db
+-- Table: projection_gaps
+-- Description: order_events ids are taken at insert but become
+--              visible at commit, so the projector can read past
+--              an id whose transaction is still open. Each such id
+--              is recorded here and its event applied when it
+--              commits. Ids still missing after the gap timeout are
+--              marked abandoned and rechecked by reconciliation.
+--              Hibernate creates the table on startup; this script
+--              does the same by hand.
+-- =====================================================
+
+USE isdn_db;
+
+CREATE TABLE IF NOT EXISTS projection_gaps (
+    gap_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    projection VARCHAR(50) NOT NULL,
+    event_id BIGINT NOT NULL,
+    detected_at DATETIME(6) NOT NULL,
+    abandoned_at DATETIME(6) NULL,
+    CONSTRAINT uk_projection_gaps_event UNIQUE (projection, event_id)
+);
+
+SELECT 'Projection gap tracking created successfully!' AS Status;
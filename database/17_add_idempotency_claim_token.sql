@@ -0,0 +1,20 @@
+-- =====================================================
+-- STEP 17: Fence Idempotency Claims with a Token
+-- =====================================================
+-- Database: isdn_db
+-- Table: idempotency_records
+-- Description: Each claim on an Idempotency-Key now carries a random
+--              token. Completing, releasing or taking over a claim
+--              only succeeds with the token last written, so a
+--              request whose claim was taken over after the claim
+--              timeout rolls back instead of committing twice.
+--              Hibernate adds the column on startup; this script
+--              does the same by hand.
+-- =====================================================
+
+USE isdn_db;
+
+ALTER TABLE idempotency_records
+ADD COLUMN IF NOT EXISTS claim_token VARCHAR(36) NULL AFTER claimed_at;
+
+SELECT 'Idempotency claim token added successfully!' AS Status;
@@ -0,0 +1,34 @@
+-- =====================================================
+-- STEP 18: Create Order Allocations Table
+-- =====================================================
+-- Database: isdn_db
+-- Tables: order_allocations, order_allocations_seq
+-- Description: The inventory rows each order's stock was taken
+--              from, written with the order. Cancelling an order or
+--              expiring its payment hold puts the stock back on the
+--              same rows, including after a restart. Orders placed
+--              before this table existed fall back to the first
+--              inventory row per product. Hibernate creates both
+--              tables on startup; this script does the same by hand.
+-- =====================================================
+
+USE isdn_db;
+
+CREATE TABLE IF NOT EXISTS order_allocations (
+    allocation_id BIGINT NOT NULL PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    inventory_id BIGINT NOT NULL,
+    product_id BIGINT NOT NULL,
+    rdc_id BIGINT NOT NULL,
+    quantity INT NOT NULL,
+    INDEX idx_order_allocations_order (order_id),
+    CONSTRAINT fk_order_allocations_order FOREIGN KEY (order_id) REFERENCES orders (order_id)
+);
+
+CREATE TABLE IF NOT EXISTS order_allocations_seq (next_val BIGINT);
+
+INSERT INTO order_allocations_seq (next_val)
+SELECT COALESCE(MAX(allocation_id), 0) + 51 FROM order_allocations
+WHERE NOT EXISTS (SELECT 1 FROM order_allocations_seq);
+
+SELECT 'Order allocations table created successfully!' AS Status;
@@ -0,0 +1,20 @@
+-- =====================================================
+-- STEP 19: Fence Invoice Job Claims with a Token
+-- =====================================================
+-- Database: isdn_db
+-- Table: invoice_jobs
+-- Description: Claiming an invoice job now writes a random token,
+--              and a worker only records the outcome when the job
+--              still carries its token. A slow worker whose job was
+--              requeued as stale and claimed again rolls back its
+--              email instead of sending the invoice a second time.
+--              Hibernate adds the column on startup; this script
+--              does the same by hand.
+-- =====================================================
+
+USE isdn_db;
+
+ALTER TABLE invoice_jobs
+ADD COLUMN IF NOT EXISTS claim_token VARCHAR(36) NULL AFTER last_error;
+
+SELECT 'Invoice job claim token added successfully!' AS Status;
@@ -0,0 +1,111 @@
+package com.isdn.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import com.isdn.service.EmailTemplateRenderer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Promotion announcement emails rendered per second, from the real template with a
+ * pre-rendered details block as PromotionService sends it. {@code oneByOne} is a plain loop
+ * over {@link EmailTemplateRenderer#render}; {@code renderEach} is the bulk path at the given
+ * pool size, which builds a fresh context per recipient:
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="EmailTemplateRender -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailTemplateRenderBenchmark {
+
+    private static final String TEMPLATE = "email/promotion-announcement";
+    private static final int RECIPIENTS = 1_000;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private EmailTemplateRenderer renderer;
+    private Map<String, Object> shared;
+    private List<Map<String, Object>> perRecipient;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Logback's default config logs every bulk render at DEBUG to the console
+        Logger root = (Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(ch.qos.logback.classic.Level.WARN);
+
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+
+        renderer = new EmailTemplateRenderer(templateEngine, new SimpleMeterRegistry(), parallelism);
+        ReflectionTestUtils.setField(renderer, "batchSize", 250);
+
+        shared = Map.of(
+                "promotionDetails", "<h2>Monsoon sale</h2><p>15% off selected water tanks until 31 May.</p>",
+                "companyName", "ISDN Distribution (Pvt) Ltd");
+        perRecipient = new ArrayList<>(RECIPIENTS);
+        for (int i = 0; i < RECIPIENTS; i++) {
+            perRecipient.add(Map.of("customerName", "Retailer " + i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        renderer.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECIPIENTS)
+    public int oneByOne() {
+        int length = 0;
+        for (Map<String, Object> variables : perRecipient) {
+            Map<String, Object> merged = new HashMap<>(shared);
+            merged.putAll(variables);
+            length += renderer.render(TEMPLATE, merged).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECIPIENTS)
+    public int renderEach() {
+        int length = 0;
+        for (String body : renderer.renderEach(TEMPLATE, shared, perRecipient)) {
+            length += body.length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,118 @@
+package com.isdn.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import com.isdn.config.InvoiceConfig;
+import com.isdn.model.Category;
+import com.isdn.model.Order;
+import com.isdn.model.OrderItem;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.PaymentMethod;
+import com.isdn.model.Product;
+import com.isdn.model.Role;
+import com.isdn.model.User;
+import com.isdn.service.InvoiceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invoices rendered per second by InvoiceService. {@code cachedLetterhead} is the steady state:
+ * font programs and the letterhead template built once and reused. {@code rebuiltLetterhead}
+ * uses a fresh service per invoice, so header, footer and logo are laid out again every time,
+ * as every invoice did before. Run with {@code -prof gc} for bytes allocated per invoice
+ * (gc.alloc.rate.norm):
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="InvoiceRender -prof gc"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoiceRenderBenchmark {
+
+    @Param({"5", "50"})
+    private int orderLines;
+
+    private InvoiceConfig invoiceConfig;
+    private InvoiceService invoiceService;
+    private Order order;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Logback's default config logs every invoice at DEBUG to the console
+        Logger root = (Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(ch.qos.logback.classic.Level.WARN);
+
+        invoiceConfig = new InvoiceConfig();
+        invoiceConfig.setCompanyName("ISDN Distribution (Pvt) Ltd");
+        invoiceConfig.setCompanyAddress("100 Galle Road, Colombo 03");
+        invoiceConfig.setCompanyPhone("+94 11 234 5678");
+        invoiceConfig.setCompanyEmail("accounts@isdn.lk");
+        invoiceService = new InvoiceService(invoiceConfig, new SimpleMeterRegistry());
+
+        User customer = User.builder()
+                .userId(1L)
+                .username("retailer")
+                .email("retailer@example.com")
+                .businessName("Corner Shop")
+                .phoneNumber("0770000000")
+                .role(Role.CUSTOMER)
+                .build();
+        order = Order.builder()
+                .orderId(1L)
+                .orderNumber("ORD-1")
+                .user(customer)
+                .status(OrderStatus.CONFIRMED)
+                .deliveryAddress("12 Temple Road, Kandy")
+                .contactNumber("0770000000")
+                .paymentMethod(PaymentMethod.CASH_ON_DELIVERY)
+                .orderDate(LocalDateTime.of(2026, 3, 14, 9, 30))
+                .build();
+        BigDecimal total = BigDecimal.ZERO;
+        for (int line = 0; line < orderLines; line++) {
+            OrderItem item = OrderItem.builder()
+                    .product(Product.builder()
+                            .productId((long) line)
+                            .sku("SKU-" + line)
+                            .name("Product number " + line)
+                            .category(Category.values()[line % Category.values().length])
+                            .unitPrice(new BigDecimal("125.50"))
+                            .build())
+                    .quantity(1 + line % 4)
+                    .unitPrice(new BigDecimal("125.50"))
+                    .build();
+            item.calculateSubtotal();
+            order.addItem(item);
+            total = total.add(item.getSubtotal());
+        }
+        order.setTotalAmount(total);
+    }
+
+    @Benchmark
+    public byte[] cachedLetterhead() {
+        return invoiceService.generateInvoice(order);
+    }
+
+    @Benchmark
+    public byte[] rebuiltLetterhead() {
+        return new InvoiceService(invoiceConfig, new SimpleMeterRegistry()).generateInvoice(order);
+    }
+}
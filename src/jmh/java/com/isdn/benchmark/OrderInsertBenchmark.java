@@ -0,0 +1,165 @@
+package com.isdn.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserting an order with its lines, the way IDENTITY ids forced it (one insert per row,
+ * each waiting for its generated key) against pooled sequence ids with JDBC batching
+ * (one block read per 50 ids, the order insert, one batch for all lines). The statements
+ * each order sent are printed at the end of a trial; against MySQL with
+ * rewriteBatchedStatements each one is a round trip. H2 runs in-process, so its timings
+ * carry no network cost and only show the CPU side of the difference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderInsertBenchmark {
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Param({"50"})
+    private int orderLines;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private long nextOrderId;
+    private long orderIdLimit;
+    private long nextItemId;
+    private long itemIdLimit;
+    private long orders;
+    private long statementsSent;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:order_insert_bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE orders (order_id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "order_number VARCHAR(50) NOT NULL, total_amount DECIMAL(10,2) NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE order_items (order_item_id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "order_id BIGINT NOT NULL, product_id BIGINT NOT NULL, quantity INT NOT NULL, unit_price DECIMAL(10,2) NOT NULL)");
+        jdbcTemplate.execute("CREATE SEQUENCE orders_seq START WITH 1000000 INCREMENT BY " + ALLOCATION_SIZE);
+        jdbcTemplate.execute("CREATE SEQUENCE order_items_seq START WITH 1000000 INCREMENT BY " + ALLOCATION_SIZE);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE TABLE order_items");
+        jdbcTemplate.execute("TRUNCATE TABLE orders");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%d-line order: %.2f statements per order%n",
+                orderLines, (double) statementsSent / Math.max(1, orders));
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+    }
+
+    /**
+     * Before: IDENTITY ids, so every row is its own insert and its key has to come back first
+     */
+    @Benchmark
+    public int identityPerRow() {
+        return transactionTemplate.execute(status -> {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                        "INSERT INTO orders (order_number, total_amount) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS);
+                ps.setString(1, "ORD-BENCH");
+                ps.setBigDecimal(2, new BigDecimal("500.00"));
+                return ps;
+            }, keyHolder);
+            long orderId = keyHolder.getKey().longValue();
+            int statements = 1;
+            for (int line = 0; line < orderLines; line++) {
+                int productId = line + 1;
+                jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                            "INSERT INTO order_items (order_id, product_id, quantity, unit_price) VALUES (?, ?, ?, ?)",
+                            Statement.RETURN_GENERATED_KEYS);
+                    ps.setLong(1, orderId);
+                    ps.setLong(2, productId);
+                    ps.setInt(3, 1);
+                    ps.setBigDecimal(4, new BigDecimal("10.00"));
+                    return ps;
+                }, new GeneratedKeyHolder());
+                statements++;
+            }
+            return count(statements);
+        });
+    }
+
+    /**
+     * After: ids taken from pooled sequence blocks, the order inserted, then every line in one batch
+     */
+    @Benchmark
+    public int sequenceBatched() {
+        return transactionTemplate.execute(status -> {
+            int statements = 0;
+            if (nextOrderId >= orderIdLimit) {
+                nextOrderId = nextBlock("orders_seq");
+                orderIdLimit = nextOrderId + ALLOCATION_SIZE;
+                statements++;
+            }
+            long orderId = nextOrderId++;
+            jdbcTemplate.update("INSERT INTO orders (order_id, order_number, total_amount) VALUES (?, ?, ?)",
+                    orderId, "ORD-BENCH", new BigDecimal("500.00"));
+            statements++;
+
+            List<Object[]> lines = new ArrayList<>(orderLines);
+            for (int line = 0; line < orderLines; line++) {
+                if (nextItemId >= itemIdLimit) {
+                    nextItemId = nextBlock("order_items_seq");
+                    itemIdLimit = nextItemId + ALLOCATION_SIZE;
+                    statements++;
+                }
+                lines.add(new Object[]{nextItemId++, orderId, line + 1L, 1, new BigDecimal("10.00")});
+            }
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO order_items (order_item_id, order_id, product_id, quantity, unit_price) VALUES (?, ?, ?, ?, ?)",
+                    lines);
+            return count(statements + 1);
+        });
+    }
+
+    private int count(int statements) {
+        orders++;
+        statementsSent += statements;
+        return statements;
+    }
+
+    private long nextBlock(String sequence) {
+        return jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + sequence, Long.class);
+    }
+}
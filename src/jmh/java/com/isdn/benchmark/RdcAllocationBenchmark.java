@@ -0,0 +1,168 @@
+package com.isdn.benchmark;
+
+import com.isdn.model.RDC;
+import com.isdn.model.Region;
+import com.isdn.repository.InventoryRepository;
+import com.isdn.repository.InventoryRepositoryCustom.StockLevel;
+import com.isdn.repository.RDCRepository;
+import com.isdn.service.LowStockTracker;
+import com.isdn.service.RdcAllocationService;
+import com.isdn.service.RdcAllocationService.Decision;
+import com.isdn.service.StockLedgerService;
+import com.isdn.service.StockReservationService.Allocation;
+import com.isdn.service.StockReservationService.Line;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * One allocation decision against the real stock ledger, for RDC networks and carts of
+ * realistic size. Every RDC stocks every product except that Southern RDCs hold none of the
+ * odd ones, and each cart has one odd line: regionalCovers is the common case where a
+ * delivery-region RDC ships the whole cart, globalFallback delivers to the South so every RDC
+ * is scored. The teardown allocates each cart along its decision and prints the split rate
+ * and average distance from snapshot(). SampleTime mode reports the p99 per decision.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RdcAllocationBenchmark {
+
+    private static final int PRODUCTS = 2_000;
+    private static final int CARTS = 256;
+    private static final Region[] REGIONS = {Region.NORTH, Region.CENTRAL, Region.WEST, Region.SOUTH, Region.EAST};
+    private static final double[][] HUBS = {{9.6615, 80.0255}, {7.2906, 80.6337}, {6.9271, 79.8612},
+            {6.0535, 80.2210}, {8.5874, 81.2152}};
+
+    @Param({"5", "25"})
+    private int rdcs;
+
+    @Param({"5", "40"})
+    private int cartLines;
+
+    private StockLedgerService ledger;
+    private RdcAllocationService allocationService;
+    private List<List<Line>> carts;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        List<RDC> sites = new ArrayList<>();
+        List<StockLevel> stock = new ArrayList<>();
+        for (long rdcId = 1; rdcId <= rdcs; rdcId++) {
+            int hub = (int) ((rdcId - 1) % HUBS.length);
+            sites.add(RDC.builder()
+                    .rdcId(rdcId)
+                    .name("RDC " + rdcId)
+                    .region(REGIONS[hub])
+                    .latitude(BigDecimal.valueOf(HUBS[hub][0] + random.nextDouble() * 0.4 - 0.2))
+                    .longitude(BigDecimal.valueOf(HUBS[hub][1] + random.nextDouble() * 0.4 - 0.2))
+                    .build());
+            for (long productId = 1; productId <= PRODUCTS; productId++) {
+                // Southern RDCs hold none of the odd products, so South carts always fall back
+                boolean stocked = REGIONS[hub] != Region.SOUTH || productId % 2 == 0;
+                int quantity = stocked ? 50 + random.nextInt(150) : 0;
+                stock.add(new StockLevel(rdcId * 10_000 + productId, productId, rdcId, quantity));
+            }
+        }
+
+        RDCRepository rdcRepository = mock(RDCRepository.class);
+        when(rdcRepository.findByActiveTrue()).thenReturn(sites);
+        InventoryRepository inventoryRepository = mock(InventoryRepository.class);
+        when(inventoryRepository.findAllStockLevels()).thenReturn(stock);
+
+        ledger = new StockLedgerService(inventoryRepository, mock(LowStockTracker.class));
+        ledger.load();
+        allocationService = new RdcAllocationService(rdcRepository, ledger, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(allocationService, "splitPenaltyKm", 50.0);
+        ReflectionTestUtils.setField(allocationService, "crossRegionPenaltyKm", 150.0);
+        allocationService.refreshIndex();
+
+        carts = new ArrayList<>(CARTS);
+        for (int i = 0; i < CARTS; i++) {
+            List<Line> lines = new ArrayList<>(cartLines);
+            for (int line = 0; line < cartLines; line++) {
+                long productId = 2 + random.nextInt(PRODUCTS / 2) * 2L - (line == 0 ? 1 : 0);
+                lines.add(new Line(productId, "SKU-" + productId, "Product " + productId, 1 + random.nextInt(5)));
+            }
+            carts.add(lines);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        for (int i = 0; i < CARTS; i++) {
+            List<Line> cart = carts.get(i);
+            Region region = REGIONS[i % REGIONS.length];
+            Decision decision = allocationService.decide(cart, null, null, region);
+            allocationService.recordOutcome(decision, allocate(decision, cart));
+        }
+        System.out.println("Allocation quality over " + CARTS + " carts: " + allocationService.snapshot());
+    }
+
+    @Benchmark
+    public Decision regionalCovers() {
+        return allocationService.decide(nextCart(), null, null, Region.WEST);
+    }
+
+    @Benchmark
+    public Decision globalFallback() {
+        return allocationService.decide(nextCart(), null, null, Region.SOUTH);
+    }
+
+    @Benchmark
+    public Decision byCoordinates() {
+        return allocationService.decide(nextCart(), BigDecimal.valueOf(7.0), BigDecimal.valueOf(80.0), Region.WEST);
+    }
+
+    /**
+     * Takes each line from the RDCs in preference order, as StockReservationService plans it
+     */
+    private List<Allocation> allocate(Decision decision, List<Line> cart) {
+        List<Allocation> allocations = new ArrayList<>();
+        for (Line line : cart) {
+            int remaining = line.quantity();
+            for (Long rdcId : decision.rdcPreference()) {
+                int taken = Math.min(remaining, ledger.getAvailableStock(line.productId(), rdcId));
+                if (taken > 0) {
+                    allocations.add(new Allocation(rdcId * 10_000 + line.productId(), line.productId(), rdcId, taken));
+                    remaining -= taken;
+                }
+                if (remaining == 0) {
+                    break;
+                }
+            }
+        }
+        return allocations;
+    }
+
+    private List<Line> nextCart() {
+        next = (next + 1) % CARTS;
+        return carts.get(next);
+    }
+}
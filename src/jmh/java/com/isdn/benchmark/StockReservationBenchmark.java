@@ -0,0 +1,141 @@
+package com.isdn.benchmark;
+
+import com.isdn.repository.InventoryRepositoryCustom.StockDelta;
+import com.isdn.repository.InventoryRepositoryCustom.StockLevel;
+import com.isdn.repository.InventoryRepositoryCustomImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Checkout stock reservation, the per-line path placeOrder used before against the set-based
+ * path of StockReservationService: one read of all candidate rows, one batch of conditional
+ * decrements. Runs on H2 in MySQL mode, so it measures statement count and engine work but not
+ * network round trips; against MySQL every saved statement also saves one round trip.
+ * SampleTime mode reports the p99 per checkout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StockReservationBenchmark {
+
+    private static final int RDCS = 5;
+
+    @Param({"5", "40"})
+    private int cartLines;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private InventoryRepositoryCustomImpl inventoryRepository;
+    private TransactionTemplate transactionTemplate;
+    private List<Long> productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:reservation_bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE inventory (inventory_id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "product_id BIGINT NOT NULL, rdc_id BIGINT NOT NULL, quantity_on_hand INT NOT NULL, " +
+                "reorder_level INT NOT NULL DEFAULT 50, last_updated TIMESTAMP, version BIGINT NOT NULL DEFAULT 0)");
+        jdbcTemplate.execute("CREATE INDEX idx_inventory_product ON inventory (product_id)");
+
+        productIds = LongStream.rangeClosed(1, cartLines).boxed().toList();
+        List<Object[]> rows = new ArrayList<>();
+        for (Long productId : productIds) {
+            for (long rdcId = 1; rdcId <= RDCS; rdcId++) {
+                // Enough stock that no checkout in the run ever comes up short
+                rows.add(new Object[]{productId, rdcId, 100_000_000});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO inventory (product_id, rdc_id, quantity_on_hand) VALUES (?, ?, ?)", rows);
+
+        inventoryRepository = new InventoryRepositoryCustomImpl(jdbcTemplate, new NamedParameterJdbcTemplate(dataSource));
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+    }
+
+    /**
+     * Before: total stock per line, then per line every inventory row read and saved one by one
+     */
+    @Benchmark
+    public int perLine() {
+        return transactionTemplate.execute(status -> {
+            int statements = 0;
+            for (Long productId : productIds) {
+                Integer total = jdbcTemplate.queryForObject(
+                        "SELECT SUM(quantity_on_hand) FROM inventory WHERE product_id = ?", Integer.class, productId);
+                statements++;
+                if (total == null || total < 1) {
+                    throw new IllegalStateException("Insufficient stock for product " + productId);
+                }
+            }
+            for (Long productId : productIds) {
+                List<long[]> inventories = jdbcTemplate.query(
+                        "SELECT inventory_id, quantity_on_hand FROM inventory WHERE product_id = ?",
+                        (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)}, productId);
+                statements++;
+                int remaining = 1;
+                for (long[] inventory : inventories) {
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    int take = (int) Math.min(inventory[1], remaining);
+                    jdbcTemplate.update("UPDATE inventory SET quantity_on_hand = ? WHERE inventory_id = ?",
+                            inventory[1] - take, inventory[0]);
+                    statements++;
+                    remaining -= take;
+                }
+            }
+            return statements;
+        });
+    }
+
+    /**
+     * After: the two statements StockReservationService issues for a cart that fits
+     */
+    @Benchmark
+    public int setBased() {
+        return transactionTemplate.execute(status -> {
+            List<StockLevel> levels = inventoryRepository.findStockLevelsByProductIds(productIds, false);
+            List<StockDelta> deltas = new ArrayList<>(productIds.size());
+            long lastProduct = -1;
+            for (StockLevel level : levels) {
+                if (level.productId() != lastProduct && level.quantityOnHand() > 0) {
+                    deltas.add(new StockDelta(level.inventoryId(), 1));
+                    lastProduct = level.productId();
+                }
+            }
+            int[] updated = inventoryRepository.decrementStockIfAvailable(deltas);
+            return updated.length;
+        });
+    }
+}
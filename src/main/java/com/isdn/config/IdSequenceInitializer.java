@@ -0,0 +1,58 @@
+package com.isdn.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Moves the pooled id sequences past the ids already in their tables.
+ * MySQL has no sequences, so Hibernate keeps each one in a single-row table;
+ * rows written with AUTO_INCREMENT ids before the switch would otherwise collide.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdSequenceInitializer {
+
+    // Must be at least the allocationSize of every generator below
+    private static final long ALLOCATION_SIZE = 50;
+
+    private static final List<SequenceTable> SEQUENCES = List.of(
+            new SequenceTable("orders_seq", "orders", "order_id"),
+            new SequenceTable("order_items_seq", "order_items", "order_item_id"),
+            new SequenceTable("stock_movements_seq", "stock_movements", "movement_id"),
+            new SequenceTable("cart_items_seq", "cart_items", "cart_item_id"),
+            new SequenceTable("order_allocations_seq", "order_allocations", "allocation_id")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Injected so the schema (including the sequence tables) is in place before this runs
+    private final EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void alignSequences() {
+        for (SequenceTable sequence : SEQUENCES) {
+            Long maxId = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(MAX(" + sequence.idColumn() + "), 0) FROM " + sequence.table(), Long.class);
+            long floor = (maxId != null ? maxId : 0) + ALLOCATION_SIZE + 1;
+
+            Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + sequence.name(), Integer.class);
+            if (rows == null || rows == 0) {
+                jdbcTemplate.update("INSERT INTO " + sequence.name() + " (next_val) VALUES (?)", floor);
+                log.info("Initialised id sequence {} at {}", sequence.name(), floor);
+            } else if (jdbcTemplate.update("UPDATE " + sequence.name() + " SET next_val = ? WHERE next_val < ?",
+                    floor, floor) > 0) {
+                log.info("Moved id sequence {} past existing ids to {}", sequence.name(), floor);
+            }
+        }
+    }
+
+    private record SequenceTable(String name, String table, String idColumn) {
+    }
+}
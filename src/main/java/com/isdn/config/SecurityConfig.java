@@ -76,6 +76,9 @@ public class SecurityConfig {
                         // Cart endpoints - CUSTOMER only
                         .requestMatchers("/api/cart/**").hasRole("CUSTOMER")
 
+                        // Paid-but-cancelled orders awaiting a refund - head office
+                        .requestMatchers("/api/payments/refunds-required").hasAnyRole("HO_MANAGER", "ADMIN")
+
                         // payment endpoints - CUSTOMER only
                         .requestMatchers("/api/payments/**").hasRole("CUSTOMER")
 
@@ -85,6 +88,12 @@ public class SecurityConfig {
                         // Inventory endpoints - RDC_STAFF only
                         .requestMatchers("/api/inventory/**").hasAnyRole("RDC_STAFF", "HO_MANAGER")
 
+                        // Dashboard endpoints - per-endpoint roles are checked on the controller
+                        .requestMatchers("/api/dashboard/**").hasAnyRole("CUSTOMER", "RDC_STAFF", "LOGISTICS_OFFICER", "HO_MANAGER")
+
+                        // Invoice batches and statements - per-endpoint roles are checked on the controller
+                        .requestMatchers("/api/invoices/**").hasAnyRole("CUSTOMER", "HO_MANAGER")
+
                         // All other requests require authentication
                         .anyRequest().authenticated()
                 )
@@ -100,7 +109,7 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(Arrays.asList("http://localhost:3000", "http://localhost:5180","http://localhost:4173", "http://localhost:5173"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
-        configuration.setExposedHeaders(List.of("Authorization"));
+        configuration.setExposedHeaders(List.of("Authorization", "Idempotent-Replayed"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
@@ -0,0 +1,142 @@
+package com.isdn.controller;
+
+import com.isdn.dto.response.ApiResponse;
+import com.isdn.dto.response.CustomerOrderSummaryResponse;
+import com.isdn.dto.response.OrderEventResponse;
+import com.isdn.dto.response.ProjectionStatusResponse;
+import com.isdn.dto.response.RdcOrderStatusResponse;
+import com.isdn.dto.response.SalesReportResponse;
+import com.isdn.model.Category;
+import com.isdn.model.Region;
+import com.isdn.model.RollupGranularity;
+import com.isdn.model.User;
+import com.isdn.repository.UserRepository;
+import com.isdn.service.DashboardService;
+import com.isdn.service.OrderProjectionService;
+import com.isdn.service.SalesRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/dashboard")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardController {
+
+    private final DashboardService dashboardService;
+    private final OrderProjectionService orderProjectionService;
+    private final SalesRollupService salesRollupService;
+    private final UserRepository userRepository;
+
+    /**
+     * GET /api/dashboard/rdc-orders?rdcId= - Order counts by status per RDC
+     */
+    @GetMapping("/rdc-orders")
+    @PreAuthorize("hasAnyRole('RDC_STAFF', 'LOGISTICS_OFFICER', 'HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<List<RdcOrderStatusResponse>> getRdcOrderCounts(
+            @RequestParam(required = false) Long rdcId) {
+        log.info("GET /api/dashboard/rdc-orders - Fetch order status counts, rdc: {}", rdcId);
+        return ResponseEntity.ok(dashboardService.getRdcStatusCounts(rdcId));
+    }
+
+    /**
+     * GET /api/dashboard/sales?granularity=&from=&to=&rdcId=&region=&category=&groupBy= - Sales from the rollups.
+     * groupBy takes any of BUCKET, RDC, REGION and CATEGORY; without it the whole range is one total.
+     */
+    @GetMapping("/sales")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<SalesReportResponse> getSales(
+            @RequestParam(defaultValue = "DAY") RollupGranularity granularity,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long rdcId,
+            @RequestParam(required = false) Region region,
+            @RequestParam(required = false) Category category,
+            @RequestParam(required = false) List<String> groupBy) {
+        log.info("GET /api/dashboard/sales - Fetch {} sales from {} to {}, grouped by {}", granularity, from, to, groupBy);
+        return ResponseEntity.ok(salesRollupService.getSales(granularity, from, to, rdcId, region, category, groupBy));
+    }
+
+    /**
+     * GET /api/dashboard/customers/me - Current customer's order summary
+     */
+    @GetMapping("/customers/me")
+    @PreAuthorize("hasRole('CUSTOMER')")
+    public ResponseEntity<CustomerOrderSummaryResponse> getMySummary(
+            @AuthenticationPrincipal UserDetails userDetails) {
+        log.info("GET /api/dashboard/customers/me - Fetch order summary for user: {}", userDetails.getUsername());
+        return ResponseEntity.ok(dashboardService.getCustomerSummary(getUserId(userDetails)));
+    }
+
+    /**
+     * GET /api/dashboard/customers/{userId} - A customer's order summary
+     */
+    @GetMapping("/customers/{userId}")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<CustomerOrderSummaryResponse> getCustomerSummary(@PathVariable Long userId) {
+        log.info("GET /api/dashboard/customers/{} - Fetch customer order summary", userId);
+        return ResponseEntity.ok(dashboardService.getCustomerSummary(userId));
+    }
+
+    /**
+     * GET /api/dashboard/customers/top?limit= - Customers by total spend
+     */
+    @GetMapping("/customers/top")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<List<CustomerOrderSummaryResponse>> getTopCustomers(
+            @RequestParam(defaultValue = "10") int limit) {
+        log.info("GET /api/dashboard/customers/top - Fetch top {} customers", limit);
+        return ResponseEntity.ok(dashboardService.getTopCustomers(limit));
+    }
+
+    /**
+     * GET /api/dashboard/orders/{orderId}/history - Status history of an order
+     */
+    @GetMapping("/orders/{orderId}/history")
+    @PreAuthorize("hasAnyRole('RDC_STAFF', 'LOGISTICS_OFFICER', 'HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<List<OrderEventResponse>> getOrderHistory(@PathVariable Long orderId) {
+        log.info("GET /api/dashboard/orders/{}/history - Fetch order history", orderId);
+        return ResponseEntity.ok(dashboardService.getOrderHistory(orderId));
+    }
+
+    /**
+     * GET /api/dashboard/projections - How far each read model trails the order event log
+     */
+    @GetMapping("/projections")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<List<ProjectionStatusResponse>> getProjectionStatuses() {
+        log.info("GET /api/dashboard/projections - Fetch projection status");
+        return ResponseEntity.ok(orderProjectionService.getStatuses());
+    }
+
+    /**
+     * POST /api/dashboard/projections/{name}/rebuild - Rebuild a read model from the whole event log
+     */
+    @PostMapping("/projections/{name}/rebuild")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<ApiResponse> rebuildProjection(@PathVariable String name) {
+        log.info("POST /api/dashboard/projections/{}/rebuild - Rebuild projection", name);
+        orderProjectionService.startRebuild(name);
+        ApiResponse response = ApiResponse.builder()
+                .success(true)
+                .message("Rebuild of " + name + " started")
+                .build();
+        return ResponseEntity.accepted().body(response);
+    }
+
+    private Long getUserId(UserDetails userDetails) {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return user.getUserId();
+    }
+}
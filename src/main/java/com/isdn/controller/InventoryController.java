@@ -1,22 +1,37 @@
 package com.isdn.controller;
 
+import com.isdn.dto.request.StockReceiptRequest;
 import com.isdn.dto.request.StockTransferRequest;
 import com.isdn.dto.request.StockUpdateRequest;
 import com.isdn.dto.response.ApiResponse;
+import com.isdn.dto.response.CursorPageResponse;
 import com.isdn.dto.response.InventoryResponse;
+import com.isdn.dto.response.LedgerDriftResponse;
+import com.isdn.dto.response.StockContentionResponse;
+import com.isdn.dto.response.StockHoldResponse;
 import com.isdn.dto.response.StockMovementResponse;
+import com.isdn.dto.response.StockReceiptResponse;
 import com.isdn.model.User;
 import com.isdn.repository.UserRepository;
 import com.isdn.service.InventoryService;
+import com.isdn.service.LowStockTracker;
+import com.isdn.service.StockHoldService;
+import com.isdn.service.StockLedgerService;
+import com.isdn.service.StockMovementArchiveService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -27,6 +42,10 @@ import java.util.List;
 public class InventoryController {
 
     private final InventoryService inventoryService;
+    private final StockLedgerService stockLedgerService;
+    private final StockHoldService stockHoldService;
+    private final StockMovementArchiveService stockMovementArchiveService;
+    private final LowStockTracker lowStockTracker;
     private final UserRepository userRepository;
 
     /**
@@ -51,6 +70,16 @@ public class InventoryController {
         return ResponseEntity.ok(lowStock);
     }
 
+    /**
+     * GET /api/inventory/low-stock/events?rdcId= - Server-Sent Events stream of reorder level crossings
+     */
+    @GetMapping(value = "/low-stock/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('RDC_STAFF', 'LOGISTICS_OFFICER', 'HO_MANAGER', 'ADMIN')")
+    public SseEmitter streamLowStockEvents(@RequestParam(required = false) Long rdcId) {
+        log.info("GET /api/inventory/low-stock/events - Subscribe to low stock events for RDC: {}", rdcId);
+        return lowStockTracker.subscribe(rdcId);
+    }
+
     /**
      * PUT /api/inventory/{inventoryId}/update - Update stock
      */
@@ -66,6 +95,23 @@ public class InventoryController {
         return ResponseEntity.ok(inventory);
     }
 
+    /**
+     * POST /api/inventory/receipts - Apply a whole receiving document in one transaction.
+     * Responds 422 when an all-or-nothing receipt was not applied.
+     */
+    @PostMapping("/receipts")
+    @PreAuthorize("hasAnyRole('RDC_STAFF', 'HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<StockReceiptResponse> applyReceipt(
+            @Valid @RequestBody StockReceiptRequest request,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        log.info("POST /api/inventory/receipts - Apply stock receipt {} with {} lines",
+                 request.getReference(), request.getLines().size());
+        Long userId = getUserId(userDetails);
+        StockReceiptResponse receipt = inventoryService.applyReceipt(request, userId);
+        HttpStatus status = receipt.getCommitted() ? HttpStatus.OK : HttpStatus.UNPROCESSABLE_CONTENT;
+        return ResponseEntity.status(status).body(receipt);
+    }
+
     /**
      * POST /api/inventory/transfer - Transfer stock between RDCs
      */
@@ -86,28 +132,94 @@ public class InventoryController {
     }
 
     /**
-     * GET /api/inventory/{inventoryId}/movements - Get stock movement history
+     * GET /api/inventory/{inventoryId}/movements?from=&to=&cursor=&limit= - Get stock movement history, newest first
      */
     @GetMapping("/{inventoryId}/movements")
     @PreAuthorize("hasAnyRole('RDC_STAFF', 'LOGISTICS_OFFICER', 'HO_MANAGER', 'ADMIN')")
-    public ResponseEntity<List<StockMovementResponse>> getStockMovementHistory(
-            @PathVariable Long inventoryId) {
+    public ResponseEntity<CursorPageResponse<StockMovementResponse>> getStockMovementHistory(
+            @PathVariable Long inventoryId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
         log.info("GET /api/inventory/{}/movements - Fetch movement history", inventoryId);
-        List<StockMovementResponse> movements = inventoryService.getStockMovementHistory(inventoryId);
+        CursorPageResponse<StockMovementResponse> movements =
+                inventoryService.getStockMovementHistory(inventoryId, from, to, cursor, limit);
         return ResponseEntity.ok(movements);
     }
 
     /**
-     * GET /api/inventory/rdc/{rdcId}/movements - Get all movements for an RDC
+     * GET /api/inventory/rdc/{rdcId}/movements?from=&to=&cursor=&limit= - Get movements for an RDC, newest first
      */
     @GetMapping("/rdc/{rdcId}/movements")
     @PreAuthorize("hasAnyRole('RDC_STAFF', 'LOGISTICS_OFFICER', 'HO_MANAGER', 'ADMIN')")
-    public ResponseEntity<List<StockMovementResponse>> getRdcMovements(@PathVariable Long rdcId) {
-        log.info("GET /api/inventory/rdc/{}/movements - Fetch all movements", rdcId);
-        List<StockMovementResponse> movements = inventoryService.getRdcMovements(rdcId);
+    public ResponseEntity<CursorPageResponse<StockMovementResponse>> getRdcMovements(
+            @PathVariable Long rdcId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("GET /api/inventory/rdc/{}/movements - Fetch movements", rdcId);
+        CursorPageResponse<StockMovementResponse> movements =
+                inventoryService.getRdcMovements(rdcId, from, to, cursor, limit);
         return ResponseEntity.ok(movements);
     }
 
+    /**
+     * GET /api/inventory/contention - Per-SKU concurrent update conflicts
+     */
+    @GetMapping("/contention")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<List<StockContentionResponse>> getContentionReport() {
+        log.info("GET /api/inventory/contention - Fetch stock contention report");
+        return ResponseEntity.ok(inventoryService.getContentionReport());
+    }
+
+    /**
+     * GET /api/inventory/ledger/drift - Last stock ledger reconciliation report
+     */
+    @GetMapping("/ledger/drift")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<LedgerDriftResponse> getLedgerDrift() {
+        log.info("GET /api/inventory/ledger/drift - Fetch stock ledger drift report");
+        return ResponseEntity.ok(stockLedgerService.getLastDriftReport());
+    }
+
+    /**
+     * POST /api/inventory/ledger/reconcile - Reconcile stock ledger with the database now
+     */
+    @PostMapping("/ledger/reconcile")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<LedgerDriftResponse> reconcileLedger() {
+        log.info("POST /api/inventory/ledger/reconcile - Reconcile stock ledger");
+        return ResponseEntity.ok(stockLedgerService.reconcile());
+    }
+
+    /**
+     * POST /api/inventory/movements/archive - Archive stock movements older than the retention horizon now
+     */
+    @PostMapping("/movements/archive")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<ApiResponse> archiveMovements() {
+        log.info("POST /api/inventory/movements/archive - Archive old stock movements");
+        long archived = stockMovementArchiveService.archive();
+        return ResponseEntity.ok(ApiResponse.builder()
+                .success(true)
+                .message("Archived " + archived + " stock movements")
+                .data(archived)
+                .build());
+    }
+
+    /**
+     * GET /api/inventory/holds - Stock held by carts and unpaid orders vs available, optionally for one RDC
+     */
+    @GetMapping("/holds")
+    @PreAuthorize("hasAnyRole('RDC_STAFF', 'HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<List<StockHoldResponse>> getHoldReport(@RequestParam(required = false) Long rdcId) {
+        log.info("GET /api/inventory/holds - Fetch stock hold report for RDC: {}", rdcId);
+        return ResponseEntity.ok(stockHoldService.getHoldReport(rdcId));
+    }
+
     /**
      * Helper method to get user ID
      */
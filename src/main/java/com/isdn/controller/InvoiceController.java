@@ -0,0 +1,110 @@
+package com.isdn.controller;
+
+import com.isdn.dto.request.InvoiceBatchRequest;
+import com.isdn.dto.response.InvoiceBatchResponse;
+import com.isdn.model.User;
+import com.isdn.repository.UserRepository;
+import com.isdn.service.InvoiceBatchService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.YearMonth;
+
+@RestController
+@RequestMapping("/api/invoices")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceController {
+
+    private final InvoiceBatchService invoiceBatchService;
+    private final UserRepository userRepository;
+
+    /**
+     * POST /api/invoices/batches - Render the invoices of every order in a date range
+     */
+    @PostMapping("/batches")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<InvoiceBatchResponse> startBatch(@Valid @RequestBody InvoiceBatchRequest request) {
+        log.info("POST /api/invoices/batches - Render invoices from {} to {}, force: {}",
+                request.getFrom(), request.getTo(), request.isForce());
+        InvoiceBatchResponse batch = invoiceBatchService.startBatch(request.getFrom(), request.getTo(), request.isForce());
+        return ResponseEntity.accepted().body(batch);
+    }
+
+    /**
+     * GET /api/invoices/batches/{batchId} - Batch progress and throughput
+     */
+    @GetMapping("/batches/{batchId}")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<InvoiceBatchResponse> getBatch(@PathVariable String batchId) {
+        log.info("GET /api/invoices/batches/{} - Fetch batch progress", batchId);
+        return ResponseEntity.ok(invoiceBatchService.getBatch(batchId));
+    }
+
+    /**
+     * GET /api/invoices/batches/{batchId}/zip - Download a finished batch as a ZIP of PDFs
+     */
+    @GetMapping("/batches/{batchId}/zip")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<StreamingResponseBody> downloadBatch(@PathVariable String batchId) {
+        log.info("GET /api/invoices/batches/{}/zip - Download batch", batchId);
+        invoiceBatchService.checkDownloadable(batchId);
+
+        StreamingResponseBody body = output -> invoiceBatchService.writeZip(batchId, output);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"invoices-" + batchId + ".zip\"")
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
+
+    /**
+     * GET /api/invoices/statements/me?month=YYYY-MM - Current customer's monthly statement
+     */
+    @GetMapping("/statements/me")
+    @PreAuthorize("hasRole('CUSTOMER')")
+    public ResponseEntity<StreamingResponseBody> getMyStatement(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth month,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        log.info("GET /api/invoices/statements/me - Fetch {} statement for user: {}", month, userDetails.getUsername());
+        return statement(getUserId(userDetails), month);
+    }
+
+    /**
+     * GET /api/invoices/statements/{userId}?month=YYYY-MM - A customer's monthly statement
+     */
+    @GetMapping("/statements/{userId}")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<StreamingResponseBody> getStatement(
+            @PathVariable Long userId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        log.info("GET /api/invoices/statements/{} - Fetch {} statement", userId, month);
+        return statement(userId, month);
+    }
+
+    private ResponseEntity<StreamingResponseBody> statement(Long userId, YearMonth month) {
+        InvoiceBatchService.Statement statement = invoiceBatchService.prepareStatement(userId, month);
+        StreamingResponseBody body = output -> invoiceBatchService.writeStatement(statement, output);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"Statement-" + statement.customer().getUsername() + "-" + month + ".pdf\"")
+                .contentType(MediaType.APPLICATION_PDF)
+                .body(body);
+    }
+
+    private Long getUserId(UserDetails userDetails) {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return user.getUserId();
+    }
+}
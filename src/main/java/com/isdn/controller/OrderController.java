@@ -2,16 +2,29 @@ package com.isdn.controller;
 
 import com.isdn.dto.request.OrderRequest;
 import com.isdn.dto.request.UpdateOrderStatusRequest;
+import com.isdn.dto.response.AllocationQualityResponse;
 import com.isdn.dto.response.ApiResponse;
+import com.isdn.dto.response.CursorPageResponse;
 import com.isdn.dto.response.OrderResponse;
+import com.isdn.exception.BadRequestException;
 import com.isdn.model.Order;
 import com.isdn.model.OrderStatus;
 import com.isdn.model.User;
-import com.isdn.service.InvoiceService;
+import com.isdn.service.BulkOrderService;
+import com.isdn.service.IdempotencyService;
+import com.isdn.service.InvoiceArchiveService;
+import com.isdn.service.InvoiceArchiveService.ArchivedInvoice;
+import com.isdn.service.InvoiceJobService;
+import com.isdn.service.OrderExportService;
 import com.isdn.service.OrderService;
+import com.isdn.service.RdcAllocationService;
+import com.isdn.util.RangeFileSender;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -20,8 +33,12 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 
 @RestController
 @RequestMapping("/api/orders")
@@ -31,32 +48,68 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
-    private final InvoiceService invoiceService;
+    private final InvoiceArchiveService invoiceArchiveService;
+    private final InvoiceJobService invoiceJobService;
+    private final RdcAllocationService rdcAllocationService;
+    private final BulkOrderService bulkOrderService;
+    private final OrderExportService orderExportService;
+    private final IdempotencyService idempotencyService;
     private final com.isdn.repository.UserRepository userRepository;
     private final com.isdn.repository.OrderRepository orderRepository;
 
     /**
-     * POST /api/orders - Place order from cart
+     * POST /api/orders - Place order from cart.
+     * With an Idempotency-Key header, retries return the original order instead of placing another.
      */
     @PostMapping
     public ResponseEntity<OrderResponse> placeOrder(
             @Valid @RequestBody OrderRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @AuthenticationPrincipal UserDetails userDetails) {
         log.info("POST /api/orders - Place order for user: {}", userDetails.getUsername());
         Long userId = getUserId(userDetails);
-        OrderResponse order = orderService.placeOrder(userId, request);
-        return new ResponseEntity<>(order, HttpStatus.CREATED);
+        IdempotencyService.Result<OrderResponse> order = idempotencyService.execute("orders.place", userId,
+                idempotencyKey, request, OrderResponse.class, () -> orderService.placeOrder(userId, request));
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(IdempotencyService.REPLAYED_HEADER, String.valueOf(order.replayed()))
+                .body(order.body());
     }
 
     /**
-     * GET /api/orders - Get user's orders
+     * POST /api/orders/bulk - Place many orders from an uploaded CSV or JSON-lines file.
+     * Streams back one JSON result line per order as each chunk is committed.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> placeBulkOrders(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) String format,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        log.info("POST /api/orders/bulk - Bulk order import for user: {}, file: {}",
+                userDetails.getUsername(), file.getOriginalFilename());
+        Long userId = getUserId(userDetails);
+        BulkOrderService.Format bulkFormat = bulkOrderService.resolveFormat(format, file.getOriginalFilename());
+
+        StreamingResponseBody body = output -> {
+            try (InputStream input = file.getInputStream()) {
+                bulkOrderService.importOrders(userId, input, bulkFormat, output);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    /**
+     * GET /api/orders?cursor=&limit= - Get user's orders, newest first
      */
     @GetMapping
-    public ResponseEntity<List<OrderResponse>> getUserOrders(
+    public ResponseEntity<CursorPageResponse<OrderResponse>> getUserOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
             @AuthenticationPrincipal UserDetails userDetails) {
         log.info("GET /api/orders - Fetch orders for user: {}", userDetails.getUsername());
         Long userId = getUserId(userDetails);
-        List<OrderResponse> orders = orderService.getUserOrders(userId);
+        CursorPageResponse<OrderResponse> orders = orderService.getUserOrders(userId, cursor, limit);
         return ResponseEntity.ok(orders);
     }
 
@@ -97,24 +150,29 @@ public class OrderController {
     }
 
     /**
-     * GET /api/orders/all - Get all orders (staff only) - Feature 4
+     * GET /api/orders/all?cursor=&limit= - Get all orders (staff only) - Feature 4
      */
     @GetMapping("/all")
     @PreAuthorize("hasAnyRole('RDC_STAFF', 'LOGISTICS_OFFICER', 'HO_MANAGER', 'ADMIN')")
-    public ResponseEntity<List<OrderResponse>> getAllOrders() {
+    public ResponseEntity<CursorPageResponse<OrderResponse>> getAllOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
         log.info("GET /api/orders/all - Fetch all orders");
-        List<OrderResponse> orders = orderService.getAllOrders();
+        CursorPageResponse<OrderResponse> orders = orderService.getAllOrders(cursor, limit);
         return ResponseEntity.ok(orders);
     }
 
     /**
-     * GET /api/orders/status/{status} - Get orders by status - Feature 4
+     * GET /api/orders/status/{status}?cursor=&limit= - Get orders by status - Feature 4
      */
     @GetMapping("/status/{status}")
     @PreAuthorize("hasAnyRole('RDC_STAFF', 'LOGISTICS_OFFICER', 'HO_MANAGER', 'ADMIN')")
-    public ResponseEntity<List<OrderResponse>> getOrdersByStatus(@PathVariable OrderStatus status) {
+    public ResponseEntity<CursorPageResponse<OrderResponse>> getOrdersByStatus(
+            @PathVariable OrderStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
         log.info("GET /api/orders/status/{} - Fetch orders by status", status);
-        List<OrderResponse> orders = orderService.getOrdersByStatus(status);
+        CursorPageResponse<OrderResponse> orders = orderService.getOrdersByStatus(status, cursor, limit);
         return ResponseEntity.ok(orders);
     }
 
@@ -143,13 +201,54 @@ public class OrderController {
     }
 
     /**
-     * GET /api/orders/rdc/{rdcId} - Get orders by RDC - Feature 4
+     * GET /api/orders/allocation/metrics - RDC allocation quality (split-shipment rate, distance)
+     */
+    @GetMapping("/allocation/metrics")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<AllocationQualityResponse> getAllocationMetrics() {
+        log.info("GET /api/orders/allocation/metrics - Fetch allocation quality metrics");
+        return ResponseEntity.ok(rdcAllocationService.snapshot());
+    }
+
+    /**
+     * GET /api/orders/export?format=csv|jsonl&from=&to=&status=&rdcId= - Stream order history as a file.
+     * Dates are inclusive; rows are written as they are read, so any range can be exported.
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) Long rdcId) {
+        log.info("GET /api/orders/export - Export orders from {} to {}, status: {}, rdc: {}", from, to, status, rdcId);
+        OrderExportService.Format exportFormat = orderExportService.resolveFormat(format);
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new BadRequestException("'to' date must not be before 'from' date");
+        }
+
+        boolean csv = exportFormat == OrderExportService.Format.CSV;
+        String filename = "orders-" + LocalDate.now() + (csv ? ".csv" : ".jsonl");
+        StreamingResponseBody body = output ->
+                orderExportService.exportOrders(from, to, status, rdcId, exportFormat, output);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.parseMediaType(csv ? "text/csv" : "application/x-ndjson"))
+                .body(body);
+    }
+
+    /**
+     * GET /api/orders/rdc/{rdcId}?cursor=&limit= - Get orders by RDC - Feature 4
      */
     @GetMapping("/rdc/{rdcId}")
     @PreAuthorize("hasAnyRole('RDC_STAFF', 'HO_MANAGER', 'ADMIN')")
-    public ResponseEntity<List<OrderResponse>> getOrdersByRdc(@PathVariable Long rdcId) {
+    public ResponseEntity<CursorPageResponse<OrderResponse>> getOrdersByRdc(
+            @PathVariable Long rdcId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
         log.info("GET /api/orders/rdc/{} - Fetch orders for RDC", rdcId);
-        List<OrderResponse> orders = orderService.getOrdersByRdc(rdcId);
+        CursorPageResponse<OrderResponse> orders = orderService.getOrdersByRdc(rdcId, cursor, limit);
         return ResponseEntity.ok(orders);
     }
 
@@ -157,9 +256,11 @@ public class OrderController {
      * GET /api/orders/{orderId}/invoice - Download invoice PDF
      */
     @GetMapping("/{orderId}/invoice")
-    public ResponseEntity<byte[]> downloadInvoice(
+    public void downloadInvoice(
             @PathVariable Long orderId,
-            @AuthenticationPrincipal UserDetails userDetails) {
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
         log.info("GET /api/orders/{}/invoice - Download invoice", orderId);
 
         Long userId = getUserId(userDetails);
@@ -179,14 +280,12 @@ public class OrderController {
             throw new RuntimeException("Access denied");
         }
 
-        byte[] invoicePdf = invoiceService.generateInvoice(order);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_PDF);
-        headers.setContentDispositionFormData("attachment", "Invoice-" + order.getOrderNumber() + ".pdf");
-        headers.setContentLength(invoicePdf.length);
+        // Rendered once and re-rendered only after the order changes
+        ArchivedInvoice invoice = invoiceArchiveService.getOrRender(orderId);
 
-        return new ResponseEntity<>(invoicePdf, headers, HttpStatus.OK);
+        String disposition = "attachment; filename=\"Invoice-" + order.getOrderNumber() + ".pdf\"";
+        RangeFileSender.send(invoice.path(), invoice.sizeBytes(), "\"" + invoice.contentHash() + "\"",
+                MediaType.APPLICATION_PDF_VALUE, disposition, request, response);
     }
 
     /**
@@ -209,11 +308,11 @@ public class OrderController {
                             .build());
         }
 
-        orderService.sendInvoiceEmail(order);
+        invoiceJobService.enqueue(orderId);
 
         return ResponseEntity.ok(ApiResponse.builder()
                 .success(true)
-                .message("Invoice email sent successfully")
+                .message("Invoice email queued for delivery")
                 .build());
     }
 
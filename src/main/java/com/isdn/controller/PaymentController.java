@@ -6,6 +6,7 @@ import com.isdn.dto.response.PaymentInitiationResponse;
 import com.isdn.dto.response.PaymentResponse;
 import com.isdn.model.User;
 import com.isdn.repository.UserRepository;
+import com.isdn.service.IdempotencyService;
 import com.isdn.service.PaymentService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -26,20 +27,26 @@ import java.util.List;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final IdempotencyService idempotencyService;
     private final UserRepository userRepository;
 
     /**
      * POST /api/payments/initiate - Initiate payment for an order
-     * Requires CUSTOMER role
+     * Requires CUSTOMER role. Retries with the same Idempotency-Key get the original payment back.
      */
     @PostMapping("/initiate")
     public ResponseEntity<PaymentInitiationResponse> initiatePayment(
             @Valid @RequestBody InitiatePaymentRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @AuthenticationPrincipal UserDetails userDetails) {
         log.info("POST /api/payments/initiate - Initiating payment for order: {}", request.getOrderId());
         Long userId = getUserId(userDetails);
-        PaymentInitiationResponse response = paymentService.initiatePayment(userId, request);
-        return new ResponseEntity<>(response, HttpStatus.CREATED);
+        IdempotencyService.Result<PaymentInitiationResponse> response = idempotencyService.execute(
+                "payments.initiate", userId, idempotencyKey, request, PaymentInitiationResponse.class,
+                () -> paymentService.initiatePayment(userId, request));
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(IdempotencyService.REPLAYED_HEADER, String.valueOf(response.replayed()))
+                .body(response.body());
     }
 
     /**
@@ -98,6 +105,15 @@ public class PaymentController {
         return ResponseEntity.ok(payments);
     }
 
+    /**
+     * GET /api/payments/refunds-required - Successful payments for orders that were already cancelled
+     */
+    @GetMapping("/refunds-required")
+    public ResponseEntity<List<PaymentResponse>> getPaymentsRequiringRefund() {
+        log.info("GET /api/payments/refunds-required - Fetching payments that need a refund");
+        return ResponseEntity.ok(paymentService.getPaymentsRequiringRefund());
+    }
+
     /**
      * Helper method to get user ID from UserDetails
      */
@@ -1,13 +1,16 @@
 package com.isdn.controller;
 
 import com.isdn.dto.request.ProductSearchRequest;
+import com.isdn.dto.response.ApiResponse;
 import com.isdn.dto.response.ProductResponse;
 import com.isdn.model.Category;
 import com.isdn.service.ProductService;
+import com.isdn.service.PromotionService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -20,6 +23,7 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService productService;
+    private final PromotionService promotionService;
 
     /**
      * GET /api/products - Get all products
@@ -72,4 +76,19 @@ public class ProductController {
         List<ProductResponse> products = productService.getPromotionalProducts();
         return ResponseEntity.ok(products);
     }
-}
\ No newline at end of file
+
+    /**
+     * POST /api/products/promotions/{promotionId}/announce - Email a promotion to all customers
+     */
+    @PostMapping("/promotions/{promotionId}/announce")
+    @PreAuthorize("hasAnyRole('HO_MANAGER', 'ADMIN')")
+    public ResponseEntity<ApiResponse> announcePromotion(@PathVariable Long promotionId) {
+        log.info("POST /api/products/promotions/{}/announce - Announce promotion", promotionId);
+        int queued = promotionService.announce(promotionId);
+        return ResponseEntity.ok(ApiResponse.builder()
+                .success(true)
+                .message("Promotion email queued for " + queued + " customers")
+                .data(queued)
+                .build());
+    }
+}
@@ -0,0 +1,37 @@
+package com.isdn.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One order in a bulk import file (a JSON line, or consecutive CSV rows sharing an orderRef)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkOrderRow {
+
+    private String orderRef;
+
+    private String deliveryAddress;
+
+    private String contactNumber;
+
+    private String paymentMethod;
+
+    private String notes;
+
+    private List<Item> items = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String sku;
+        private Integer quantity;
+    }
+}
@@ -1,12 +1,15 @@
 package com.isdn.dto.request;
 
 import com.isdn.model.PaymentMethod;
+import com.isdn.model.Region;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,4 +25,11 @@ public class OrderRequest {
     private PaymentMethod paymentMethod;
 
     private String notes;
+
+    // Optional delivery location, used to ship from the nearest RDC
+    private BigDecimal deliveryLatitude;
+
+    private BigDecimal deliveryLongitude;
+
+    private Region deliveryRegion;
 }
\ No newline at end of file
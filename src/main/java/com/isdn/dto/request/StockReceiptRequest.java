@@ -0,0 +1,55 @@
+package com.isdn.dto.request;
+
+import com.isdn.model.MovementType;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A receiving document: many stock changes applied together
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReceiptRequest {
+
+    public enum FailureMode {
+        /** Apply nothing if any line is rejected */
+        ALL_OR_NOTHING,
+        /** Apply the valid lines and report the rejected ones */
+        PARTIAL
+    }
+
+    private String reference;
+
+    private FailureMode failureMode = FailureMode.ALL_OR_NOTHING;
+
+    @NotEmpty(message = "At least one line is required")
+    @Size(max = 1000, message = "A receipt can have at most 1000 lines")
+    private List<@Valid Line> lines = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Line {
+
+        @NotNull(message = "Inventory ID is required")
+        private Long inventoryId;
+
+        private MovementType movementType = MovementType.RECEIVED;
+
+        @NotNull(message = "Quantity is required")
+        @Min(value = 1, message = "Quantity must be at least 1")
+        private Integer quantity;
+
+        private String reason;
+    }
+}
@@ -0,0 +1,18 @@
+package com.isdn.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AllocationQualityResponse {
+    private Long decisions;
+    private Long splitShipments;
+    private Double splitRate;
+    private Double averageDistanceKm;
+    private Double averageDecisionMicros;
+}
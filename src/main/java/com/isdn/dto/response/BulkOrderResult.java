@@ -0,0 +1,23 @@
+package com.isdn.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkOrderResult {
+
+    public enum Status {
+        CREATED, REJECTED, FAILED
+    }
+
+    private Integer row;
+    private String orderRef;
+    private Status status;
+    private String orderNumber;
+    private String message;
+}
@@ -0,0 +1,26 @@
+package com.isdn.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerOrderSummaryResponse {
+    private Long userId;
+    private String username;
+    private String businessName;
+    private Long totalOrders;
+    private Long openOrders;
+    private Long deliveredOrders;
+    private Long cancelledOrders;
+    private BigDecimal totalSpent;
+    private LocalDateTime lastOrderAt;
+    private LocalDateTime updatedAt;
+}
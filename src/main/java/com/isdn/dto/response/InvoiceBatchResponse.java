@@ -0,0 +1,28 @@
+package com.isdn.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceBatchResponse {
+    private String batchId;
+    private LocalDate from;
+    private LocalDate to;
+    private Boolean forced;
+    private Boolean finished;
+    private Integer totalOrders;
+    private Integer completed;
+    private Integer failed;
+    private Double percentComplete;
+    private Double invoicesPerSecond;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
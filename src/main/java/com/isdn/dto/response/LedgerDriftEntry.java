@@ -0,0 +1,17 @@
+package com.isdn.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerDriftEntry {
+    private Long productId;
+    private Long rdcId;
+    private Integer ledgerQuantity;
+    private Integer databaseQuantity;
+}
@@ -0,0 +1,21 @@
+package com.isdn.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerDriftResponse {
+    private LocalDateTime checkedAt;
+    private Integer rowsChecked;
+    private Integer driftCount;
+    private Integer skippedInFlight; // differences left alone because a commit was still being applied
+    private List<LedgerDriftEntry> entries;
+}
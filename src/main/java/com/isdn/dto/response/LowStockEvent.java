@@ -0,0 +1,26 @@
+package com.isdn.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An inventory row crossing its reorder level, in either direction
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LowStockEvent {
+
+    public enum Crossing {
+        BECAME_LOW, RECOVERED
+    }
+
+    private Crossing crossing;
+    private InventoryResponse item;
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,23 @@
+package com.isdn.dto.response;
+
+import com.isdn.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderEventResponse {
+    private Long eventId;
+    private Long orderId;
+    private OrderStatus fromStatus;
+    private OrderStatus toStatus;
+    private BigDecimal totalAmount;
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,32 @@
+package com.isdn.dto.response;
+
+import com.isdn.model.OrderStatus;
+import com.isdn.model.PaymentMethod;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Flat order row for exports, read straight from a projection query
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderExportRow {
+    private Long orderId;
+    private String orderNumber;
+    private LocalDateTime orderDate;
+    private OrderStatus status;
+    private String customerUsername;
+    private String customerBusinessName;
+    private String rdcName;
+    private PaymentMethod paymentMethod;
+    private BigDecimal totalAmount;
+    private Integer itemCount;
+    private LocalDate estimatedDeliveryDate;
+    private LocalDate actualDeliveryDate;
+}
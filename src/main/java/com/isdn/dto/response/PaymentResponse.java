@@ -28,4 +28,5 @@ public class PaymentResponse {
     private String cardNo;
     private LocalDateTime createdAt;
     private LocalDateTime completedAt;
+    private boolean refundRequired;
 }
@@ -0,0 +1,25 @@
+package com.isdn.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectionStatusResponse {
+    private String projection;
+    private Long lastProjectedEventId;
+    private Long latestEventId;
+    private Long pendingEvents;
+    private LocalDateTime lastProjectedAt;
+    private Long openGaps;
+    private Long abandonedGaps;
+    private Boolean rebuilding;
+    private LocalDateTime rebuildStartedAt;
+    private Long rebuildAppliedEvents;
+}
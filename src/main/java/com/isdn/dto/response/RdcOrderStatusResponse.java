@@ -0,0 +1,21 @@
+package com.isdn.dto.response;
+
+import com.isdn.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RdcOrderStatusResponse {
+    private Long rdcId;
+    private String rdcName;
+    private Map<OrderStatus, Long> statusCounts;
+    private Long totalOrders;
+    private Long openOrders;
+}
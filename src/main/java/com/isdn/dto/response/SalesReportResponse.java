@@ -0,0 +1,22 @@
+package com.isdn.dto.response;
+
+import com.isdn.model.RollupGranularity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesReportResponse {
+    private RollupGranularity granularity;
+    private LocalDate from;
+    private LocalDate to;
+    private List<String> groupBy;
+    private List<SalesRollupRow> rows;
+}
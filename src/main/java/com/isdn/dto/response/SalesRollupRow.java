@@ -0,0 +1,31 @@
+package com.isdn.dto.response;
+
+import com.isdn.model.Category;
+import com.isdn.model.Region;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesRollupRow {
+    // Dimensions not grouped by are null
+    private LocalDateTime bucketStart;
+    private Long rdcId;
+    private Region region;
+    private Category category;
+
+    private Long bookedOrders;
+    private Long bookedUnits;
+    private BigDecimal bookedRevenue;
+    private Long deliveredOrders;
+    private BigDecimal deliveredRevenue;
+    private Long cancelledOrders;
+    private BigDecimal cancelledRevenue;
+}
@@ -0,0 +1,16 @@
+package com.isdn.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockContentionResponse {
+    private String sku;
+    private Long conflicts;
+    private Long retriesExhausted;
+}
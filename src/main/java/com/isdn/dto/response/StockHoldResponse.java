@@ -0,0 +1,19 @@
+package com.isdn.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockHoldResponse {
+    private Long productId;
+    private Long rdcId;
+    private Integer quantityOnHand;
+    private Integer heldByCarts;
+    private Integer awaitingPayment;
+    private Integer availableToPromise;
+}
@@ -0,0 +1,41 @@
+package com.isdn.dto.response;
+
+import com.isdn.dto.request.StockReceiptRequest;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReceiptResponse {
+
+    private String reference;
+    private StockReceiptRequest.FailureMode failureMode;
+    private Boolean committed;
+    private Integer applied;
+    private Integer rejected;
+    private List<LineResult> lines;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineResult {
+
+        public enum Status {
+            APPLIED, REJECTED, NOT_APPLIED
+        }
+
+        private Integer line;
+        private Long inventoryId;
+        private Status status;
+        private Integer previousStock;
+        private Integer newStock;
+        private String message;
+    }
+}
@@ -21,7 +21,8 @@ import java.time.LocalDateTime;
 public class CartItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cartItemIdGenerator")
+    @SequenceGenerator(name = "cartItemIdGenerator", sequenceName = "cart_items_seq", allocationSize = 50)
     @Column(name = "cart_item_id")
     private Long cartItemId;
 
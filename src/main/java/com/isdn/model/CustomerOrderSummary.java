@@ -0,0 +1,51 @@
+package com.isdn.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read model: per-customer order totals, maintained from order events
+ */
+@Entity
+@Table(name = "customer_order_summaries", indexes = {
+        @Index(name = "idx_customer_summaries_spent", columnList = "total_spent")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerOrderSummary {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "total_orders", nullable = false)
+    private Long totalOrders;
+
+    // Neither delivered nor cancelled
+    @Column(name = "open_orders", nullable = false)
+    private Long openOrders;
+
+    @Column(name = "delivered_orders", nullable = false)
+    private Long deliveredOrders;
+
+    @Column(name = "cancelled_orders", nullable = false)
+    private Long cancelledOrders;
+
+    // Value of all orders that are not cancelled
+    @Column(name = "total_spent", nullable = false, precision = 14, scale = 2)
+    private BigDecimal totalSpent;
+
+    @Column(name = "last_order_at")
+    private LocalDateTime lastOrderAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -44,6 +44,11 @@ public class Inventory {
     @Column(name = "last_updated")
     private LocalDateTime lastUpdated;
 
+    // Bumped on every stock change, including the set-based updates in InventoryRepositoryCustomImpl
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private Long version;
+
     // Helper method
     public boolean isLowStock() {
         return quantityOnHand <= reorderLevel;
@@ -0,0 +1,41 @@
+package com.isdn.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * The stored invoice PDF for an order, and the order version it was rendered from
+ */
+@Entity
+@Table(name = "invoice_archive", indexes = {
+        @Index(name = "idx_invoice_archive_hash", columnList = "content_hash")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceArchiveEntry {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    // SHA-256 of the PDF, hex; also the file name in the archive directory
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    // Order.updatedAt when rendered; a different value means the invoice is stale
+    @Column(name = "order_updated_at")
+    private LocalDateTime orderUpdatedAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,8 @@
+package com.isdn.model;
+
+public enum InvoiceJobStatus {
+    PENDING,
+    RUNNING,
+    SENT,
+    FAILED
+}
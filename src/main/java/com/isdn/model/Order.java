@@ -17,15 +17,34 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        // Keyset pagination on (order_date, order_id), optionally narrowed by status, RDC or customer
+        @Index(name = "idx_orders_date_id", columnList = "order_date, order_id"),
+        @Index(name = "idx_orders_status_date_id", columnList = "status, order_date, order_id"),
+        @Index(name = "idx_orders_rdc_date_id", columnList = "rdc_id, order_date, order_id"),
+        @Index(name = "idx_orders_user_date_id", columnList = "user_id, order_date, order_id")
+})
+@NamedEntityGraph(
+        name = Order.DETAILS_GRAPH,
+        attributeNodes = {
+                @NamedAttributeNode(value = "items", subgraph = "items"),
+                @NamedAttributeNode("rdc")
+        },
+        subgraphs = @NamedSubgraph(name = "items", attributeNodes = @NamedAttributeNode("product"))
+)
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class Order {
 
+    // Everything OrderResponse needs: items with their products, and the RDC
+    public static final String DETAILS_GRAPH = "Order.details";
+
+    // Pooled ids (emulated with a table on MySQL) so inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orderIdGenerator")
+    @SequenceGenerator(name = "orderIdGenerator", sequenceName = "orders_seq", allocationSize = 50)
     @Column(name = "order_id")
     private Long orderId;
 
@@ -88,14 +107,19 @@ public class Order {
     @Builder.Default
     private List<OrderItem> items = new ArrayList<>();
 
+    // Inventory rows the order's stock was taken from, written with the order
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Builder.Default
+    private List<OrderAllocation> allocations = new ArrayList<>();
+
     // Helper method
     public void addItem(OrderItem item) {
         items.add(item);
         item.setOrder(this);
     }
 
-    // Generate order number (call before saving)
-    public static String generateOrderNumber() {
-        return "ORD-" + System.currentTimeMillis();
+    public void addAllocation(OrderAllocation allocation) {
+        allocations.add(allocation);
+        allocation.setOrder(this);
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.isdn.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Stock an order took from one inventory row, so cancelling or expiring the order
+ * puts it back on the same row instead of guessing one per product
+ */
+@Entity
+@Table(name = "order_allocations", indexes = {
+        @Index(name = "idx_order_allocations_order", columnList = "order_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderAllocation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orderAllocationIdGenerator")
+    @SequenceGenerator(name = "orderAllocationIdGenerator", sequenceName = "order_allocations_seq", allocationSize = 50)
+    @Column(name = "allocation_id")
+    private Long allocationId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_id", nullable = false)
+    private Order order;
+
+    @Column(name = "inventory_id", nullable = false)
+    private Long inventoryId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "rdc_id", nullable = false)
+    private Long rdcId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+}
@@ -0,0 +1,54 @@
+package com.isdn.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One entry in the append-only order history: an order being placed (no fromStatus)
+ * or moving between statuses. Written in the same transaction as the change itself.
+ */
+@Entity
+@Table(name = "order_events", indexes = {
+        @Index(name = "idx_order_events_order", columnList = "order_id, event_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderEvent {
+
+    // AUTO_INCREMENT rather than a pooled sequence: ids must follow insert order for the projection checkpoint
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "event_id")
+    private Long eventId;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "rdc_id")
+    private Long rdcId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "from_status", length = 30)
+    private OrderStatus fromStatus;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "to_status", nullable = false, length = 30)
+    private OrderStatus toStatus;
+
+    @Column(name = "total_amount", nullable = false, precision = 10, scale = 2)
+    private BigDecimal totalAmount;
+
+    @Column(name = "occurred_at", nullable = false, updatable = false)
+    private LocalDateTime occurredAt;
+}
@@ -19,7 +19,8 @@ import java.math.BigDecimal;
 public class OrderItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orderItemIdGenerator")
+    @SequenceGenerator(name = "orderItemIdGenerator", sequenceName = "order_items_seq", allocationSize = 50)
     @Column(name = "order_item_id")
     private Long orderItemId;
 
@@ -97,10 +97,7 @@ public class Payment {
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
 
-    /**
-     * Generate unique payment reference
-     */
-    public static String generatePaymentReference() {
-        return "PAY-" + System.currentTimeMillis() + "-" + (int) (Math.random() * 10000);
-    }
+    // Money was taken for an order that had already been cancelled and restocked
+    @Column(name = "refund_required", nullable = false)
+    private boolean refundRequired;
 }
@@ -0,0 +1,31 @@
+package com.isdn.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * How far a projection has read its event log
+ */
+@Entity
+@Table(name = "projection_checkpoints")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectionCheckpoint {
+
+    @Id
+    @Column(length = 50)
+    private String name;
+
+    @Column(name = "last_event_id", nullable = false)
+    private Long lastEventId;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,42 @@
+package com.isdn.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An event id a projection read past without seeing: the transaction that took it had not
+ * committed yet, or rolled back. Open until the event shows up; once the gap times out it is
+ * marked abandoned and left for reconciliation to recheck.
+ */
+@Entity
+@Table(name = "projection_gaps", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_projection_gaps_event", columnNames = {"projection", "event_id"})
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectionGap {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "gap_id")
+    private Long gapId;
+
+    @Column(nullable = false, length = 50)
+    private String projection;
+
+    @Column(name = "event_id", nullable = false)
+    private Long eventId;
+
+    @Column(name = "detected_at", nullable = false)
+    private LocalDateTime detectedAt;
+
+    @Column(name = "abandoned_at")
+    private LocalDateTime abandonedAt;
+}
@@ -0,0 +1,45 @@
+package com.isdn.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Read model: how many orders of each RDC are currently in each status.
+ * Maintained from order events; orders without an RDC are counted under rdcId 0.
+ */
+@Entity
+@Table(name = "rdc_order_status_counts")
+@IdClass(RdcOrderStatusCount.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RdcOrderStatusCount {
+
+    public static final long UNASSIGNED_RDC = 0L;
+
+    @Id
+    @Column(name = "rdc_id")
+    private Long rdcId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 30)
+    private OrderStatus status;
+
+    @Column(name = "order_count", nullable = false)
+    private Long orderCount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long rdcId;
+        private OrderStatus status;
+    }
+}
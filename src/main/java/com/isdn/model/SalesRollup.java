@@ -0,0 +1,83 @@
+package com.isdn.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read model: sales of one product category shipped by one RDC, per hour, day or month
+ * of the order date. Order counts are orders with at least one line in the category,
+ * so they do not add up across categories; {@link SalesOrderRollup} has the whole-order figures.
+ */
+@Entity
+@Table(name = "sales_rollups", indexes = {
+        @Index(name = "idx_sales_rollups_region", columnList = "granularity, region, bucket_start")
+})
+@IdClass(SalesRollup.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesRollup {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private RollupGranularity granularity;
+
+    @Id
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+
+    // 0 for orders without an RDC
+    @Id
+    @Column(name = "rdc_id")
+    private Long rdcId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 30)
+    private Category category;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private Region region;
+
+    // Confirmed and not cancelled (includes delivered)
+    @Column(name = "booked_orders", nullable = false)
+    private Long bookedOrders;
+
+    @Column(name = "booked_units", nullable = false)
+    private Long bookedUnits;
+
+    @Column(name = "booked_revenue", nullable = false, precision = 16, scale = 2)
+    private BigDecimal bookedRevenue;
+
+    @Column(name = "delivered_orders", nullable = false)
+    private Long deliveredOrders;
+
+    @Column(name = "delivered_revenue", nullable = false, precision = 16, scale = 2)
+    private BigDecimal deliveredRevenue;
+
+    @Column(name = "cancelled_orders", nullable = false)
+    private Long cancelledOrders;
+
+    @Column(name = "cancelled_revenue", nullable = false, precision = 16, scale = 2)
+    private BigDecimal cancelledRevenue;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private RollupGranularity granularity;
+        private LocalDateTime bucketStart;
+        private Long rdcId;
+        private Category category;
+    }
+}
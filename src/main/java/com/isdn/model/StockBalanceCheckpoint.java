@@ -0,0 +1,45 @@
+package com.isdn.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An inventory row's stock as of its newest archived movement, so the live movements
+ * can be checked against a starting balance without reading the archive
+ */
+@Entity
+@Table(name = "stock_balance_checkpoints")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockBalanceCheckpoint {
+
+    @Id
+    @Column(name = "inventory_id")
+    private Long inventoryId;
+
+    @Column(name = "rdc_id", nullable = false)
+    private Long rdcId;
+
+    // new_stock of the newest archived movement
+    @Column(nullable = false)
+    private Integer balance;
+
+    @Column(name = "last_movement_id", nullable = false)
+    private Long lastMovementId;
+
+    @Column(name = "last_movement_at", nullable = false)
+    private LocalDateTime lastMovementAt;
+
+    @Column(name = "archived_movements", nullable = false)
+    private Long archivedMovements;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -11,7 +11,11 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "stock_movements")
+@Table(name = "stock_movements", indexes = {
+        // Keyset pagination on (timestamp, movement_id) within one inventory row or one RDC
+        @Index(name = "idx_stock_movements_inventory_ts_id", columnList = "inventory_id, timestamp, movement_id"),
+        @Index(name = "idx_stock_movements_rdc_ts_id", columnList = "rdc_id, timestamp, movement_id")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -19,7 +23,8 @@ import java.time.LocalDateTime;
 public class StockMovement {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stockMovementIdGenerator")
+    @SequenceGenerator(name = "stockMovementIdGenerator", sequenceName = "stock_movements_seq", allocationSize = 50)
     @Column(name = "movement_id")
     private Long movementId;
 
@@ -27,6 +32,10 @@ public class StockMovement {
     @JoinColumn(name = "inventory_id", nullable = false)
     private Inventory inventory;
 
+    // Copy of inventory.rdc, so RDC history is read from this table alone
+    @Column(name = "rdc_id")
+    private Long rdcId;
+
     @NotNull
     @Enumerated(EnumType.STRING)
     @Column(name = "movement_type", nullable = false)
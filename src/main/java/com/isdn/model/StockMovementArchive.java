@@ -0,0 +1,55 @@
+package com.isdn.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One month of an RDC's stock movements, moved out of stock_movements into a compressed file
+ */
+@Entity
+@Table(name = "stock_movement_archives", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_stock_movement_archives_rdc_month", columnNames = {"rdc_id", "month_start"})
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockMovementArchive {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "archive_id")
+    private Long archiveId;
+
+    @Column(name = "rdc_id", nullable = false)
+    private Long rdcId;
+
+    // First day of the archived month
+    @Column(name = "month_start", nullable = false)
+    private LocalDate monthStart;
+
+    // Gzipped JSON lines, newest movement first
+    @Column(name = "file_path", nullable = false, length = 500)
+    private String filePath;
+
+    @Column(name = "movement_count", nullable = false)
+    private Long movementCount;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(name = "oldest_timestamp", nullable = false)
+    private LocalDateTime oldestTimestamp;
+
+    @Column(name = "newest_timestamp", nullable = false)
+    private LocalDateTime newestTimestamp;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
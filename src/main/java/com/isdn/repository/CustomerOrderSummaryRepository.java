@@ -0,0 +1,15 @@
+package com.isdn.repository;
+
+import com.isdn.model.CustomerOrderSummary;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CustomerOrderSummaryRepository
+        extends JpaRepository<CustomerOrderSummary, Long>, CustomerOrderSummaryRepositoryCustom {
+
+    List<CustomerOrderSummary> findAllByOrderByTotalSpentDesc(Limit limit);
+}
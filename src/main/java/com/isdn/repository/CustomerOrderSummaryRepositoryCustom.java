@@ -0,0 +1,21 @@
+package com.isdn.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Incremental updates to the per-customer order summaries
+ */
+public interface CustomerOrderSummaryRepositoryCustom {
+
+    /**
+     * Add each delta to its customer's summary in a single JDBC batch, creating missing summaries.
+     * lastOrderAt only ever moves forward.
+     */
+    void applyDeltas(List<SummaryDelta> deltas);
+
+    record SummaryDelta(long userId, long orders, long openOrders, long deliveredOrders, long cancelledOrders,
+                        BigDecimal spent, LocalDateTime lastOrderAt) {
+    }
+}
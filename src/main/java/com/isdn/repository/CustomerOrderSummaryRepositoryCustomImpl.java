@@ -0,0 +1,50 @@
+package com.isdn.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class CustomerOrderSummaryRepositoryCustomImpl implements CustomerOrderSummaryRepositoryCustom {
+
+    private static final String UPSERT_SUMMARY =
+            "INSERT INTO customer_order_summaries (user_id, total_orders, open_orders, delivered_orders, " +
+            "cancelled_orders, total_spent, last_order_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "total_orders = total_orders + VALUES(total_orders), " +
+            "open_orders = open_orders + VALUES(open_orders), " +
+            "delivered_orders = delivered_orders + VALUES(delivered_orders), " +
+            "cancelled_orders = cancelled_orders + VALUES(cancelled_orders), " +
+            "total_spent = total_spent + VALUES(total_spent), " +
+            "last_order_at = GREATEST(COALESCE(last_order_at, VALUES(last_order_at)), " +
+            "COALESCE(VALUES(last_order_at), last_order_at)), " +
+            "updated_at = VALUES(updated_at)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void applyDeltas(List<SummaryDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(UPSERT_SUMMARY, deltas, deltas.size(), (ps, delta) -> {
+            ps.setLong(1, delta.userId());
+            ps.setLong(2, delta.orders());
+            ps.setLong(3, delta.openOrders());
+            ps.setLong(4, delta.deliveredOrders());
+            ps.setLong(5, delta.cancelledOrders());
+            ps.setBigDecimal(6, delta.spent());
+            if (delta.lastOrderAt() != null) {
+                ps.setTimestamp(7, Timestamp.valueOf(delta.lastOrderAt()));
+            } else {
+                ps.setNull(7, Types.TIMESTAMP);
+            }
+            ps.setTimestamp(8, now);
+        });
+    }
+}
@@ -0,0 +1,72 @@
+package com.isdn.repository;
+
+import com.isdn.model.EmailOutboxMessage;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, Long> {
+
+    /**
+     * Pending messages whose next attempt is due, oldest first
+     */
+    @Query("SELECT m.messageId AS messageId, m.recipientDomain AS recipientDomain FROM EmailOutboxMessage m " +
+           "WHERE m.status = com.isdn.model.EmailOutboxMessage.Status.PENDING " +
+           "AND m.nextAttemptAt <= :now ORDER BY m.nextAttemptAt, m.messageId")
+    List<DueMessageView> findDueMessages(@Param("now") LocalDateTime now, Limit limit);
+
+    /**
+     * Move pending messages to SENDING; only rows still pending are taken, so a message
+     * claimed by another instance in between is left alone
+     *
+     * @return how many rows this caller now owns
+     */
+    @Modifying
+    @Query("UPDATE EmailOutboxMessage m SET m.status = com.isdn.model.EmailOutboxMessage.Status.SENDING, " +
+           "m.attempts = m.attempts + 1, m.claimToken = :claimToken, m.updatedAt = :now " +
+           "WHERE m.messageId IN :messageIds AND m.status = com.isdn.model.EmailOutboxMessage.Status.PENDING")
+    int claim(@Param("messageIds") Collection<Long> messageIds, @Param("claimToken") String claimToken,
+              @Param("now") LocalDateTime now);
+
+    /**
+     * The messages a claim() call actually took
+     */
+    @Query("SELECT m FROM EmailOutboxMessage m WHERE m.claimToken = :claimToken " +
+           "AND m.status = com.isdn.model.EmailOutboxMessage.Status.SENDING")
+    List<EmailOutboxMessage> findClaimed(@Param("claimToken") String claimToken);
+
+    /**
+     * Put SENDING messages whose dispatcher went away back in the queue
+     */
+    @Modifying
+    @Query("UPDATE EmailOutboxMessage m SET m.status = com.isdn.model.EmailOutboxMessage.Status.PENDING, " +
+           "m.nextAttemptAt = :now, m.updatedAt = :now " +
+           "WHERE m.status = com.isdn.model.EmailOutboxMessage.Status.SENDING AND m.updatedAt < :staleBefore")
+    int releaseStale(@Param("staleBefore") LocalDateTime staleBefore, @Param("now") LocalDateTime now);
+
+    /**
+     * Attachment files of messages that may still be sent
+     */
+    @Query("SELECT DISTINCT m.attachmentPath FROM EmailOutboxMessage m WHERE m.attachmentPath IS NOT NULL " +
+           "AND m.status IN (com.isdn.model.EmailOutboxMessage.Status.PENDING, com.isdn.model.EmailOutboxMessage.Status.SENDING)")
+    List<String> findUnsentAttachmentPaths();
+
+    long countByStatus(EmailOutboxMessage.Status status);
+
+    /**
+     * A due message and the domain it is throttled under
+     */
+    interface DueMessageView {
+        Long getMessageId();
+
+        String getRecipientDomain();
+    }
+}
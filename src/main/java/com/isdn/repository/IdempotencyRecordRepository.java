@@ -0,0 +1,57 @@
+package com.isdn.repository;
+
+import com.isdn.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+
+    Optional<IdempotencyRecord> findByScopeAndUserIdAndIdempotencyKey(String scope, Long userId, String idempotencyKey);
+
+    /**
+     * Take over a claim whose owner stopped before completing it, provided nobody else took it
+     * over since it was read (expectedToken is the token read, "" for rows claimed without one)
+     *
+     * @return 1 if this caller now owns the claim under newToken
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.claimedAt = :now, r.claimToken = :newToken " +
+           "WHERE r.recordId = :recordId AND COALESCE(r.claimToken, '') = :expectedToken " +
+           "AND r.status = com.isdn.model.IdempotencyRecord.Status.IN_PROGRESS AND r.claimedAt < :staleBefore")
+    int takeOverStaleClaim(@Param("recordId") Long recordId, @Param("expectedToken") String expectedToken,
+                           @Param("newToken") String newToken, @Param("now") LocalDateTime now,
+                           @Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * Store the response, if the claim still belongs to the caller
+     *
+     * @return 0 if the claim was taken over meanwhile
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = com.isdn.model.IdempotencyRecord.Status.COMPLETED, " +
+           "r.responseBody = :responseBody, r.completedAt = :now " +
+           "WHERE r.recordId = :recordId AND r.claimToken = :claimToken")
+    int complete(@Param("recordId") Long recordId, @Param("claimToken") String claimToken,
+                 @Param("responseBody") String responseBody, @Param("now") LocalDateTime now);
+
+    /**
+     * Release a claim after its request failed, unless it was taken over meanwhile
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.recordId = :recordId AND r.claimToken = :claimToken")
+    int release(@Param("recordId") Long recordId, @Param("claimToken") String claimToken);
+
+    /**
+     * Delete up to limit expired records
+     */
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_records WHERE expires_at < :now LIMIT :limit", nativeQuery = true)
+    int deleteExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
@@ -12,7 +12,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface InventoryRepository extends JpaRepository<Inventory, Long> {
+public interface InventoryRepository extends JpaRepository<Inventory, Long>, InventoryRepositoryCustom {
 
     Optional<Inventory> findByProductAndRdc(Product product, RDC rdc);
 
@@ -32,6 +32,9 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
     @Query("SELECT i FROM Inventory i WHERE i.rdc.rdcId = :rdcId AND i.quantityOnHand <= i.reorderLevel")
     List<Inventory> findLowStockItemsByRdc(@Param("rdcId") Long rdcId);
 
+    @Query("SELECT i.product.sku FROM Inventory i WHERE i.inventoryId = :inventoryId")
+    Optional<String> findProductSkuByInventoryId(@Param("inventoryId") Long inventoryId);
+
     @Query("SELECT SUM(i.quantityOnHand) FROM Inventory i WHERE i.product.productId = :productId")
     Integer getTotalStockForProduct(@Param("productId") Long productId);
 }
\ No newline at end of file
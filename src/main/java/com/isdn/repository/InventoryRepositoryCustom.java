@@ -0,0 +1,66 @@
+package com.isdn.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Set-based stock operations that bypass the persistence context.
+ * Every statement works directly on the inventory table, so callers must not
+ * rely on managed Inventory entities after using these methods.
+ */
+public interface InventoryRepositoryCustom {
+
+    /**
+     * Read current stock rows for the given products in one statement.
+     * When forUpdate is true the rows are read with a locking read so the
+     * latest committed quantities are returned even inside an older snapshot.
+     */
+    List<StockLevel> findStockLevelsByProductIds(Collection<Long> productIds, boolean forUpdate);
+
+    /**
+     * Lock the given inventory rows and read their stock levels in one statement.
+     * Rows are locked in inventory_id order so concurrent callers cannot deadlock.
+     */
+    List<StockLevel> lockStockLevelsByInventoryIds(Collection<Long> inventoryIds);
+
+    /**
+     * Read every inventory row's stock level (used to load and reconcile in-memory stock)
+     */
+    List<StockLevel> findAllStockLevels();
+
+    /**
+     * Read every inventory row's reorder point with the names shown on the low-stock screen
+     */
+    List<ReorderPoint> findAllReorderPoints();
+
+    /**
+     * Read one inventory row's reorder point
+     */
+    Optional<ReorderPoint> findReorderPoint(long productId, long rdcId);
+
+    /**
+     * Conditionally decrement stock for every delta in a single JDBC batch.
+     * A row is only updated while quantity_on_hand is still at least the delta.
+     *
+     * @return update count per delta, in input order (0 means the row was short)
+     */
+    int[] decrementStockIfAvailable(List<StockDelta> deltas);
+
+    /**
+     * Increment stock for every delta in a single JDBC batch. A negative quantity
+     * decrements without any check, so the caller must hold the rows locked.
+     */
+    int[] incrementStock(List<StockDelta> deltas);
+
+    record StockLevel(Long inventoryId, Long productId, Long rdcId, int quantityOnHand) {
+    }
+
+    record StockDelta(Long inventoryId, int quantity) {
+    }
+
+    record ReorderPoint(Long inventoryId, Long productId, Long rdcId, String productName, String productSku,
+                        String rdcName, int reorderLevel, LocalDateTime lastUpdated) {
+    }
+}
@@ -0,0 +1,124 @@
+package com.isdn.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class InventoryRepositoryCustomImpl implements InventoryRepositoryCustom {
+
+    private static final String SELECT_STOCK_LEVELS =
+            "SELECT inventory_id, product_id, rdc_id, quantity_on_hand FROM inventory " +
+            "WHERE product_id IN (:productIds) ORDER BY inventory_id";
+
+    private static final String LOCK_STOCK_LEVELS_BY_INVENTORY_IDS =
+            "SELECT inventory_id, product_id, rdc_id, quantity_on_hand FROM inventory " +
+            "WHERE inventory_id IN (:inventoryIds) ORDER BY inventory_id FOR UPDATE";
+
+    private static final String SELECT_ALL_STOCK_LEVELS =
+            "SELECT inventory_id, product_id, rdc_id, quantity_on_hand FROM inventory";
+
+    private static final String SELECT_REORDER_POINTS =
+            "SELECT i.inventory_id, i.product_id, i.rdc_id, p.name AS product_name, p.sku, r.name AS rdc_name, " +
+            "i.reorder_level, i.last_updated FROM inventory i " +
+            "JOIN products p ON p.product_id = i.product_id JOIN rdcs r ON r.rdc_id = i.rdc_id";
+
+    private static final String DECREMENT_IF_AVAILABLE =
+            "UPDATE inventory SET quantity_on_hand = quantity_on_hand - ?, version = version + 1, last_updated = ? " +
+            "WHERE inventory_id = ? AND quantity_on_hand >= ?";
+
+    private static final String INCREMENT =
+            "UPDATE inventory SET quantity_on_hand = quantity_on_hand + ?, version = version + 1, last_updated = ? " +
+            "WHERE inventory_id = ?";
+
+    private static final RowMapper<StockLevel> STOCK_LEVEL_MAPPER = (rs, rowNum) -> new StockLevel(
+            rs.getLong("inventory_id"),
+            rs.getLong("product_id"),
+            rs.getLong("rdc_id"),
+            rs.getInt("quantity_on_hand"));
+
+    private static final RowMapper<ReorderPoint> REORDER_POINT_MAPPER = (rs, rowNum) -> {
+        Timestamp lastUpdated = rs.getTimestamp("last_updated");
+        return new ReorderPoint(
+                rs.getLong("inventory_id"),
+                rs.getLong("product_id"),
+                rs.getLong("rdc_id"),
+                rs.getString("product_name"),
+                rs.getString("sku"),
+                rs.getString("rdc_name"),
+                rs.getInt("reorder_level"),
+                lastUpdated != null ? lastUpdated.toLocalDateTime() : null);
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Override
+    public List<StockLevel> findStockLevelsByProductIds(Collection<Long> productIds, boolean forUpdate) {
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+        String sql = forUpdate ? SELECT_STOCK_LEVELS + " FOR UPDATE" : SELECT_STOCK_LEVELS;
+        return namedParameterJdbcTemplate.query(sql, Map.of("productIds", productIds), STOCK_LEVEL_MAPPER);
+    }
+
+    @Override
+    public List<StockLevel> lockStockLevelsByInventoryIds(Collection<Long> inventoryIds) {
+        if (inventoryIds.isEmpty()) {
+            return List.of();
+        }
+        return namedParameterJdbcTemplate.query(LOCK_STOCK_LEVELS_BY_INVENTORY_IDS,
+                Map.of("inventoryIds", inventoryIds), STOCK_LEVEL_MAPPER);
+    }
+
+    @Override
+    public List<StockLevel> findAllStockLevels() {
+        return jdbcTemplate.query(SELECT_ALL_STOCK_LEVELS, STOCK_LEVEL_MAPPER);
+    }
+
+    @Override
+    public List<ReorderPoint> findAllReorderPoints() {
+        return jdbcTemplate.query(SELECT_REORDER_POINTS, REORDER_POINT_MAPPER);
+    }
+
+    @Override
+    public Optional<ReorderPoint> findReorderPoint(long productId, long rdcId) {
+        return jdbcTemplate.query(SELECT_REORDER_POINTS + " WHERE i.product_id = ? AND i.rdc_id = ?",
+                REORDER_POINT_MAPPER, productId, rdcId).stream().findFirst();
+    }
+
+    @Override
+    public int[] decrementStockIfAvailable(List<StockDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return new int[0];
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.batchUpdate(DECREMENT_IF_AVAILABLE, deltas, deltas.size(), (ps, delta) -> {
+            ps.setInt(1, delta.quantity());
+            ps.setTimestamp(2, now);
+            ps.setLong(3, delta.inventoryId());
+            ps.setInt(4, delta.quantity());
+        })[0];
+    }
+
+    @Override
+    public int[] incrementStock(List<StockDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return new int[0];
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.batchUpdate(INCREMENT, deltas, deltas.size(), (ps, delta) -> {
+            ps.setInt(1, delta.quantity());
+            ps.setTimestamp(2, now);
+            ps.setLong(3, delta.inventoryId());
+        })[0];
+    }
+}
@@ -0,0 +1,11 @@
+package com.isdn.repository;
+
+import com.isdn.model.InvoiceArchiveEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface InvoiceArchiveRepository extends JpaRepository<InvoiceArchiveEntry, Long> {
+
+    boolean existsByContentHash(String contentHash);
+}
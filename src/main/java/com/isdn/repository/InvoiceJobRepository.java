@@ -0,0 +1,62 @@
+package com.isdn.repository;
+
+import com.isdn.model.InvoiceJob;
+import com.isdn.model.InvoiceJobStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface InvoiceJobRepository extends JpaRepository<InvoiceJob, Long> {
+
+    /**
+     * Pending jobs whose next attempt is due, oldest first
+     */
+    @Query("SELECT j.jobId FROM InvoiceJob j WHERE j.status = com.isdn.model.InvoiceJobStatus.PENDING " +
+           "AND j.nextAttemptAt <= :now ORDER BY j.nextAttemptAt")
+    List<Long> findDueJobIds(@Param("now") LocalDateTime now, Limit limit);
+
+    /**
+     * Move a pending job to RUNNING under a fresh claim token; only one worker on any instance can succeed
+     *
+     * @return 1 if this caller now owns the job
+     */
+    @Modifying
+    @Query("UPDATE InvoiceJob j SET j.status = com.isdn.model.InvoiceJobStatus.RUNNING, " +
+           "j.attempts = j.attempts + 1, j.claimToken = :claimToken, j.updatedAt = :now " +
+           "WHERE j.jobId = :jobId AND j.status = com.isdn.model.InvoiceJobStatus.PENDING")
+    int claim(@Param("jobId") Long jobId, @Param("claimToken") String claimToken, @Param("now") LocalDateTime now);
+
+    /**
+     * Record the outcome of a run, only if the job still carries this worker's claim token.
+     * A worker whose job was requeued as stale and claimed again updates nothing.
+     *
+     * @return 1 if the outcome was recorded
+     */
+    @Modifying
+    @Query("UPDATE InvoiceJob j SET j.status = :status, j.lastError = :lastError, " +
+           "j.nextAttemptAt = COALESCE(:nextAttemptAt, j.nextAttemptAt), j.completedAt = :completedAt, " +
+           "j.updatedAt = :now WHERE j.jobId = :jobId AND j.claimToken = :claimToken")
+    int complete(@Param("jobId") Long jobId, @Param("claimToken") String claimToken,
+                 @Param("status") InvoiceJobStatus status, @Param("lastError") String lastError,
+                 @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("completedAt") LocalDateTime completedAt,
+                 @Param("now") LocalDateTime now);
+
+    /**
+     * Put RUNNING jobs whose worker went away back in the queue
+     */
+    @Modifying
+    @Query("UPDATE InvoiceJob j SET j.status = com.isdn.model.InvoiceJobStatus.PENDING, j.nextAttemptAt = :now, " +
+           "j.updatedAt = :now WHERE j.status = com.isdn.model.InvoiceJobStatus.RUNNING AND j.updatedAt < :staleBefore")
+    int releaseStale(@Param("staleBefore") LocalDateTime staleBefore, @Param("now") LocalDateTime now);
+
+    List<InvoiceJob> findByOrderIdOrderByCreatedAtDesc(Long orderId);
+
+    long countByStatus(InvoiceJobStatus status);
+}
@@ -0,0 +1,34 @@
+package com.isdn.repository;
+
+import com.isdn.model.OrderAllocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrderAllocationRepository extends JpaRepository<OrderAllocation, Long> {
+
+    /**
+     * Allocations of the given orders, grouped by order and in inventory id order
+     */
+    @Query("SELECT a.order.orderId AS orderId, a.inventoryId AS inventoryId, a.productId AS productId, " +
+           "a.rdcId AS rdcId, a.quantity AS quantity FROM OrderAllocation a " +
+           "WHERE a.order.orderId IN :orderIds ORDER BY a.order.orderId, a.inventoryId")
+    List<AllocationView> findByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
+    interface AllocationView {
+        Long getOrderId();
+
+        Long getInventoryId();
+
+        Long getProductId();
+
+        Long getRdcId();
+
+        Integer getQuantity();
+    }
+}
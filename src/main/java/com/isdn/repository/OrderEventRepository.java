@@ -0,0 +1,38 @@
+package com.isdn.repository;
+
+import com.isdn.model.OrderEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrderEventRepository extends JpaRepository<OrderEvent, Long>, OrderEventRepositoryCustom {
+
+    /**
+     * Committed events after a checkpoint, oldest first. Ids missing from the result may
+     * belong to transactions that have not committed yet.
+     */
+    @Query("SELECT e FROM OrderEvent e WHERE e.eventId > :afterId ORDER BY e.eventId")
+    List<OrderEvent> findBatchAfter(@Param("afterId") Long afterId, Limit limit);
+
+    List<OrderEvent> findByEventIdInOrderByEventId(Collection<Long> eventIds);
+
+    @Query("SELECT e FROM OrderEvent e WHERE e.eventId > :afterId AND e.eventId <= :toId ORDER BY e.eventId")
+    List<OrderEvent> findBatchBetween(@Param("afterId") Long afterId, @Param("toId") Long toId, Limit limit);
+
+    List<OrderEvent> findByOrderIdOrderByEventIdAsc(Long orderId);
+
+    @Query("SELECT COALESCE(MAX(e.eventId), 0) FROM OrderEvent e")
+    Long findLatestEventId();
+
+    @Query("SELECT COALESCE(MAX(e.eventId), 0) FROM OrderEvent e WHERE e.occurredAt < :before")
+    Long findLatestEventIdBefore(@Param("before") LocalDateTime before);
+
+    long countByEventIdGreaterThan(Long eventId);
+}
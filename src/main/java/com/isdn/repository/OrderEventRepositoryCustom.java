@@ -0,0 +1,16 @@
+package com.isdn.repository;
+
+import com.isdn.model.OrderEvent;
+
+import java.util.List;
+
+/**
+ * Appends order events without going through the persistence context
+ */
+public interface OrderEventRepositoryCustom {
+
+    /**
+     * Insert events in a single JDBC batch on the current transaction's connection
+     */
+    void appendAll(List<OrderEvent> events);
+}
@@ -0,0 +1,39 @@
+package com.isdn.repository;
+
+import com.isdn.model.OrderEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class OrderEventRepositoryCustomImpl implements OrderEventRepositoryCustom {
+
+    private static final String INSERT_EVENT =
+            "INSERT INTO order_events (order_id, user_id, rdc_id, from_status, to_status, total_amount, occurred_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void appendAll(List<OrderEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_EVENT, events, events.size(), (ps, event) -> {
+            ps.setLong(1, event.getOrderId());
+            ps.setLong(2, event.getUserId());
+            if (event.getRdcId() != null) {
+                ps.setLong(3, event.getRdcId());
+            } else {
+                ps.setNull(3, Types.BIGINT);
+            }
+            ps.setString(4, event.getFromStatus() != null ? event.getFromStatus().name() : null);
+            ps.setString(5, event.getToStatus().name());
+            ps.setBigDecimal(6, event.getTotalAmount());
+            ps.setTimestamp(7, Timestamp.valueOf(event.getOccurredAt()));
+        });
+    }
+}
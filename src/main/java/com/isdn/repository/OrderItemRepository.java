@@ -1,10 +1,16 @@
 package com.isdn.repository;
 
+import com.isdn.model.Category;
 import com.isdn.model.Order;
 import com.isdn.model.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -13,4 +19,25 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     List<OrderItem> findByOrder(Order order);
 
     List<OrderItem> findByOrder_OrderId(Long orderId);
+
+    /**
+     * Units and value per product category for each of the given orders
+     */
+    @Query("SELECT o.orderId AS orderId, o.orderDate AS orderDate, p.category AS category, " +
+           "SUM(oi.quantity) AS units, SUM(oi.subtotal) AS revenue " +
+           "FROM OrderItem oi JOIN oi.order o JOIN oi.product p " +
+           "WHERE o.orderId IN :orderIds GROUP BY o.orderId, o.orderDate, p.category")
+    List<CategoryTotalsView> findCategoryTotalsByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
+    interface CategoryTotalsView {
+        Long getOrderId();
+
+        LocalDateTime getOrderDate();
+
+        Category getCategory();
+
+        Long getUnits();
+
+        BigDecimal getRevenue();
+    }
 }
\ No newline at end of file
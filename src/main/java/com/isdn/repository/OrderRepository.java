@@ -1,18 +1,29 @@
 package com.isdn.repository;
 
+import com.isdn.dto.response.OrderExportRow;
 import com.isdn.model.Order;
 import com.isdn.model.OrderStatus;
+import com.isdn.model.PaymentMethod;
 import com.isdn.model.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
@@ -50,4 +61,117 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     @Query("SELECT o FROM Order o WHERE o.status IN :statuses ORDER BY o.orderDate DESC")
     List<Order> findByStatusIn(@Param("statuses") List<OrderStatus> statuses);
-}
\ No newline at end of file
+
+    // Keyset pages, newest first: rows strictly after the (orderDate, orderId) cursor
+    String KEYSET_AFTER = "o.orderDate <= :orderDate AND (o.orderDate < :orderDate OR o.orderId < :orderId) ";
+    String KEYSET_ORDER = "ORDER BY o.orderDate DESC, o.orderId DESC";
+
+    // Pages are read as ids first so the row limit applies in SQL, then loaded with findDetailedByOrderIdIn
+    @Query("SELECT o.orderId FROM Order o WHERE " + KEYSET_AFTER + KEYSET_ORDER)
+    List<Long> findPageIdsAfter(@Param("orderDate") LocalDateTime orderDate, @Param("orderId") Long orderId, Limit limit);
+
+    @Query("SELECT o.orderId FROM Order o WHERE o.status = :status AND " + KEYSET_AFTER + KEYSET_ORDER)
+    List<Long> findPageIdsByStatusAfter(@Param("status") OrderStatus status, @Param("orderDate") LocalDateTime orderDate,
+                                        @Param("orderId") Long orderId, Limit limit);
+
+    @Query("SELECT o.orderId FROM Order o WHERE o.rdc.rdcId = :rdcId AND " + KEYSET_AFTER + KEYSET_ORDER)
+    List<Long> findPageIdsByRdcAfter(@Param("rdcId") Long rdcId, @Param("orderDate") LocalDateTime orderDate,
+                                     @Param("orderId") Long orderId, Limit limit);
+
+    @Query("SELECT o.orderId FROM Order o WHERE o.user.userId = :userId AND " + KEYSET_AFTER + KEYSET_ORDER)
+    List<Long> findPageIdsByUserAfter(@Param("userId") Long userId, @Param("orderDate") LocalDateTime orderDate,
+                                      @Param("orderId") Long orderId, Limit limit);
+
+    /**
+     * Orders with items, products and RDC in a single query (no ordering; callers reorder by id)
+     */
+    @EntityGraph(Order.DETAILS_GRAPH)
+    @Query("SELECT o FROM Order o WHERE o.orderId IN :orderIds")
+    List<Order> findDetailedByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    @EntityGraph(Order.DETAILS_GRAPH)
+    @Query("SELECT o FROM Order o WHERE o.orderId = :orderId")
+    Optional<Order> findDetailedById(@Param("orderId") Long orderId);
+
+    @EntityGraph(Order.DETAILS_GRAPH)
+    @Query("SELECT o FROM Order o WHERE o.orderNumber = :orderNumber")
+    Optional<Order> findDetailedByOrderNumber(@Param("orderNumber") String orderNumber);
+
+    /**
+     * Everything an invoice prints: items with products, and the customer
+     */
+    @EntityGraph(attributePaths = {"items", "items.product", "user"})
+    @Query("SELECT o FROM Order o WHERE o.orderId = :orderId")
+    Optional<Order> findForInvoiceById(@Param("orderId") Long orderId);
+
+    /**
+     * Forward-only export rows, oldest first. Every filter is optional (null matches all).
+     * Integer.MIN_VALUE makes MySQL Connector/J stream rows instead of buffering the result.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT new com.isdn.dto.response.OrderExportRow(o.orderId, o.orderNumber, o.orderDate, o.status, " +
+            "u.username, u.businessName, r.name, o.paymentMethod, o.totalAmount, SIZE(o.items), " +
+            "o.estimatedDeliveryDate, o.actualDeliveryDate) " +
+            "FROM Order o JOIN o.user u LEFT JOIN o.rdc r " +
+            "WHERE (:from IS NULL OR o.orderDate >= :from) AND (:to IS NULL OR o.orderDate < :to) " +
+            "AND (:status IS NULL OR o.status = :status) AND (:rdcId IS NULL OR r.rdcId = :rdcId) " +
+            "ORDER BY o.orderDate, o.orderId")
+    Stream<OrderExportRow> streamExportRows(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                            @Param("status") OrderStatus status, @Param("rdcId") Long rdcId);
+
+    /**
+     * Orders placed in [from, to) that carry an invoice, oldest first
+     */
+    @Query("SELECT o.orderId AS orderId, o.orderNumber AS orderNumber FROM Order o " +
+           "WHERE o.orderDate >= :from AND o.orderDate < :to AND o.status NOT IN :excluded " +
+           "ORDER BY o.orderDate, o.orderId")
+    List<InvoiceTargetView> findInvoiceTargets(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                               @Param("excluded") Collection<OrderStatus> excluded);
+
+    /**
+     * A customer's orders placed in [from, to), oldest first
+     */
+    @Query("SELECT o FROM Order o WHERE o.user.userId = :userId AND o.orderDate >= :from AND o.orderDate < :to " +
+           "ORDER BY o.orderDate, o.orderId")
+    List<Order> findStatementOrders(@Param("userId") Long userId, @Param("from") LocalDateTime from,
+                                    @Param("to") LocalDateTime to);
+
+    List<PendingPaymentView> findByStatusAndPaymentMethodAndOrderDateAfter(OrderStatus status,
+                                                                          PaymentMethod paymentMethod,
+                                                                          LocalDateTime placedAfter);
+
+    long countByStatusAndPaymentMethodAndOrderDateBefore(OrderStatus status, PaymentMethod paymentMethod,
+                                                         LocalDateTime placedBefore);
+
+    /**
+     * An order locked for update, so status changes from different paths serialize
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.orderId = :orderId")
+    Optional<Order> lockById(@Param("orderId") Long orderId);
+
+    /**
+     * Orders locked for update, in id order so two lockers never deadlock
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.orderId IN :orderIds ORDER BY o.orderId")
+    List<Order> lockAllById(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * Order id and placement time, enough to restore payment holds
+     */
+    interface PendingPaymentView {
+        Long getOrderId();
+
+        LocalDateTime getOrderDate();
+    }
+
+    /**
+     * Order id and number, enough to name an invoice file
+     */
+    interface InvoiceTargetView {
+        Long getOrderId();
+
+        String getOrderNumber();
+    }
+}
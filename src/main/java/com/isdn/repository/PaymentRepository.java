@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -33,4 +34,13 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
     @Query("SELECT COUNT(p) > 0 FROM Payment p WHERE p.order.orderId = :orderId AND p.status = 'SUCCESS'")
     boolean existsSuccessfulPaymentForOrder(@Param("orderId") Long orderId);
+
+    /**
+     * Whether a payment for the order was started or updated recently and has not settled yet
+     */
+    @Query("SELECT COUNT(p) > 0 FROM Payment p WHERE p.order.orderId = :orderId " +
+           "AND p.status IN ('PENDING', 'PROCESSING') AND p.updatedAt >= :since")
+    boolean existsInFlightPaymentForOrder(@Param("orderId") Long orderId, @Param("since") LocalDateTime since);
+
+    List<Payment> findByRefundRequiredTrueOrderByCompletedAtDesc();
 }
@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,6 +17,8 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     Optional<Product> findBySku(String sku);
 
+    List<Product> findBySkuIn(Collection<String> skus);
+
     List<Product> findByActiveTrueOrderByNameAsc();
 
     List<Product> findByCategoryAndActiveTrue(Category category);
@@ -0,0 +1,32 @@
+package com.isdn.repository;
+
+import com.isdn.model.ProjectionCheckpoint;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ProjectionCheckpointRepository extends JpaRepository<ProjectionCheckpoint, String> {
+
+    /**
+     * Lock the checkpoint so only one instance advances a projection at a time
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ProjectionCheckpoint c WHERE c.name = :name")
+    Optional<ProjectionCheckpoint> findForUpdate(@Param("name") String name);
+
+    /**
+     * Like findForUpdate, but fails at once instead of waiting when another instance holds the lock
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "0"))
+    @Query("SELECT c FROM ProjectionCheckpoint c WHERE c.name = :name")
+    Optional<ProjectionCheckpoint> findForUpdateNoWait(@Param("name") String name);
+}
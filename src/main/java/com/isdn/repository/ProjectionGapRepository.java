@@ -0,0 +1,34 @@
+package com.isdn.repository;
+
+import com.isdn.model.ProjectionGap;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ProjectionGapRepository extends JpaRepository<ProjectionGap, Long> {
+
+    List<ProjectionGap> findByProjectionAndAbandonedAtIsNullOrderByEventId(String projection);
+
+    List<ProjectionGap> findByProjectionAndAbandonedAtIsNotNullOrderByEventId(String projection);
+
+    long countByProjectionAndAbandonedAtIsNull(String projection);
+
+    long countByProjectionAndAbandonedAtIsNotNull(String projection);
+
+    @Modifying
+    @Query("DELETE FROM ProjectionGap g WHERE g.projection = :projection")
+    int deleteByProjection(@Param("projection") String projection);
+
+    /**
+     * Forget abandoned ids that never turned up; their transactions rolled back
+     */
+    @Modifying
+    @Query("DELETE FROM ProjectionGap g WHERE g.projection = :projection AND g.abandonedAt < :before")
+    int deleteAbandonedBefore(@Param("projection") String projection, @Param("before") LocalDateTime before);
+}
@@ -1,12 +1,15 @@
 package com.isdn.repository;
 
 import com.isdn.model.Promotion;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PromotionRepository extends JpaRepository<Promotion, Long> {
@@ -18,4 +21,8 @@ public interface PromotionRepository extends JpaRepository<Promotion, Long> {
 
     @Query("SELECT p FROM Promotion p WHERE p.endDate < :date")
     List<Promotion> findExpiredPromotions(LocalDate date);
+
+    @EntityGraph(attributePaths = "products")
+    @Query("SELECT p FROM Promotion p WHERE p.promotionId = :promotionId")
+    Optional<Promotion> findWithProductsById(@Param("promotionId") Long promotionId);
 }
@@ -0,0 +1,14 @@
+package com.isdn.repository;
+
+import com.isdn.model.RdcOrderStatusCount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RdcOrderStatusCountRepository
+        extends JpaRepository<RdcOrderStatusCount, RdcOrderStatusCount.Key>, RdcOrderStatusCountRepositoryCustom {
+
+    List<RdcOrderStatusCount> findByRdcId(Long rdcId);
+}
@@ -0,0 +1,19 @@
+package com.isdn.repository;
+
+import com.isdn.model.OrderStatus;
+
+import java.util.List;
+
+/**
+ * Incremental updates to the per-RDC status counts
+ */
+public interface RdcOrderStatusCountRepositoryCustom {
+
+    /**
+     * Add each delta to its (RDC, status) counter in a single JDBC batch, creating missing counters
+     */
+    void applyDeltas(List<StatusCountDelta> deltas);
+
+    record StatusCountDelta(long rdcId, OrderStatus status, long delta) {
+    }
+}
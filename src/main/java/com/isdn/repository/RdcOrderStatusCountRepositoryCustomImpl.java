@@ -0,0 +1,28 @@
+package com.isdn.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class RdcOrderStatusCountRepositoryCustomImpl implements RdcOrderStatusCountRepositoryCustom {
+
+    private static final String UPSERT_COUNT =
+            "INSERT INTO rdc_order_status_counts (rdc_id, status, order_count) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE order_count = order_count + VALUES(order_count)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void applyDeltas(List<StatusCountDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_COUNT, deltas, deltas.size(), (ps, delta) -> {
+            ps.setLong(1, delta.rdcId());
+            ps.setString(2, delta.status().name());
+            ps.setLong(3, delta.delta());
+        });
+    }
+}
@@ -0,0 +1,9 @@
+package com.isdn.repository;
+
+import com.isdn.model.SalesOrderRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SalesOrderRollupRepository extends JpaRepository<SalesOrderRollup, SalesOrderRollup.Key> {
+}
@@ -0,0 +1,9 @@
+package com.isdn.repository;
+
+import com.isdn.model.SalesRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, SalesRollup.Key>, SalesRollupRepositoryCustom {
+}
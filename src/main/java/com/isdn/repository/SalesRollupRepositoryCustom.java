@@ -0,0 +1,57 @@
+package com.isdn.repository;
+
+import com.isdn.dto.response.SalesRollupRow;
+import com.isdn.model.Category;
+import com.isdn.model.Region;
+import com.isdn.model.RollupGranularity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Incremental updates to, and grouped reads of, the sales rollups
+ */
+public interface SalesRollupRepositoryCustom {
+
+    /**
+     * Add each delta to its rollup row, one JDBC batch per table, creating missing rows.
+     * Deltas without a category go to the whole-order rollups.
+     */
+    void applyDeltas(List<RollupDelta> deltas);
+
+    /**
+     * Sum rollups of one granularity in [from, to), grouped by the given dimensions (none for a grand total).
+     * Null filters match everything. Reports split or filtered by category count an order once per
+     * category it has a line in; all others count each order once.
+     */
+    List<SalesRollupRow> summarize(RollupGranularity granularity, LocalDateTime from, LocalDateTime to,
+                                   Long rdcId, Region region, Category category, Set<Dimension> groupBy);
+
+    enum Dimension {
+        BUCKET("bucket_start"),
+        RDC("rdc_id"),
+        REGION("region"),
+        CATEGORY("category");
+
+        private final String column;
+
+        Dimension(String column) {
+            this.column = column;
+        }
+
+        public String column() {
+            return column;
+        }
+    }
+
+    /**
+     * Change to one rollup row; a null category is the whole-order row
+     */
+    record RollupDelta(RollupGranularity granularity, LocalDateTime bucketStart, long rdcId, Category category,
+                       Region region, long bookedOrders, long bookedUnits, BigDecimal bookedRevenue,
+                       long deliveredOrders, BigDecimal deliveredRevenue,
+                       long cancelledOrders, BigDecimal cancelledRevenue) {
+    }
+}
@@ -0,0 +1,158 @@
+package com.isdn.repository;
+
+import com.isdn.dto.response.SalesRollupRow;
+import com.isdn.model.Category;
+import com.isdn.model.Region;
+import com.isdn.model.RollupGranularity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class SalesRollupRepositoryCustomImpl implements SalesRollupRepositoryCustom {
+
+    private static final String ADD_MEASURES =
+            "region = VALUES(region), " +
+            "booked_orders = booked_orders + VALUES(booked_orders), " +
+            "booked_units = booked_units + VALUES(booked_units), " +
+            "booked_revenue = booked_revenue + VALUES(booked_revenue), " +
+            "delivered_orders = delivered_orders + VALUES(delivered_orders), " +
+            "delivered_revenue = delivered_revenue + VALUES(delivered_revenue), " +
+            "cancelled_orders = cancelled_orders + VALUES(cancelled_orders), " +
+            "cancelled_revenue = cancelled_revenue + VALUES(cancelled_revenue)";
+
+    private static final String UPSERT_ROLLUP =
+            "INSERT INTO sales_rollups (granularity, bucket_start, rdc_id, category, region, " +
+            "booked_orders, booked_units, booked_revenue, delivered_orders, delivered_revenue, " +
+            "cancelled_orders, cancelled_revenue) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE " + ADD_MEASURES;
+
+    private static final String UPSERT_ORDER_ROLLUP =
+            "INSERT INTO sales_order_rollups (granularity, bucket_start, rdc_id, region, " +
+            "booked_orders, booked_units, booked_revenue, delivered_orders, delivered_revenue, " +
+            "cancelled_orders, cancelled_revenue) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE " + ADD_MEASURES;
+
+    private static final String SUM_MEASURES =
+            "SUM(booked_orders) AS booked_orders, SUM(booked_units) AS booked_units, " +
+            "SUM(booked_revenue) AS booked_revenue, SUM(delivered_orders) AS delivered_orders, " +
+            "SUM(delivered_revenue) AS delivered_revenue, SUM(cancelled_orders) AS cancelled_orders, " +
+            "SUM(cancelled_revenue) AS cancelled_revenue";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void applyDeltas(List<RollupDelta> deltas) {
+        List<RollupDelta> categoryDeltas = deltas.stream().filter(delta -> delta.category() != null).toList();
+        List<RollupDelta> orderDeltas = deltas.stream().filter(delta -> delta.category() == null).toList();
+        if (!categoryDeltas.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_ROLLUP, categoryDeltas, categoryDeltas.size(), (ps, delta) -> {
+                ps.setString(1, delta.granularity().name());
+                ps.setTimestamp(2, Timestamp.valueOf(delta.bucketStart()));
+                ps.setLong(3, delta.rdcId());
+                ps.setString(4, delta.category().name());
+                setRegionAndMeasures(ps, 5, delta);
+            });
+        }
+        if (!orderDeltas.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_ORDER_ROLLUP, orderDeltas, orderDeltas.size(), (ps, delta) -> {
+                ps.setString(1, delta.granularity().name());
+                ps.setTimestamp(2, Timestamp.valueOf(delta.bucketStart()));
+                ps.setLong(3, delta.rdcId());
+                setRegionAndMeasures(ps, 4, delta);
+            });
+        }
+    }
+
+    @Override
+    public List<SalesRollupRow> summarize(RollupGranularity granularity, LocalDateTime from, LocalDateTime to,
+                                          Long rdcId, Region region, Category category, Set<Dimension> groupBy) {
+        // Column names come from the Dimension enum only, never from the request
+        String dimensions = groupBy.stream()
+                .sorted()
+                .map(Dimension::column)
+                .collect(Collectors.joining(", "));
+
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (!dimensions.isEmpty()) {
+            sql.append(dimensions).append(", ");
+        }
+        // Category rows count an order in each of its categories, so only split or filtered reports use them
+        boolean byCategory = category != null || groupBy.contains(Dimension.CATEGORY);
+        sql.append(SUM_MEASURES)
+                .append(byCategory ? " FROM sales_rollups" : " FROM sales_order_rollups")
+                .append(" WHERE granularity = ? AND bucket_start >= ? AND bucket_start < ?");
+
+        List<Object> args = new ArrayList<>();
+        args.add(granularity.name());
+        args.add(Timestamp.valueOf(from));
+        args.add(Timestamp.valueOf(to));
+        if (rdcId != null) {
+            sql.append(" AND rdc_id = ?");
+            args.add(rdcId);
+        }
+        if (region != null) {
+            sql.append(" AND region = ?");
+            args.add(region.name());
+        }
+        if (category != null) {
+            sql.append(" AND category = ?");
+            args.add(category.name());
+        }
+        if (!dimensions.isEmpty()) {
+            sql.append(" GROUP BY ").append(dimensions).append(" ORDER BY ").append(dimensions);
+        }
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> mapRow(rs, groupBy), args.toArray());
+    }
+
+    private static void setRegionAndMeasures(PreparedStatement ps, int index, RollupDelta delta) throws SQLException {
+        if (delta.region() != null) {
+            ps.setString(index, delta.region().name());
+        } else {
+            ps.setNull(index, Types.VARCHAR);
+        }
+        ps.setLong(index + 1, delta.bookedOrders());
+        ps.setLong(index + 2, delta.bookedUnits());
+        ps.setBigDecimal(index + 3, delta.bookedRevenue());
+        ps.setLong(index + 4, delta.deliveredOrders());
+        ps.setBigDecimal(index + 5, delta.deliveredRevenue());
+        ps.setLong(index + 6, delta.cancelledOrders());
+        ps.setBigDecimal(index + 7, delta.cancelledRevenue());
+    }
+
+    private static SalesRollupRow mapRow(ResultSet rs, Set<Dimension> groupBy) throws SQLException {
+        SalesRollupRow.SalesRollupRowBuilder row = SalesRollupRow.builder()
+                .bookedOrders(rs.getLong("booked_orders"))
+                .bookedUnits(rs.getLong("booked_units"))
+                .bookedRevenue(rs.getBigDecimal("booked_revenue"))
+                .deliveredOrders(rs.getLong("delivered_orders"))
+                .deliveredRevenue(rs.getBigDecimal("delivered_revenue"))
+                .cancelledOrders(rs.getLong("cancelled_orders"))
+                .cancelledRevenue(rs.getBigDecimal("cancelled_revenue"));
+        if (groupBy.contains(Dimension.BUCKET)) {
+            row.bucketStart(rs.getTimestamp("bucket_start").toLocalDateTime());
+        }
+        if (groupBy.contains(Dimension.RDC)) {
+            row.rdcId(rs.getLong("rdc_id"));
+        }
+        if (groupBy.contains(Dimension.REGION)) {
+            String value = rs.getString("region");
+            row.region(value != null ? Region.valueOf(value) : null);
+        }
+        if (groupBy.contains(Dimension.CATEGORY)) {
+            row.category(Category.valueOf(rs.getString("category")));
+        }
+        return row.build();
+    }
+}
@@ -0,0 +1,16 @@
+package com.isdn.repository;
+
+import com.isdn.model.StockMovementArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface StockMovementArchiveRepository extends JpaRepository<StockMovementArchive, Long> {
+
+    boolean existsByRdcIdAndMonthStart(Long rdcId, LocalDate monthStart);
+
+    List<StockMovementArchive> findByRdcIdOrderByMonthStartDesc(Long rdcId);
+}
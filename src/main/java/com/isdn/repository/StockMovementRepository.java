@@ -1,25 +1,51 @@
 package com.isdn.repository;
 
+import com.isdn.dto.response.StockMovementResponse;
 import com.isdn.model.Inventory;
 import com.isdn.model.MovementType;
 import com.isdn.model.StockMovement;
+import org.springframework.data.domain.Limit;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
 
     List<StockMovement> findByInventoryOrderByTimestampDesc(Inventory inventory);
 
-    List<StockMovement> findByInventory_InventoryIdOrderByTimestampDesc(Long inventoryId);
+    // Keyset pages, newest first, inside a [from, to) window: rows strictly after the (timestamp, movementId) cursor
+    String PAGE_SELECT = "SELECT new com.isdn.dto.response.StockMovementResponse(sm.movementId, i.inventoryId, " +
+            "p.name, r.name, sm.movementType, sm.quantity, sm.previousStock, sm.newStock, sm.reason, u.username, " +
+            "sm.timestamp) FROM StockMovement sm JOIN sm.inventory i JOIN i.product p JOIN i.rdc r JOIN sm.performedBy u ";
+    String PAGE_WINDOW = "sm.timestamp >= :from AND sm.timestamp < :to " +
+            "AND sm.timestamp <= :timestamp AND (sm.timestamp < :timestamp OR sm.movementId < :movementId) ";
+    String PAGE_ORDER = "ORDER BY sm.timestamp DESC, sm.movementId DESC";
 
-    @Query("SELECT sm FROM StockMovement sm WHERE sm.inventory.rdc.rdcId = :rdcId ORDER BY sm.timestamp DESC")
-    List<StockMovement> findByRdcIdOrderByTimestampDesc(@Param("rdcId") Long rdcId);
+    @Query(PAGE_SELECT + "WHERE sm.inventory.inventoryId = :inventoryId AND " + PAGE_WINDOW + PAGE_ORDER)
+    List<StockMovementResponse> findPageByInventoryAfter(@Param("inventoryId") Long inventoryId,
+                                                         @Param("from") LocalDateTime from,
+                                                         @Param("to") LocalDateTime to,
+                                                         @Param("timestamp") LocalDateTime timestamp,
+                                                         @Param("movementId") Long movementId,
+                                                         Limit limit);
+
+    @Query(PAGE_SELECT + "WHERE sm.rdcId = :rdcId AND " + PAGE_WINDOW + PAGE_ORDER)
+    List<StockMovementResponse> findPageByRdcAfter(@Param("rdcId") Long rdcId,
+                                                   @Param("from") LocalDateTime from,
+                                                   @Param("to") LocalDateTime to,
+                                                   @Param("timestamp") LocalDateTime timestamp,
+                                                   @Param("movementId") Long movementId,
+                                                   Limit limit);
 
     @Query("SELECT sm FROM StockMovement sm WHERE sm.timestamp BETWEEN :startDate AND :endDate ORDER BY sm.timestamp DESC")
     List<StockMovement> findMovementsBetweenDates(
@@ -28,4 +54,23 @@ public interface StockMovementRepository extends JpaRepository<StockMovement, Lo
     );
 
     List<StockMovement> findByMovementTypeOrderByTimestampDesc(MovementType movementType);
+
+    @Query("SELECT MIN(sm.timestamp) FROM StockMovement sm WHERE sm.rdcId IS NOT NULL AND sm.timestamp < :before")
+    LocalDateTime findOldestTimestampBefore(@Param("before") LocalDateTime before);
+
+    @Query("SELECT DISTINCT sm.rdcId FROM StockMovement sm WHERE sm.rdcId IS NOT NULL " +
+           "AND sm.timestamp >= :from AND sm.timestamp < :to")
+    List<Long> findRdcIdsWithMovementsBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * An RDC's movements in [from, to), newest first, streamed row by row for archiving
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query(PAGE_SELECT + "WHERE sm.rdcId = :rdcId AND sm.timestamp >= :from AND sm.timestamp < :to " + PAGE_ORDER)
+    Stream<StockMovementResponse> streamForArchive(@Param("rdcId") Long rdcId, @Param("from") LocalDateTime from,
+                                                   @Param("to") LocalDateTime to);
+
+    @Modifying
+    @Query("DELETE FROM StockMovement sm WHERE sm.rdcId = :rdcId AND sm.timestamp >= :from AND sm.timestamp < :to")
+    int deleteArchived(@Param("rdcId") Long rdcId, @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 }
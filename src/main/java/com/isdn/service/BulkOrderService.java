@@ -0,0 +1,509 @@
+package com.isdn.service;
+
+import com.isdn.dto.request.BulkOrderRow;
+import com.isdn.dto.response.BulkOrderResult;
+import com.isdn.exception.BadRequestException;
+import com.isdn.model.Order;
+import com.isdn.model.OrderItem;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.PaymentMethod;
+import com.isdn.model.Product;
+import com.isdn.model.User;
+import com.isdn.repository.OrderRepository;
+import com.isdn.repository.ProductRepository;
+import com.isdn.repository.RDCRepository;
+import com.isdn.repository.UserRepository;
+import com.isdn.service.StockReservationService.Line;
+import com.isdn.service.StockReservationService.Reservation;
+import com.isdn.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Places orders from an uploaded CSV or JSON-lines file. The file is read one order
+ * at a time and committed in chunks, and the per-order result is written to the
+ * response as each chunk completes, so memory use does not grow with the file.
+ */
+@Service
+@Slf4j
+public class BulkOrderService {
+
+    private static final byte[] NEWLINE = "\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final OrderRepository orderRepository;
+    private final RDCRepository rdcRepository;
+    private final StockReservationService stockReservationService;
+    private final RdcAllocationService rdcAllocationService;
+    private final StockHoldService stockHoldService;
+    private final OrderEventService orderEventService;
+    private final SnowflakeIdGenerator idGenerator;
+    private final JsonMapper jsonMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${orders.bulk.chunk-size:50}")
+    private int chunkSize;
+
+    public BulkOrderService(ProductRepository productRepository,
+                            UserRepository userRepository,
+                            OrderRepository orderRepository,
+                            RDCRepository rdcRepository,
+                            StockReservationService stockReservationService,
+                            RdcAllocationService rdcAllocationService,
+                            StockHoldService stockHoldService,
+                            OrderEventService orderEventService,
+                            SnowflakeIdGenerator idGenerator,
+                            JsonMapper jsonMapper,
+                            PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.orderRepository = orderRepository;
+        this.rdcRepository = rdcRepository;
+        this.stockReservationService = stockReservationService;
+        this.rdcAllocationService = rdcAllocationService;
+        this.stockHoldService = stockHoldService;
+        this.orderEventService = orderEventService;
+        this.idGenerator = idGenerator;
+        this.jsonMapper = jsonMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public enum Format {
+        CSV, JSONL
+    }
+
+    /**
+     * Work out the file format from an explicit parameter or the file name
+     */
+    public Format resolveFormat(String format, String fileName) {
+        String value = format != null ? format : fileName;
+        if (value != null) {
+            String lower = value.toLowerCase(Locale.ROOT);
+            if (lower.endsWith("csv")) {
+                return Format.CSV;
+            }
+            if (lower.endsWith("jsonl") || lower.endsWith("ndjson") || lower.endsWith("json")) {
+                return Format.JSONL;
+            }
+        }
+        throw new BadRequestException("Unsupported bulk order format. Use CSV or JSONL");
+    }
+
+    /**
+     * Import every order in the input for the given customer, writing one JSON result line per order
+     */
+    public void importOrders(Long userId, InputStream input, Format format, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        OrderReader orders = format == Format.CSV ? new CsvOrderReader(reader) : new JsonLinesOrderReader(reader);
+
+        int created = 0;
+        int total = 0;
+        List<ParsedOrder> chunk = new ArrayList<>(chunkSize);
+        ParsedOrder next;
+        do {
+            next = orders.next();
+            if (next != null) {
+                chunk.add(next);
+            }
+            if (chunk.size() >= chunkSize || (next == null && !chunk.isEmpty())) {
+                for (BulkOrderResult result : processChunk(userId, chunk)) {
+                    output.write(jsonMapper.writeValueAsBytes(result));
+                    output.write(NEWLINE);
+                    if (result.getStatus() == BulkOrderResult.Status.CREATED) {
+                        created++;
+                    }
+                    total++;
+                }
+                output.flush();
+                chunk.clear();
+            }
+        } while (next != null);
+
+        log.info("Bulk import for user {} finished: {} of {} orders created", userId, created, total);
+    }
+
+    /**
+     * Place one chunk of orders in a single transaction. Orders that fail validation or
+     * are short of stock are rejected on their own; a database failure fails the whole chunk.
+     */
+    private List<BulkOrderResult> processChunk(Long userId, List<ParsedOrder> chunk) {
+        BulkOrderResult[] results = new BulkOrderResult[chunk.size()];
+        try {
+            transactionTemplate.executeWithoutResult(status -> placeChunk(userId, chunk, results));
+        } catch (RuntimeException e) {
+            log.error("Bulk order chunk starting at row {} failed", chunk.get(0).row(), e);
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null || results[i].getStatus() == BulkOrderResult.Status.CREATED) {
+                    results[i] = result(chunk.get(i), BulkOrderResult.Status.FAILED, null,
+                            "Orders in this chunk could not be saved. Please resubmit them");
+                }
+            }
+        }
+        return List.of(results);
+    }
+
+    private void placeChunk(Long userId, List<ParsedOrder> chunk, BulkOrderResult[] results) {
+        User user = userRepository.getReferenceById(userId);
+
+        List<String> skus = chunk.stream()
+                .filter(parsed -> parsed.order() != null && parsed.order().getItems() != null)
+                .flatMap(parsed -> parsed.order().getItems().stream())
+                .map(BulkOrderRow.Item::getSku)
+                .filter(sku -> sku != null && !sku.isBlank())
+                .distinct()
+                .toList();
+        Map<String, Product> products = productRepository.findBySkuIn(skus).stream()
+                .collect(Collectors.toMap(Product::getSku, Function.identity()));
+
+        List<Order> orders = new ArrayList<>();
+        List<Integer> orderIndexes = new ArrayList<>();
+        List<List<StockReservationService.Allocation>> orderAllocations = new ArrayList<>();
+
+        for (int i = 0; i < chunk.size(); i++) {
+            ParsedOrder parsed = chunk.get(i);
+            String problem = parsed.error() != null ? parsed.error() : validate(parsed.order(), products);
+            if (problem != null) {
+                results[i] = result(parsed, BulkOrderResult.Status.REJECTED, null, problem);
+                continue;
+            }
+
+            BulkOrderRow row = parsed.order();
+            List<Line> lines = row.getItems().stream()
+                    .map(item -> {
+                        Product product = products.get(item.getSku());
+                        return new Line(product.getProductId(), product.getSku(), product.getName(), item.getQuantity());
+                    })
+                    .toList();
+
+            try {
+                // Stock set aside in customers' carts is not available to imports either
+                stockHoldService.verifyAvailableToPromise(null, lines);
+            } catch (BadRequestException e) {
+                results[i] = result(parsed, BulkOrderResult.Status.REJECTED, null, e.getMessage());
+                continue;
+            }
+
+            RdcAllocationService.Decision decision = rdcAllocationService.decide(lines, null, null, null);
+            Reservation reservation = stockReservationService.tryReserve(lines, decision.rdcPreference());
+            if (!reservation.successful()) {
+                results[i] = result(parsed, BulkOrderResult.Status.REJECTED, null, reservation.failure());
+                continue;
+            }
+            rdcAllocationService.recordOutcome(decision, reservation.allocations());
+
+            Long rdcId = rdcAllocationService.shippingRdc(decision, reservation.allocations());
+            Order order = buildOrder(user, row, products, rdcId);
+            for (StockReservationService.Allocation allocation : reservation.allocations()) {
+                order.addAllocation(allocation.toEntity());
+            }
+            orders.add(order);
+            orderIndexes.add(i);
+            orderAllocations.add(reservation.allocations());
+        }
+
+        // One batched insert for the chunk's orders and items
+        orderRepository.saveAll(orders);
+        orderEventService.recordPlaced(orders);
+
+        for (int j = 0; j < orders.size(); j++) {
+            Order order = orders.get(j);
+            int index = orderIndexes.get(j);
+            results[index] = result(chunk.get(index), BulkOrderResult.Status.CREATED, order.getOrderNumber(), null);
+            if (order.getPaymentMethod() == PaymentMethod.ONLINE_PAYMENT) {
+                stockHoldService.holdOrderAfterCommit(order.getOrderId(), orderAllocations.get(j));
+            }
+        }
+    }
+
+    private String validate(BulkOrderRow row, Map<String, Product> products) {
+        if (isBlank(row.getDeliveryAddress())) {
+            return "Delivery address is required";
+        }
+        if (isBlank(row.getContactNumber())) {
+            return "Contact number is required";
+        }
+        if (parsePaymentMethod(row.getPaymentMethod()) == null) {
+            return "Invalid payment method: " + row.getPaymentMethod();
+        }
+        if (row.getItems() == null || row.getItems().isEmpty()) {
+            return "Order has no items";
+        }
+
+        Map<String, Integer> seen = new HashMap<>();
+        for (BulkOrderRow.Item item : row.getItems()) {
+            Product product = item.getSku() != null ? products.get(item.getSku()) : null;
+            if (product == null) {
+                return "Unknown SKU: " + item.getSku();
+            }
+            if (!Boolean.TRUE.equals(product.getActive())) {
+                return "Product is not available: " + item.getSku();
+            }
+            if (item.getQuantity() == null || item.getQuantity() < 1) {
+                return "Quantity must be at least 1 for SKU: " + item.getSku();
+            }
+            if (seen.put(item.getSku(), item.getQuantity()) != null) {
+                return "SKU listed more than once: " + item.getSku();
+            }
+        }
+        return null;
+    }
+
+    private Order buildOrder(User user, BulkOrderRow row, Map<String, Product> products, Long rdcId) {
+        Order order = Order.builder()
+                .orderNumber(idGenerator.nextId("ORD-"))
+                .user(user)
+                .rdc(rdcId != null ? rdcRepository.getReferenceById(rdcId) : null)
+                .status(OrderStatus.PENDING)
+                .deliveryAddress(row.getDeliveryAddress())
+                .contactNumber(row.getContactNumber())
+                .paymentMethod(parsePaymentMethod(row.getPaymentMethod()))
+                .notes(row.getNotes())
+                .estimatedDeliveryDate(LocalDate.now().plusDays(2))
+                .build();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (BulkOrderRow.Item item : row.getItems()) {
+            Product product = products.get(item.getSku());
+            OrderItem orderItem = OrderItem.builder()
+                    .product(product)
+                    .quantity(item.getQuantity())
+                    .unitPrice(product.getUnitPrice())
+                    .build();
+            orderItem.calculateSubtotal();
+            order.addItem(orderItem);
+            total = total.add(orderItem.getSubtotal());
+        }
+        order.setTotalAmount(total);
+        return order;
+    }
+
+    private static PaymentMethod parsePaymentMethod(String value) {
+        if (isBlank(value)) {
+            return null;
+        }
+        try {
+            return PaymentMethod.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static BulkOrderResult result(ParsedOrder parsed, BulkOrderResult.Status status,
+                                          String orderNumber, String message) {
+        return BulkOrderResult.builder()
+                .row(parsed.row())
+                .orderRef(parsed.orderRef())
+                .status(status)
+                .orderNumber(orderNumber)
+                .message(message)
+                .build();
+    }
+
+    /**
+     * An order read from the file, or the reason it could not be read
+     */
+    record ParsedOrder(int row, String orderRef, BulkOrderRow order, String error) {
+    }
+
+    private interface OrderReader {
+
+        /**
+         * Next order in the file, or null at the end
+         */
+        ParsedOrder next() throws IOException;
+    }
+
+    /**
+     * One JSON object per line
+     */
+    private final class JsonLinesOrderReader implements OrderReader {
+
+        private final BufferedReader reader;
+        private int lineNumber;
+
+        private JsonLinesOrderReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public ParsedOrder next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                lineNumber++;
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+
+            try {
+                BulkOrderRow order = jsonMapper.readValue(line, BulkOrderRow.class);
+                return new ParsedOrder(lineNumber, order.getOrderRef(), order, null);
+            } catch (JacksonException e) {
+                return new ParsedOrder(lineNumber, null, null, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    /**
+     * Header row, then one row per order line. Consecutive rows with the same
+     * orderRef form one order; order-level columns are taken from its first row.
+     */
+    static final class CsvOrderReader implements OrderReader {
+
+        private static final List<String> REQUIRED = List.of(
+                "orderref", "sku", "quantity", "deliveryaddress", "contactnumber", "paymentmethod");
+
+        private final BufferedReader reader;
+        private Map<String, Integer> columns;
+        private boolean finished;
+        private int lineNumber;
+        private List<String> pending;
+        private int pendingLine;
+
+        CsvOrderReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public ParsedOrder next() throws IOException {
+            if (finished) {
+                return null;
+            }
+            if (columns == null) {
+                List<String> header = readRow();
+                String error = header != null ? readHeader(header) : null;
+                if (header == null || error != null) {
+                    finished = true;
+                    return error != null ? new ParsedOrder(lineNumber, null, null, error) : null;
+                }
+            }
+
+            List<String> first = pending != null ? pending : readRow();
+            int firstLine = pending != null ? pendingLine : lineNumber;
+            pending = null;
+            if (first == null) {
+                return null;
+            }
+
+            String orderRef = column(first, "orderref");
+            BulkOrderRow order = new BulkOrderRow();
+            order.setOrderRef(orderRef);
+            order.setDeliveryAddress(column(first, "deliveryaddress"));
+            order.setContactNumber(column(first, "contactnumber"));
+            order.setPaymentMethod(column(first, "paymentmethod"));
+            order.setNotes(column(first, "notes"));
+
+            String error = null;
+            List<String> row = first;
+            while (row != null) {
+                try {
+                    order.getItems().add(new BulkOrderRow.Item(column(row, "sku"),
+                            Integer.valueOf(column(row, "quantity").trim())));
+                } catch (NumberFormatException | NullPointerException e) {
+                    error = "Invalid quantity on line " + lineNumber;
+                }
+
+                row = readRow();
+                if (row != null && !sameOrder(orderRef, column(row, "orderref"))) {
+                    pending = row;
+                    pendingLine = lineNumber;
+                    break;
+                }
+            }
+            return new ParsedOrder(firstLine, orderRef, error == null ? order : null, error);
+        }
+
+        /**
+         * Map column names (case and underscores ignored) to positions
+         *
+         * @return an error when required columns are missing
+         */
+        private String readHeader(List<String> header) {
+            columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().toLowerCase(Locale.ROOT).replace("_", ""), i);
+            }
+            List<String> missing = REQUIRED.stream().filter(name -> !columns.containsKey(name)).toList();
+            return missing.isEmpty() ? null : "CSV header is missing columns: " + String.join(", ", missing);
+        }
+
+        private List<String> readRow() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                lineNumber++;
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            return splitCsvLine(line);
+        }
+
+        private String column(List<String> row, String name) {
+            Integer index = columns.get(name);
+            return index != null && index < row.size() ? row.get(index) : null;
+        }
+
+        private static boolean sameOrder(String orderRef, String other) {
+            return orderRef != null && orderRef.equals(other);
+        }
+
+        /**
+         * Split one CSV line, honouring double-quoted fields and "" escapes
+         */
+        private static List<String> splitCsvLine(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
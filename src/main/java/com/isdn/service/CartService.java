@@ -9,7 +9,6 @@ import com.isdn.exception.ResourceNotFoundException;
 import com.isdn.model.*;
 import com.isdn.repository.CartItemRepository;
 import com.isdn.repository.CartRepository;
-import com.isdn.repository.InventoryRepository;
 import com.isdn.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,7 +27,7 @@ public class CartService {
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
     private final ProductRepository productRepository;
-    private final InventoryRepository inventoryRepository;
+    private final StockHoldService stockHoldService;
     private final UserService userService;
 
     /**
@@ -60,12 +59,6 @@ public class CartService {
             throw new BadRequestException("Product is not available");
         }
 
-        // Check stock availability
-        Integer totalStock = inventoryRepository.getTotalStockForProduct(product.getProductId());
-        if (totalStock == null || totalStock < request.getQuantity()) {
-            throw new BadRequestException("Insufficient stock. Available: " + (totalStock != null ? totalStock : 0));
-        }
-
         // Check if item already exists in cart
         CartItem existingItem = cartItemRepository.findByCartAndProduct(cart, product).orElse(null);
 
@@ -73,9 +66,10 @@ public class CartService {
             // Update quantity
             int newQuantity = existingItem.getQuantity() + request.getQuantity();
 
-            // Check if new quantity exceeds stock
-            if (newQuantity > totalStock) {
-                throw new BadRequestException("Cannot add more items. Available stock: " + totalStock);
+            // Hold the extra stock; stock held by other carts does not count as available
+            if (!stockHoldService.holdCartItem(cart.getCartId(), product.getProductId(), newQuantity)) {
+                throw new BadRequestException("Cannot add more items. Available stock: " +
+                        stockHoldService.getAvailableToPromise(cart.getCartId(), product.getProductId()));
             }
 
             existingItem.setQuantity(newQuantity);
@@ -83,6 +77,12 @@ public class CartService {
             cartItemRepository.save(existingItem);
             log.info("Updated existing cart item quantity to: {}", newQuantity);
         } else {
+            // Hold the stock for this cart
+            if (!stockHoldService.holdCartItem(cart.getCartId(), product.getProductId(), request.getQuantity())) {
+                throw new BadRequestException("Insufficient stock. Available: " +
+                        stockHoldService.getAvailableToPromise(cart.getCartId(), product.getProductId()));
+            }
+
             // Create new cart item
             CartItem cartItem = CartItem.builder()
                     .cart(cart)
@@ -121,10 +121,11 @@ public class CartService {
             throw new BadRequestException("Cart item does not belong to this user");
         }
 
-        // Check stock availability
-        Integer totalStock = inventoryRepository.getTotalStockForProduct(cartItem.getProduct().getProductId());
-        if (totalStock == null || totalStock < request.getQuantity()) {
-            throw new BadRequestException("Insufficient stock. Available: " + (totalStock != null ? totalStock : 0));
+        // Re-hold stock at the new quantity
+        Long productId = cartItem.getProduct().getProductId();
+        if (!stockHoldService.holdCartItem(cart.getCartId(), productId, request.getQuantity())) {
+            throw new BadRequestException("Insufficient stock. Available: " +
+                    stockHoldService.getAvailableToPromise(cart.getCartId(), productId));
         }
 
         cartItem.setQuantity(request.getQuantity());
@@ -156,6 +157,7 @@ public class CartService {
 
         cart.removeItem(cartItem);
         cartItemRepository.delete(cartItem);
+        stockHoldService.releaseCartItem(cart.getCartId(), cartItem.getProduct().getProductId());
 
         cart.calculateTotal();
         cartRepository.save(cart);
@@ -174,6 +176,7 @@ public class CartService {
         cart.getItems().clear();
         cart.setTotalAmount(BigDecimal.ZERO);
         cartRepository.save(cart);
+        stockHoldService.releaseCart(cart.getCartId());
     }
 
     /**
@@ -0,0 +1,155 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.CustomerOrderSummaryResponse;
+import com.isdn.dto.response.OrderEventResponse;
+import com.isdn.dto.response.RdcOrderStatusResponse;
+import com.isdn.exception.ResourceNotFoundException;
+import com.isdn.model.CustomerOrderSummary;
+import com.isdn.model.OrderEvent;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.RDC;
+import com.isdn.model.RdcOrderStatusCount;
+import com.isdn.model.User;
+import com.isdn.repository.CustomerOrderSummaryRepository;
+import com.isdn.repository.OrderEventRepository;
+import com.isdn.repository.RDCRepository;
+import com.isdn.repository.RdcOrderStatusCountRepository;
+import com.isdn.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Dashboard figures, read from the order projections rather than the orders table.
+ * They trail live data by the projection's safety lag plus its polling interval.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardService {
+
+    private static final int MAX_TOP_CUSTOMERS = 100;
+
+    private final RdcOrderStatusCountRepository rdcOrderStatusCountRepository;
+    private final CustomerOrderSummaryRepository customerOrderSummaryRepository;
+    private final OrderEventRepository orderEventRepository;
+    private final RDCRepository rdcRepository;
+    private final UserRepository userRepository;
+
+    /**
+     * Order counts by status for every RDC, or for one RDC
+     */
+    @Transactional(readOnly = true)
+    public List<RdcOrderStatusResponse> getRdcStatusCounts(Long rdcId) {
+        List<RdcOrderStatusCount> counts = rdcId != null
+                ? rdcOrderStatusCountRepository.findByRdcId(rdcId)
+                : rdcOrderStatusCountRepository.findAll();
+        Map<Long, String> rdcNames = rdcRepository.findAll().stream()
+                .collect(Collectors.toMap(RDC::getRdcId, RDC::getName));
+
+        Map<Long, Map<OrderStatus, Long>> byRdc = new TreeMap<>();
+        for (RdcOrderStatusCount count : counts) {
+            byRdc.computeIfAbsent(count.getRdcId(), id -> new EnumMap<>(OrderStatus.class))
+                    .put(count.getStatus(), count.getOrderCount());
+        }
+
+        return byRdc.entrySet().stream()
+                .map(entry -> {
+                    Map<OrderStatus, Long> statusCounts = entry.getValue();
+                    long total = statusCounts.values().stream().mapToLong(Long::longValue).sum();
+                    long closed = statusCounts.getOrDefault(OrderStatus.DELIVERED, 0L)
+                            + statusCounts.getOrDefault(OrderStatus.CANCELLED, 0L);
+                    return RdcOrderStatusResponse.builder()
+                            .rdcId(entry.getKey())
+                            .rdcName(entry.getKey() == RdcOrderStatusCount.UNASSIGNED_RDC
+                                    ? "Unassigned" : rdcNames.get(entry.getKey()))
+                            .statusCounts(statusCounts)
+                            .totalOrders(total)
+                            .openOrders(total - closed)
+                            .build();
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * One customer's order summary (all zeros if they have never ordered)
+     */
+    @Transactional(readOnly = true)
+    public CustomerOrderSummaryResponse getCustomerSummary(Long userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        CustomerOrderSummary summary = customerOrderSummaryRepository.findById(userId)
+                .orElseGet(() -> CustomerOrderSummary.builder()
+                        .userId(userId)
+                        .totalOrders(0L)
+                        .openOrders(0L)
+                        .deliveredOrders(0L)
+                        .cancelledOrders(0L)
+                        .totalSpent(BigDecimal.ZERO)
+                        .build());
+        return mapToResponse(summary, user);
+    }
+
+    /**
+     * Customers with the highest spend
+     */
+    @Transactional(readOnly = true)
+    public List<CustomerOrderSummaryResponse> getTopCustomers(int limit) {
+        List<CustomerOrderSummary> summaries = customerOrderSummaryRepository.findAllByOrderByTotalSpentDesc(
+                Limit.of(Math.min(Math.max(limit, 1), MAX_TOP_CUSTOMERS)));
+        Map<Long, User> users = userRepository.findAllById(summaries.stream()
+                        .map(CustomerOrderSummary::getUserId)
+                        .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(User::getUserId, Function.identity()));
+        return summaries.stream()
+                .map(summary -> mapToResponse(summary, users.get(summary.getUserId())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Status history of one order, oldest first
+     */
+    @Transactional(readOnly = true)
+    public List<OrderEventResponse> getOrderHistory(Long orderId) {
+        return orderEventRepository.findByOrderIdOrderByEventIdAsc(orderId).stream()
+                .map(this::mapToResponse)
+                .collect(Collectors.toList());
+    }
+
+    private CustomerOrderSummaryResponse mapToResponse(CustomerOrderSummary summary, User user) {
+        return CustomerOrderSummaryResponse.builder()
+                .userId(summary.getUserId())
+                .username(user != null ? user.getUsername() : null)
+                .businessName(user != null ? user.getBusinessName() : null)
+                .totalOrders(summary.getTotalOrders())
+                .openOrders(summary.getOpenOrders())
+                .deliveredOrders(summary.getDeliveredOrders())
+                .cancelledOrders(summary.getCancelledOrders())
+                .totalSpent(summary.getTotalSpent())
+                .lastOrderAt(summary.getLastOrderAt())
+                .updatedAt(summary.getUpdatedAt())
+                .build();
+    }
+
+    private OrderEventResponse mapToResponse(OrderEvent event) {
+        return OrderEventResponse.builder()
+                .eventId(event.getEventId())
+                .orderId(event.getOrderId())
+                .fromStatus(event.getFromStatus())
+                .toStatus(event.getToStatus())
+                .totalAmount(event.getTotalAmount())
+                .occurredAt(event.getOccurredAt())
+                .build();
+    }
+}
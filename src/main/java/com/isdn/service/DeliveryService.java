@@ -32,6 +32,7 @@ public class DeliveryService {
     private final DeliveryRepository deliveryRepository;
     private final OrderRepository orderRepository;
     private final DriverRepository driverRepository;
+    private final OrderEventService orderEventService;
 
     private static final String UPLOAD_DIR = "uploads/delivery-proofs";
     /**
@@ -81,7 +82,7 @@ public class DeliveryService {
         driverRepository.save(driver);
 
         // Update order status
-        order.setStatus(OrderStatus.READY_FOR_DELIVERY);
+        changeOrderStatus(order, OrderStatus.READY_FOR_DELIVERY);
         orderRepository.save(order);
 
         log.info("Delivery assigned successfully");
@@ -105,14 +106,14 @@ public class DeliveryService {
         switch (request.getStatus()) {
             case PICKED_UP -> {
                 delivery.setPickupTime(LocalDateTime.now());
-                delivery.getOrder().setStatus(OrderStatus.OUT_FOR_DELIVERY);
+                changeOrderStatus(delivery.getOrder(), OrderStatus.OUT_FOR_DELIVERY);
             }
             case IN_TRANSIT -> {
-                delivery.getOrder().setStatus(OrderStatus.OUT_FOR_DELIVERY);
+                changeOrderStatus(delivery.getOrder(), OrderStatus.OUT_FOR_DELIVERY);
             }
             case DELIVERED -> {
                 delivery.setDeliveryTime(LocalDateTime.now());
-                delivery.getOrder().setStatus(OrderStatus.DELIVERED);
+                changeOrderStatus(delivery.getOrder(), OrderStatus.DELIVERED);
                 delivery.getOrder().setActualDeliveryDate(LocalDateTime.now().toLocalDate());
 
                 // Free up driver
@@ -122,7 +123,7 @@ public class DeliveryService {
                 }
             }
             case FAILED -> {
-                delivery.getOrder().setStatus(OrderStatus.FAILED_DELIVERY);
+                changeOrderStatus(delivery.getOrder(), OrderStatus.FAILED_DELIVERY);
 
                 // Free up driver
                 if (delivery.getDriver() != null) {
@@ -223,7 +224,7 @@ public class DeliveryService {
 
         delivery.setStatus(DeliveryStatus.PICKED_UP);
         delivery.setPickupTime(LocalDateTime.now());
-        delivery.getOrder().setStatus(OrderStatus.OUT_FOR_DELIVERY);
+        changeOrderStatus(delivery.getOrder(), OrderStatus.OUT_FOR_DELIVERY);
 
         deliveryRepository.save(delivery);
         orderRepository.save(delivery.getOrder());
@@ -247,7 +248,7 @@ public class DeliveryService {
         }
 
         delivery.setStatus(DeliveryStatus.IN_TRANSIT);
-        delivery.getOrder().setStatus(OrderStatus.OUT_FOR_DELIVERY);
+        changeOrderStatus(delivery.getOrder(), OrderStatus.OUT_FOR_DELIVERY);
 
         deliveryRepository.save(delivery);
         orderRepository.save(delivery.getOrder());
@@ -294,7 +295,7 @@ public class DeliveryService {
 
         delivery.setStatus(DeliveryStatus.DELIVERED);
         delivery.setDeliveryTime(LocalDateTime.now());
-        delivery.getOrder().setStatus(OrderStatus.DELIVERED);
+        changeOrderStatus(delivery.getOrder(), OrderStatus.DELIVERED);
         delivery.getOrder().setActualDeliveryDate(LocalDateTime.now().toLocalDate());
 
         // Free up driver
@@ -337,7 +338,7 @@ public class DeliveryService {
 
             delivery.setStatus(DeliveryStatus.DELIVERED);
             delivery.setDeliveryTime(LocalDateTime.now());
-            delivery.getOrder().setStatus(OrderStatus.DELIVERED);
+            changeOrderStatus(delivery.getOrder(), OrderStatus.DELIVERED);
             delivery.getOrder().setActualDeliveryDate(LocalDateTime.now().toLocalDate());
 
 
@@ -369,7 +370,7 @@ public class DeliveryService {
 
         delivery.setStatus(DeliveryStatus.FAILED);
         delivery.setNotes(reason);
-        delivery.getOrder().setStatus(OrderStatus.FAILED_DELIVERY);
+        changeOrderStatus(delivery.getOrder(), OrderStatus.FAILED_DELIVERY);
 
         // Free up driver
         if (delivery.getDriver() != null) {
@@ -384,6 +385,15 @@ public class DeliveryService {
         return mapToResponse(delivery);
     }
 
+    /**
+     * Move the delivery's order to a new status and record the change
+     */
+    private void changeOrderStatus(Order order, OrderStatus status) {
+        OrderStatus oldStatus = order.getStatus();
+        order.setStatus(status);
+        orderEventService.recordStatusChange(order, oldStatus);
+    }
+
     /**
      * Map Delivery to DeliveryResponse
      */
@@ -0,0 +1,320 @@
+package com.isdn.service;
+
+import com.isdn.config.InvoiceConfig;
+import com.isdn.model.EmailOutboxMessage;
+import com.isdn.repository.EmailOutboxRepository;
+import com.isdn.repository.EmailOutboxRepository.DueMessageView;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the email outbox. Each poll picks a batch of due messages, groups them by
+ * recipient domain and hands each group in chunks to the sender threads, one SMTP
+ * connection per chunk. Chunks run in parallel, but never more than a few at once for the
+ * same domain. A chunk claims its messages only once it holds a connection slot, so a
+ * message is SENDING only while it is actually being sent. Failed messages are retried
+ * with exponential backoff; undeliverable ones are marked FAILED.
+ */
+@Service
+@Slf4j
+public class EmailOutboxDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final JavaMailSender mailSender;
+    private final InvoiceConfig invoiceConfig;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService senders;
+
+    private final Map<String, Semaphore> domainPermits = new ConcurrentHashMap<>();
+    private final AtomicLong pendingMessages = new AtomicLong();
+    private final AtomicInteger chunksInFlight = new AtomicInteger();
+
+    @Value("${email.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${email.outbox.messages-per-connection:20}")
+    private int messagesPerConnection;
+
+    @Value("${email.outbox.max-connections-per-domain:2}")
+    private int maxConnectionsPerDomain;
+
+    @Value("${email.outbox.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${email.outbox.initial-backoff-ms:60000}")
+    private long initialBackoffMillis;
+
+    @Value("${email.outbox.max-backoff-ms:3600000}")
+    private long maxBackoffMillis;
+
+    @Value("${email.outbox.stale-after-seconds:900}")
+    private long staleAfterSeconds;
+
+    @Value("${spring.mail.properties.mail.smtp.connectiontimeout:0}")
+    private long connectionTimeoutMillis;
+
+    @Value("${spring.mail.properties.mail.smtp.timeout:0}")
+    private long readTimeoutMillis;
+
+    @Value("${spring.mail.properties.mail.smtp.writetimeout:0}")
+    private long writeTimeoutMillis;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository,
+                                 JavaMailSender mailSender,
+                                 InvoiceConfig invoiceConfig,
+                                 MeterRegistry meterRegistry,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${email.outbox.senders:4}") int senderCount) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.mailSender = mailSender;
+        this.invoiceConfig = invoiceConfig;
+        this.meterRegistry = meterRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderCount, runnable -> {
+            Thread thread = new Thread(runnable, "email-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        meterRegistry.gauge("email.outbox.pending", pendingMessages);
+    }
+
+    /**
+     * A message is only requeued as abandoned once it has been SENDING for longer than one
+     * connection can take, so the window has to outlast the SMTP timeouts
+     */
+    @PostConstruct
+    void checkStaleWindow() {
+        if (connectionTimeoutMillis <= 0 || readTimeoutMillis <= 0 || writeTimeoutMillis <= 0) {
+            throw new IllegalStateException("spring.mail.properties.mail.smtp.connectiontimeout, timeout and " +
+                    "writetimeout must be set, or a stalled SMTP server holds a sender thread forever");
+        }
+        long longestConnectionMillis = connectionTimeoutMillis
+                + messagesPerConnection * (readTimeoutMillis + writeTimeoutMillis);
+        if (TimeUnit.SECONDS.toMillis(staleAfterSeconds) <= longestConnectionMillis) {
+            throw new IllegalStateException("email.outbox.stale-after-seconds must exceed " +
+                    longestConnectionMillis / 1000 + "s, the longest one SMTP connection can take, but was " +
+                    staleAfterSeconds);
+        }
+    }
+
+    /**
+     * Hand one batch of due messages to the sender threads and return without waiting for
+     * them. No new batch is picked while chunks of the last one are still being sent.
+     */
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:2000}")
+    public void dispatch() {
+        LocalDateTime now = LocalDateTime.now();
+        Integer released = transactionTemplate.execute(status ->
+                emailOutboxRepository.releaseStale(now.minusSeconds(staleAfterSeconds), now));
+        if (released != null && released > 0) {
+            log.warn("Requeued {} emails abandoned while sending", released);
+        }
+        pendingMessages.set(emailOutboxRepository.countByStatus(EmailOutboxMessage.Status.PENDING));
+        if (chunksInFlight.get() > 0) {
+            return;
+        }
+
+        List<DueMessageView> due = emailOutboxRepository.findDueMessages(now, Limit.of(batchSize));
+        if (due.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<Long>> byDomain = new LinkedHashMap<>();
+        for (DueMessageView message : due) {
+            byDomain.computeIfAbsent(message.getRecipientDomain(), domain -> new ArrayList<>()).add(message.getMessageId());
+        }
+
+        byDomain.forEach((domain, messageIds) -> {
+            for (int from = 0; from < messageIds.size(); from += messagesPerConnection) {
+                List<Long> chunk = List.copyOf(messageIds.subList(from, Math.min(from + messagesPerConnection, messageIds.size())));
+                chunksInFlight.incrementAndGet();
+                CompletableFuture.runAsync(() -> sendChunk(domain, chunk), senders)
+                        .whenComplete((ignored, e) -> {
+                            chunksInFlight.decrementAndGet();
+                            if (e != null) {
+                                // Whatever the chunk had claimed is requeued once stale
+                                log.error("Sending emails to {} failed", domain, e);
+                            }
+                        });
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Anything claimed but unsent is requeued once stale
+        senders.shutdown();
+        if (!senders.awaitTermination(10, TimeUnit.SECONDS)) {
+            senders.shutdownNow();
+        }
+    }
+
+    private void sendChunk(String domain, List<Long> messageIds) {
+        Semaphore permits = domainPermits.computeIfAbsent(domain, d -> new Semaphore(maxConnectionsPerDomain));
+        permits.acquireUninterruptibly();
+        try {
+            String claimToken = UUID.randomUUID().toString();
+            List<EmailOutboxMessage> chunk = transactionTemplate.execute(status -> {
+                emailOutboxRepository.claim(messageIds, claimToken, LocalDateTime.now());
+                return emailOutboxRepository.findClaimed(claimToken);
+            });
+            // Empty when another instance got to these messages first
+            if (chunk == null || chunk.isEmpty()) {
+                return;
+            }
+
+            Map<MimeMessage, EmailOutboxMessage> prepared = new IdentityHashMap<>();
+            for (EmailOutboxMessage message : chunk) {
+                try {
+                    prepared.put(toMimeMessage(message), message);
+                } catch (MessagingException | RuntimeException e) {
+                    fail(message, e, true);
+                }
+            }
+
+            Map<Object, Exception> failures = Map.of();
+            if (!prepared.isEmpty()) {
+                long started = System.nanoTime();
+                try {
+                    // One connection for the whole chunk
+                    mailSender.send(prepared.keySet().toArray(MimeMessage[]::new));
+                } catch (MailSendException e) {
+                    failures = e.getFailedMessages();
+                    if (failures.isEmpty()) {
+                        failures = allFailed(prepared, e);
+                    }
+                } catch (MailException e) {
+                    failures = allFailed(prepared, e);
+                }
+                meterRegistry.timer("email.outbox.send")
+                        .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+
+            for (Map.Entry<MimeMessage, EmailOutboxMessage> entry : prepared.entrySet()) {
+                Exception failure = failures.get(entry.getKey());
+                if (failure == null) {
+                    sent(entry.getValue());
+                } else {
+                    fail(entry.getValue(), failure, isPermanent(failure));
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> emailOutboxRepository.saveAll(chunk));
+        } finally {
+            permits.release();
+        }
+    }
+
+    private MimeMessage toMimeMessage(EmailOutboxMessage message) throws MessagingException {
+        boolean hasAttachment = message.getAttachmentData() != null || message.getAttachmentPath() != null;
+
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, hasAttachment, "UTF-8");
+        helper.setFrom(invoiceConfig.getCompanyEmail());
+        helper.setTo(message.getRecipient());
+        helper.setSubject(message.getSubject());
+        helper.setText(message.getBody(), message.getHtml());
+
+        if (message.getAttachmentData() != null) {
+            helper.addAttachment(message.getAttachmentName(), new ByteArrayResource(message.getAttachmentData()));
+        } else if (message.getAttachmentPath() != null) {
+            Path attachment = Path.of(message.getAttachmentPath());
+            if (!Files.isRegularFile(attachment)) {
+                throw new MessagingException("Attachment file not found: " + attachment);
+            }
+            helper.addAttachment(message.getAttachmentName(), new FileSystemResource(attachment));
+        }
+        return mimeMessage;
+    }
+
+    private void sent(EmailOutboxMessage message) {
+        LocalDateTime now = LocalDateTime.now();
+        message.setStatus(EmailOutboxMessage.Status.SENT);
+        message.setSentAt(now);
+        message.setUpdatedAt(now);
+        message.setLastError(null);
+        // Inline attachments are only kept until delivery
+        message.setAttachmentData(null);
+        meterRegistry.counter("email.outbox.sent").increment();
+    }
+
+    private void fail(EmailOutboxMessage message, Exception e, boolean permanent) {
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        message.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        message.setUpdatedAt(LocalDateTime.now());
+
+        if (!permanent && message.getAttempts() < maxAttempts) {
+            long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(message.getAttempts() - 1, 20));
+            message.setStatus(EmailOutboxMessage.Status.PENDING);
+            message.setNextAttemptAt(LocalDateTime.now().plusNanos(backoff * 1_000_000));
+            meterRegistry.counter("email.outbox.retried").increment();
+            log.warn("Email {} to {} failed (attempt {}), retrying in {} ms: {}",
+                    message.getMessageId(), message.getRecipient(), message.getAttempts(), backoff, error);
+        } else {
+            message.setStatus(EmailOutboxMessage.Status.FAILED);
+            meterRegistry.counter("email.outbox.failed").increment();
+            log.error("Email {} to {} failed permanently after {} attempts: {}",
+                    message.getMessageId(), message.getRecipient(), message.getAttempts(), error);
+        }
+    }
+
+    private static boolean isPermanent(Exception e) {
+        if (e instanceof MailParseException || e instanceof AddressException) {
+            return true;
+        }
+        // Rejected recipients will be rejected again
+        return e instanceof SendFailedException sendFailed
+                && sendFailed.getInvalidAddresses() != null
+                && sendFailed.getInvalidAddresses().length > 0;
+    }
+
+    private static Map<Object, Exception> allFailed(Map<MimeMessage, EmailOutboxMessage> prepared, Exception e) {
+        Map<Object, Exception> failures = new IdentityHashMap<>();
+        for (MimeMessage message : prepared.keySet()) {
+            failures.put(message, e);
+        }
+        return failures;
+    }
+}
@@ -1,126 +1,154 @@
 package com.isdn.service;
 
-import com.isdn.config.InvoiceConfig;
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import com.isdn.model.EmailOutboxMessage;
+import com.isdn.repository.EmailOutboxRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
+/**
+ * Queues outgoing mail in the email outbox; {@link EmailOutboxDispatcher} does the sending.
+ * Queuing joins the caller's transaction, so a message exists exactly when the change
+ * that triggered it was committed.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class EmailService {
 
-    private final JavaMailSender mailSender;
-    private final TemplateEngine templateEngine;
-    private final InvoiceConfig invoiceConfig;
+    private static final int BULK_SAVE_SIZE = 500;
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailTemplateRenderer emailTemplateRenderer;
 
     /**
-     * Send plain text email
+     * Queue plain text email
      */
-    @Async
+    @Transactional
     public void sendPlainTextEmail(String to, String subject, String text) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom(invoiceConfig.getCompanyEmail());
-            message.setTo(to);
-            message.setSubject(subject);
-            message.setText(text);
-            mailSender.send(message);
-            log.info("Plain text email sent to: {}", to);
-        } catch (Exception e) {
-            log.error("Failed to send plain text email to: {}", to, e);
-        }
+        queue(EmailOutboxMessage.builder()
+                .recipient(to)
+                .subject(subject)
+                .body(text)
+                .html(false));
+        log.info("Plain text email queued for: {}", to);
     }
 
     /**
-     * Send HTML email using Thymeleaf template
+     * Queue HTML email rendered from a Thymeleaf template
      */
-    @Async
+    @Transactional
     public void sendHtmlEmail(String to, String subject, String templateName, Map<String, Object> variables) {
-        try {
-            Context context = new Context();
-            context.setVariables(variables);
-            String htmlContent = templateEngine.process(templateName, context);
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            helper.setFrom(invoiceConfig.getCompanyEmail());
-            helper.setTo(to);
-            helper.setSubject(subject);
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-            log.info("HTML email sent to: {}", to);
-        } catch (MessagingException e) {
-            log.error("Failed to send HTML email to: {}", to, e);
-        }
+        queue(EmailOutboxMessage.builder()
+                .recipient(to)
+                .subject(subject)
+                .body(render(templateName, variables))
+                .html(true));
+        log.info("HTML email queued for: {}", to);
     }
 
     /**
-     * Send email with PDF attachment
+     * Queue email with an attachment held in memory; the bytes are stored with the message
      */
-    @Async
+    @Transactional
     public void sendEmailWithAttachment(String to, String subject, String templateName,
-                                        Map<String, Object> variables, byte[] attachment, String attachmentName) {
-        try {
-            Context context = new Context();
-            context.setVariables(variables);
-            String htmlContent = templateEngine.process(templateName, context);
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            helper.setFrom(invoiceConfig.getCompanyEmail());
-            helper.setTo(to);
-            helper.setSubject(subject);
-            helper.setText(htmlContent, true);
-            helper.addAttachment(attachmentName, new ByteArrayResource(attachment));
-
-            mailSender.send(message);
-            log.info("Email with attachment sent to: {}", to);
-        } catch (MessagingException e) {
-            log.error("Failed to send email with attachment to: {}", to, e);
-        }
+                                       Map<String, Object> variables, byte[] attachment, String attachmentName) {
+        queue(EmailOutboxMessage.builder()
+                .recipient(to)
+                .subject(subject)
+                .body(render(templateName, variables))
+                .html(true)
+                .attachmentName(attachmentName)
+                .attachmentData(attachment));
+        log.info("Email with attachment queued for: {}", to);
     }
 
     /**
-     * Send invoice email with PDF attachment
+     * Queue invoice email; the PDF is read from the invoice archive when the message is sent
      */
-    @Async
-    public void sendInvoiceEmail(String to, String customerName, String orderNumber,
-                                  byte[] invoicePdf) {
-        try {
-            Map<String, Object> variables = Map.of(
-                    "customerName", customerName,
-                    "orderNumber", orderNumber
-            );
-
-            Context context = new Context();
-            context.setVariables(variables);
-            String htmlContent = templateEngine.process("email/invoice-email", context);
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            helper.setFrom(invoiceConfig.getCompanyEmail());
-            helper.setTo(to);
-            helper.setSubject("Your Invoice for Order #" + orderNumber);
-            helper.setText(htmlContent, true);
-            helper.addAttachment("Invoice-" + orderNumber + ".pdf", new ByteArrayResource(invoicePdf));
-
-            mailSender.send(message);
-            log.info("Invoice email sent to: {} for order: {}", to, orderNumber);
-        } catch (MessagingException e) {
-            log.error("Failed to send invoice email to: {} for order: {}", to, orderNumber, e);
+    @Transactional
+    public void sendInvoiceEmail(String to, String customerName, String orderNumber, Path invoicePdf) {
+        Map<String, Object> variables = Map.of(
+                "customerName", customerName,
+                "orderNumber", orderNumber
+        );
+        queue(EmailOutboxMessage.builder()
+                .recipient(to)
+                .subject("Your Invoice for Order #" + orderNumber)
+                .body(render("email/invoice-email", variables))
+                .html(true)
+                .attachmentName("Invoice-" + orderNumber + ".pdf")
+                .attachmentPath(invoicePdf.toAbsolutePath().toString()));
+        log.info("Invoice email queued for: {} for order: {}", to, orderNumber);
+    }
+
+    /**
+     * Queue the same HTML email to many recipients, e.g. a campaign. Rendering runs in parallel
+     * and outside any transaction; messages are then saved in chunks, each chunk committing on
+     * its own, so a failure part way leaves the earlier chunks queued.
+     *
+     * @return number of messages queued
+     */
+    public int sendBulkHtmlEmail(String subject, String templateName, Map<String, Object> shared,
+                                 List<Recipient> recipients) {
+        List<Map<String, Object>> perRecipient = new ArrayList<>(recipients.size());
+        for (Recipient recipient : recipients) {
+            perRecipient.add(recipient.variables());
         }
+        List<String> bodies = emailTemplateRenderer.renderEach(templateName, shared, perRecipient);
+
+        List<EmailOutboxMessage> chunk = new ArrayList<>(BULK_SAVE_SIZE);
+        for (int i = 0; i < recipients.size(); i++) {
+            chunk.add(build(EmailOutboxMessage.builder()
+                    .recipient(recipients.get(i).email())
+                    .subject(subject)
+                    .body(bodies.get(i))
+                    .html(true)));
+            if (chunk.size() == BULK_SAVE_SIZE || i == recipients.size() - 1) {
+                emailOutboxRepository.saveAll(chunk);
+                chunk.clear();
+            }
+        }
+        log.info("Bulk email '{}' queued for {} recipients", subject, recipients.size());
+        return recipients.size();
+    }
+
+    private String render(String templateName, Map<String, Object> variables) {
+        return emailTemplateRenderer.render(templateName, variables);
+    }
+
+    private void queue(EmailOutboxMessage.EmailOutboxMessageBuilder message) {
+        emailOutboxRepository.save(build(message));
+    }
+
+    private static EmailOutboxMessage build(EmailOutboxMessage.EmailOutboxMessageBuilder message) {
+        LocalDateTime now = LocalDateTime.now();
+        EmailOutboxMessage built = message
+                .status(EmailOutboxMessage.Status.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .updatedAt(now)
+                .build();
+        built.setRecipientDomain(domainOf(built.getRecipient()));
+        return built;
+    }
+
+    private static String domainOf(String address) {
+        int at = address.lastIndexOf('@');
+        return at >= 0 ? address.substring(at + 1).trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * One recipient of a bulk email and the template variables that are theirs alone
+     */
+    public record Recipient(String email, Map<String, Object> variables) {
     }
 }
@@ -0,0 +1,133 @@
+package com.isdn.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders email templates. Thymeleaf keeps parsed templates in its template cache, so the
+ * email templates are rendered once at startup to have them parsed before the first send.
+ * Bulk sends are rendered in batches on a small pool, with a fresh context per recipient
+ * so nothing one recipient sets is seen by the next.
+ */
+@Service
+@Slf4j
+public class EmailTemplateRenderer {
+
+    private final TemplateEngine templateEngine;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService renderers;
+
+    @Value("${email.templates.warm-up:email/invoice-email,email/promotion-details,email/promotion-announcement}")
+    private List<String> warmUpTemplates;
+
+    @Value("${email.templates.batch-size:250}")
+    private int batchSize;
+
+    public EmailTemplateRenderer(TemplateEngine templateEngine,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${email.templates.parallelism:4}") int parallelism) {
+        this.templateEngine = templateEngine;
+        this.meterRegistry = meterRegistry;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.renderers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "email-render-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Parse the email templates into the template cache once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        for (String templateName : warmUpTemplates) {
+            try {
+                long started = System.nanoTime();
+                templateEngine.process(templateName, new Context());
+                log.info("Email template {} parsed in {} ms", templateName,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            } catch (RuntimeException e) {
+                log.warn("Could not warm up email template {}", templateName, e);
+            }
+        }
+    }
+
+    /**
+     * Render a template once
+     */
+    public String render(String templateName, Map<String, Object> variables) {
+        Context context = new Context();
+        context.setVariables(variables);
+        return timer(templateName).record(() -> templateEngine.process(templateName, context));
+    }
+
+    /**
+     * Render a template once per recipient, each recipient's own variables laid over the
+     * shared ones. Results are in recipient order.
+     */
+    public List<String> renderEach(String templateName, Map<String, Object> shared,
+                                   List<Map<String, Object>> perRecipient) {
+        long started = System.nanoTime();
+        List<CompletableFuture<List<String>>> batches = new ArrayList<>();
+        for (int from = 0; from < perRecipient.size(); from += batchSize) {
+            List<Map<String, Object>> batch = perRecipient.subList(from, Math.min(from + batchSize, perRecipient.size()));
+            batches.add(CompletableFuture.supplyAsync(() -> renderBatch(templateName, shared, batch), renderers));
+        }
+
+        List<String> rendered = new ArrayList<>(perRecipient.size());
+        try {
+            for (CompletableFuture<List<String>> batch : batches) {
+                rendered.addAll(batch.join());
+            }
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+
+        double seconds = (System.nanoTime() - started) / (double) TimeUnit.SECONDS.toNanos(1);
+        log.info("Rendered {} x {} in {} s ({} per second)", rendered.size(), templateName,
+                String.format("%.2f", seconds), String.format("%.0f", seconds > 0 ? rendered.size() / seconds : 0.0));
+        return rendered;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderers.shutdownNow();
+    }
+
+    private List<String> renderBatch(String templateName, Map<String, Object> shared,
+                                     List<Map<String, Object>> batch) {
+        Timer timer = timer(templateName);
+        List<String> rendered = new ArrayList<>(batch.size());
+        for (Map<String, Object> variables : batch) {
+            Context context = new Context();
+            context.setVariables(shared);
+            context.setVariables(variables);
+            rendered.add(timer.record(() -> templateEngine.process(templateName, context)));
+        }
+        return rendered;
+    }
+
+    private Timer timer(String templateName) {
+        return meterRegistry.timer("email.render", "template", templateName);
+    }
+}
@@ -0,0 +1,289 @@
+package com.isdn.service;
+
+import com.isdn.exception.BadRequestException;
+import com.isdn.exception.ConflictException;
+import com.isdn.model.IdempotencyRecord;
+import com.isdn.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per Idempotency-Key and replays its response to retries.
+ * <p>
+ * Completed responses are kept in the idempotency_records table and in a bounded LRU cache
+ * in front of it. A key is claimed with an IN_PROGRESS row before the request runs; the
+ * row is completed with the response in the request's own transaction, so a response is
+ * stored exactly when its effects are committed. Duplicates arriving on the same instance
+ * while the first is running wait for it instead of hitting the database; duplicates on
+ * another instance get a 409 until it finishes.
+ * <p>
+ * Each claim carries a random token. A claim left unfinished past the claim timeout can be
+ * taken over under a new token, and completing or releasing a claim only works with the
+ * current token: an owner that was merely slow, not dead, has its transaction rolled back
+ * instead of committing a second copy of the request's effects.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final JsonMapper jsonMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate newTransactionTemplate;
+
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, StoredResponse> cache;
+
+    @Value("${idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    // A claim older than this is assumed abandoned (its instance stopped mid-request) and may be taken over
+    @Value("${idempotency.claim-timeout-seconds:600}")
+    private long claimTimeoutSeconds;
+
+    @Value("${idempotency.wait-timeout-seconds:30}")
+    private long waitTimeoutSeconds;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              JsonMapper jsonMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${idempotency.cache-size:10000}") int cacheSize) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.jsonMapper = jsonMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Run action once for this user, scope and key. Without a key the action simply runs.
+     *
+     * @param scope        the operation, so one key can be used for different endpoints
+     * @param request      the request body; a retry must send the same one
+     * @param responseType type the stored response is read back as on replay
+     */
+    public <T> Result<T> execute(String scope, Long userId, String key, Object request,
+                                 Class<T> responseType, Supplier<T> action) {
+        if (key == null || key.isBlank()) {
+            return new Result<>(action.get(), false);
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String requestHash = hash(request);
+        String cacheKey = scope + ':' + userId + ':' + key;
+
+        StoredResponse cached = cache.get(cacheKey);
+        if (cached != null && cached.expiresAt().isAfter(LocalDateTime.now())) {
+            return replay(cached, requestHash, responseType);
+        }
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(cacheKey, mine);
+        if (running != null) {
+            return replay(await(running), requestHash, responseType);
+        }
+
+        try {
+            Claim claim = claim(scope, userId, key, requestHash);
+            if (claim.completed() != null) {
+                mine.complete(claim.completed());
+                cache.put(cacheKey, claim.completed());
+                return replay(claim.completed(), requestHash, responseType);
+            }
+
+            T value = run(claim, action);
+            StoredResponse stored = new StoredResponse(requestHash, jsonMapper.writeValueAsString(value),
+                    claim.expiresAt());
+            cache.put(cacheKey, stored);
+            mine.complete(stored);
+            return new Result<>(value, false);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, mine);
+        }
+    }
+
+    /**
+     * Delete expired records
+     */
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:3600000}",
+               initialDelayString = "${idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int total = 0;
+        Integer deleted;
+        do {
+            deleted = transactionTemplate.execute(status ->
+                    idempotencyRecordRepository.deleteExpired(now, PURGE_BATCH_SIZE));
+            total += deleted != null ? deleted : 0;
+        } while (deleted != null && deleted == PURGE_BATCH_SIZE);
+        cache.values().removeIf(response -> !response.expiresAt().isAfter(now));
+        if (total > 0) {
+            log.info("Purged {} expired idempotency records", total);
+        }
+    }
+
+    /**
+     * Run the action and complete the claim in one transaction; release the claim if it fails
+     */
+    private <T> T run(Claim claim, Supplier<T> action) {
+        try {
+            return transactionTemplate.execute(status -> {
+                T value = action.get();
+                int completed = idempotencyRecordRepository.complete(claim.recordId(), claim.token(),
+                        jsonMapper.writeValueAsString(value), LocalDateTime.now());
+                if (completed == 0) {
+                    // Taken over while this request ran: its owner will commit the request, so this one must not
+                    log.warn("Idempotency claim {} was taken over; rolling back", claim.recordId());
+                    throw new ConflictException("A request with this " + HEADER + " is still being processed");
+                }
+                return value;
+            });
+        } catch (RuntimeException e) {
+            // Failed requests are not remembered, so the client can retry with the same key
+            newTransactionTemplate.executeWithoutResult(status ->
+                    idempotencyRecordRepository.release(claim.recordId(), claim.token()));
+            throw e;
+        }
+    }
+
+    /**
+     * Claim the key, or find the response of an earlier request that used it.
+     * Two instances inserting the same key at once is settled by the unique constraint.
+     */
+    private Claim claim(String scope, Long userId, String key, String requestHash) {
+        try {
+            return newTransactionTemplate.execute(status -> tryClaim(scope, userId, key, requestHash));
+        } catch (DataIntegrityViolationException e) {
+            return newTransactionTemplate.execute(status -> tryClaim(scope, userId, key, requestHash));
+        }
+    }
+
+    private Claim tryClaim(String scope, Long userId, String key, String requestHash) {
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyRecord existing = idempotencyRecordRepository
+                .findByScopeAndUserIdAndIdempotencyKey(scope, userId, key)
+                .orElse(null);
+
+        if (existing != null && existing.getExpiresAt().isBefore(now)) {
+            idempotencyRecordRepository.delete(existing);
+            idempotencyRecordRepository.flush();
+            existing = null;
+        }
+
+        if (existing != null) {
+            if (!existing.getRequestHash().equals(requestHash)) {
+                throw new BadRequestException(HEADER + " was already used for a different request");
+            }
+            if (existing.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                return new Claim(null, null, new StoredResponse(existing.getRequestHash(),
+                        existing.getResponseBody(), existing.getExpiresAt()), existing.getExpiresAt());
+            }
+            LocalDateTime staleBefore = now.minusSeconds(claimTimeoutSeconds);
+            String token = UUID.randomUUID().toString();
+            String seenToken = existing.getClaimToken() != null ? existing.getClaimToken() : "";
+            if (idempotencyRecordRepository.takeOverStaleClaim(existing.getRecordId(), seenToken, token,
+                    now, staleBefore) == 1) {
+                log.warn("Took over abandoned idempotency claim {} for {}", existing.getRecordId(), scope);
+                return new Claim(existing.getRecordId(), token, null, existing.getExpiresAt());
+            }
+            throw new ConflictException("A request with this " + HEADER + " is still being processed");
+        }
+
+        IdempotencyRecord record = idempotencyRecordRepository.saveAndFlush(IdempotencyRecord.builder()
+                .scope(scope)
+                .userId(userId)
+                .idempotencyKey(key)
+                .requestHash(requestHash)
+                .status(IdempotencyRecord.Status.IN_PROGRESS)
+                .claimedAt(now)
+                .claimToken(UUID.randomUUID().toString())
+                .expiresAt(now.plus(Duration.ofHours(ttlHours)))
+                .build());
+        return new Claim(record.getRecordId(), record.getClaimToken(), null, record.getExpiresAt());
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> running) {
+        try {
+            return running.get(waitTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            // The request this one duplicates failed; report the same failure
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ConflictException("A request with this " + HEADER + " is still being processed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("A request with this " + HEADER + " is still being processed");
+        }
+    }
+
+    private <T> Result<T> replay(StoredResponse stored, String requestHash, Class<T> responseType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new BadRequestException(HEADER + " was already used for a different request");
+        }
+        return new Result<>(jsonMapper.readValue(stored.body(), responseType), true);
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(jsonMapper.writeValueAsBytes(request)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * The response, and whether it was replayed from an earlier request
+     */
+    public record Result<T>(T body, boolean replayed) {
+    }
+
+    private record StoredResponse(String requestHash, String body, LocalDateTime expiresAt) {
+    }
+
+    private record Claim(Long recordId, String token, StoredResponse completed, LocalDateTime expiresAt) {
+    }
+}
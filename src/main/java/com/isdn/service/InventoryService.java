@@ -1,19 +1,34 @@
 package com.isdn.service;
 
+import com.isdn.dto.request.StockReceiptRequest;
 import com.isdn.dto.request.StockTransferRequest;
 import com.isdn.dto.request.StockUpdateRequest;
+import com.isdn.dto.response.CursorPageResponse;
 import com.isdn.dto.response.InventoryResponse;
+import com.isdn.dto.response.StockContentionResponse;
 import com.isdn.dto.response.StockMovementResponse;
+import com.isdn.dto.response.StockReceiptResponse;
 import com.isdn.exception.BadRequestException;
 import com.isdn.exception.ResourceNotFoundException;
 import com.isdn.model.*;
 import com.isdn.repository.*;
+import com.isdn.repository.InventoryRepositoryCustom.StockDelta;
+import com.isdn.repository.InventoryRepositoryCustom.StockLevel;
+import com.isdn.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,11 +36,22 @@ import java.util.stream.Collectors;
 @Slf4j
 public class InventoryService {
 
+    private static final int MAX_PAGE_SIZE = 200;
+
+    // Lower bound of an open time window
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+
     private final InventoryRepository inventoryRepository;
     private final StockMovementRepository stockMovementRepository;
     private final ProductRepository productRepository;
     private final RDCRepository rdcRepository;
     private final UserService userService;
+    private final StockUpdateRetrier stockUpdateRetrier;
+    private final StockContentionMetrics stockContentionMetrics;
+    private final StockLedgerService stockLedgerService;
+    private final StockMovementJournal stockMovementJournal;
+    private final StockMovementArchiveService stockMovementArchiveService;
+    private final LowStockTracker lowStockTracker;
 
     /**
      * Get all inventory for an RDC
@@ -45,12 +71,15 @@ public class InventoryService {
     }
 
     /**
-     * Get low stock items for an RDC
+     * Get low stock items for an RDC, from the low-stock tracker once it has loaded
      */
     @Transactional(readOnly = true)
     public List<InventoryResponse> getLowStockItems(Long rdcId) {
         log.info("Fetching low stock items for RDC: {}", rdcId);
 
+        if (lowStockTracker.isLoaded()) {
+            return lowStockTracker.getLowStock(rdcId);
+        }
         List<Inventory> lowStockItems = inventoryRepository.findLowStockItemsByRdc(rdcId);
 
         return lowStockItems.stream()
@@ -59,13 +88,193 @@ public class InventoryService {
     }
 
     /**
-     * Update stock (add/reduce)
+     * Update stock (add/reduce), retried when another writer changes the same row
      */
-    @Transactional
     public InventoryResponse updateStock(Long inventoryId, StockUpdateRequest request, Long userId) {
         log.info("Updating stock for inventory: {}, type: {}, quantity: {}",
                  inventoryId, request.getMovementType(), request.getQuantity());
 
+        String sku = inventoryRepository.findProductSkuByInventoryId(inventoryId)
+                .orElseThrow(() -> new ResourceNotFoundException("Inventory not found"));
+
+        return stockUpdateRetrier.execute(sku, () -> applyStockUpdate(inventoryId, request, userId));
+    }
+
+    /**
+     * Transfer stock between RDCs, retried when another writer changes either row
+     */
+    public void transferStock(StockTransferRequest request, Long userId) {
+        log.info("Transferring stock: Product {}, From RDC {}, To RDC {}, Quantity: {}",
+                 request.getProductId(), request.getFromRdcId(), request.getToRdcId(), request.getQuantity());
+
+        if (request.getFromRdcId().equals(request.getToRdcId())) {
+            throw new BadRequestException("Cannot transfer to the same RDC");
+        }
+
+        String sku = productRepository.findById(request.getProductId())
+                .map(Product::getSku)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+
+        stockUpdateRetrier.execute(sku, () -> {
+            applyStockTransfer(request, userId);
+            return null;
+        });
+    }
+
+    /**
+     * Apply a receiving document in one transaction. The affected rows are locked and every
+     * line is checked against the running stock of its row first; each row then gets its net
+     * change in one batched update, and the movements are written in one batch at commit.
+     */
+    @Transactional
+    public StockReceiptResponse applyReceipt(StockReceiptRequest request, Long userId) {
+        List<StockReceiptRequest.Line> lines = request.getLines();
+        log.info("Applying stock receipt {}: {} lines, failure mode {}",
+                 request.getReference(), lines.size(), request.getFailureMode());
+
+        User user = userService.getUserById(userId);
+
+        Set<Long> inventoryIds = new TreeSet<>();
+        for (StockReceiptRequest.Line line : lines) {
+            inventoryIds.add(line.getInventoryId());
+        }
+        Map<Long, StockLevel> levels = new HashMap<>();
+        for (StockLevel level : inventoryRepository.lockStockLevelsByInventoryIds(inventoryIds)) {
+            levels.put(level.inventoryId(), level);
+        }
+
+        // Stock after the lines accepted so far, per row and in inventory_id order
+        Map<Long, Integer> running = new TreeMap<>();
+        List<StockReceiptResponse.LineResult> results = new ArrayList<>(lines.size());
+        int rejected = 0;
+
+        for (int i = 0; i < lines.size(); i++) {
+            StockReceiptRequest.Line line = lines.get(i);
+            StockReceiptResponse.LineResult.LineResultBuilder result = StockReceiptResponse.LineResult.builder()
+                    .line(i + 1)
+                    .inventoryId(line.getInventoryId());
+
+            StockLevel level = levels.get(line.getInventoryId());
+            if (level == null) {
+                results.add(result.status(StockReceiptResponse.LineResult.Status.REJECTED)
+                        .message("Inventory not found").build());
+                rejected++;
+                continue;
+            }
+
+            int previousStock = running.getOrDefault(level.inventoryId(), level.quantityOnHand());
+            int newStock = calculateNewStock(previousStock, movementTypeOf(line), line.getQuantity());
+            if (newStock < 0) {
+                results.add(result.status(StockReceiptResponse.LineResult.Status.REJECTED)
+                        .previousStock(previousStock)
+                        .message("Insufficient stock. Available: " + previousStock).build());
+                rejected++;
+                continue;
+            }
+
+            running.put(level.inventoryId(), newStock);
+            results.add(result.status(StockReceiptResponse.LineResult.Status.APPLIED)
+                    .previousStock(previousStock)
+                    .newStock(newStock).build());
+        }
+
+        boolean commit = rejected == 0 || request.getFailureMode() == StockReceiptRequest.FailureMode.PARTIAL;
+        if (!commit) {
+            // Nothing has been written yet, so leaving now applies none of the lines
+            for (StockReceiptResponse.LineResult result : results) {
+                if (result.getStatus() == StockReceiptResponse.LineResult.Status.APPLIED) {
+                    result.setStatus(StockReceiptResponse.LineResult.Status.NOT_APPLIED);
+                    result.setMessage("Receipt has rejected lines");
+                }
+            }
+            log.info("Stock receipt {} not applied: {} of {} lines rejected",
+                     request.getReference(), rejected, lines.size());
+            return toReceiptResponse(request, false, 0, rejected, results);
+        }
+
+        List<StockDelta> deltas = new ArrayList<>(running.size());
+        running.forEach((inventoryId, newStock) -> {
+            StockLevel level = levels.get(inventoryId);
+            int delta = newStock - level.quantityOnHand();
+            if (delta != 0) {
+                deltas.add(new StockDelta(inventoryId, delta));
+                stockLedgerService.recordChange(inventoryId, level.productId(), level.rdcId(), delta);
+            }
+        });
+        inventoryRepository.incrementStock(deltas);
+
+        String defaultReason = request.getReference() != null ? "Receipt " + request.getReference() : null;
+        for (int i = 0; i < lines.size(); i++) {
+            StockReceiptResponse.LineResult result = results.get(i);
+            if (result.getStatus() != StockReceiptResponse.LineResult.Status.APPLIED) {
+                continue;
+            }
+            StockReceiptRequest.Line line = lines.get(i);
+            stockMovementJournal.append(StockMovement.builder()
+                    .inventory(inventoryRepository.getReferenceById(line.getInventoryId()))
+                    .rdcId(levels.get(line.getInventoryId()).rdcId())
+                    .movementType(movementTypeOf(line))
+                    .quantity(line.getQuantity())
+                    .previousStock(result.getPreviousStock())
+                    .newStock(result.getNewStock())
+                    .reason(line.getReason() != null ? line.getReason() : defaultReason)
+                    .performedBy(user)
+                    .build());
+        }
+
+        int applied = lines.size() - rejected;
+        log.info("Stock receipt {} applied: {} lines on {} inventory rows, {} rejected",
+                 request.getReference(), applied, deltas.size(), rejected);
+        return toReceiptResponse(request, true, applied, rejected, results);
+    }
+
+    /**
+     * Get stock movement history, one keyset page at a time, optionally within [from, to)
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<StockMovementResponse> getStockMovementHistory(Long inventoryId, LocalDateTime from,
+                                                                             LocalDateTime to, String cursor, int limit) {
+        log.info("Fetching stock movement history for inventory: {}", inventoryId);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        int pageSize = pageSize(limit);
+        LocalDateTime start = windowStart(from);
+        LocalDateTime end = windowEnd(from, to);
+        List<StockMovementResponse> movements = stockMovementRepository.findPageByInventoryAfter(inventoryId,
+                start, end, after.timestamp(), after.id(), Limit.of(pageSize + 1));
+        if (movements.size() <= pageSize) {
+            Long rdcId = inventoryRepository.findById(inventoryId)
+                    .map(inventory -> inventory.getRdc().getRdcId())
+                    .orElse(null);
+            if (rdcId != null) {
+                movements = withArchived(movements, rdcId, inventoryId, start, end, after, pageSize + 1);
+            }
+        }
+        return toMovementPage(movements, pageSize);
+    }
+
+    /**
+     * Get movements for an RDC, one keyset page at a time, optionally within [from, to)
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<StockMovementResponse> getRdcMovements(Long rdcId, LocalDateTime from,
+                                                                     LocalDateTime to, String cursor, int limit) {
+        log.info("Fetching stock movements for RDC: {}", rdcId);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        int pageSize = pageSize(limit);
+        LocalDateTime start = windowStart(from);
+        LocalDateTime end = windowEnd(from, to);
+        List<StockMovementResponse> movements = stockMovementRepository.findPageByRdcAfter(rdcId,
+                start, end, after.timestamp(), after.id(), Limit.of(pageSize + 1));
+        if (movements.size() <= pageSize) {
+            movements = withArchived(movements, rdcId, null, start, end, after, pageSize + 1);
+        }
+        return toMovementPage(movements, pageSize);
+    }
+
+    /**
+     * Single versioned attempt of updateStock
+     */
+    private InventoryResponse applyStockUpdate(Long inventoryId, StockUpdateRequest request, Long userId) {
         Inventory inventory = inventoryRepository.findById(inventoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Inventory not found"));
 
@@ -81,10 +290,12 @@ public class InventoryService {
         // Update inventory
         inventory.setQuantityOnHand(newStock);
         inventoryRepository.save(inventory);
+        recordLedgerChange(inventory, newStock - previousStock);
 
         // Record movement
         StockMovement movement = StockMovement.builder()
                 .inventory(inventory)
+                .rdcId(inventory.getRdc().getRdcId())
                 .movementType(request.getMovementType())
                 .quantity(request.getQuantity())
                 .previousStock(previousStock)
@@ -93,7 +304,7 @@ public class InventoryService {
                 .performedBy(user)
                 .build();
 
-        stockMovementRepository.save(movement);
+        stockMovementJournal.append(movement);
 
         log.info("Stock updated successfully. Previous: {}, New: {}", previousStock, newStock);
 
@@ -101,17 +312,9 @@ public class InventoryService {
     }
 
     /**
-     * Transfer stock between RDCs
+     * Single versioned attempt of transferStock
      */
-    @Transactional
-    public void transferStock(StockTransferRequest request, Long userId) {
-        log.info("Transferring stock: Product {}, From RDC {}, To RDC {}, Quantity: {}",
-                 request.getProductId(), request.getFromRdcId(), request.getToRdcId(), request.getQuantity());
-
-        if (request.getFromRdcId().equals(request.getToRdcId())) {
-            throw new BadRequestException("Cannot transfer to the same RDC");
-        }
-
+    private void applyStockTransfer(StockTransferRequest request, Long userId) {
         Product product = productRepository.findById(request.getProductId())
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
 
@@ -153,6 +356,8 @@ public class InventoryService {
 
         inventoryRepository.save(fromInventory);
         inventoryRepository.save(toInventory);
+        recordLedgerChange(fromInventory, -request.getQuantity());
+        recordLedgerChange(toInventory, request.getQuantity());
 
         // Record movements
         String transferReason = request.getReason() != null ? request.getReason() :
@@ -160,6 +365,7 @@ public class InventoryService {
 
         StockMovement outMovement = StockMovement.builder()
                 .inventory(fromInventory)
+                .rdcId(fromRdc.getRdcId())
                 .movementType(MovementType.TRANSFERRED_OUT)
                 .quantity(request.getQuantity())
                 .previousStock(fromPreviousStock)
@@ -170,6 +376,7 @@ public class InventoryService {
 
         StockMovement inMovement = StockMovement.builder()
                 .inventory(toInventory)
+                .rdcId(toRdc.getRdcId())
                 .movementType(MovementType.TRANSFERRED_IN)
                 .quantity(request.getQuantity())
                 .previousStock(toPreviousStock)
@@ -178,49 +385,111 @@ public class InventoryService {
                 .performedBy(user)
                 .build();
 
-        stockMovementRepository.save(outMovement);
-        stockMovementRepository.save(inMovement);
+        stockMovementJournal.append(outMovement);
+        stockMovementJournal.append(inMovement);
 
         log.info("Stock transfer completed successfully");
     }
 
     /**
-     * Get stock movement history
+     * Per-SKU report of concurrent stock update conflicts
      */
-    @Transactional(readOnly = true)
-    public List<StockMovementResponse> getStockMovementHistory(Long inventoryId) {
-        log.info("Fetching stock movement history for inventory: {}", inventoryId);
+    public List<StockContentionResponse> getContentionReport() {
+        return stockContentionMetrics.snapshot();
+    }
 
-        List<StockMovement> movements = stockMovementRepository
-                .findByInventory_InventoryIdOrderByTimestampDesc(inventoryId);
+    /**
+     * Calculate new stock based on movement type
+     */
+    private int calculateNewStock(int currentStock, MovementType movementType, int quantity) {
+        return switch (movementType) {
+            case RECEIVED, RETURNED, TRANSFERRED_IN, ADJUSTMENT -> currentStock + quantity;
+            case SOLD, DAMAGED, TRANSFERRED_OUT -> currentStock - quantity;
+        };
+    }
 
-        return movements.stream()
-                .map(this::mapMovementToResponse)
-                .collect(Collectors.toList());
+    /**
+     * Clamp a requested page size to the allowed range
+     */
+    private int pageSize(int limit) {
+        return Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+    }
+
+    private static LocalDateTime windowStart(LocalDateTime from) {
+        return from != null ? from : EARLIEST;
+    }
+
+    private static LocalDateTime windowEnd(LocalDateTime from, LocalDateTime to) {
+        if (to == null) {
+            return KeysetCursor.FIRST.timestamp();
+        }
+        if (from != null && !from.isBefore(to)) {
+            throw new BadRequestException("'from' must be before 'to'");
+        }
+        return to;
     }
 
     /**
-     * Get all movements for an RDC
+     * Top up a page that ran out of live movements with archived ones, which are all older
      */
-    @Transactional(readOnly = true)
-    public List<StockMovementResponse> getRdcMovements(Long rdcId) {
-        log.info("Fetching all stock movements for RDC: {}", rdcId);
+    private List<StockMovementResponse> withArchived(List<StockMovementResponse> live, Long rdcId, Long inventoryId,
+                                                     LocalDateTime from, LocalDateTime to, KeysetCursor after,
+                                                     int wanted) {
+        KeysetCursor archiveAfter = live.isEmpty() ? after : new KeysetCursor(
+                live.get(live.size() - 1).getTimestamp(), live.get(live.size() - 1).getMovementId());
+        List<StockMovementResponse> archived = stockMovementArchiveService.readPage(
+                rdcId, inventoryId, from, to, archiveAfter, wanted - live.size());
+        if (archived.isEmpty()) {
+            return live;
+        }
+        List<StockMovementResponse> combined = new ArrayList<>(live);
+        combined.addAll(archived);
+        return combined;
+    }
 
-        List<StockMovement> movements = stockMovementRepository.findByRdcIdOrderByTimestampDesc(rdcId);
+    /**
+     * Build a page from rows fetched with one extra; the extra row only signals that more exist
+     */
+    private static CursorPageResponse<StockMovementResponse> toMovementPage(List<StockMovementResponse> movements,
+                                                                          int pageSize) {
+        boolean hasMore = movements.size() > pageSize;
+        List<StockMovementResponse> page = hasMore ? movements.subList(0, pageSize) : movements;
+
+        String nextCursor = null;
+        if (hasMore) {
+            StockMovementResponse last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getTimestamp(), last.getMovementId()).encode();
+        }
+        return CursorPageResponse.<StockMovementResponse>builder()
+                .items(page)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
 
-        return movements.stream()
-                .map(this::mapMovementToResponse)
-                .collect(Collectors.toList());
+    private static MovementType movementTypeOf(StockReceiptRequest.Line line) {
+        return line.getMovementType() != null ? line.getMovementType() : MovementType.RECEIVED;
+    }
+
+    private static StockReceiptResponse toReceiptResponse(StockReceiptRequest request, boolean committed,
+                                                          int applied, int rejected,
+                                                          List<StockReceiptResponse.LineResult> results) {
+        return StockReceiptResponse.builder()
+                .reference(request.getReference())
+                .failureMode(request.getFailureMode())
+                .committed(committed)
+                .applied(applied)
+                .rejected(rejected)
+                .lines(results)
+                .build();
     }
 
     /**
-     * Calculate new stock based on movement type
+     * Mirror a committed stock change into the in-memory ledger
      */
-    private int calculateNewStock(int currentStock, MovementType movementType, int quantity) {
-        return switch (movementType) {
-            case RECEIVED, RETURNED, TRANSFERRED_IN, ADJUSTMENT -> currentStock + quantity;
-            case SOLD, DAMAGED, TRANSFERRED_OUT -> currentStock - quantity;
-        };
+    private void recordLedgerChange(Inventory inventory, int delta) {
+        stockLedgerService.recordChange(inventory.getInventoryId(),
+                inventory.getProduct().getProductId(), inventory.getRdc().getRdcId(), delta);
     }
 
     /**
@@ -253,23 +522,4 @@ public class InventoryService {
                 .lastUpdated(inventory.getLastUpdated())
                 .build();
     }
-
-    /**
-     * Map StockMovement to StockMovementResponse
-     */
-    private StockMovementResponse mapMovementToResponse(StockMovement movement) {
-        return StockMovementResponse.builder()
-                .movementId(movement.getMovementId())
-                .inventoryId(movement.getInventory().getInventoryId())
-                .productName(movement.getInventory().getProduct().getName())
-                .rdcName(movement.getInventory().getRdc().getName())
-                .movementType(movement.getMovementType())
-                .quantity(movement.getQuantity())
-                .previousStock(movement.getPreviousStock())
-                .newStock(movement.getNewStock())
-                .reason(movement.getReason())
-                .performedBy(movement.getPerformedBy().getUsername())
-                .timestamp(movement.getTimestamp())
-                .build();
-    }
 }
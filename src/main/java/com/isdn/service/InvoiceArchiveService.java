@@ -0,0 +1,246 @@
+package com.isdn.service;
+
+import com.isdn.exception.ResourceNotFoundException;
+import com.isdn.model.InvoiceArchiveEntry;
+import com.isdn.model.Order;
+import com.isdn.repository.EmailOutboxRepository;
+import com.isdn.repository.InvoiceArchiveRepository;
+import com.isdn.repository.OrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Rendered invoice PDFs kept on disk, named by the SHA-256 of their content. Each order
+ * points at its current file and remembers the order version it was rendered from, so an
+ * invoice is only rendered again once the order has changed.
+ */
+@Service
+@Slf4j
+public class InvoiceArchiveService {
+
+    private final InvoiceArchiveRepository invoiceArchiveRepository;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final OrderRepository orderRepository;
+    private final InvoiceService invoiceService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final Path root;
+    private final Duration cleanupMinAge;
+
+    // One render per order at a time on this instance; concurrent callers share its result
+    private final Map<Long, CompletableFuture<ArchivedInvoice>> rendering = new ConcurrentHashMap<>();
+
+    public InvoiceArchiveService(InvoiceArchiveRepository invoiceArchiveRepository,
+                                 EmailOutboxRepository emailOutboxRepository,
+                                 OrderRepository orderRepository,
+                                 InvoiceService invoiceService,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${invoice.archive.dir:data/invoices}") String archiveDir,
+                                 @Value("${invoice.archive.cleanup-min-age-hours:24}") long cleanupMinAgeHours) {
+        this.invoiceArchiveRepository = invoiceArchiveRepository;
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.orderRepository = orderRepository;
+        this.invoiceService = invoiceService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.root = Paths.get(archiveDir).toAbsolutePath().normalize();
+        this.cleanupMinAge = Duration.ofHours(cleanupMinAgeHours);
+    }
+
+    /**
+     * The archived invoice for an order, rendering it first if there is none or the order changed since
+     */
+    public ArchivedInvoice getOrRender(Long orderId) {
+        Lookup lookup = readOnlyTransactionTemplate.execute(status -> {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
+            return new Lookup(order.getUpdatedAt(), invoiceArchiveRepository.findById(orderId).orElse(null));
+        });
+        ArchivedInvoice current = usable(lookup.entry(), lookup.orderUpdatedAt());
+        if (current != null) {
+            return current;
+        }
+
+        Order order = readOnlyTransactionTemplate.execute(status -> orderRepository.findForInvoiceById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found")));
+        return render(order);
+    }
+
+    /**
+     * Same as {@link #getOrRender(Long)} for an order already loaded with its items and customer
+     */
+    public ArchivedInvoice getOrRender(Order order) {
+        InvoiceArchiveEntry entry = invoiceArchiveRepository.findById(order.getOrderId()).orElse(null);
+        ArchivedInvoice current = usable(entry, order.getUpdatedAt());
+        return current != null ? current : render(order);
+    }
+
+    /**
+     * Render and store the invoice even if the archived one is current, e.g. after the company details changed
+     */
+    public ArchivedInvoice rerender(Long orderId) {
+        Order order = readOnlyTransactionTemplate.execute(status -> orderRepository.findForInvoiceById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found")));
+        return render(order);
+    }
+
+    private ArchivedInvoice usable(InvoiceArchiveEntry entry, LocalDateTime orderUpdatedAt) {
+        if (entry == null || !Objects.equals(entry.getOrderUpdatedAt(), orderUpdatedAt)) {
+            return null;
+        }
+        Path path = pathFor(entry.getContentHash());
+        if (!Files.isRegularFile(path)) {
+            log.warn("Archived invoice file {} for order {} is missing, rendering again",
+                    path, entry.getOrderId());
+            return null;
+        }
+        return new ArchivedInvoice(entry.getOrderId(), entry.getContentHash(), entry.getSizeBytes(), path);
+    }
+
+    private ArchivedInvoice render(Order order) {
+        Long orderId = order.getOrderId();
+        CompletableFuture<ArchivedInvoice> mine = new CompletableFuture<>();
+        CompletableFuture<ArchivedInvoice> inFlight = rendering.putIfAbsent(orderId, mine);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            ArchivedInvoice archived = store(order);
+            mine.complete(archived);
+            return archived;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(orderId, mine);
+        }
+    }
+
+    private ArchivedInvoice store(Order order) {
+        byte[] pdf = invoiceService.generateInvoice(order);
+        String hash = sha256(pdf);
+        Path path = pathFor(hash);
+
+        try {
+            if (!Files.exists(path)) {
+                Files.createDirectories(path.getParent());
+                Path temp = Files.createTempFile(path.getParent(), hash, ".tmp");
+                try {
+                    Files.write(temp, pdf);
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive invoice for order " + order.getOrderNumber(), e);
+        }
+
+        // Superseded files stay on disk until the cleanup finds nothing referencing them
+        transactionTemplate.executeWithoutResult(status -> {
+            InvoiceArchiveEntry entry = invoiceArchiveRepository.findById(order.getOrderId())
+                    .orElseGet(() -> InvoiceArchiveEntry.builder().orderId(order.getOrderId()).build());
+            entry.setContentHash(hash);
+            entry.setSizeBytes((long) pdf.length);
+            entry.setOrderUpdatedAt(order.getUpdatedAt());
+            entry.setArchivedAt(LocalDateTime.now());
+            invoiceArchiveRepository.save(entry);
+        });
+
+        log.info("Invoice for order {} archived as {} ({} bytes)", order.getOrderNumber(), hash, pdf.length);
+        return new ArchivedInvoice(order.getOrderId(), hash, pdf.length, path);
+    }
+
+    /**
+     * Delete archive files no order points at and no unsent email attaches. Files younger
+     * than the minimum age are kept, since their render may not have saved its entry yet.
+     *
+     * @return how many files were deleted
+     */
+    @Scheduled(cron = "${invoice.archive.cleanup-cron:0 15 3 * * *}")
+    public int deleteUnreferenced() {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        Set<String> attached = new HashSet<>(emailOutboxRepository.findUnsentAttachmentPaths());
+        Instant cutoff = Instant.now().minus(cleanupMinAge);
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            Iterator<Path> it = files.filter(path -> path.getFileName().toString().endsWith(".pdf")).iterator();
+            while (it.hasNext()) {
+                Path path = it.next();
+                String name = path.getFileName().toString();
+                String hash = name.substring(0, name.length() - ".pdf".length());
+                if (attached.contains(path.toString())
+                        || Files.getLastModifiedTime(path).toInstant().isAfter(cutoff)
+                        || invoiceArchiveRepository.existsByContentHash(hash)) {
+                    continue;
+                }
+                if (Files.deleteIfExists(path)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Invoice archive cleanup stopped after {} files", deleted, e);
+            return deleted;
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} unreferenced invoice files from {}", deleted, root);
+        }
+        return deleted;
+    }
+
+    private Path pathFor(String hash) {
+        // Two-character fan-out keeps directories small
+        return root.resolve(hash.substring(0, 2)).resolve(hash + ".pdf");
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * An invoice file in the archive; the content hash doubles as a strong ETag
+     */
+    public record ArchivedInvoice(Long orderId, String contentHash, long sizeBytes, Path path) {
+    }
+
+    private record Lookup(LocalDateTime orderUpdatedAt, InvoiceArchiveEntry entry) {
+    }
+}
@@ -0,0 +1,353 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.InvoiceBatchResponse;
+import com.isdn.exception.BadRequestException;
+import com.isdn.exception.ConflictException;
+import com.isdn.exception.ResourceNotFoundException;
+import com.isdn.model.Order;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.User;
+import com.isdn.repository.OrderRepository;
+import com.isdn.repository.OrderRepository.InvoiceTargetView;
+import com.isdn.service.InvoiceArchiveService.ArchivedInvoice;
+import com.isdn.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Renders many invoices at once: date-range batches on a fixed-size pool, downloaded
+ * afterwards as a ZIP, and monthly customer statements on a separate bounded pool so a
+ * large batch cannot hold up a statement request. Rendered invoices go
+ * through the invoice archive, so results live on disk and are streamed from there
+ * rather than collected in memory.
+ */
+@Service
+@Slf4j
+public class InvoiceBatchService {
+
+    private static final long MAX_BATCH_DAYS = 366;
+
+    // Orders in these states have no invoice
+    private static final Set<OrderStatus> NOT_INVOICED = EnumSet.of(OrderStatus.PENDING, OrderStatus.CANCELLED);
+
+    private final OrderRepository orderRepository;
+    private final UserService userService;
+    private final InvoiceService invoiceService;
+    private final InvoiceArchiveService invoiceArchiveService;
+    private final SnowflakeIdGenerator idGenerator;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService workers;
+    private final ExecutorService statementWorkers;
+    private final long statementTimeoutSeconds;
+
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    @Value("${invoice.batch.retention-minutes:60}")
+    private long retentionMinutes;
+
+    public InvoiceBatchService(OrderRepository orderRepository,
+                               UserService userService,
+                               InvoiceService invoiceService,
+                               InvoiceArchiveService invoiceArchiveService,
+                               SnowflakeIdGenerator idGenerator,
+                               MeterRegistry meterRegistry,
+                               @Value("${invoice.batch.parallelism:4}") int parallelism,
+                               @Value("${invoice.batch.statement-parallelism:2}") int statementParallelism,
+                               @Value("${invoice.batch.statement-queue-capacity:50}") int statementQueueCapacity,
+                               @Value("${invoice.batch.statement-timeout-seconds:60}") long statementTimeoutSeconds) {
+        this.orderRepository = orderRepository;
+        this.userService = userService;
+        this.invoiceService = invoiceService;
+        this.invoiceArchiveService = invoiceArchiveService;
+        this.idGenerator = idGenerator;
+        this.meterRegistry = meterRegistry;
+        this.statementTimeoutSeconds = statementTimeoutSeconds;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "invoice-batch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        AtomicInteger statementThreadNumber = new AtomicInteger();
+        this.statementWorkers = new ThreadPoolExecutor(statementParallelism, statementParallelism,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(statementQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "invoice-statement-" + statementThreadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // A full queue renders on the requesting thread, which slows that request down instead of queueing more
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Start rendering the invoices of every order placed between the two dates (inclusive).
+     * Returns at once; progress is read with {@link #getBatch(String)}.
+     */
+    public InvoiceBatchResponse startBatch(LocalDate from, LocalDate to, boolean force) {
+        if (to.isBefore(from)) {
+            throw new BadRequestException("'to' date must not be before 'from' date");
+        }
+        if (ChronoUnit.DAYS.between(from, to) + 1 > MAX_BATCH_DAYS) {
+            throw new BadRequestException("Invoice batches can cover at most " + MAX_BATCH_DAYS + " days");
+        }
+
+        List<InvoiceTargetView> targets = orderRepository.findInvoiceTargets(
+                from.atStartOfDay(), to.plusDays(1).atStartOfDay(), NOT_INVOICED);
+        Batch batch = new Batch(idGenerator.nextId("INVB-"), from, to, force, targets);
+        batches.put(batch.id, batch);
+        log.info("Invoice batch {} started for {} orders from {} to {}", batch.id, targets.size(), from, to);
+
+        if (targets.isEmpty()) {
+            batch.finish();
+        }
+        for (int i = 0; i < targets.size(); i++) {
+            int index = i;
+            workers.execute(() -> renderOne(batch, index));
+        }
+        return toResponse(batch);
+    }
+
+    /**
+     * Progress and throughput of a batch
+     */
+    public InvoiceBatchResponse getBatch(String batchId) {
+        return toResponse(findBatch(batchId));
+    }
+
+    /**
+     * Fail fast, before a response is committed, when a batch cannot be downloaded yet
+     */
+    public void checkDownloadable(String batchId) {
+        if (!findBatch(batchId).isFinished()) {
+            throw new ConflictException("Invoice batch " + batchId + " is still running");
+        }
+    }
+
+    /**
+     * Write a finished batch as a ZIP with one PDF per order, copied from the archive one
+     * file at a time. Orders that failed to render are listed in FAILED.txt.
+     */
+    public void writeZip(String batchId, OutputStream out) throws IOException {
+        Batch batch = findBatch(batchId);
+        checkDownloadable(batchId);
+
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // PDFs are already compressed
+        zip.setLevel(Deflater.BEST_SPEED);
+
+        StringBuilder failures = new StringBuilder();
+        for (int i = 0; i < batch.targets.size(); i++) {
+            InvoiceTargetView target = batch.targets.get(i);
+            ArchivedInvoice invoice = batch.results.get(i);
+            if (invoice == null) {
+                failures.append(target.getOrderNumber()).append(": ").append(batch.errors.get(i)).append('\n');
+                continue;
+            }
+            zip.putNextEntry(new ZipEntry("Invoice-" + target.getOrderNumber() + ".pdf"));
+            Files.copy(invoice.path(), zip);
+            zip.closeEntry();
+        }
+        if (!failures.isEmpty()) {
+            zip.putNextEntry(new ZipEntry("FAILED.txt"));
+            zip.write(failures.toString().getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    /**
+     * Load what a customer's statement for the month needs; throws before anything is streamed
+     */
+    public Statement prepareStatement(Long userId, YearMonth month) {
+        User customer = userService.getUserById(userId);
+        List<Order> orders = orderRepository.findStatementOrders(userId,
+                month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+        return new Statement(customer, month, orders);
+    }
+
+    /**
+     * Write the statement PDF. The invoices it includes are brought up to date in parallel
+     * first, waiting at most statement-timeout-seconds; the merge then reads them back from
+     * the archive one at a time.
+     */
+    public void writeStatement(Statement statement, OutputStream out) {
+        List<CompletableFuture<ArchivedInvoice>> pending = new ArrayList<>();
+        for (Order order : statement.orders()) {
+            if (!NOT_INVOICED.contains(order.getStatus())) {
+                pending.add(CompletableFuture.supplyAsync(
+                        () -> invoiceArchiveService.getOrRender(order.getOrderId()), statementWorkers));
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new))
+                    .get(statementTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            // Renders not yet started are skipped; running ones finish and stay in the archive
+            pending.forEach(invoice -> invoice.cancel(false));
+            throw new IllegalStateException("Invoices for the " + statement.month() + " statement of "
+                    + statement.customer().getUsername() + " did not render within " + statementTimeoutSeconds + "s");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.forEach(invoice -> invoice.cancel(false));
+            throw new IllegalStateException("Interrupted while rendering statement invoices", e);
+        }
+
+        List<Path> invoices = new ArrayList<>(pending.size());
+        for (CompletableFuture<ArchivedInvoice> invoice : pending) {
+            invoices.add(invoice.join().path());
+        }
+        invoiceService.writeStatement(statement.customer(), statement.month(), statement.orders(), invoices, out);
+    }
+
+    /**
+     * Forget finished batches once they have been around long enough to be downloaded
+     */
+    @Scheduled(fixedDelayString = "${invoice.batch.cleanup-interval-ms:600000}")
+    public void evictFinishedBatches() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        batches.values().removeIf(batch -> batch.isFinished() && batch.finishedAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+        statementWorkers.shutdownNow();
+    }
+
+    private void renderOne(Batch batch, int index) {
+        Long orderId = batch.targets.get(index).getOrderId();
+        try {
+            ArchivedInvoice invoice = batch.force
+                    ? invoiceArchiveService.rerender(orderId)
+                    : invoiceArchiveService.getOrRender(orderId);
+            batch.results.set(index, invoice);
+            meterRegistry.counter("invoices.batch.rendered").increment();
+        } catch (Exception e) {
+            log.warn("Invoice batch {} failed to render order {}", batch.id, orderId, e);
+            batch.errors.set(index, e.getMessage());
+            batch.failed.incrementAndGet();
+            meterRegistry.counter("invoices.batch.failed").increment();
+        }
+        if (batch.completed.incrementAndGet() == batch.targets.size()) {
+            batch.finish();
+            log.info("Invoice batch {} finished: {} orders, {} failed, {} invoices/s",
+                    batch.id, batch.targets.size(), batch.failed.get(), String.format("%.1f", batch.rate()));
+        }
+    }
+
+    private Batch findBatch(String batchId) {
+        Batch batch = batches.get(batchId);
+        if (batch == null) {
+            throw new ResourceNotFoundException("Invoice batch not found: " + batchId);
+        }
+        return batch;
+    }
+
+    private InvoiceBatchResponse toResponse(Batch batch) {
+        int total = batch.targets.size();
+        int completed = batch.completed.get();
+        return InvoiceBatchResponse.builder()
+                .batchId(batch.id)
+                .from(batch.from)
+                .to(batch.to)
+                .forced(batch.force)
+                .finished(batch.isFinished())
+                .totalOrders(total)
+                .completed(completed)
+                .failed(batch.failed.get())
+                .percentComplete(total > 0 ? 100.0 * completed / total : 100.0)
+                .invoicesPerSecond(batch.rate())
+                .startedAt(batch.startedAt)
+                .finishedAt(batch.finishedAt)
+                .build();
+    }
+
+    /**
+     * A customer, a month and the orders placed in it
+     */
+    public record Statement(User customer, YearMonth month, List<Order> orders) {
+    }
+
+    private static final class Batch {
+
+        private final String id;
+        private final LocalDate from;
+        private final LocalDate to;
+        private final boolean force;
+        private final List<InvoiceTargetView> targets;
+        private final AtomicReferenceArray<ArchivedInvoice> results;
+        private final AtomicReferenceArray<String> errors;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startedNanos = System.nanoTime();
+        private volatile long finishedNanos;
+        private volatile LocalDateTime finishedAt;
+
+        private Batch(String id, LocalDate from, LocalDate to, boolean force, List<InvoiceTargetView> targets) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+            this.force = force;
+            this.targets = targets;
+            this.results = new AtomicReferenceArray<>(targets.size());
+            this.errors = new AtomicReferenceArray<>(targets.size());
+        }
+
+        private void finish() {
+            finishedNanos = System.nanoTime();
+            finishedAt = LocalDateTime.now();
+        }
+
+        private boolean isFinished() {
+            return finishedAt != null;
+        }
+
+        private double rate() {
+            long end = isFinished() ? finishedNanos : System.nanoTime();
+            double seconds = (end - startedNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            return seconds > 0 ? completed.get() / seconds : 0.0;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.isdn.service;
+
+import com.isdn.exception.ResourceNotFoundException;
+import com.isdn.model.InvoiceJob;
+import com.isdn.model.InvoiceJobStatus;
+import com.isdn.model.Order;
+import com.isdn.repository.InvoiceJobRepository;
+import com.isdn.repository.OrderRepository;
+import com.isdn.service.InvoiceArchiveService.ArchivedInvoice;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders invoices into the archive and queues their emails, off the request path.
+ * A job row is written in the transaction that confirms the order and handed to a
+ * small worker pool once that transaction commits. When the pool's queue is full the
+ * job simply stays PENDING and the poller feeds it in later; failed jobs are retried
+ * with exponential backoff.
+ */
+@Service
+@Slf4j
+public class InvoiceJobService {
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final InvoiceJobRepository invoiceJobRepository;
+    private final OrderRepository orderRepository;
+    private final InvoiceArchiveService invoiceArchiveService;
+    private final EmailService emailService;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final ThreadPoolExecutor workers;
+
+    @Value("${invoice.jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${invoice.jobs.initial-backoff-ms:30000}")
+    private long initialBackoffMillis;
+
+    @Value("${invoice.jobs.max-backoff-ms:3600000}")
+    private long maxBackoffMillis;
+
+    @Value("${invoice.jobs.poll-batch-size:100}")
+    private int pollBatchSize;
+
+    @Value("${invoice.jobs.stale-after-seconds:600}")
+    private long staleAfterSeconds;
+
+    public InvoiceJobService(InvoiceJobRepository invoiceJobRepository,
+                             OrderRepository orderRepository,
+                             InvoiceArchiveService invoiceArchiveService,
+                             EmailService emailService,
+                             MeterRegistry meterRegistry,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${invoice.jobs.workers:2}") int workerCount,
+                             @Value("${invoice.jobs.queue-capacity:200}") int queueCapacity) {
+        this.invoiceJobRepository = invoiceJobRepository;
+        this.orderRepository = orderRepository;
+        this.invoiceArchiveService = invoiceArchiveService;
+        this.emailService = emailService;
+        this.meterRegistry = meterRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "invoice-worker-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // The job is already persisted as PENDING, so a full queue only delays it until the next poll
+                (runnable, executor) -> meterRegistry.counter("invoices.jobs.deferred").increment());
+
+        meterRegistry.gauge("invoices.jobs.queued", workers, executor -> executor.getQueue().size());
+    }
+
+    /**
+     * Queue invoice delivery for an order. Inside a transaction the job is only handed
+     * to a worker after commit, so a rolled-back confirmation never sends an invoice.
+     */
+    @Transactional
+    public InvoiceJob enqueue(Long orderId) {
+        LocalDateTime now = LocalDateTime.now();
+        InvoiceJob job = invoiceJobRepository.save(InvoiceJob.builder()
+                .orderId(orderId)
+                .status(InvoiceJobStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .updatedAt(now)
+                .build());
+        Long jobId = job.getJobId();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(jobId);
+                }
+            });
+        } else {
+            submit(jobId);
+        }
+        log.info("Invoice job {} queued for order {}", jobId, orderId);
+        return job;
+    }
+
+    /**
+     * Invoice jobs for an order, newest first
+     */
+    @Transactional(readOnly = true)
+    public List<InvoiceJob> getJobsForOrder(Long orderId) {
+        return invoiceJobRepository.findByOrderIdOrderByCreatedAtDesc(orderId);
+    }
+
+    /**
+     * Requeue abandoned jobs and feed due ones to the workers, never more than the queue has room for
+     */
+    @Scheduled(fixedDelayString = "${invoice.jobs.poll-interval-ms:15000}",
+               initialDelayString = "${invoice.jobs.poll-interval-ms:15000}")
+    public void poll() {
+        LocalDateTime now = LocalDateTime.now();
+        Integer released = transactionTemplate.execute(status ->
+                invoiceJobRepository.releaseStale(now.minusSeconds(staleAfterSeconds), now));
+        if (released != null && released > 0) {
+            log.warn("Requeued {} invoice jobs abandoned while running", released);
+        }
+
+        int room = workers.getQueue().remainingCapacity();
+        if (room == 0) {
+            return;
+        }
+        List<Long> due = invoiceJobRepository.findDueJobIds(now, Limit.of(Math.min(room, pollBatchSize)));
+        due.forEach(this::submit);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Queued jobs are still PENDING in the table and running ones are requeued once stale
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+
+    private void submit(Long jobId) {
+        if (!workers.isShutdown()) {
+            workers.execute(() -> process(jobId));
+        }
+    }
+
+    private void process(Long jobId) {
+        String claimToken = UUID.randomUUID().toString();
+        Boolean claimed = transactionTemplate.execute(status ->
+                invoiceJobRepository.claim(jobId, claimToken, LocalDateTime.now()) == 1);
+        if (!Boolean.TRUE.equals(claimed)) {
+            // Already picked up by another worker or instance
+            return;
+        }
+        InvoiceJob job = invoiceJobRepository.findById(jobId).orElseThrow();
+
+        try {
+            Order order = readOnlyTransactionTemplate.execute(status ->
+                    orderRepository.findForInvoiceById(job.getOrderId())
+                            .orElseThrow(() -> new ResourceNotFoundException("Order not found: " + job.getOrderId())));
+
+            // No transaction or connection is held while rendering
+            ArchivedInvoice invoice = invoiceArchiveService.getOrRender(order);
+            String customerName = order.getUser().getBusinessName() != null ?
+                    order.getUser().getBusinessName() : order.getUser().getUsername();
+
+            // The email is queued in the outbox in the same transaction that completes the job,
+            // and both roll back if the job was requeued and claimed by another worker meanwhile
+            Boolean sent = transactionTemplate.execute(status -> {
+                emailService.sendInvoiceEmail(order.getUser().getEmail(), customerName,
+                        order.getOrderNumber(), invoice.path());
+                if (finish(job, claimToken, InvoiceJobStatus.SENT, null, null)) {
+                    return true;
+                }
+                status.setRollbackOnly();
+                return false;
+            });
+            if (Boolean.TRUE.equals(sent)) {
+                meterRegistry.counter("invoices.jobs.sent").increment();
+            } else {
+                lostClaim(job);
+            }
+        } catch (Exception e) {
+            fail(job, claimToken, e);
+        }
+    }
+
+    private void fail(InvoiceJob job, String claimToken, Exception e) {
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+
+        boolean retriable = !(e instanceof ResourceNotFoundException) && job.getAttempts() < maxAttempts;
+        if (retriable) {
+            long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(job.getAttempts() - 1, 20));
+            if (!finishInOwnTransaction(job, claimToken, InvoiceJobStatus.PENDING, error,
+                    LocalDateTime.now().plusNanos(backoff * 1_000_000))) {
+                lostClaim(job);
+                return;
+            }
+            meterRegistry.counter("invoices.jobs.retried").increment();
+            log.warn("Invoice job {} for order {} failed (attempt {}), retrying in {} ms",
+                    job.getJobId(), job.getOrderId(), job.getAttempts(), backoff, e);
+        } else {
+            if (!finishInOwnTransaction(job, claimToken, InvoiceJobStatus.FAILED, error, null)) {
+                lostClaim(job);
+                return;
+            }
+            meterRegistry.counter("invoices.jobs.failed").increment();
+            log.error("Invoice job {} for order {} failed permanently after {} attempts",
+                    job.getJobId(), job.getOrderId(), job.getAttempts(), e);
+        }
+    }
+
+    /**
+     * Record the run's outcome, fenced by the claim token; must run inside a transaction
+     *
+     * @return false when the job was requeued and claimed again since this worker claimed it
+     */
+    private boolean finish(InvoiceJob job, String claimToken, InvoiceJobStatus status, String error,
+                           LocalDateTime nextAttemptAt) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime completedAt = status == InvoiceJobStatus.SENT || status == InvoiceJobStatus.FAILED ? now : null;
+        return invoiceJobRepository.complete(job.getJobId(), claimToken, status, error, nextAttemptAt,
+                completedAt, now) == 1;
+    }
+
+    private boolean finishInOwnTransaction(InvoiceJob job, String claimToken, InvoiceJobStatus status, String error,
+                                           LocalDateTime nextAttemptAt) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(tx ->
+                finish(job, claimToken, status, error, nextAttemptAt)));
+    }
+
+    private void lostClaim(InvoiceJob job) {
+        meterRegistry.counter("invoices.jobs.claim_lost").increment();
+        log.warn("Invoice job {} for order {} was requeued as stale and claimed again; discarding this run",
+                job.getJobId(), job.getOrderId());
+    }
+}
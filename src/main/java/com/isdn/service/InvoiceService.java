@@ -3,30 +3,60 @@ package com.isdn.service;
 import com.isdn.config.InvoiceConfig;
 import com.isdn.model.Order;
 import com.isdn.model.OrderItem;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.User;
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
 import com.itextpdf.io.font.constants.StandardFonts;
 import com.itextpdf.kernel.colors.ColorConstants;
 import com.itextpdf.kernel.colors.DeviceRgb;
 import com.itextpdf.kernel.font.PdfFont;
 import com.itextpdf.kernel.font.PdfFontFactory;
 import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDate;
 import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfString;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
+import com.itextpdf.layout.Canvas;
 import com.itextpdf.layout.Document;
 import com.itextpdf.layout.borders.Border;
 import com.itextpdf.layout.borders.SolidBorder;
 import com.itextpdf.layout.element.Cell;
+import com.itextpdf.layout.element.Div;
+import com.itextpdf.layout.element.Image;
 import com.itextpdf.layout.element.Paragraph;
 import com.itextpdf.layout.element.Table;
 import com.itextpdf.layout.properties.HorizontalAlignment;
 import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
@@ -34,45 +64,74 @@ import java.time.format.DateTimeFormatter;
 public class InvoiceService {
 
     private final InvoiceConfig invoiceConfig;
+    private final MeterRegistry meterRegistry;
+
+    private static final float PAGE_MARGIN = 40;
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    private static final int LETTERHEAD_HEADER_PAGE = 1;
+    private static final int LETTERHEAD_FOOTER_PAGE = 2;
+
+    // Parsed once; a PdfFont belongs to one document, but creating it from a loaded program is cheap
+    private static final FontProgram HELVETICA = loadFont(StandardFonts.HELVETICA);
+    private static final FontProgram HELVETICA_BOLD = loadFont(StandardFonts.HELVETICA_BOLD);
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd MMM yyyy HH:mm");
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("MMMM yyyy");
 
     private static final DeviceRgb PRIMARY_COLOR = new DeviceRgb(41, 128, 185);
     private static final DeviceRgb HEADER_BG_COLOR = new DeviceRgb(52, 73, 94);
     private static final DeviceRgb LIGHT_GRAY = new DeviceRgb(245, 245, 245);
 
+    private volatile byte[] letterhead;
+
     /**
      * Generate PDF invoice from Order
      */
     public byte[] generateInvoice(Order order) {
         log.info("Generating invoice for order: {}", order.getOrderNumber());
-
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            PdfWriter writer = new PdfWriter(baos);
+        long started = System.nanoTime();
+
+        byte[] letterhead = letterhead();
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE)) {
+            // Object streams and a compressed xref table on top of the compressed content streams.
+            // The file ID and dates come from the order version, not the clock, so rendering an
+            // unchanged order gives the same bytes and the archive can store it once.
+            PdfString documentId = documentId(order);
+            PdfWriter writer = new PdfWriter(baos, new WriterProperties()
+                    .setFullCompressionMode(true)
+                    .setInitialDocumentId(documentId)
+                    .setModifiedDocumentId(documentId));
             PdfDocument pdf = new PdfDocument(writer);
+            setDocumentDates(pdf, order.getUpdatedAt() != null ? order.getUpdatedAt() : order.getOrderDate());
             Document document = new Document(pdf, PageSize.A4);
-            document.setMargins(40, 40, 40, 40);
+            document.setMargins(PAGE_MARGIN, PAGE_MARGIN, PAGE_MARGIN, PAGE_MARGIN);
 
-            PdfFont boldFont = PdfFontFactory.createFont(StandardFonts.HELVETICA_BOLD);
-            PdfFont regularFont = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+            PdfFont boldFont = PdfFontFactory.createFont(HELVETICA_BOLD, PdfEncodings.WINANSI);
+            PdfFont regularFont = PdfFontFactory.createFont(HELVETICA, PdfEncodings.WINANSI);
 
-            // Header Section
-            addHeader(document, boldFont, regularFont);
+            try (PdfDocument template = new PdfDocument(new PdfReader(new ByteArrayInputStream(letterhead)))) {
+                // Header Section
+                document.add(new Image(template.getPage(LETTERHEAD_HEADER_PAGE).copyAsFormXObject(pdf)));
+                addTitle(document, "INVOICE", boldFont);
 
-            // Invoice Info Section
-            addInvoiceInfo(document, order, boldFont, regularFont);
+                // Invoice Info Section
+                addInvoiceInfo(document, order, boldFont, regularFont);
 
-            // Customer Info Section
-            addCustomerInfo(document, order, boldFont, regularFont);
+                // Customer Info Section
+                addCustomerInfo(document, order, boldFont, regularFont);
 
-            // Order Items Table
-            addItemsTable(document, order, boldFont, regularFont);
+                // Order Items Table
+                addItemsTable(document, order, boldFont, regularFont);
 
-            // Totals Section
-            addTotals(document, order, boldFont, regularFont);
+                // Totals Section
+                addTotals(document, order, boldFont, regularFont);
 
-            // Footer Section
-            addFooter(document, regularFont);
+                // Footer Section
+                document.add(new Image(template.getPage(LETTERHEAD_FOOTER_PAGE).copyAsFormXObject(pdf)));
+            }
 
             document.close();
+            meterRegistry.timer("invoices.render").record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
             log.info("Invoice generated successfully for order: {}", order.getOrderNumber());
             return baos.toByteArray();
 
@@ -82,14 +141,111 @@ public class InvoiceService {
         }
     }
 
-    private void addHeader(Document document, PdfFont boldFont, PdfFont regularFont) {
+    /**
+     * Write a customer's monthly statement to the stream: a summary of every order placed
+     * in the month, followed by the pages of each given invoice file. Invoices are copied
+     * in one at a time and flushed, so only one source document is open at once.
+     */
+    public void writeStatement(User customer, YearMonth month, List<Order> orders, List<Path> invoices,
+                               OutputStream out) {
+        log.info("Generating {} statement for user: {} ({} orders)", month, customer.getUsername(), orders.size());
+
+        byte[] letterhead = letterhead();
+        try {
+            PdfWriter writer = new PdfWriter(out, new WriterProperties().setFullCompressionMode(true));
+            // The caller owns the stream
+            writer.setCloseStream(false);
+            PdfDocument pdf = new PdfDocument(writer);
+            Document document = new Document(pdf, PageSize.A4);
+            document.setMargins(PAGE_MARGIN, PAGE_MARGIN, PAGE_MARGIN, PAGE_MARGIN);
+
+            PdfFont boldFont = PdfFontFactory.createFont(HELVETICA_BOLD, PdfEncodings.WINANSI);
+            PdfFont regularFont = PdfFontFactory.createFont(HELVETICA, PdfEncodings.WINANSI);
+
+            try (PdfDocument template = new PdfDocument(new PdfReader(new ByteArrayInputStream(letterhead)))) {
+                document.add(new Image(template.getPage(LETTERHEAD_HEADER_PAGE).copyAsFormXObject(pdf)));
+                addTitle(document, "STATEMENT", boldFont);
+                addStatementInfo(document, customer, month, orders.size(), boldFont, regularFont);
+                addStatementTable(document, orders, boldFont, regularFont);
+                document.add(new Image(template.getPage(LETTERHEAD_FOOTER_PAGE).copyAsFormXObject(pdf)));
+            }
+
+            for (Path invoice : invoices) {
+                try (PdfDocument source = new PdfDocument(new PdfReader(invoice.toFile()))) {
+                    source.copyPagesTo(1, source.getNumberOfPages(), pdf);
+                    pdf.flushCopiedObjects(source);
+                }
+            }
+
+            document.close();
+        } catch (Exception e) {
+            log.error("Failed to generate {} statement for user: {}", month, customer.getUsername(), e);
+            throw new RuntimeException("Failed to generate statement", e);
+        }
+    }
+
+    /**
+     * The company header and footer, laid out once into a two-page PDF whose pages are
+     * sized to their content. Each invoice copies them in as form XObjects.
+     */
+    private byte[] letterhead() {
+        byte[] current = letterhead;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (letterhead == null) {
+                letterhead = buildLetterhead();
+            }
+            return letterhead;
+        }
+    }
+
+    private byte[] buildLetterhead() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (PdfDocument pdf = new PdfDocument(new PdfWriter(baos))) {
+            PdfFont boldFont = PdfFontFactory.createFont(HELVETICA_BOLD, PdfEncodings.WINANSI);
+            PdfFont regularFont = PdfFontFactory.createFont(HELVETICA, PdfEncodings.WINANSI);
+
+            Div header = new Div();
+            addHeader(header, boldFont, regularFont);
+            addLetterheadPage(pdf, header);
+
+            Div footer = new Div();
+            addFooter(footer, regularFont);
+            addLetterheadPage(pdf, footer);
+        }
+        log.info("Invoice letterhead built ({} bytes)", baos.size());
+        return baos.toByteArray();
+    }
+
+    private void addLetterheadPage(PdfDocument pdf, Div content) {
+        float width = PageSize.A4.getWidth() - 2 * PAGE_MARGIN;
+
+        // Lay out once on a full-height scratch page to learn the height, then again on a page cut to fit,
+        // so the XObject copied from it is exactly the content with its origin at zero
+        PdfPage scratch = pdf.addNewPage(new PageSize(width, PageSize.A4.getHeight()));
+        Canvas measuring = new Canvas(scratch, scratch.getPageSize());
+        measuring.add(content);
+        float height = (float) Math.ceil(PageSize.A4.getHeight()
+                - measuring.getRenderer().getCurrentArea().getBBox().getHeight());
+        measuring.close();
+        pdf.removePage(scratch);
+
+        PdfPage page = pdf.addNewPage(new PageSize(width, height));
+        Canvas canvas = new Canvas(page, page.getPageSize());
+        canvas.add(content);
+        canvas.close();
+    }
+
+    private void addHeader(Div header, PdfFont boldFont, PdfFont regularFont) {
         // Company Name
         Paragraph companyName = new Paragraph(invoiceConfig.getCompanyName())
                 .setFont(boldFont)
                 .setFontSize(24)
                 .setFontColor(PRIMARY_COLOR)
                 .setMarginBottom(5);
-        document.add(companyName);
+        header.add(companyName);
 
         // Company Details
         Paragraph companyDetails = new Paragraph()
@@ -100,10 +256,11 @@ public class InvoiceService {
                 .add("Phone: " + invoiceConfig.getCompanyPhone() + "\n")
                 .add("Email: " + invoiceConfig.getCompanyEmail())
                 .setMarginBottom(20);
-        document.add(companyDetails);
+        header.add(companyDetails);
+    }
 
-        // Invoice Title
-        Paragraph invoiceTitle = new Paragraph("INVOICE")
+    private void addTitle(Document document, String title, PdfFont boldFont) {
+        Paragraph invoiceTitle = new Paragraph(title)
                 .setFont(boldFont)
                 .setFontSize(28)
                 .setFontColor(HEADER_BG_COLOR)
@@ -126,14 +283,11 @@ public class InvoiceService {
                 .add(new Paragraph(order.getOrderNumber()).setFont(regularFont).setFontSize(10));
 
         // Right column - Date details
-        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd MMM yyyy");
-        DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("dd MMM yyyy HH:mm");
-
         Cell rightCell = new Cell()
                 .setBorder(Border.NO_BORDER)
                 .setTextAlignment(TextAlignment.RIGHT)
                 .add(new Paragraph("Invoice Date:").setFont(boldFont).setFontSize(10))
-                .add(new Paragraph(order.getOrderDate().format(dateTimeFormatter)).setFont(regularFont).setFontSize(10))
+                .add(new Paragraph(order.getOrderDate().format(DATE_TIME_FORMATTER)).setFont(regularFont).setFontSize(10))
                 .add(new Paragraph("Payment Method:").setFont(boldFont).setFontSize(10).setMarginTop(5))
                 .add(new Paragraph(order.getPaymentMethod().name().replace("_", " ")).setFont(regularFont).setFontSize(10));
 
@@ -217,6 +371,90 @@ public class InvoiceService {
         document.add(itemsTable);
     }
 
+    private void addStatementInfo(Document document, User customer, YearMonth month, int orderCount,
+                                  PdfFont boldFont, PdfFont regularFont) {
+        Table infoTable = new Table(UnitValue.createPercentArray(new float[]{1, 1}))
+                .setWidth(UnitValue.createPercentValue(100))
+                .setMarginBottom(20);
+
+        Cell leftCell = new Cell()
+                .setBorder(Border.NO_BORDER)
+                .setBackgroundColor(LIGHT_GRAY)
+                .setPadding(10)
+                .add(new Paragraph("STATEMENT FOR:").setFont(boldFont).setFontSize(10).setFontColor(PRIMARY_COLOR))
+                .add(new Paragraph(customer.getBusinessName() != null ?
+                        customer.getBusinessName() : customer.getUsername())
+                        .setFont(boldFont).setFontSize(11))
+                .add(new Paragraph(customer.getEmail()).setFont(regularFont).setFontSize(10));
+
+        Cell rightCell = new Cell()
+                .setBorder(Border.NO_BORDER)
+                .setTextAlignment(TextAlignment.RIGHT)
+                .add(new Paragraph("Statement Period:").setFont(boldFont).setFontSize(10))
+                .add(new Paragraph(month.format(MONTH_FORMATTER)).setFont(regularFont).setFontSize(10))
+                .add(new Paragraph("Orders:").setFont(boldFont).setFontSize(10).setMarginTop(5))
+                .add(new Paragraph(String.valueOf(orderCount)).setFont(regularFont).setFontSize(10));
+
+        infoTable.addCell(leftCell);
+        infoTable.addCell(rightCell);
+        document.add(infoTable);
+    }
+
+    private void addStatementTable(Document document, List<Order> orders, PdfFont boldFont, PdfFont regularFont) {
+        Table ordersTable = new Table(UnitValue.createPercentArray(new float[]{0.5f, 2, 2, 1.5f, 1.5f}))
+                .setWidth(UnitValue.createPercentValue(100))
+                .setMarginBottom(20);
+
+        String[] headers = {"#", "Order Number", "Order Date", "Status", "Amount"};
+        for (String header : headers) {
+            Cell headerCell = new Cell()
+                    .setBackgroundColor(HEADER_BG_COLOR)
+                    .setPadding(8)
+                    .add(new Paragraph(header).setFont(boldFont).setFontSize(10).setFontColor(ColorConstants.WHITE));
+            if (header.equals("Amount")) {
+                headerCell.setTextAlignment(TextAlignment.RIGHT);
+            }
+            ordersTable.addHeaderCell(headerCell);
+        }
+
+        BigDecimal total = BigDecimal.ZERO;
+        int rowNumber = 1;
+        for (Order order : orders) {
+            boolean isEvenRow = rowNumber % 2 == 0;
+            ordersTable.addCell(createItemCell(String.valueOf(rowNumber), regularFont, isEvenRow, TextAlignment.LEFT));
+            ordersTable.addCell(createItemCell(order.getOrderNumber(), regularFont, isEvenRow, TextAlignment.LEFT));
+            ordersTable.addCell(createItemCell(order.getOrderDate().format(DATE_TIME_FORMATTER),
+                    regularFont, isEvenRow, TextAlignment.LEFT));
+            ordersTable.addCell(createItemCell(order.getStatus().getDisplayName(), regularFont, isEvenRow, TextAlignment.LEFT));
+            ordersTable.addCell(createItemCell(formatCurrency(order.getTotalAmount()), regularFont, isEvenRow, TextAlignment.RIGHT));
+
+            // Cancelled orders are listed but not billed
+            if (order.getStatus() != OrderStatus.CANCELLED) {
+                total = total.add(order.getTotalAmount());
+            }
+            rowNumber++;
+        }
+        document.add(ordersTable);
+
+        Table totalsTable = new Table(UnitValue.createPercentArray(new float[]{3, 1.5f}))
+                .setWidth(UnitValue.createPercentValue(40))
+                .setHorizontalAlignment(HorizontalAlignment.RIGHT)
+                .setMarginBottom(30);
+        totalsTable.addCell(new Cell()
+                .setBorder(Border.NO_BORDER)
+                .setBackgroundColor(PRIMARY_COLOR)
+                .setPadding(8)
+                .add(new Paragraph("TOTAL:").setFont(boldFont).setFontSize(12).setFontColor(ColorConstants.WHITE)));
+        totalsTable.addCell(new Cell()
+                .setBorder(Border.NO_BORDER)
+                .setBackgroundColor(PRIMARY_COLOR)
+                .setPadding(8)
+                .setTextAlignment(TextAlignment.RIGHT)
+                .add(new Paragraph(formatCurrency(total))
+                        .setFont(boldFont).setFontSize(12).setFontColor(ColorConstants.WHITE)));
+        document.add(totalsTable);
+    }
+
     private Cell createItemCell(String text, PdfFont font, boolean isEvenRow, TextAlignment alignment) {
         Cell cell = new Cell()
                 .setPadding(8)
@@ -278,7 +516,7 @@ public class InvoiceService {
                 .add(new Paragraph(text).setFont(font).setFontSize(10));
     }
 
-    private void addFooter(Document document, PdfFont regularFont) {
+    private void addFooter(Div footer, PdfFont regularFont) {
         // Notes section if present
         Paragraph thankYou = new Paragraph("Thank you for your business!")
                 .setFont(regularFont)
@@ -286,10 +524,9 @@ public class InvoiceService {
                 .setFontColor(PRIMARY_COLOR)
                 .setTextAlignment(TextAlignment.CENTER)
                 .setMarginTop(20);
-        document.add(thankYou);
+        footer.add(thankYou);
 
-        // Footer
-        Paragraph footer = new Paragraph()
+        Paragraph notice = new Paragraph()
                 .setFont(regularFont)
                 .setFontSize(9)
                 .setFontColor(ColorConstants.GRAY)
@@ -297,10 +534,38 @@ public class InvoiceService {
                 .setMarginTop(30)
                 .add("This is a computer-generated invoice. No signature required.\n")
                 .add("For any queries, please contact us at " + invoiceConfig.getCompanyEmail());
-        document.add(footer);
+        footer.add(notice);
     }
 
     private String formatCurrency(BigDecimal amount) {
-        return String.format("LKR %.2f", amount);
+        return "LKR " + amount.setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    private static PdfString documentId(Order order) {
+        UUID id = UUID.nameUUIDFromBytes((order.getOrderNumber() + '|' + order.getUpdatedAt())
+                .getBytes(StandardCharsets.UTF_8));
+        byte[] bytes = ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+        return new PdfString(bytes).setHexWriting(true);
+    }
+
+    private static void setDocumentDates(PdfDocument pdf, LocalDateTime time) {
+        if (time == null) {
+            return;
+        }
+        PdfDate pdfDate = new PdfDate(GregorianCalendar.from(time.atZone(ZoneId.systemDefault())));
+        String date = pdfDate.getPdfObject().getValue();
+        pdf.getDocumentInfo().setMoreInfo(PdfName.CreationDate.getValue(), date);
+        pdf.getDocumentInfo().setMoreInfo(PdfName.ModDate.getValue(), date);
+    }
+
+    private static FontProgram loadFont(String name) {
+        try {
+            return FontProgramFactory.createFont(name);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load font " + name, e);
+        }
     }
 }
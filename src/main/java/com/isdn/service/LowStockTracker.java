@@ -0,0 +1,305 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.InventoryResponse;
+import com.isdn.dto.response.LowStockEvent;
+import com.isdn.repository.InventoryRepository;
+import com.isdn.repository.InventoryRepositoryCustom.ReorderPoint;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Which inventory rows are at or below their reorder level, per RDC. The stock ledger
+ * reports every committed change here, so a threshold crossing is noticed as it happens
+ * and pushed to Server-Sent Events subscribers; the low-stock screen is then a lookup.
+ */
+@Service
+@Slf4j
+public class LowStockTracker {
+
+    private final InventoryRepository inventoryRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<RowKey, TrackedRow> rows = new ConcurrentHashMap<>();
+    private final Map<Long, Set<TrackedRow>> lowByRdc = new ConcurrentHashMap<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    // Events are sent off the committing thread so a slow client never holds up a commit
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "low-stock-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean heartbeatQueued = new AtomicBoolean();
+
+    private volatile boolean loaded;
+
+    @Value("${inventory.low-stock.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMillis;
+
+    public LowStockTracker(InventoryRepository inventoryRepository, MeterRegistry meterRegistry) {
+        this.inventoryRepository = inventoryRepository;
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("inventory.low_stock.subscribers", subscribers, List::size);
+    }
+
+    /**
+     * Build the low-stock sets from current quantities. Called by the stock ledger once it has loaded.
+     */
+    public void load(ToIntBiFunction<Long, Long> quantities) {
+        List<ReorderPoint> points = inventoryRepository.findAllReorderPoints();
+        rows.clear();
+        lowByRdc.clear();
+        for (ReorderPoint point : points) {
+            TrackedRow row = new TrackedRow(point);
+            rows.put(new RowKey(point.productId(), point.rdcId()), row);
+            synchronized (row) {
+                row.quantity = quantities.applyAsInt(point.productId(), point.rdcId());
+                row.low = row.quantity <= row.reorderLevel;
+                if (row.low) {
+                    lowSet(row.rdcId).add(row);
+                }
+            }
+        }
+        loaded = true;
+        log.info("Low-stock tracker loaded: {} of {} inventory rows at or below reorder level",
+                lowByRdc.values().stream().mapToInt(Set::size).sum(), points.size());
+    }
+
+    /**
+     * Re-evaluate one row after its stock changed. The quantity is read inside the row's
+     * lock, so however committed changes interleave the row settles on the latest figure.
+     */
+    public void refresh(long productId, long rdcId, ToIntBiFunction<Long, Long> quantities) {
+        if (!loaded) {
+            return;
+        }
+        TrackedRow row = rows.get(new RowKey(productId, rdcId));
+        if (row == null) {
+            row = track(productId, rdcId);
+            if (row == null) {
+                return;
+            }
+        }
+
+        LowStockEvent event = null;
+        synchronized (row) {
+            row.quantity = quantities.applyAsInt(productId, rdcId);
+            row.lastUpdated = LocalDateTime.now();
+            boolean low = row.quantity <= row.reorderLevel;
+            if (low != row.low) {
+                row.low = low;
+                if (low) {
+                    lowSet(rdcId).add(row);
+                } else {
+                    lowSet(rdcId).remove(row);
+                }
+                event = LowStockEvent.builder()
+                        .crossing(low ? LowStockEvent.Crossing.BECAME_LOW : LowStockEvent.Crossing.RECOVERED)
+                        .item(row.toResponse())
+                        .occurredAt(row.lastUpdated)
+                        .build();
+            }
+        }
+
+        if (event != null) {
+            meterRegistry.counter("inventory.low_stock.crossings", "crossing", event.getCrossing().name()).increment();
+            LowStockEvent crossing = event;
+            publisher.execute(() -> publish(crossing));
+        }
+    }
+
+    /**
+     * Re-read reorder levels and re-evaluate every row. Called on each ledger reconcile, so
+     * levels edited since load take effect and rows deleted since load are dropped.
+     */
+    public void refreshAll(ToIntBiFunction<Long, Long> quantities) {
+        if (!loaded) {
+            return;
+        }
+        Set<RowKey> current = new HashSet<>();
+        for (ReorderPoint point : inventoryRepository.findAllReorderPoints()) {
+            RowKey key = new RowKey(point.productId(), point.rdcId());
+            current.add(key);
+            TrackedRow row = rows.computeIfAbsent(key, k -> new TrackedRow(point));
+            synchronized (row) {
+                row.reorderLevel = point.reorderLevel();
+            }
+            refresh(point.productId(), point.rdcId(), quantities);
+        }
+        rows.entrySet().removeIf(entry -> {
+            if (current.contains(entry.getKey())) {
+                return false;
+            }
+            lowSet(entry.getValue().rdcId).remove(entry.getValue());
+            return true;
+        });
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Rows of an RDC at or below their reorder level, by product name
+     */
+    public List<InventoryResponse> getLowStock(Long rdcId) {
+        List<InventoryResponse> items = new ArrayList<>();
+        for (TrackedRow row : lowByRdc.getOrDefault(rdcId, Set.of())) {
+            synchronized (row) {
+                if (row.low) {
+                    items.add(row.toResponse());
+                }
+            }
+        }
+        items.sort(Comparator.comparing(InventoryResponse::getProductName, Comparator.nullsLast(String::compareTo)));
+        return items;
+    }
+
+    /**
+     * Subscribe to threshold crossings, for one RDC or (rdcId null) all of them
+     */
+    public SseEmitter subscribe(Long rdcId) {
+        return subscribe(rdcId, new SseEmitter(emitterTimeoutMillis));
+    }
+
+    SseEmitter subscribe(Long rdcId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(rdcId, emitter);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        log.info("Low-stock subscriber added for RDC {} ({} open)", rdcId != null ? rdcId : "all", subscribers.size());
+        return emitter;
+    }
+
+    /**
+     * Keep idle connections open through proxies and drop the ones that went away. Sent on
+     * the publisher thread, so a stalled client never holds up the shared scheduler.
+     */
+    @Scheduled(fixedDelayString = "${inventory.low-stock.heartbeat-ms:30000}")
+    public void heartbeat() {
+        // At most one heartbeat queued at a time, however long the publisher is behind
+        if (subscribers.isEmpty() || !heartbeatQueued.compareAndSet(false, true)) {
+            return;
+        }
+        publisher.execute(() -> {
+            heartbeatQueued.set(false);
+            sendHeartbeats();
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        publisher.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter().complete();
+        }
+    }
+
+    private void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.emitter().send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    private TrackedRow track(long productId, long rdcId) {
+        // A row created after load, e.g. by a transfer to a new RDC
+        return inventoryRepository.findReorderPoint(productId, rdcId)
+                .map(point -> rows.computeIfAbsent(new RowKey(productId, rdcId), key -> new TrackedRow(point)))
+                .orElse(null);
+    }
+
+    private Set<TrackedRow> lowSet(Long rdcId) {
+        return lowByRdc.computeIfAbsent(rdcId, id -> ConcurrentHashMap.newKeySet());
+    }
+
+    private void publish(LowStockEvent event) {
+        Long rdcId = event.getItem().getRdcId();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.rdcId() != null && !subscriber.rdcId().equals(rdcId)) {
+                continue;
+            }
+            try {
+                subscriber.emitter().send(SseEmitter.event()
+                        .name("low-stock")
+                        .data(event));
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    private record RowKey(long productId, long rdcId) {
+    }
+
+    private record Subscriber(Long rdcId, SseEmitter emitter) {
+    }
+
+    /**
+     * One inventory row; mutable fields are guarded by the row's monitor
+     */
+    private static final class TrackedRow {
+
+        private final Long inventoryId;
+        private final Long productId;
+        private final Long rdcId;
+        private final String productName;
+        private final String productSku;
+        private final String rdcName;
+        private int reorderLevel;
+        private int quantity;
+        private boolean low;
+        private LocalDateTime lastUpdated;
+
+        private TrackedRow(ReorderPoint point) {
+            this.inventoryId = point.inventoryId();
+            this.productId = point.productId();
+            this.rdcId = point.rdcId();
+            this.productName = point.productName();
+            this.productSku = point.productSku();
+            this.rdcName = point.rdcName();
+            this.reorderLevel = point.reorderLevel();
+            this.lastUpdated = point.lastUpdated();
+        }
+
+        private InventoryResponse toResponse() {
+            return InventoryResponse.builder()
+                    .inventoryId(inventoryId)
+                    .productId(productId)
+                    .productName(productName)
+                    .productSku(productSku)
+                    .rdcId(rdcId)
+                    .rdcName(rdcName)
+                    .quantityOnHand(quantity)
+                    .reorderLevel(reorderLevel)
+                    .status(quantity == 0 ? "OUT_OF_STOCK" : low ? "LOW_STOCK" : "OK")
+                    .lastUpdated(lastUpdated)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.isdn.service;
+
+import com.isdn.model.CustomerOrderSummary;
+import com.isdn.model.OrderEvent;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.RdcOrderStatusCount;
+import com.isdn.repository.CustomerOrderSummaryRepository;
+import com.isdn.repository.CustomerOrderSummaryRepositoryCustom.SummaryDelta;
+import com.isdn.repository.RdcOrderStatusCountRepository;
+import com.isdn.repository.RdcOrderStatusCountRepositoryCustom.StatusCountDelta;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains {@link RdcOrderStatusCount} and {@link CustomerOrderSummary}. Each batch is
+ * folded into per-key deltas and applied with one batched upsert per table.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderDashboardProjection implements OrderEventProjection {
+
+    public static final String NAME = "order-dashboards";
+
+    private final RdcOrderStatusCountRepository rdcOrderStatusCountRepository;
+    private final CustomerOrderSummaryRepository customerOrderSummaryRepository;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void apply(List<OrderEvent> events) {
+        Map<CountKey, Long> countDeltas = new HashMap<>();
+        Map<Long, SummaryAccumulator> summaryDeltas = new HashMap<>();
+        for (OrderEvent event : events) {
+            long rdcId = event.getRdcId() != null ? event.getRdcId() : RdcOrderStatusCount.UNASSIGNED_RDC;
+            if (event.getFromStatus() != null) {
+                countDeltas.merge(new CountKey(rdcId, event.getFromStatus()), -1L, Long::sum);
+            }
+            countDeltas.merge(new CountKey(rdcId, event.getToStatus()), 1L, Long::sum);
+            summaryDeltas.computeIfAbsent(event.getUserId(), id -> new SummaryAccumulator()).add(event);
+        }
+
+        List<StatusCountDelta> counts = new ArrayList<>(countDeltas.size());
+        countDeltas.forEach((key, delta) -> {
+            if (delta != 0) {
+                counts.add(new StatusCountDelta(key.rdcId(), key.status(), delta));
+            }
+        });
+        List<SummaryDelta> summaries = new ArrayList<>(summaryDeltas.size());
+        summaryDeltas.forEach((userId, summary) -> summaries.add(summary.toDelta(userId)));
+
+        rdcOrderStatusCountRepository.applyDeltas(counts);
+        customerOrderSummaryRepository.applyDeltas(summaries);
+    }
+
+    @Override
+    public void reset() {
+        rdcOrderStatusCountRepository.deleteAllInBatch();
+        customerOrderSummaryRepository.deleteAllInBatch();
+    }
+
+    private record CountKey(long rdcId, OrderStatus status) {
+    }
+
+    /**
+     * Net change to one customer's summary over a batch
+     */
+    private static final class SummaryAccumulator {
+
+        private long orders;
+        private long openOrders;
+        private long deliveredOrders;
+        private long cancelledOrders;
+        private BigDecimal spent = BigDecimal.ZERO;
+        private LocalDateTime lastOrderAt;
+
+        void add(OrderEvent event) {
+            OrderStatus from = event.getFromStatus();
+            OrderStatus to = event.getToStatus();
+            if (from == null) {
+                orders++;
+                if (lastOrderAt == null || event.getOccurredAt().isAfter(lastOrderAt)) {
+                    lastOrderAt = event.getOccurredAt();
+                }
+            }
+            openOrders += open(to) - open(from);
+            deliveredOrders += is(to, OrderStatus.DELIVERED) - is(from, OrderStatus.DELIVERED);
+            cancelledOrders += is(to, OrderStatus.CANCELLED) - is(from, OrderStatus.CANCELLED);
+
+            // Cancelled orders do not count towards spend
+            int spendChange = notCancelled(to) - notCancelled(from);
+            if (spendChange != 0) {
+                spent = spent.add(event.getTotalAmount().multiply(BigDecimal.valueOf(spendChange)));
+            }
+        }
+
+        SummaryDelta toDelta(long userId) {
+            return new SummaryDelta(userId, orders, openOrders, deliveredOrders, cancelledOrders, spent, lastOrderAt);
+        }
+
+        private static int is(OrderStatus status, OrderStatus expected) {
+            return status == expected ? 1 : 0;
+        }
+
+        private static int open(OrderStatus status) {
+            return status != null && status != OrderStatus.DELIVERED && status != OrderStatus.CANCELLED ? 1 : 0;
+        }
+
+        private static int notCancelled(OrderStatus status) {
+            return status != null && status != OrderStatus.CANCELLED ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.isdn.service;
+
+import com.isdn.model.OrderEvent;
+
+import java.util.List;
+
+/**
+ * A read model built from the order event log. {@link OrderProjectionService} feeds each
+ * projection batches of events past its own checkpoint, inside the transaction that
+ * advances that checkpoint. Batches may also be applied concurrently and out of order
+ * during a rebuild, so applying a batch must only add deltas.
+ */
+public interface OrderEventProjection {
+
+    /**
+     * Checkpoint name, unique per projection
+     */
+    String name();
+
+    /**
+     * Fold a batch of events into the read model
+     */
+    void apply(List<OrderEvent> events);
+
+    /**
+     * Empty the read model ahead of a rebuild
+     */
+    void reset();
+}
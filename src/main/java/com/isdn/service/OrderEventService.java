@@ -0,0 +1,77 @@
+package com.isdn.service;
+
+import com.isdn.model.Order;
+import com.isdn.model.OrderEvent;
+import com.isdn.model.OrderStatus;
+import com.isdn.repository.OrderEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Appends order lifecycle events. Callers record an event wherever they change an
+ * order's status; the event is written in the caller's transaction, so it exists
+ * exactly when the change does.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderEventService {
+
+    private final OrderEventRepository orderEventRepository;
+
+    /**
+     * Record newly saved orders as placed
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordPlaced(Collection<Order> orders) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderEvent> events = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            events.add(event(order, null, now));
+        }
+        orderEventRepository.appendAll(events);
+    }
+
+    /**
+     * Record an order moving from one status to its current one (no event if it did not move)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordStatusChange(Order order, OrderStatus fromStatus) {
+        if (order.getStatus() != fromStatus) {
+            orderEventRepository.appendAll(List.of(event(order, fromStatus, LocalDateTime.now())));
+        }
+    }
+
+    /**
+     * Record several orders that all moved from the same status
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordStatusChanges(Collection<Order> orders, OrderStatus fromStatus) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderEvent> events = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            if (order.getStatus() != fromStatus) {
+                events.add(event(order, fromStatus, now));
+            }
+        }
+        orderEventRepository.appendAll(events);
+    }
+
+    private OrderEvent event(Order order, OrderStatus fromStatus, LocalDateTime occurredAt) {
+        return OrderEvent.builder()
+                .orderId(order.getOrderId())
+                .userId(order.getUser().getUserId())
+                .rdcId(order.getRdc() != null ? order.getRdc().getRdcId() : null)
+                .fromStatus(fromStatus)
+                .toStatus(order.getStatus())
+                .totalAmount(order.getTotalAmount())
+                .occurredAt(occurredAt)
+                .build();
+    }
+}
@@ -0,0 +1,130 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.OrderExportRow;
+import com.isdn.exception.BadRequestException;
+import com.isdn.model.OrderStatus;
+import com.isdn.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Writes order history straight from a streaming query to the response,
+ * one row at a time, so an export of any size runs in constant memory.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderExportService {
+
+    private static final String CSV_HEADER = "order_id,order_number,order_date,status,customer_username," +
+            "customer_business_name,rdc_name,payment_method,total_amount,item_count," +
+            "estimated_delivery_date,actual_delivery_date";
+
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private final OrderRepository orderRepository;
+    private final JsonMapper jsonMapper;
+
+    public enum Format {
+        CSV, JSONL
+    }
+
+    public Format resolveFormat(String format) {
+        if (format == null || format.isBlank()) {
+            return Format.CSV;
+        }
+        try {
+            return Format.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unsupported export format. Use CSV or JSONL");
+        }
+    }
+
+    /**
+     * Stream matching orders to the output. The date range is inclusive of both days.
+     */
+    @Transactional(readOnly = true)
+    public void exportOrders(LocalDate from, LocalDate to, OrderStatus status, Long rdcId,
+                             Format format, OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        long rows = 0;
+        try (Stream<OrderExportRow> stream = orderRepository.streamExportRows(
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay() : null,
+                status, rdcId)) {
+            var iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                OrderExportRow row = iterator.next();
+                if (format == Format.CSV) {
+                    writeCsv(writer, row);
+                } else {
+                    writer.write(jsonMapper.writeValueAsString(row));
+                }
+                writer.write('\n');
+                if (++rows % FLUSH_EVERY_ROWS == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+        log.info("Exported {} orders as {}", rows, format);
+    }
+
+    private void writeCsv(Writer writer, OrderExportRow row) throws IOException {
+        writer.write(String.valueOf(row.getOrderId()));
+        writer.write(',');
+        writer.write(csv(row.getOrderNumber()));
+        writer.write(',');
+        writer.write(csv(row.getOrderDate()));
+        writer.write(',');
+        writer.write(csv(row.getStatus()));
+        writer.write(',');
+        writer.write(csv(row.getCustomerUsername()));
+        writer.write(',');
+        writer.write(csv(row.getCustomerBusinessName()));
+        writer.write(',');
+        writer.write(csv(row.getRdcName()));
+        writer.write(',');
+        writer.write(csv(row.getPaymentMethod()));
+        writer.write(',');
+        writer.write(row.getTotalAmount() != null ? row.getTotalAmount().toPlainString() : "");
+        writer.write(',');
+        writer.write(csv(row.getItemCount()));
+        writer.write(',');
+        writer.write(csv(row.getEstimatedDeliveryDate()));
+        writer.write(',');
+        writer.write(csv(row.getActualDeliveryDate()));
+    }
+
+    /**
+     * Quote a CSV field when it contains a separator, quote or line break
+     */
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
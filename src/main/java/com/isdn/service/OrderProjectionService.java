@@ -0,0 +1,401 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.ProjectionStatusResponse;
+import com.isdn.exception.BadRequestException;
+import com.isdn.exception.ResourceNotFoundException;
+import com.isdn.model.OrderEvent;
+import com.isdn.model.ProjectionCheckpoint;
+import com.isdn.model.ProjectionGap;
+import com.isdn.repository.OrderEventRepository;
+import com.isdn.repository.ProjectionCheckpointRepository;
+import com.isdn.repository.ProjectionGapRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Drives every {@link OrderEventProjection}. On a schedule, each projection reads events
+ * past its checkpoint in batches; a batch is applied in the same transaction that advances
+ * the checkpoint. A projection can also be rebuilt from the whole event log, with chunks
+ * of the log applied in parallel.
+ * <p>
+ * AUTO_INCREMENT ids are taken at insert but become visible at commit, so a batch can skip
+ * an id whose transaction is still running. Every skipped id is recorded as a
+ * {@link ProjectionGap} and its event applied when it shows up. A gap still open after the
+ * gap timeout is abandoned; reconciliation rechecks abandoned ids and applies any that
+ * committed even later.
+ */
+@Service
+@Slf4j
+public class OrderProjectionService {
+
+    // A larger jump in event ids is not in-flight transactions (e.g. auto_increment moved by hand), so it is not tracked
+    private static final int MAX_TRACKED_GAP = 1000;
+
+    private final Map<String, OrderEventProjection> projections = new LinkedHashMap<>();
+    private final OrderEventRepository orderEventRepository;
+    private final ProjectionCheckpointRepository checkpointRepository;
+    private final ProjectionGapRepository gapRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate newTransactionTemplate;
+
+    // Rebuilds running on this instance; the scheduled run leaves these projections alone
+    private final Map<String, RebuildProgress> rebuilds = new ConcurrentHashMap<>();
+
+    @Value("${orders.projection.batch-size:500}")
+    private int batchSize;
+
+    @Value("${orders.projection.gap-timeout-seconds:600}")
+    private long gapTimeoutSeconds;
+
+    @Value("${orders.projection.gap-retention-hours:24}")
+    private long gapRetentionHours;
+
+    @Value("${orders.projection.rebuild-parallelism:4}")
+    private int rebuildParallelism;
+
+    @Value("${orders.projection.rebuild-chunk-size:10000}")
+    private int rebuildChunkSize;
+
+    public OrderProjectionService(List<OrderEventProjection> projections,
+                                  OrderEventRepository orderEventRepository,
+                                  ProjectionCheckpointRepository checkpointRepository,
+                                  ProjectionGapRepository gapRepository,
+                                  PlatformTransactionManager transactionManager) {
+        for (OrderEventProjection projection : projections) {
+            this.projections.put(projection.name(), projection);
+        }
+        this.orderEventRepository = orderEventRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.gapRepository = gapRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Catch every projection up with the event log, one batch per transaction
+     */
+    @Scheduled(fixedDelayString = "${orders.projection.interval-ms:2000}",
+               initialDelayString = "${orders.projection.interval-ms:2000}")
+    public void project() {
+        for (OrderEventProjection projection : projections.values()) {
+            if (rebuilds.containsKey(projection.name())) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> settleGaps(projection));
+                Integer applied;
+                do {
+                    applied = transactionTemplate.execute(status -> projectBatch(projection));
+                } while (applied != null && applied >= batchSize);
+            } catch (DataAccessException e) {
+                // Another instance holds the checkpoint, or the database is unavailable; retry next run
+                log.warn("Projection {} run skipped: {}", projection.name(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Recheck ids abandoned by every projection: apply events that committed after their gap
+     * timed out, and forget ids old enough to have been rolled back
+     */
+    @Scheduled(fixedDelayString = "${orders.projection.reconcile-interval-ms:600000}",
+               initialDelayString = "${orders.projection.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        for (OrderEventProjection projection : projections.values()) {
+            if (rebuilds.containsKey(projection.name())) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> reconcileGaps(projection));
+            } catch (DataAccessException e) {
+                log.warn("Projection {} reconciliation skipped: {}", projection.name(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Start rebuilding a projection from the whole event log in the background.
+     * The read model is emptied first, so it is incomplete until the rebuild finishes.
+     */
+    public void startRebuild(String name) {
+        OrderEventProjection projection = projections.get(name);
+        if (projection == null) {
+            throw new ResourceNotFoundException("Unknown projection: " + name);
+        }
+        RebuildProgress progress = new RebuildProgress(LocalDateTime.now());
+        if (rebuilds.putIfAbsent(name, progress) != null) {
+            throw new BadRequestException("Projection " + name + " is already being rebuilt");
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                rebuild(projection, progress);
+            } finally {
+                rebuilds.remove(name);
+            }
+        }, "projection-rebuild-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Checkpoint position, backlog and any rebuild in progress for every projection
+     */
+    public List<ProjectionStatusResponse> getStatuses() {
+        Long latestEventId = orderEventRepository.findLatestEventId();
+        List<ProjectionStatusResponse> statuses = new ArrayList<>();
+        for (String name : projections.keySet()) {
+            ProjectionCheckpoint checkpoint = checkpointRepository.findById(name).orElse(null);
+            long lastProjected = checkpoint != null ? checkpoint.getLastEventId() : 0L;
+            RebuildProgress rebuild = rebuilds.get(name);
+            statuses.add(ProjectionStatusResponse.builder()
+                    .projection(name)
+                    .lastProjectedEventId(lastProjected)
+                    .latestEventId(latestEventId)
+                    .pendingEvents(orderEventRepository.countByEventIdGreaterThan(lastProjected))
+                    .lastProjectedAt(checkpoint != null ? checkpoint.getUpdatedAt() : null)
+                    .openGaps(gapRepository.countByProjectionAndAbandonedAtIsNull(name))
+                    .abandonedGaps(gapRepository.countByProjectionAndAbandonedAtIsNotNull(name))
+                    .rebuilding(rebuild != null)
+                    .rebuildStartedAt(rebuild != null ? rebuild.startedAt : null)
+                    .rebuildAppliedEvents(rebuild != null ? rebuild.appliedEvents.sum() : null)
+                    .build());
+        }
+        return statuses;
+    }
+
+    private int projectBatch(OrderEventProjection projection) {
+        ProjectionCheckpoint checkpoint = checkpointRepository.findForUpdateNoWait(projection.name())
+                .orElseGet(() -> newCheckpoint(projection.name()));
+
+        List<OrderEvent> events = orderEventRepository.findBatchAfter(checkpoint.getLastEventId(),
+                Limit.of(batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+        recordGaps(projection.name(), checkpoint.getLastEventId(), events);
+        projection.apply(events);
+
+        checkpoint.setLastEventId(events.get(events.size() - 1).getEventId());
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+
+        log.debug("Projection {} applied {} events up to {}", projection.name(), events.size(),
+                checkpoint.getLastEventId());
+        return events.size();
+    }
+
+    /**
+     * Record every id between the checkpoint and the batch that the batch does not contain
+     */
+    private void recordGaps(String name, long afterId, List<OrderEvent> events) {
+        LocalDateTime now = LocalDateTime.now();
+        List<ProjectionGap> gaps = new ArrayList<>();
+        long expected = afterId + 1;
+        for (OrderEvent event : events) {
+            long eventId = event.getEventId();
+            if (eventId - expected > MAX_TRACKED_GAP) {
+                log.warn("Projection {} skipped event ids {} to {} without tracking them", name, expected, eventId - 1);
+            } else {
+                for (long missing = expected; missing < eventId; missing++) {
+                    gaps.add(ProjectionGap.builder()
+                            .projection(name)
+                            .eventId(missing)
+                            .detectedAt(now)
+                            .build());
+                }
+            }
+            expected = eventId + 1;
+        }
+        if (!gaps.isEmpty()) {
+            gapRepository.saveAll(gaps);
+            log.debug("Projection {} waiting for {} uncommitted event ids", name, gaps.size());
+        }
+    }
+
+    /**
+     * Apply events that turned up for open gaps, and abandon gaps open longer than the timeout
+     */
+    private void settleGaps(OrderEventProjection projection) {
+        String name = projection.name();
+        if (checkpointRepository.findForUpdateNoWait(name).isEmpty()) {
+            return;
+        }
+        List<ProjectionGap> open = gapRepository.findByProjectionAndAbandonedAtIsNullOrderByEventId(name);
+        if (open.isEmpty()) {
+            return;
+        }
+
+        Set<Long> filled = applyArrived(projection, open);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime giveUpBefore = now.minusSeconds(gapTimeoutSeconds);
+        for (ProjectionGap gap : open) {
+            if (!filled.contains(gap.getEventId()) && !gap.getDetectedAt().isAfter(giveUpBefore)) {
+                gap.setAbandonedAt(now);
+                log.warn("Projection {} gave up waiting for event {}, missing since {}", name,
+                        gap.getEventId(), gap.getDetectedAt());
+            }
+        }
+    }
+
+    private void reconcileGaps(OrderEventProjection projection) {
+        String name = projection.name();
+        if (checkpointRepository.findForUpdateNoWait(name).isEmpty()) {
+            return;
+        }
+        List<ProjectionGap> abandoned = gapRepository.findByProjectionAndAbandonedAtIsNotNullOrderByEventId(name);
+        if (abandoned.isEmpty()) {
+            return;
+        }
+
+        Set<Long> late = applyArrived(projection, abandoned);
+        if (!late.isEmpty()) {
+            log.error("Projection {} found {} events committed after their gap timed out, now applied: {}",
+                    name, late.size(), late);
+        }
+        int forgotten = gapRepository.deleteAbandonedBefore(name, LocalDateTime.now().minusHours(gapRetentionHours));
+        if (forgotten > 0) {
+            log.info("Projection {} forgot {} event ids that never committed", name, forgotten);
+        }
+    }
+
+    /**
+     * Apply the events that now exist for the given gaps and delete those gaps
+     *
+     * @return event ids applied
+     */
+    private Set<Long> applyArrived(OrderEventProjection projection, List<ProjectionGap> gaps) {
+        Map<Long, ProjectionGap> byEventId = gaps.stream()
+                .collect(Collectors.toMap(ProjectionGap::getEventId, Function.identity()));
+        List<OrderEvent> arrived = orderEventRepository.findByEventIdInOrderByEventId(byEventId.keySet());
+        if (arrived.isEmpty()) {
+            return Set.of();
+        }
+        projection.apply(arrived);
+        Set<Long> applied = arrived.stream()
+                .map(OrderEvent::getEventId)
+                .collect(Collectors.toCollection(TreeSet::new));
+        gapRepository.deleteAll(applied.stream().map(byEventId::get).toList());
+        return applied;
+    }
+
+    /**
+     * Hold the checkpoint for the whole rebuild so no instance projects meanwhile, empty the
+     * read model, replay the log up to the gap timeout in parallel chunks, then move the
+     * checkpoint to the end of what was replayed. Deltas commute, so chunk order does not matter.
+     */
+    private void rebuild(OrderEventProjection projection, RebuildProgress progress) {
+        String name = projection.name();
+        log.info("Rebuilding projection {}", name);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(rebuildParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "projection-rebuild-" + name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                ProjectionCheckpoint checkpoint = checkpointRepository.findForUpdate(name)
+                        .orElseGet(() -> newCheckpoint(name));
+                // Anything older than the gap timeout counts as settled; the scheduled run tracks the rest
+                long upTo = orderEventRepository.findLatestEventIdBefore(
+                        LocalDateTime.now().minusSeconds(gapTimeoutSeconds));
+
+                newTransactionTemplate.executeWithoutResult(reset -> projection.reset());
+                gapRepository.deleteByProjection(name);
+
+                boolean complete = replay(projection, upTo, workers, progress);
+                if (!complete) {
+                    // Partially rebuilt: start over from an empty read model and let the scheduled run replay it
+                    newTransactionTemplate.executeWithoutResult(reset -> projection.reset());
+                    upTo = 0L;
+                }
+
+                checkpoint.setLastEventId(upTo);
+                checkpoint.setUpdatedAt(LocalDateTime.now());
+                checkpointRepository.save(checkpoint);
+            });
+            log.info("Projection {} rebuilt from {} events", name, progress.appliedEvents.sum());
+        } catch (RuntimeException e) {
+            log.error("Rebuild of projection {} failed", name, e);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private boolean replay(OrderEventProjection projection, long upTo, ExecutorService workers,
+                           RebuildProgress progress) {
+        List<Future<?>> chunks = new ArrayList<>();
+        for (long from = 0; from < upTo; from += rebuildChunkSize) {
+            long after = from;
+            long to = Math.min(from + rebuildChunkSize, upTo);
+            chunks.add(workers.submit(() -> newTransactionTemplate.executeWithoutResult(status -> {
+                long cursor = after;
+                List<OrderEvent> events;
+                do {
+                    events = orderEventRepository.findBatchBetween(cursor, to, Limit.of(batchSize));
+                    if (!events.isEmpty()) {
+                        projection.apply(events);
+                        progress.appliedEvents.add(events.size());
+                        cursor = events.get(events.size() - 1).getEventId();
+                    }
+                } while (events.size() >= batchSize);
+            })));
+        }
+
+        boolean complete = true;
+        for (Future<?> chunk : chunks) {
+            try {
+                chunk.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                complete = false;
+            } catch (Exception e) {
+                log.error("Rebuild chunk of projection {} failed", projection.name(), e);
+                complete = false;
+            }
+        }
+        return complete;
+    }
+
+    private ProjectionCheckpoint newCheckpoint(String name) {
+        return checkpointRepository.saveAndFlush(ProjectionCheckpoint.builder()
+                .name(name)
+                .lastEventId(0L)
+                .build());
+    }
+
+    private static final class RebuildProgress {
+
+        private final LocalDateTime startedAt;
+        private final LongAdder appliedEvents = new LongAdder();
+
+        RebuildProgress(LocalDateTime startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+}
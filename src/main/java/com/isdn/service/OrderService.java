@@ -2,19 +2,31 @@ package com.isdn.service;
 
 import com.isdn.dto.request.OrderRequest;
 import com.isdn.dto.request.UpdateOrderStatusRequest;
+import com.isdn.dto.response.CursorPageResponse;
 import com.isdn.dto.response.OrderItemResponse;
 import com.isdn.dto.response.OrderResponse;
 import com.isdn.exception.BadRequestException;
 import com.isdn.exception.ResourceNotFoundException;
 import com.isdn.model.*;
 import com.isdn.repository.*;
+import com.isdn.util.KeysetCursor;
+import com.isdn.util.SnowflakeIdGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,13 +34,25 @@ import java.util.stream.Collectors;
 @Slf4j
 public class OrderService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final OrderRepository orderRepository;
+    private final OrderAllocationRepository orderAllocationRepository;
     private final CartRepository cartRepository;
     private final InventoryRepository inventoryRepository;
+    private final StockReservationService stockReservationService;
+    private final StockLedgerService stockLedgerService;
+    private final StockHoldService stockHoldService;
+    private final OrderEventService orderEventService;
+    private final RdcAllocationService rdcAllocationService;
+    private final PaymentRepository paymentRepository;
     private final RDCRepository rdcRepository;
     private final UserService userService;
-    private final InvoiceService invoiceService;
-    private final EmailService emailService;
+    private final InvoiceJobService invoiceJobService;
+    private final SnowflakeIdGenerator idGenerator;
+
+    @Value("${inventory.holds.payment-in-flight-minutes:60}")
+    private long paymentInFlightMinutes;
 
     /**
      * Place order from cart
@@ -47,26 +71,30 @@ public class OrderService {
             throw new BadRequestException("Cannot place order with empty cart");
         }
 
-        // Check inventory for all items
-        for (CartItem cartItem : cart.getItems()) {
-            Integer totalStock = inventoryRepository.getTotalStockForProduct(
-                    cartItem.getProduct().getProductId());
+        // Check and reserve inventory for all items in one pass
+        List<StockReservationService.Line> lines = cart.getItems().stream()
+                .map(cartItem -> new StockReservationService.Line(
+                        cartItem.getProduct().getProductId(),
+                        cartItem.getProduct().getSku(),
+                        cartItem.getProduct().getName(),
+                        cartItem.getQuantity()))
+                .collect(Collectors.toList());
+        stockHoldService.verifyAvailableToPromise(cart.getCartId(), lines);
 
-            if (totalStock == null || totalStock < cartItem.getQuantity()) {
-                throw new BadRequestException(
-                        "Insufficient stock for product: " + cartItem.getProduct().getName() +
-                                ". Available: " + (totalStock != null ? totalStock : 0));
-            }
-        }
+        // Rank RDCs by distance, stock coverage and split shipments, then reserve in that order
+        RdcAllocationService.Decision decision = rdcAllocationService.decide(lines,
+                request.getDeliveryLatitude(), request.getDeliveryLongitude(), request.getDeliveryRegion());
+        List<StockReservationService.Allocation> allocations =
+                stockReservationService.reserve(lines, decision.rdcPreference());
+        rdcAllocationService.recordOutcome(decision, allocations);
 
-        // Assign nearest RDC (simplified - just pick first active one)
-        RDC rdc = rdcRepository.findByActiveTrue().stream()
-                .findFirst()
-                .orElse(null);
+        // Assign the RDC shipping most of the order
+        Long rdcId = rdcAllocationService.shippingRdc(decision, allocations);
+        RDC rdc = rdcId != null ? rdcRepository.findById(rdcId).orElse(null) : null;
 
         // Create order
         Order order = Order.builder()
-                .orderNumber(Order.generateOrderNumber())
+                .orderNumber(idGenerator.nextId("ORD-"))
                 .user(user)
                 .rdc(rdc)
                 .status(OrderStatus.PENDING)
@@ -89,31 +117,39 @@ public class OrderService {
             orderItem.calculateSubtotal();
             order.addItem(orderItem);
         }
+        for (StockReservationService.Allocation allocation : allocations) {
+            order.addAllocation(allocation.toEntity());
+        }
 
         // Save order
         order = orderRepository.save(order);
+        orderEventService.recordPlaced(List.of(order));
         log.info("Order created: {}", order.getOrderNumber());
 
-        // Reserve inventory (decrease stock)
-        reserveInventory(order);
-
-        // Clear cart
+        // Clear cart; its holds become real deductions once this commits
         cartRepository.delete(cart);
+        stockHoldService.releaseCartAfterCommit(cart.getCartId());
         log.info("Cart cleared for user: {}", userId);
 
+        // Unpaid online orders only keep their stock for a limited time
+        if (order.getPaymentMethod() == PaymentMethod.ONLINE_PAYMENT) {
+            stockHoldService.holdOrderAfterCommit(order.getOrderId(), allocations);
+        }
+
         return mapToResponse(order);
     }
 
     /**
-     * Get user's orders
+     * Get user's orders, one keyset page at a time
      */
     @Transactional(readOnly = true)
-    public List<OrderResponse> getUserOrders(Long userId) {
+    public CursorPageResponse<OrderResponse> getUserOrders(Long userId, String cursor, int limit) {
         log.info("Fetching orders for user: {}", userId);
-        List<Order> orders = orderRepository.findByUser_UserIdOrderByOrderDateDesc(userId);
-        return orders.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        int pageSize = pageSize(limit);
+        List<Long> orderIds = orderRepository.findPageIdsByUserAfter(userId, after.timestamp(), after.id(),
+                Limit.of(pageSize + 1));
+        return toPage(orderIds, pageSize);
     }
 
     /**
@@ -122,7 +158,7 @@ public class OrderService {
     @Transactional(readOnly = true)
     public OrderResponse getOrderById(Long userId, Long orderId) {
         log.info("Fetching order: {} for user: {}", orderId, userId);
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findDetailedById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
 
         // Verify order belongs to user
@@ -139,7 +175,7 @@ public class OrderService {
     @Transactional(readOnly = true)
     public OrderResponse getOrderByNumber(String orderNumber) {
         log.info("Fetching order by number: {}", orderNumber);
-        Order order = orderRepository.findByOrderNumber(orderNumber)
+        Order order = orderRepository.findDetailedByOrderNumber(orderNumber)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
         return mapToResponse(order);
     }
@@ -151,7 +187,8 @@ public class OrderService {
     public OrderResponse cancelOrder(Long userId, Long orderId) {
         log.info("Cancelling order: {} for user: {}", orderId, userId);
 
-        Order order = orderRepository.findById(orderId)
+        // Locked so a payment notification cannot confirm the order while its stock is restored
+        Order order = orderRepository.lockById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
 
         // Verify order belongs to user
@@ -164,11 +201,19 @@ public class OrderService {
             throw new BadRequestException("Cannot cancel order in " + order.getStatus() + " status");
         }
 
+        OrderStatus oldStatus = order.getStatus();
         order.setStatus(OrderStatus.CANCELLED);
         orderRepository.save(order);
-
-        // Restore inventory
-        restoreInventory(order);
+        orderEventService.recordStatusChange(order, oldStatus);
+
+        // Restore inventory to the rows it was taken from
+        List<StockReservationService.Allocation> allocations = findAllocations(List.of(orderId)).get(orderId);
+        if (allocations != null) {
+            restoreAllocations(allocations);
+        } else {
+            restoreInventory(order);
+        }
+        stockHoldService.releaseOrderHoldAfterCommit(orderId);
 
         log.info("Order cancelled: {}", order.getOrderNumber());
         return mapToResponse(order);
@@ -178,24 +223,25 @@ public class OrderService {
      * Get all orders (for staff/admin) - Feature 4
      */
     @Transactional(readOnly = true)
-    public List<OrderResponse> getAllOrders() {
+    public CursorPageResponse<OrderResponse> getAllOrders(String cursor, int limit) {
         log.info("Fetching all orders for staff");
-        List<Order> orders = orderRepository.findAllByOrderByOrderDateDesc();
-        return orders.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        int pageSize = pageSize(limit);
+        List<Long> orderIds = orderRepository.findPageIdsAfter(after.timestamp(), after.id(), Limit.of(pageSize + 1));
+        return toPage(orderIds, pageSize);
     }
 
     /**
      * Get orders by status - Feature 4
      */
     @Transactional(readOnly = true)
-    public List<OrderResponse> getOrdersByStatus(OrderStatus status) {
+    public CursorPageResponse<OrderResponse> getOrdersByStatus(OrderStatus status, String cursor, int limit) {
         log.info("Fetching orders with status: {}", status);
-        List<Order> orders = orderRepository.findByStatusOrderByOrderDateDesc(status);
-        return orders.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        int pageSize = pageSize(limit);
+        List<Long> orderIds = orderRepository.findPageIdsByStatusAfter(status, after.timestamp(), after.id(),
+                Limit.of(pageSize + 1));
+        return toPage(orderIds, pageSize);
     }
 
     /**
@@ -205,7 +251,8 @@ public class OrderService {
     public OrderResponse confirmOrder(Long orderId) {
         log.info("Confirming order: {}", orderId);
 
-        Order order = orderRepository.findById(orderId)
+        // Locked so payment hold expiry cannot cancel and restock the order while it is confirmed
+        Order order = orderRepository.lockById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
 
         if (order.getStatus() != OrderStatus.PENDING) {
@@ -214,37 +261,16 @@ public class OrderService {
 
         order.setStatus(OrderStatus.CONFIRMED);
         orderRepository.save(order);
+        orderEventService.recordStatusChange(order, OrderStatus.PENDING);
+        stockHoldService.releaseOrderHoldAfterCommit(orderId);
 
-        // Generate and send invoice email
-        sendInvoiceEmail(order);
+        // Invoice is rendered and emailed by a worker once this commits
+        invoiceJobService.enqueue(orderId);
 
         log.info("Order {} confirmed successfully", orderId);
         return mapToResponse(order);
     }
 
-    /**
-     * Generate and send invoice email to customer
-     */
-    public void sendInvoiceEmail(Order order) {
-        try {
-            log.info("Generating invoice for order: {}", order.getOrderNumber());
-            byte[] invoicePdf = invoiceService.generateInvoice(order);
-
-            String customerName = order.getUser().getBusinessName() != null ?
-                    order.getUser().getBusinessName() : order.getUser().getUsername();
-
-            emailService.sendInvoiceEmail(
-                    order.getUser().getEmail(),
-                    customerName,
-                    order.getOrderNumber(),
-                    invoicePdf
-            );
-            log.info("Invoice email sent for order: {}", order.getOrderNumber());
-        } catch (Exception e) {
-            log.error("Failed to send invoice email for order: {}", order.getOrderNumber(), e);
-        }
-    }
-
     /**
      * Update order status - Feature 4
      */
@@ -252,7 +278,8 @@ public class OrderService {
     public OrderResponse updateOrderStatus(Long orderId, UpdateOrderStatusRequest request) {
         log.info("Updating order {} status to {}", orderId, request.getStatus());
 
-        Order order = orderRepository.findById(orderId)
+        // Same lock as cancellation, payment notifications and hold expiry
+        Order order = orderRepository.lockById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
 
         OrderStatus oldStatus = order.getStatus();
@@ -281,6 +308,11 @@ public class OrderService {
         }
 
         orderRepository.save(order);
+        orderEventService.recordStatusChange(order, oldStatus);
+
+        if (oldStatus == OrderStatus.PENDING && request.getStatus() != OrderStatus.PENDING) {
+            stockHoldService.releaseOrderHoldAfterCommit(orderId);
+        }
 
         log.info("Order status updated from {} to {}", oldStatus, request.getStatus());
         return mapToResponse(order);
@@ -290,47 +322,93 @@ public class OrderService {
      * Get orders by RDC - Feature 4
      */
     @Transactional(readOnly = true)
-    public List<OrderResponse> getOrdersByRdc(Long rdcId) {
+    public CursorPageResponse<OrderResponse> getOrdersByRdc(Long rdcId, String cursor, int limit) {
         log.info("Fetching orders for RDC: {}", rdcId);
 
-        RDC rdc = rdcRepository.findById(rdcId)
-                .orElseThrow(() -> new ResourceNotFoundException("RDC not found"));
-
-        List<Order> orders = orderRepository.findByRdcOrderByOrderDateDesc(rdc);
+        if (!rdcRepository.existsById(rdcId)) {
+            throw new ResourceNotFoundException("RDC not found");
+        }
 
-        return orders.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        int pageSize = pageSize(limit);
+        List<Long> orderIds = orderRepository.findPageIdsByRdcAfter(rdcId, after.timestamp(), after.id(),
+                Limit.of(pageSize + 1));
+        return toPage(orderIds, pageSize);
     }
 
     /**
-     * Reserve inventory (decrease stock)
+     * Cancel online-payment orders whose payment hold ran out and give their stock back.
+     * The orders are locked first, so a payment notification or another instance's sweeper
+     * either finishes before this sees the order or waits and then finds it cancelled.
      */
-    private void reserveInventory(Order order) {
-        for (OrderItem item : order.getItems()) {
-            List<Inventory> inventories = inventoryRepository.findByProduct(item.getProduct());
-
-            int remainingQuantity = item.getQuantity();
-
-            for (Inventory inventory : inventories) {
-                if (remainingQuantity <= 0) break;
+    @EventListener
+    @Transactional
+    public void onOrderHoldsExpired(StockHoldService.OrderHoldsExpired event) {
+        List<Order> orders = orderRepository.lockAllById(event.allocationsByOrderId().keySet());
+        Map<Long, List<StockReservationService.Allocation>> persisted =
+                findAllocations(event.allocationsByOrderId().keySet());
+        List<StockReservationService.Allocation> toRestore = new ArrayList<>();
+        List<Order> cancelled = new ArrayList<>();
+        LocalDateTime inFlightSince = LocalDateTime.now().minusMinutes(paymentInFlightMinutes);
+
+        for (Order order : orders) {
+            List<StockReservationService.Allocation> allocations =
+                    event.allocationsByOrderId().get(order.getOrderId());
+
+            // Paid or handled since the hold was taken
+            if (order.getStatus() != OrderStatus.PENDING
+                    || paymentRepository.existsSuccessfulPaymentForOrder(order.getOrderId())) {
+                continue;
+            }
+            // The customer is still at the payment gateway; look again after another hold period
+            if (paymentRepository.existsInFlightPaymentForOrder(order.getOrderId(), inFlightSince)) {
+                stockHoldService.holdOrderAfterCommit(order.getOrderId(), allocations != null ? allocations : List.of());
+                continue;
+            }
 
-                int available = inventory.getQuantityOnHand();
-                int toReserve = Math.min(available, remainingQuantity);
+            order.setStatus(OrderStatus.CANCELLED);
+            List<StockReservationService.Allocation> taken = persisted.get(order.getOrderId());
+            if (taken != null) {
+                toRestore.addAll(taken);
+            } else {
+                restoreInventory(order);
+            }
+            cancelled.add(order);
+        }
 
-                inventory.setQuantityOnHand(available - toReserve);
-                inventoryRepository.save(inventory);
+        orderRepository.saveAll(cancelled);
+        orderEventService.recordStatusChanges(cancelled, OrderStatus.PENDING);
+        restoreAllocations(toRestore);
+        log.info("Cancelled {} unpaid online orders after their payment hold expired", cancelled.size());
+    }
 
-                remainingQuantity -= toReserve;
+    /**
+     * Recorded allocations per order; orders placed before allocations were recorded are absent
+     */
+    private Map<Long, List<StockReservationService.Allocation>> findAllocations(Collection<Long> orderIds) {
+        return orderAllocationRepository.findByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderAllocationRepository.AllocationView::getOrderId,
+                        Collectors.mapping(StockReservationService.Allocation::of, Collectors.toList())));
+    }
 
-                log.info("Reserved {} units of {} from RDC {}",
-                        toReserve, item.getProduct().getName(), inventory.getRdc().getName());
-            }
+    /**
+     * Put reserved stock back on the inventory rows it was taken from, in one batch
+     */
+    private void restoreAllocations(List<StockReservationService.Allocation> allocations) {
+        if (allocations.isEmpty()) {
+            return;
+        }
+        inventoryRepository.incrementStock(allocations.stream()
+                .map(a -> new InventoryRepositoryCustom.StockDelta(a.inventoryId(), a.quantity()))
+                .collect(Collectors.toList()));
+        for (StockReservationService.Allocation allocation : allocations) {
+            stockLedgerService.recordChange(allocation.inventoryId(), allocation.productId(),
+                    allocation.rdcId(), allocation.quantity());
         }
     }
 
     /**
-     * Restore inventory (increase stock) when order is cancelled
+     * Restore inventory (increase stock) for an order placed before its allocations were recorded
      */
     private void restoreInventory(Order order) {
         for (OrderItem item : order.getItems()) {
@@ -339,8 +417,10 @@ public class OrderService {
             if (!inventories.isEmpty()) {
                 // Add back to first available inventory
                 Inventory inventory = inventories.get(0);
-                inventory.setQuantityOnHand(inventory.getQuantityOnHand() + item.getQuantity());
-                inventoryRepository.save(inventory);
+                inventoryRepository.incrementStock(List.of(
+                        new InventoryRepositoryCustom.StockDelta(inventory.getInventoryId(), item.getQuantity())));
+                stockLedgerService.recordChange(inventory.getInventoryId(), item.getProduct().getProductId(),
+                        inventory.getRdc().getRdcId(), item.getQuantity());
 
                 log.info("Restored {} units of {} to RDC {}",
                         item.getQuantity(), item.getProduct().getName(), inventory.getRdc().getName());
@@ -348,6 +428,45 @@ public class OrderService {
         }
     }
 
+    /**
+     * Clamp a requested page size to the allowed range
+     */
+    private int pageSize(int limit) {
+        return Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Build a page from ids fetched with one extra row; the extra id only signals that more exist.
+     * The page's orders are then loaded with everything mapToResponse touches in one query.
+     */
+    private CursorPageResponse<OrderResponse> toPage(List<Long> orderIds, int pageSize) {
+        boolean hasMore = orderIds.size() > pageSize;
+        List<Long> pageIds = hasMore ? orderIds.subList(0, pageSize) : orderIds;
+
+        Map<Long, Order> loaded = new HashMap<>();
+        if (!pageIds.isEmpty()) {
+            for (Order order : orderRepository.findDetailedByOrderIdIn(pageIds)) {
+                loaded.put(order.getOrderId(), order);
+            }
+        }
+        List<Order> page = pageIds.stream()
+                .map(loaded::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (hasMore && !page.isEmpty()) {
+            Order last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getOrderDate(), last.getOrderId()).encode();
+        }
+
+        return CursorPageResponse.<OrderResponse>builder()
+                .items(page.stream().map(this::mapToResponse).collect(Collectors.toList()))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
     /**
      * Map Order to OrderResponse
      */
@@ -10,6 +10,7 @@ import com.isdn.exception.ResourceNotFoundException;
 import com.isdn.model.*;
 import com.isdn.repository.OrderRepository;
 import com.isdn.repository.PaymentRepository;
+import com.isdn.util.SnowflakeIdGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -29,11 +30,13 @@ public class PaymentService {
 
     private final PaymentRepository paymentRepository;
     private final OrderRepository orderRepository;
+    private final StockHoldService stockHoldService;
+    private final OrderEventService orderEventService;
     private final UserService userService;
     private final PayHereHashService payHereHashService;
     private final PayHereConfig payHereConfig;
-    private final InvoiceService invoiceService;
-    private final EmailService emailService;
+    private final InvoiceJobService invoiceJobService;
+    private final SnowflakeIdGenerator idGenerator;
 
     /**
      * Initiate payment for an order
@@ -44,7 +47,8 @@ public class PaymentService {
 
         User user = userService.getUserById(userId);
 
-        Order order = orderRepository.findById(request.getOrderId())
+        // Locked so the payment hold cannot expire between the status check and the payment insert
+        Order order = orderRepository.lockById(request.getOrderId())
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
 
         // Verify order belongs to user
@@ -67,9 +71,9 @@ public class PaymentService {
             throw new BadRequestException("A successful payment already exists for this order");
         }
 
-        // Generate payment reference
-        String paymentReference = Payment.generatePaymentReference();
-        String payhereOrderId = order.getOrderNumber() + "-" + System.currentTimeMillis();
+        // Generate payment reference; each attempt gets its own PayHere order id
+        String paymentReference = idGenerator.nextId("PAY-");
+        String payhereOrderId = order.getOrderNumber() + "-" + Long.toString(idGenerator.nextId(), 36).toUpperCase();
 
         // Create payment record
         Payment payment = Payment.builder()
@@ -140,6 +144,10 @@ public class PaymentService {
                     return new ResourceNotFoundException("Payment not found for order: " + request.getOrder_id());
                 });
 
+        // Serializes with payment hold expiry and cancellation, which change the order under the same lock
+        Order order = orderRepository.lockById(payment.getOrder().getOrderId())
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found for payment: " + payment.getPaymentReference()));
+
         // Check for duplicate notification (idempotency)
         if (payment.getStatus() == PaymentStatus.SUCCESS && request.getStatus_code() == 2) {
             log.info("Duplicate success notification received for payment: {}", payment.getPaymentReference());
@@ -166,14 +174,22 @@ public class PaymentService {
             payment.setCompletedAt(LocalDateTime.now());
 
             // Update order status to CONFIRMED
-            Order order = payment.getOrder();
             if (order.getStatus() == OrderStatus.PENDING) {
                 order.setStatus(OrderStatus.CONFIRMED);
                 orderRepository.save(order);
+                orderEventService.recordStatusChange(order, OrderStatus.PENDING);
                 log.info("Order {} status updated to CONFIRMED after successful payment", order.getOrderNumber());
 
-                // Generate and send invoice email
-                sendInvoiceEmail(order);
+                // Paid: the stock is no longer at risk of being released
+                stockHoldService.releaseOrderHoldAfterCommit(order.getOrderId());
+
+                // Invoice is rendered and emailed by a worker once this commits
+                invoiceJobService.enqueue(order.getOrderId());
+            } else if (order.getStatus() == OrderStatus.CANCELLED) {
+                // The hold expired or the customer cancelled first, so the stock is already back on sale
+                payment.setRefundRequired(true);
+                log.error("Payment {} succeeded for cancelled order {}; flagged for refund",
+                        payment.getPaymentReference(), order.getOrderNumber());
             }
         }
 
@@ -181,6 +197,16 @@ public class PaymentService {
         log.info("Payment {} updated with status: {}", payment.getPaymentReference(), newStatus);
     }
 
+    /**
+     * Successful payments taken for orders that had already been cancelled, newest first
+     */
+    @Transactional(readOnly = true)
+    public List<PaymentResponse> getPaymentsRequiringRefund() {
+        return paymentRepository.findByRefundRequiredTrueOrderByCompletedAtDesc().stream()
+                .map(this::mapToResponse)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Get payment by reference
      */
@@ -295,29 +321,7 @@ public class PaymentService {
                 .cardNo(payment.getCardNo())
                 .createdAt(payment.getCreatedAt())
                 .completedAt(payment.getCompletedAt())
+                .refundRequired(payment.isRefundRequired())
                 .build();
     }
-
-    /**
-     * Generate and send invoice email to customer after successful payment
-     */
-    private void sendInvoiceEmail(Order order) {
-        try {
-            log.info("Generating invoice for order: {} after successful payment", order.getOrderNumber());
-            byte[] invoicePdf = invoiceService.generateInvoice(order);
-
-            String customerName = order.getUser().getBusinessName() != null ?
-                    order.getUser().getBusinessName() : order.getUser().getUsername();
-
-            emailService.sendInvoiceEmail(
-                    order.getUser().getEmail(),
-                    customerName,
-                    order.getOrderNumber(),
-                    invoicePdf
-            );
-            log.info("Invoice email sent for order: {}", order.getOrderNumber());
-        } catch (Exception e) {
-            log.error("Failed to send invoice email for order: {}", order.getOrderNumber(), e);
-        }
-    }
 }
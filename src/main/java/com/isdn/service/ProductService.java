@@ -5,10 +5,8 @@ import com.isdn.dto.response.ProductResponse;
 import com.isdn.dto.response.PromotionInfo;
 import com.isdn.exception.ResourceNotFoundException;
 import com.isdn.model.Category;
-import com.isdn.model.Inventory;
 import com.isdn.model.Product;
 import com.isdn.model.Promotion;
-import com.isdn.repository.InventoryRepository;
 import com.isdn.repository.ProductRepository;
 import com.isdn.repository.PromotionRepository;
 import lombok.RequiredArgsConstructor;
@@ -26,7 +24,7 @@ import java.util.stream.Collectors;
 public class ProductService {
 
     private final ProductRepository productRepository;
-    private final InventoryRepository inventoryRepository;
+    private final StockLedgerService stockLedgerService;
     private final PromotionRepository promotionRepository;
 
     /**
@@ -99,10 +97,7 @@ public class ProductService {
      */
     private ProductResponse mapToResponse(Product product) {
         // Get total stock across all RDCs
-        List<Inventory> inventories = inventoryRepository.findByProduct(product);
-        int totalStock = inventories.stream()
-                .mapToInt(Inventory::getQuantityOnHand)
-                .sum();
+        int totalStock = stockLedgerService.getAvailableStock(product.getProductId());
 
         boolean available = totalStock > 0;
 
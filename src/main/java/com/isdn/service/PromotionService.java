@@ -0,0 +1,69 @@
+package com.isdn.service;
+
+import com.isdn.config.InvoiceConfig;
+import com.isdn.exception.BadRequestException;
+import com.isdn.exception.ResourceNotFoundException;
+import com.isdn.model.Promotion;
+import com.isdn.model.Role;
+import com.isdn.model.User;
+import com.isdn.repository.PromotionRepository;
+import com.isdn.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PromotionService {
+
+    private final PromotionRepository promotionRepository;
+    private final UserRepository userRepository;
+    private final EmailService emailService;
+    private final EmailTemplateRenderer emailTemplateRenderer;
+    private final InvoiceConfig invoiceConfig;
+
+    /**
+     * Email a promotion to every active customer. The promotion details are rendered once
+     * and embedded in each customer's email.
+     *
+     * @return number of emails queued
+     */
+    public int announce(Long promotionId) {
+        Promotion promotion = promotionRepository.findWithProductsById(promotionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Promotion not found with id: " + promotionId));
+        if (!promotion.getActive() || promotion.getEndDate().isBefore(LocalDate.now())) {
+            throw new BadRequestException("Cannot announce an inactive or expired promotion");
+        }
+
+        Map<String, Object> details = new HashMap<>();
+        details.put("title", promotion.getTitle());
+        details.put("description", promotion.getDescription());
+        details.put("discountPercentage", promotion.getDiscountPercentage());
+        details.put("startDate", promotion.getStartDate());
+        details.put("endDate", promotion.getEndDate());
+        details.put("products", promotion.getProducts());
+
+        Map<String, Object> shared = Map.of(
+                "promotionDetails", emailTemplateRenderer.render("email/promotion-details", details),
+                "companyName", invoiceConfig.getCompanyName()
+        );
+
+        List<EmailService.Recipient> recipients = new ArrayList<>();
+        for (User customer : userRepository.findActiveUsersByRole(Role.CUSTOMER)) {
+            String customerName = customer.getBusinessName() != null ?
+                    customer.getBusinessName() : customer.getUsername();
+            recipients.add(new EmailService.Recipient(customer.getEmail(), Map.of("customerName", customerName)));
+        }
+
+        log.info("Announcing promotion {} to {} customers", promotionId, recipients.size());
+        return emailService.sendBulkHtmlEmail("New promotion: " + promotion.getTitle(),
+                "email/promotion-announcement", shared, recipients);
+    }
+}
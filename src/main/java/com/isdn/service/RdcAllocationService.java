@@ -0,0 +1,291 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.AllocationQualityResponse;
+import com.isdn.model.RDC;
+import com.isdn.model.Region;
+import com.isdn.repository.RDCRepository;
+import com.isdn.service.StockReservationService.Allocation;
+import com.isdn.service.StockReservationService.Line;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Chooses which RDCs an order ships from. Candidate RDCs are scored on distance
+ * to the delivery location plus a penalty per line they cannot cover from their own
+ * stock (each such line means an extra shipment). Decisions use only in-memory
+ * data: a per-region index of RDC sites and the stock ledger.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RdcAllocationService {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final RDCRepository rdcRepository;
+    private final StockLedgerService stockLedgerService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${inventory.allocation.split-penalty-km:50}")
+    private double splitPenaltyKm;
+
+    @Value("${inventory.allocation.cross-region-penalty-km:150}")
+    private double crossRegionPenaltyKm;
+
+    private volatile SiteIndex index = new SiteIndex(new Site[0], Map.of(), Map.of());
+
+    private final LongAdder decisions = new LongAdder();
+    private final LongAdder splitShipments = new LongAdder();
+    private final LongAdder distanceSamples = new LongAdder();
+    private final DoubleAdder totalDistanceKm = new DoubleAdder();
+    private final LongAdder timedDecisions = new LongAdder();
+    private final LongAdder totalDecisionNanos = new LongAdder();
+
+    /**
+     * Build the RDC site index once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        refreshIndex();
+    }
+
+    /**
+     * Rebuild the index so new or relocated RDCs are picked up
+     */
+    @Scheduled(fixedDelayString = "${inventory.allocation.index-refresh-ms:600000}",
+               initialDelayString = "${inventory.allocation.index-refresh-ms:600000}")
+    public void refreshIndex() {
+        List<RDC> rdcs = rdcRepository.findByActiveTrue();
+        Site[] sites = rdcs.stream()
+                .map(rdc -> new Site(rdc.getRdcId(), rdc.getRegion(),
+                        toDegrees(rdc.getLatitude()), toDegrees(rdc.getLongitude())))
+                .toArray(Site[]::new);
+
+        // Region centroids stand in for the delivery location when only the region is known
+        Map<Region, double[]> centroids = new EnumMap<>(Region.class);
+        Map<Region, int[]> counts = new EnumMap<>(Region.class);
+        for (Site site : sites) {
+            if (site.region() == null || !site.located()) {
+                continue;
+            }
+            double[] sum = centroids.computeIfAbsent(site.region(), r -> new double[2]);
+            sum[0] += site.latitude();
+            sum[1] += site.longitude();
+            counts.computeIfAbsent(site.region(), r -> new int[1])[0]++;
+        }
+        centroids.forEach((region, sum) -> {
+            int n = counts.get(region)[0];
+            sum[0] /= n;
+            sum[1] /= n;
+        });
+
+        Map<Region, Site[]> sitesByRegion = new EnumMap<>(Region.class);
+        Arrays.stream(sites)
+                .filter(site -> site.region() != null)
+                .collect(Collectors.groupingBy(Site::region))
+                .forEach((region, regional) -> sitesByRegion.put(region, regional.toArray(Site[]::new)));
+
+        index = new SiteIndex(sites, sitesByRegion, centroids);
+        log.info("RDC allocation index built with {} active RDCs across {} located regions",
+                sites.length, centroids.size());
+    }
+
+    /**
+     * Rank active RDCs for an order, best first. The delivery location may be given as
+     * coordinates, as a region, or not at all (then only stock coverage counts).
+     * The delivery region's RDCs are scored first; other regions are only scored
+     * when none of them can ship the whole order on its own.
+     */
+    public Decision decide(List<Line> lines, BigDecimal latitude, BigDecimal longitude, Region region) {
+        long started = System.nanoTime();
+        SiteIndex current = index;
+
+        double targetLatitude = toDegrees(latitude);
+        double targetLongitude = toDegrees(longitude);
+        if (Double.isNaN(targetLatitude) || Double.isNaN(targetLongitude)) {
+            double[] centroid = region != null ? current.centroids().get(region) : null;
+            targetLatitude = centroid != null ? centroid[0] : Double.NaN;
+            targetLongitude = centroid != null ? centroid[1] : Double.NaN;
+        }
+
+        Site[] local = region != null ? current.sitesByRegion().getOrDefault(region, new Site[0]) : new Site[0];
+        Candidate[] candidates = score(local, lines, targetLatitude, targetLongitude, region);
+        boolean localCovers = candidates.length > 0 && candidates[0].shortLines() == 0;
+        if (!localCovers) {
+            candidates = score(current.sites(), lines, targetLatitude, targetLongitude, region);
+        }
+
+        List<Long> preference = new ArrayList<>(current.sites().length);
+        Map<Long, Double> distances = new HashMap<>();
+        for (Candidate candidate : candidates) {
+            preference.add(candidate.rdcId());
+            distances.put(candidate.rdcId(), candidate.distanceKm());
+        }
+        if (localCovers) {
+            // Unscored fallbacks, only used if the local stock disappears before reservation
+            for (Site site : current.sites()) {
+                if (site.region() != region) {
+                    preference.add(site.rdcId());
+                }
+            }
+        }
+
+        long elapsed = System.nanoTime() - started;
+        // Counted here, not in recordOutcome, since a decision whose reservation fails has no outcome
+        timedDecisions.increment();
+        totalDecisionNanos.add(elapsed);
+        meterRegistry.timer("orders.allocation.decision").record(elapsed, TimeUnit.NANOSECONDS);
+        return new Decision(preference, distances);
+    }
+
+    /**
+     * The RDC an order is assigned to: the one shipping the most units, ties going to the preferred one
+     */
+    public Long shippingRdc(Decision decision, List<Allocation> allocations) {
+        Map<Long, Integer> unitsByRdc = new HashMap<>();
+        for (Allocation allocation : allocations) {
+            unitsByRdc.merge(allocation.rdcId(), allocation.quantity(), Integer::sum);
+        }
+        Long best = null;
+        int bestUnits = -1;
+        for (Long rdcId : decision.rdcPreference()) {
+            int units = unitsByRdc.getOrDefault(rdcId, 0);
+            if (units > bestUnits) {
+                best = rdcId;
+                bestUnits = units;
+            }
+        }
+        // Stock may have come from an RDC that was not in the index yet
+        if (bestUnits <= 0) {
+            best = unitsByRdc.entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey)
+                    .orElse(best);
+        }
+        return best;
+    }
+
+    /**
+     * Record how the reservation actually turned out for the allocation quality metrics
+     */
+    public void recordOutcome(Decision decision, List<Allocation> allocations) {
+        decisions.increment();
+        meterRegistry.counter("orders.allocation.decisions").increment();
+
+        long rdcCount = allocations.stream().map(Allocation::rdcId).distinct().count();
+        if (rdcCount > 1) {
+            splitShipments.increment();
+            meterRegistry.counter("orders.allocation.split").increment();
+        }
+
+        Double distance = decision.distanceKmByRdc().get(shippingRdc(decision, allocations));
+        if (distance != null && !Double.isNaN(distance)) {
+            distanceSamples.increment();
+            totalDistanceKm.add(distance);
+            meterRegistry.summary("orders.allocation.distance.km").record(distance);
+        }
+    }
+
+    /**
+     * Split-shipment rate, average distance and decision time since startup
+     */
+    public AllocationQualityResponse snapshot() {
+        long decided = decisions.sum();
+        long splits = splitShipments.sum();
+        long samples = distanceSamples.sum();
+        long timed = timedDecisions.sum();
+        return AllocationQualityResponse.builder()
+                .decisions(decided)
+                .splitShipments(splits)
+                .splitRate(decided > 0 ? (double) splits / decided : 0.0)
+                .averageDistanceKm(samples > 0 ? totalDistanceKm.sum() / samples : null)
+                .averageDecisionMicros(timed > 0 ? totalDecisionNanos.sum() / 1000.0 / timed : 0.0)
+                .build();
+    }
+
+    private Candidate[] score(Site[] sites, List<Line> lines, double latitude, double longitude, Region region) {
+        Candidate[] candidates = new Candidate[sites.length];
+        for (int i = 0; i < sites.length; i++) {
+            Site site = sites[i];
+            double distance = distanceKm(site, latitude, longitude, region);
+
+            int shortLines = 0;
+            int coveredUnits = 0;
+            for (Line line : lines) {
+                int stock = stockLedgerService.getAvailableStock(line.productId(), site.rdcId());
+                if (stock >= line.quantity()) {
+                    coveredUnits += line.quantity();
+                } else {
+                    shortLines++;
+                    coveredUnits += Math.max(stock, 0);
+                }
+            }
+            candidates[i] = new Candidate(site.rdcId(), distance, distance + splitPenaltyKm * shortLines,
+                    shortLines, coveredUnits);
+        }
+        Arrays.sort(candidates, Comparator.comparingDouble(Candidate::cost)
+                .thenComparing(Comparator.comparingInt(Candidate::coveredUnits).reversed()));
+        return candidates;
+    }
+
+    private double distanceKm(Site site, double latitude, double longitude, Region region) {
+        if (site.located() && !Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+            return haversineKm(site.latitude(), site.longitude(), latitude, longitude);
+        }
+        if (region == null) {
+            return Double.isNaN(latitude) ? 0.0 : crossRegionPenaltyKm;
+        }
+        return region == site.region() ? 0.0 : crossRegionPenaltyKm;
+    }
+
+    private static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+    }
+
+    private static double toDegrees(BigDecimal value) {
+        return value != null ? value.doubleValue() : Double.NaN;
+    }
+
+    /**
+     * RDCs ranked best first, with the distance used for each
+     */
+    public record Decision(List<Long> rdcPreference, Map<Long, Double> distanceKmByRdc) {
+    }
+
+    private record Site(Long rdcId, Region region, double latitude, double longitude) {
+
+        boolean located() {
+            return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+        }
+    }
+
+    private record SiteIndex(Site[] sites, Map<Region, Site[]> sitesByRegion, Map<Region, double[]> centroids) {
+    }
+
+    private record Candidate(Long rdcId, double distanceKm, double cost, int shortLines, int coveredUnits) {
+    }
+}
@@ -0,0 +1,177 @@
+package com.isdn.service;
+
+import com.isdn.model.Category;
+import com.isdn.model.OrderEvent;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.RDC;
+import com.isdn.model.Region;
+import com.isdn.model.RollupGranularity;
+import com.isdn.model.SalesOrderRollup;
+import com.isdn.model.SalesRollup;
+import com.isdn.repository.OrderItemRepository;
+import com.isdn.repository.OrderItemRepository.CategoryTotalsView;
+import com.isdn.repository.RDCRepository;
+import com.isdn.repository.SalesOrderRollupRepository;
+import com.isdn.repository.SalesRollupRepository;
+import com.isdn.repository.SalesRollupRepositoryCustom.RollupDelta;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains {@link SalesRollup}. An order contributes to the rollups according to its
+ * current status (booked once confirmed, delivered, or cancelled), bucketed by its order
+ * date, so each status change adds the difference between the two statuses' contributions
+ * to every hour, day and month bucket the order falls in: once per category it has lines in
+ * ({@link SalesRollup}) and once for the whole order ({@link SalesOrderRollup}).
+ */
+@Component
+@RequiredArgsConstructor
+public class SalesRollupProjection implements OrderEventProjection {
+
+    public static final String NAME = "sales-rollups";
+
+    private final SalesRollupRepository salesRollupRepository;
+    private final SalesOrderRollupRepository salesOrderRollupRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final RDCRepository rdcRepository;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void apply(List<OrderEvent> events) {
+        // Only status changes that move an order into or out of a measure touch the rollups
+        List<OrderEvent> relevant = new ArrayList<>();
+        Set<Long> orderIds = new HashSet<>();
+        for (OrderEvent event : events) {
+            if (!Contribution.of(event.getToStatus()).equals(Contribution.of(event.getFromStatus()))) {
+                relevant.add(event);
+                orderIds.add(event.getOrderId());
+            }
+        }
+        if (relevant.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<CategoryTotalsView>> totalsByOrder = new HashMap<>();
+        for (CategoryTotalsView totals : orderItemRepository.findCategoryTotalsByOrderIds(orderIds)) {
+            totalsByOrder.computeIfAbsent(totals.getOrderId(), id -> new ArrayList<>()).add(totals);
+        }
+        Map<Long, Region> regions = new HashMap<>();
+        for (RDC rdc : rdcRepository.findAll()) {
+            regions.put(rdc.getRdcId(), rdc.getRegion());
+        }
+
+        Map<RollupKey, Accumulator> deltas = new HashMap<>();
+        for (OrderEvent event : relevant) {
+            Contribution to = Contribution.of(event.getToStatus());
+            Contribution from = Contribution.of(event.getFromStatus());
+            long rdcId = event.getRdcId() != null ? event.getRdcId() : 0L;
+
+            List<CategoryTotalsView> categories = totalsByOrder.getOrDefault(event.getOrderId(), List.of());
+            if (categories.isEmpty()) {
+                continue;
+            }
+            LocalDateTime orderDate = categories.get(0).getOrderDate();
+            long units = 0;
+            BigDecimal revenue = BigDecimal.ZERO;
+            for (CategoryTotalsView totals : categories) {
+                units += totals.getUnits();
+                revenue = revenue.add(totals.getRevenue());
+            }
+
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                LocalDateTime bucketStart = granularity.bucketStart(orderDate);
+                for (CategoryTotalsView totals : categories) {
+                    RollupKey key = new RollupKey(granularity, bucketStart, rdcId, totals.getCategory());
+                    deltas.computeIfAbsent(key, k -> new Accumulator())
+                            .add(totals.getUnits(), totals.getRevenue(), to, from);
+                }
+                // No category: the order counted once
+                deltas.computeIfAbsent(new RollupKey(granularity, bucketStart, rdcId, null), k -> new Accumulator())
+                        .add(units, revenue, to, from);
+            }
+        }
+
+        List<RollupDelta> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> rows.add(delta.toDelta(key, regions.get(key.rdcId()))));
+        salesRollupRepository.applyDeltas(rows);
+    }
+
+    @Override
+    public void reset() {
+        salesRollupRepository.deleteAllInBatch();
+        salesOrderRollupRepository.deleteAllInBatch();
+    }
+
+    /**
+     * A null category keys the whole-order row
+     */
+    private record RollupKey(RollupGranularity granularity, LocalDateTime bucketStart, long rdcId, Category category) {
+    }
+
+    /**
+     * Which measures an order in a given status counts towards
+     */
+    private record Contribution(int booked, int delivered, int cancelled) {
+
+        private static final Contribution NONE = new Contribution(0, 0, 0);
+
+        static Contribution of(OrderStatus status) {
+            if (status == null) {
+                return NONE;
+            }
+            return switch (status) {
+                case PENDING -> NONE;
+                case CANCELLED -> new Contribution(0, 0, 1);
+                case DELIVERED -> new Contribution(1, 1, 0);
+                default -> new Contribution(1, 0, 0);
+            };
+        }
+    }
+
+    /**
+     * Net change to one rollup row over a batch
+     */
+    private static final class Accumulator {
+
+        private long bookedOrders;
+        private long bookedUnits;
+        private BigDecimal bookedRevenue = BigDecimal.ZERO;
+        private long deliveredOrders;
+        private BigDecimal deliveredRevenue = BigDecimal.ZERO;
+        private long cancelledOrders;
+        private BigDecimal cancelledRevenue = BigDecimal.ZERO;
+
+        void add(long units, BigDecimal revenue, Contribution to, Contribution from) {
+            int booked = to.booked() - from.booked();
+            int delivered = to.delivered() - from.delivered();
+            int cancelled = to.cancelled() - from.cancelled();
+
+            bookedOrders += booked;
+            bookedUnits += booked * units;
+            bookedRevenue = bookedRevenue.add(revenue.multiply(BigDecimal.valueOf(booked)));
+            deliveredOrders += delivered;
+            deliveredRevenue = deliveredRevenue.add(revenue.multiply(BigDecimal.valueOf(delivered)));
+            cancelledOrders += cancelled;
+            cancelledRevenue = cancelledRevenue.add(revenue.multiply(BigDecimal.valueOf(cancelled)));
+        }
+
+        RollupDelta toDelta(RollupKey key, Region region) {
+            return new RollupDelta(key.granularity(), key.bucketStart(), key.rdcId(), key.category(), region,
+                    bookedOrders, bookedUnits, bookedRevenue, deliveredOrders, deliveredRevenue,
+                    cancelledOrders, cancelledRevenue);
+        }
+    }
+}
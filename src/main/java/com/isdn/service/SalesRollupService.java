@@ -0,0 +1,84 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.SalesReportResponse;
+import com.isdn.exception.BadRequestException;
+import com.isdn.model.Category;
+import com.isdn.model.Region;
+import com.isdn.model.RollupGranularity;
+import com.isdn.repository.SalesRollupRepository;
+import com.isdn.repository.SalesRollupRepositoryCustom.Dimension;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Sales figures for dashboards, read from the pre-aggregated rollups. A query touches
+ * at most a few thousand rollup rows no matter how many orders lie behind them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SalesRollupService {
+
+    // Longest date range per granularity, keeping hourly and daily queries to a bounded number of buckets
+    private static final long MAX_HOUR_RANGE_DAYS = 31;
+    private static final long MAX_DAY_RANGE_DAYS = 731;
+
+    private final SalesRollupRepository salesRollupRepository;
+
+    /**
+     * Sales between two dates (both inclusive), filtered and grouped as requested
+     */
+    @Transactional(readOnly = true)
+    public SalesReportResponse getSales(RollupGranularity granularity, LocalDate from, LocalDate to,
+                                        Long rdcId, Region region, Category category, List<String> groupBy) {
+        if (to.isBefore(from)) {
+            throw new BadRequestException("'to' date must not be before 'from' date");
+        }
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        if (granularity == RollupGranularity.HOUR && days > MAX_HOUR_RANGE_DAYS) {
+            throw new BadRequestException("Hourly sales can be requested for at most " + MAX_HOUR_RANGE_DAYS + " days");
+        }
+        if (granularity == RollupGranularity.DAY && days > MAX_DAY_RANGE_DAYS) {
+            throw new BadRequestException("Daily sales can be requested for at most " + MAX_DAY_RANGE_DAYS + " days");
+        }
+
+        Set<Dimension> dimensions = parseDimensions(groupBy);
+        // Month buckets start on the 1st, so widen the range to whole months
+        LocalDate start = granularity == RollupGranularity.MONTH ? from.withDayOfMonth(1) : from;
+
+        return SalesReportResponse.builder()
+                .granularity(granularity)
+                .from(from)
+                .to(to)
+                .groupBy(dimensions.stream().map(Enum::name).collect(Collectors.toList()))
+                .rows(salesRollupRepository.summarize(granularity, start.atStartOfDay(),
+                        to.plusDays(1).atStartOfDay(), rdcId, region, category, dimensions))
+                .build();
+    }
+
+    private Set<Dimension> parseDimensions(List<String> groupBy) {
+        Set<Dimension> dimensions = EnumSet.noneOf(Dimension.class);
+        if (groupBy == null) {
+            return dimensions;
+        }
+        for (String value : groupBy) {
+            try {
+                dimensions.add(Dimension.valueOf(value.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Unknown groupBy value: " + value
+                        + ". Use BUCKET, RDC, REGION or CATEGORY");
+            }
+        }
+        return dimensions;
+    }
+}
@@ -0,0 +1,54 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.StockContentionResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-SKU counters for concurrent stock updates that had to be retried.
+ * Published to Micrometer and kept in memory for the contention report.
+ */
+@Component
+@RequiredArgsConstructor
+public class StockContentionMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Counts> countsBySku = new ConcurrentHashMap<>();
+
+    public void recordConflict(String sku) {
+        countsBySku.computeIfAbsent(sku, key -> new Counts()).conflicts.increment();
+        meterRegistry.counter("inventory.stock.conflicts", "sku", sku).increment();
+    }
+
+    public void recordRetriesExhausted(String sku) {
+        countsBySku.computeIfAbsent(sku, key -> new Counts()).exhausted.increment();
+        meterRegistry.counter("inventory.stock.retries.exhausted", "sku", sku).increment();
+    }
+
+    /**
+     * Contention report, most contended SKUs first
+     */
+    public List<StockContentionResponse> snapshot() {
+        return countsBySku.entrySet().stream()
+                .map(entry -> StockContentionResponse.builder()
+                        .sku(entry.getKey())
+                        .conflicts(entry.getValue().conflicts.sum())
+                        .retriesExhausted(entry.getValue().exhausted.sum())
+                        .build())
+                .sorted(Comparator.comparingLong(StockContentionResponse::getConflicts).reversed())
+                .toList();
+    }
+
+    private static final class Counts {
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+    }
+}
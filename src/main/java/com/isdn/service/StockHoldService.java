@@ -0,0 +1,563 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.StockHoldResponse;
+import com.isdn.exception.BadRequestException;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.PaymentMethod;
+import com.isdn.repository.OrderAllocationRepository;
+import com.isdn.repository.OrderRepository;
+import com.isdn.service.StockReservationService.Allocation;
+import com.isdn.service.StockReservationService.Line;
+import com.isdn.util.StripedStockTable;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Time-limited soft reservations kept entirely in memory.
+ * Cart holds set stock aside for a cart without touching the database; order holds
+ * track stock already deducted for unpaid online orders so it can be given back if
+ * payment never arrives. A single sweeper thread expires holds in batches.
+ * Every instance sweeps the order holds it knows about; OrderService cancels expired
+ * orders under a row lock, so an order is cancelled and restocked at most once.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockHoldService {
+
+    private static final int LOCK_STRIPES = 64;
+    private static final long EXPIRY_RETRY_MILLIS = 60_000;
+
+    private final StockLedgerService stockLedgerService;
+    private final OrderRepository orderRepository;
+    private final OrderAllocationRepository orderAllocationRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Quantities set aside by carts, per product and RDC
+    private final StripedStockTable cartHeld = new StripedStockTable();
+
+    // Quantities already deducted for orders still awaiting online payment
+    private final StripedStockTable paymentHeld = new StripedStockTable();
+
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+    private final DelayQueue<Expiry> expiries = new DelayQueue<>();
+    private final Object[] productLocks = newLocks();
+
+    @Value("${inventory.holds.cart-ttl-minutes:15}")
+    private long cartTtlMinutes;
+
+    @Value("${inventory.holds.payment-ttl-minutes:30}")
+    private long paymentTtlMinutes;
+
+    @Value("${inventory.holds.sweep-batch-size:200}")
+    private int sweepBatchSize;
+
+    @Value("${inventory.holds.restore-lookback-hours:24}")
+    private long restoreLookbackHours;
+
+    private volatile Thread sweeper;
+
+    /**
+     * Restore holds for unpaid online orders and start the expiry sweeper
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuildOrderHolds();
+
+        Thread thread = new Thread(this::sweep, "stock-hold-sweeper");
+        thread.setDaemon(true);
+        sweeper = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread = sweeper;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Stock a cart may still take: ledger stock minus what every other cart is holding
+     */
+    public int getAvailableToPromise(Long cartId, Long productId) {
+        int available = stockLedgerService.getAvailableStock(productId)
+                - cartHeld.total(productId)
+                + heldByCart(cartId, productId);
+        return Math.max(available, 0);
+    }
+
+    /**
+     * Hold the given quantity of a product for a cart, replacing any earlier hold
+     * on that product and extending the cart's expiry.
+     *
+     * @return false when not enough unheld stock is left
+     */
+    public boolean holdCartItem(Long cartId, Long productId, int quantity) {
+        if (!stockLedgerService.isLoaded()) {
+            // Per-RDC figures are not available until the ledger loads; fall back to a plain check
+            return stockLedgerService.getAvailableStock(productId) >= quantity;
+        }
+
+        String key = cartKey(cartId);
+        for (;;) {
+            Hold hold = holds.computeIfAbsent(key, k -> new Hold(key, HoldType.CART, cartId));
+            synchronized (hold) {
+                if (hold.released) {
+                    continue;
+                }
+                boolean held;
+                synchronized (productLock(productId)) {
+                    List<HeldStock> previous = hold.lines.remove(productId);
+                    releaseHeld(cartHeld, previous);
+
+                    int available = stockLedgerService.getAvailableStock(productId) - cartHeld.total(productId);
+                    held = available >= quantity;
+                    if (!held) {
+                        if (previous != null) {
+                            addHeld(cartHeld, previous);
+                            hold.lines.put(productId, previous);
+                        }
+                    } else if (quantity > 0) {
+                        hold.lines.put(productId, allocate(productId, quantity));
+                    }
+                }
+                settle(hold, cartTtlMinutes);
+                return held;
+            }
+        }
+    }
+
+    /**
+     * Drop a cart's hold on one product
+     */
+    public void releaseCartItem(Long cartId, Long productId) {
+        Hold hold = holds.get(cartKey(cartId));
+        if (hold == null) {
+            return;
+        }
+        synchronized (hold) {
+            if (hold.released) {
+                return;
+            }
+            releaseHeld(cartHeld, hold.lines.remove(productId));
+            settle(hold, cartTtlMinutes);
+        }
+    }
+
+    /**
+     * Drop every hold a cart has
+     */
+    public void releaseCart(Long cartId) {
+        Hold hold = holds.get(cartKey(cartId));
+        if (hold != null && markReleased(hold)) {
+            releaseCartLines(hold);
+        }
+    }
+
+    /**
+     * Drop a cart's holds once the current transaction commits (the stock is then deducted for real)
+     */
+    public void releaseCartAfterCommit(Long cartId) {
+        afterCommit(() -> releaseCart(cartId));
+    }
+
+    /**
+     * Fail fast when stock the order needs is being held by other carts
+     */
+    public void verifyAvailableToPromise(Long cartId, List<Line> lines) {
+        if (!stockLedgerService.isLoaded()) {
+            return;
+        }
+        Map<Long, Integer> requested = new LinkedHashMap<>();
+        Map<Long, String> names = new HashMap<>();
+        for (Line line : lines) {
+            requested.merge(line.productId(), line.quantity(), Integer::sum);
+            names.putIfAbsent(line.productId(), line.productName());
+        }
+
+        List<String> shortfalls = new ArrayList<>();
+        requested.forEach((productId, quantity) -> {
+            int available = getAvailableToPromise(cartId, productId);
+            if (available < quantity) {
+                shortfalls.add(names.get(productId) + " (requested " + quantity + ", available " + available + ")");
+            }
+        });
+
+        if (!shortfalls.isEmpty()) {
+            throw new BadRequestException("Insufficient stock for " + shortfalls.size() + " item(s): "
+                    + String.join("; ", shortfalls));
+        }
+    }
+
+    /**
+     * Start the payment hold for an online order once the current transaction commits
+     */
+    public void holdOrderAfterCommit(Long orderId, List<Allocation> allocations) {
+        List<Allocation> copy = List.copyOf(allocations);
+        afterCommit(() -> holdOrder(orderId, copy,
+                System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(paymentTtlMinutes)));
+    }
+
+    /**
+     * End an order's payment hold (paid, cancelled or otherwise no longer pending)
+     */
+    public void releaseOrderHold(Long orderId) {
+        Hold hold = holds.get(orderKey(orderId));
+        if (hold != null && markReleased(hold)) {
+            releaseAllocations(hold.allocations);
+        }
+    }
+
+    public void releaseOrderHoldAfterCommit(Long orderId) {
+        afterCommit(() -> releaseOrderHold(orderId));
+    }
+
+    /**
+     * Live on-hand, cart-held and payment-held figures per product, optionally for one RDC
+     */
+    public List<StockHoldResponse> getHoldReport(Long rdcId) {
+        Map<HoldKey, int[]> figures = new HashMap<>();
+        cartHeld.forEach((productId, heldRdcId, quantity) -> {
+            if (quantity != 0 && (rdcId == null || heldRdcId == rdcId)) {
+                figures.computeIfAbsent(new HoldKey(productId, heldRdcId), k -> new int[2])[0] += quantity;
+            }
+        });
+        paymentHeld.forEach((productId, heldRdcId, quantity) -> {
+            if (quantity != 0 && (rdcId == null || heldRdcId == rdcId)) {
+                figures.computeIfAbsent(new HoldKey(productId, heldRdcId), k -> new int[2])[1] += quantity;
+            }
+        });
+
+        return figures.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.comparingLong(HoldKey::rdcId)
+                        .thenComparingLong(HoldKey::productId)))
+                .map(entry -> {
+                    HoldKey key = entry.getKey();
+                    int onHand = stockLedgerService.getAvailableStock(key.productId(), key.rdcId());
+                    int heldByCarts = entry.getValue()[0];
+                    return StockHoldResponse.builder()
+                            .productId(key.productId())
+                            .rdcId(key.rdcId())
+                            .quantityOnHand(onHand)
+                            .heldByCarts(heldByCarts)
+                            .awaitingPayment(entry.getValue()[1])
+                            .availableToPromise(Math.max(onHand - heldByCarts, 0))
+                            .build();
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Holds are only restored for recent orders. Older unpaid orders, e.g. ones placed before
+     * payment holds existed, are left for staff rather than all cancelled at once on startup.
+     */
+    private void rebuildOrderHolds() {
+        LocalDateTime since = LocalDateTime.now().minusHours(restoreLookbackHours);
+        List<OrderRepository.PendingPaymentView> pending = orderRepository.findByStatusAndPaymentMethodAndOrderDateAfter(
+                OrderStatus.PENDING, PaymentMethod.ONLINE_PAYMENT, since);
+        Map<Long, List<Allocation>> allocations = pending.isEmpty() ? Map.of() : orderAllocationRepository
+                .findByOrderIds(pending.stream().map(OrderRepository.PendingPaymentView::getOrderId).toList()).stream()
+                .collect(Collectors.groupingBy(OrderAllocationRepository.AllocationView::getOrderId,
+                        Collectors.mapping(Allocation::of, Collectors.toList())));
+        for (OrderRepository.PendingPaymentView order : pending) {
+            long placedAt = order.getOrderDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            holdOrder(order.getOrderId(), allocations.getOrDefault(order.getOrderId(), List.of()),
+                    placedAt + TimeUnit.MINUTES.toMillis(paymentTtlMinutes));
+        }
+        if (!pending.isEmpty()) {
+            log.info("Restored payment holds for {} unpaid online orders", pending.size());
+        }
+        long older = orderRepository.countByStatusAndPaymentMethodAndOrderDateBefore(
+                OrderStatus.PENDING, PaymentMethod.ONLINE_PAYMENT, since);
+        if (older > 0) {
+            log.warn("{} unpaid online orders placed before {} have no payment hold and need manual review",
+                    older, since);
+        }
+    }
+
+    private void holdOrder(Long orderId, List<Allocation> allocations, long expiresAt) {
+        Hold hold = new Hold(orderKey(orderId), HoldType.ORDER, orderId);
+        hold.allocations = allocations;
+        addAllocations(allocations);
+
+        Hold previous = holds.put(hold.key, hold);
+        if (previous != null && markReleasedQuietly(previous)) {
+            releaseAllocations(previous.allocations);
+        }
+        synchronized (hold) {
+            schedule(hold, expiresAt);
+        }
+    }
+
+    private void sweep() {
+        List<Expiry> batch = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(expiries.take());
+                expiries.drainTo(batch, Math.max(sweepBatchSize - 1, 0));
+                expire(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Stock hold sweep failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void expire(List<Expiry> batch) {
+        int cartsExpired = 0;
+        Map<Long, List<Allocation>> expiredOrders = new LinkedHashMap<>();
+
+        for (Expiry expiry : batch) {
+            Hold hold = expiry.hold();
+            synchronized (hold) {
+                // Skip entries superseded by a later expiry or already released
+                if (hold.released || hold.expiresAt != expiry.expiresAt()) {
+                    continue;
+                }
+                hold.released = true;
+            }
+            holds.remove(hold.key, hold);
+
+            if (hold.type == HoldType.CART) {
+                releaseCartLines(hold);
+                cartsExpired++;
+            } else {
+                releaseAllocations(hold.allocations);
+                expiredOrders.put(hold.ownerId, hold.allocations);
+            }
+        }
+
+        if (!expiredOrders.isEmpty()) {
+            try {
+                eventPublisher.publishEvent(new OrderHoldsExpired(expiredOrders));
+            } catch (RuntimeException e) {
+                log.error("Failed to release {} expired order holds, retrying later", expiredOrders.size(), e);
+                long retryAt = System.currentTimeMillis() + EXPIRY_RETRY_MILLIS;
+                expiredOrders.forEach((orderId, allocations) -> holdOrder(orderId, allocations, retryAt));
+                expiredOrders.clear();
+            }
+        }
+
+        if (cartsExpired > 0 || !expiredOrders.isEmpty()) {
+            log.info("Expired {} cart holds and {} order payment holds", cartsExpired, expiredOrders.size());
+        }
+    }
+
+    /**
+     * Split a held quantity across RDCs, largest free stock first
+     */
+    private List<HeldStock> allocate(Long productId, int quantity) {
+        List<HeldStock> free = new ArrayList<>();
+        for (long rdcId : stockLedgerService.getRdcIds()) {
+            int unheld = stockLedgerService.getAvailableStock(productId, rdcId) - cartHeld.quantity(productId, rdcId);
+            if (unheld > 0) {
+                free.add(new HeldStock(productId, rdcId, unheld));
+            }
+        }
+        free.sort(Comparator.comparingInt(HeldStock::quantity).reversed());
+
+        List<HeldStock> allocation = new ArrayList<>();
+        int remaining = quantity;
+        for (HeldStock candidate : free) {
+            if (remaining == 0) {
+                break;
+            }
+            int take = Math.min(remaining, candidate.quantity());
+            cartHeld.add(productId, candidate.rdcId(), take);
+            allocation.add(new HeldStock(productId, candidate.rdcId(), take));
+            remaining -= take;
+        }
+        return allocation;
+    }
+
+    /**
+     * Drop an empty cart hold, otherwise push its expiry out. Caller holds the hold's monitor.
+     */
+    private void settle(Hold hold, long ttlMinutes) {
+        if (hold.lines.isEmpty()) {
+            hold.released = true;
+            holds.remove(hold.key, hold);
+        } else {
+            schedule(hold, System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(ttlMinutes));
+        }
+    }
+
+    private void schedule(Hold hold, long expiresAt) {
+        hold.expiresAt = expiresAt;
+        expiries.add(new Expiry(hold, expiresAt));
+    }
+
+    private boolean markReleased(Hold hold) {
+        synchronized (hold) {
+            if (hold.released) {
+                return false;
+            }
+            hold.released = true;
+        }
+        holds.remove(hold.key, hold);
+        return true;
+    }
+
+    private boolean markReleasedQuietly(Hold hold) {
+        synchronized (hold) {
+            if (hold.released) {
+                return false;
+            }
+            hold.released = true;
+            return true;
+        }
+    }
+
+    private void releaseCartLines(Hold hold) {
+        for (List<HeldStock> held : hold.lines.values()) {
+            releaseHeld(cartHeld, held);
+        }
+    }
+
+    private void addAllocations(List<Allocation> allocations) {
+        for (Allocation allocation : allocations) {
+            paymentHeld.add(allocation.productId(), allocation.rdcId(), allocation.quantity());
+        }
+    }
+
+    private void releaseAllocations(List<Allocation> allocations) {
+        for (Allocation allocation : allocations) {
+            paymentHeld.add(allocation.productId(), allocation.rdcId(), -allocation.quantity());
+        }
+    }
+
+    private int heldByCart(Long cartId, Long productId) {
+        Hold hold = holds.get(cartKey(cartId));
+        if (hold == null) {
+            return 0;
+        }
+        synchronized (hold) {
+            List<HeldStock> held = hold.lines.get(productId);
+            return held == null ? 0 : held.stream().mapToInt(HeldStock::quantity).sum();
+        }
+    }
+
+    private static void addHeld(StripedStockTable table, List<HeldStock> held) {
+        for (HeldStock stock : held) {
+            table.add(stock.productId(), stock.rdcId(), stock.quantity());
+        }
+    }
+
+    private static void releaseHeld(StripedStockTable table, List<HeldStock> held) {
+        if (held == null) {
+            return;
+        }
+        for (HeldStock stock : held) {
+            table.add(stock.productId(), stock.rdcId(), -stock.quantity());
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private Object productLock(Long productId) {
+        return productLocks[Math.floorMod(productId.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static Object[] newLocks() {
+        Object[] locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    private static String cartKey(Long cartId) {
+        return "cart:" + cartId;
+    }
+
+    private static String orderKey(Long orderId) {
+        return "order:" + orderId;
+    }
+
+    /**
+     * Published by the sweeper when unpaid online orders run out of time
+     */
+    public record OrderHoldsExpired(Map<Long, List<Allocation>> allocationsByOrderId) {
+    }
+
+    private enum HoldType {
+        CART, ORDER
+    }
+
+    private record HeldStock(Long productId, long rdcId, int quantity) {
+    }
+
+    private record HoldKey(long productId, long rdcId) {
+    }
+
+    private record Expiry(Hold hold, long expiresAt) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAt, ((Expiry) other).expiresAt);
+        }
+    }
+
+    /**
+     * One cart's or order's holds; mutated only under its own monitor
+     */
+    private static final class Hold {
+
+        private final String key;
+        private final HoldType type;
+        private final Long ownerId;
+        private final Map<Long, List<HeldStock>> lines = new HashMap<>();
+        private List<Allocation> allocations = List.of();
+        private long expiresAt;
+        private boolean released;
+
+        private Hold(String key, HoldType type, Long ownerId) {
+            this.key = key;
+            this.type = type;
+            this.ownerId = ownerId;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.LedgerDriftEntry;
+import com.isdn.dto.response.LedgerDriftResponse;
+import com.isdn.repository.InventoryRepository;
+import com.isdn.repository.InventoryRepositoryCustom.StockLevel;
+import com.isdn.util.StripedStockTable;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * In-memory availability ledger fronting InventoryRepository for stock reads.
+ * Every inventory mutation records its delta here; deltas are staged on the
+ * current transaction and applied only after it commits.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockLedgerService {
+
+    private final InventoryRepository inventoryRepository;
+    private final LowStockTracker lowStockTracker;
+
+    private final StripedStockTable table = new StripedStockTable();
+
+    // Recorded-but-not-yet-applied deltas per stripe; reconciliation leaves busy stripes alone
+    private final AtomicIntegerArray pendingByStripe = new AtomicIntegerArray(table.stripeCount());
+
+    private volatile boolean loaded;
+    private volatile LedgerDriftResponse lastDriftReport;
+
+    /**
+     * Load every inventory row once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<StockLevel> levels = inventoryRepository.findAllStockLevels();
+        table.clear();
+        for (StockLevel level : levels) {
+            table.add(level.productId(), level.rdcId(), level.quantityOnHand());
+        }
+        loaded = true;
+        log.info("Stock ledger loaded with {} inventory rows", levels.size());
+        lowStockTracker.load(table::quantity);
+    }
+
+    /**
+     * Total available stock for a product across all RDCs
+     */
+    public int getAvailableStock(Long productId) {
+        if (!loaded) {
+            Integer totalStock = inventoryRepository.getTotalStockForProduct(productId);
+            return totalStock != null ? totalStock : 0;
+        }
+        return table.total(productId);
+    }
+
+    /**
+     * Available stock for a product at one RDC
+     */
+    public int getAvailableStock(Long productId, Long rdcId) {
+        if (!loaded) {
+            return inventoryRepository.findByProduct_ProductIdAndRdc_RdcId(productId, rdcId)
+                    .map(inventory -> inventory.getQuantityOnHand())
+                    .orElse(0);
+        }
+        return table.quantity(productId, rdcId);
+    }
+
+    /**
+     * Whether the ledger has been loaded; per-RDC figures are only meaningful once it has
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * RDCs known to the ledger
+     */
+    public long[] getRdcIds() {
+        return table.rdcIds();
+    }
+
+    /**
+     * Record a stock change. Inside a transaction the delta is applied after commit
+     * and discarded on rollback; outside one it is applied immediately.
+     */
+    public void recordChange(Long inventoryId, Long productId, Long rdcId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        StockChange change = new StockChange(inventoryId, productId, rdcId, delta);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(change);
+            return;
+        }
+
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingChanges();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pendingByStripe.incrementAndGet(table.stripeOf(productId));
+        pending.changes.add(change);
+    }
+
+    /**
+     * Periodically compare the ledger with the database
+     */
+    @Scheduled(fixedDelayString = "${inventory.ledger.reconcile-interval-ms:300000}",
+               initialDelayString = "${inventory.ledger.reconcile-interval-ms:300000}")
+    public void scheduledReconcile() {
+        if (loaded) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Compare every ledger counter with its inventory row and correct any drift.
+     * Counters in stripes with commits in flight are skipped rather than corrected,
+     * since their difference may just be a delta that has not been applied yet.
+     */
+    public LedgerDriftResponse reconcile() {
+        int stripes = table.stripeCount();
+        long[] expectedVersions = new long[stripes];
+        boolean[] quiet = new boolean[stripes];
+        for (int i = 0; i < stripes; i++) {
+            quiet[i] = pendingByStripe.get(i) == 0;
+            expectedVersions[i] = table.stripeVersion(i);
+        }
+
+        List<StockLevel> levels = inventoryRepository.findAllStockLevels();
+
+        Map<LedgerKey, Integer> ledger = new HashMap<>();
+        table.forEach((productId, rdcId, quantity) -> ledger.put(new LedgerKey(productId, rdcId), quantity));
+
+        List<LedgerDriftEntry> entries = new ArrayList<>();
+        int skipped = 0;
+
+        for (StockLevel level : levels) {
+            Integer ledgerQuantity = ledger.remove(new LedgerKey(level.productId(), level.rdcId()));
+            int current = ledgerQuantity != null ? ledgerQuantity : 0;
+            if (current == level.quantityOnHand()) {
+                continue;
+            }
+            if (correct(level.productId(), level.rdcId(), level.quantityOnHand(), quiet, expectedVersions)) {
+                entries.add(driftEntry(level.productId(), level.rdcId(), current, level.quantityOnHand()));
+            } else {
+                skipped++;
+            }
+        }
+
+        // Counters with no inventory row behind them
+        for (Map.Entry<LedgerKey, Integer> orphan : ledger.entrySet()) {
+            if (orphan.getValue() == 0) {
+                continue;
+            }
+            LedgerKey key = orphan.getKey();
+            if (correct(key.productId(), key.rdcId(), 0, quiet, expectedVersions)) {
+                entries.add(driftEntry(key.productId(), key.rdcId(), orphan.getValue(), 0));
+            } else {
+                skipped++;
+            }
+        }
+
+        if (!entries.isEmpty()) {
+            log.warn("Stock ledger drift corrected for {} inventory rows", entries.size());
+        }
+        // Every pass, drift or not: it also picks up reorder levels edited since the last one
+        lowStockTracker.refreshAll(table::quantity);
+
+        LedgerDriftResponse report = LedgerDriftResponse.builder()
+                .checkedAt(LocalDateTime.now())
+                .rowsChecked(levels.size())
+                .driftCount(entries.size())
+                .skippedInFlight(skipped)
+                .entries(entries)
+                .build();
+        lastDriftReport = report;
+        return report;
+    }
+
+    /**
+     * Most recent reconciliation report (null before the first run)
+     */
+    public LedgerDriftResponse getLastDriftReport() {
+        return lastDriftReport;
+    }
+
+    private boolean correct(long productId, long rdcId, int quantity, boolean[] quiet, long[] expectedVersions) {
+        int stripe = table.stripeOf(productId);
+        if (!quiet[stripe] || pendingByStripe.get(stripe) != 0) {
+            return false;
+        }
+        if (!table.setIfUnchanged(productId, rdcId, quantity, expectedVersions[stripe])) {
+            return false;
+        }
+        // Our own write bumped the stripe version
+        expectedVersions[stripe]++;
+        return true;
+    }
+
+    private LedgerDriftEntry driftEntry(long productId, long rdcId, int ledgerQuantity, int databaseQuantity) {
+        return LedgerDriftEntry.builder()
+                .productId(productId)
+                .rdcId(rdcId)
+                .ledgerQuantity(ledgerQuantity)
+                .databaseQuantity(databaseQuantity)
+                .build();
+    }
+
+    private void apply(StockChange change) {
+        table.add(change.productId(), change.rdcId(), change.delta());
+        lowStockTracker.refresh(change.productId(), change.rdcId(), table::quantity);
+    }
+
+    private record StockChange(Long inventoryId, Long productId, Long rdcId, int delta) {
+    }
+
+    private record LedgerKey(long productId, long rdcId) {
+    }
+
+    /**
+     * Deltas recorded by one transaction
+     */
+    private final class PendingChanges implements TransactionSynchronization {
+
+        private final List<StockChange> changes = new ArrayList<>();
+
+        @Override
+        public void afterCommit() {
+            for (StockChange change : changes) {
+                apply(change);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(StockLedgerService.this);
+            for (StockChange change : changes) {
+                pendingByStripe.decrementAndGet(table.stripeOf(change.productId()));
+            }
+        }
+    }
+}
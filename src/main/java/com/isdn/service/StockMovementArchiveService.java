@@ -0,0 +1,456 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.StockMovementResponse;
+import com.isdn.exception.ConflictException;
+import com.isdn.model.StockBalanceCheckpoint;
+import com.isdn.model.StockMovementArchive;
+import com.isdn.repository.StockBalanceCheckpointRepository;
+import com.isdn.repository.StockMovementArchiveRepository;
+import com.isdn.repository.StockMovementRepository;
+import com.isdn.util.KeysetCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves stock movements older than the retention horizon out of stock_movements into
+ * one gzipped JSON-lines file per RDC and month, newest movement first. The file is a
+ * run of independently compressed blocks, and a small index next to it records each
+ * block's offset, time span and inventory rows, so a history page only inflates the
+ * blocks it can use. Each inventory row keeps a balance checkpoint at its newest
+ * archived movement. Months are archived oldest first, so for any RDC every archived
+ * movement is older than every live one and history pages can run on from the table
+ * into the archive.
+ */
+@Service
+@Slf4j
+public class StockMovementArchiveService {
+
+    private final StockMovementRepository stockMovementRepository;
+    private final StockMovementArchiveRepository stockMovementArchiveRepository;
+    private final StockBalanceCheckpointRepository stockBalanceCheckpointRepository;
+    private final JsonMapper jsonMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final Path root;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${inventory.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${inventory.archive.horizon-months:12}")
+    private int horizonMonths;
+
+    @Value("${inventory.archive.block-movements:1000}")
+    private int blockMovements;
+
+    public StockMovementArchiveService(StockMovementRepository stockMovementRepository,
+                                       StockMovementArchiveRepository stockMovementArchiveRepository,
+                                       StockBalanceCheckpointRepository stockBalanceCheckpointRepository,
+                                       JsonMapper jsonMapper,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${inventory.archive.dir:data/stock-archive}") String archiveDir) {
+        this.stockMovementRepository = stockMovementRepository;
+        this.stockMovementArchiveRepository = stockMovementArchiveRepository;
+        this.stockBalanceCheckpointRepository = stockBalanceCheckpointRepository;
+        this.jsonMapper = jsonMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.root = Paths.get(archiveDir).toAbsolutePath().normalize();
+    }
+
+    @Scheduled(cron = "${inventory.archive.cron:0 30 2 * * *}")
+    public void scheduledArchive() {
+        if (enabled) {
+            archive();
+        }
+    }
+
+    /**
+     * Archive every whole month that ended before the horizon, oldest first. A month that
+     * fails is logged and its RDC skipped for the rest of the run, since archiving a later
+     * month would put archived movements after live ones; other RDCs carry on.
+     *
+     * @return number of movements archived
+     */
+    public long archive() {
+        if (!running.compareAndSet(false, true)) {
+            throw new ConflictException("Stock movement archiving is already running");
+        }
+        try {
+            LocalDate horizon = YearMonth.now().minusMonths(horizonMonths).atDay(1);
+            LocalDateTime oldest = stockMovementRepository.findOldestTimestampBefore(horizon.atStartOfDay());
+            if (oldest == null) {
+                return 0;
+            }
+
+            long archived = 0;
+            Set<Long> failedRdcs = new HashSet<>();
+            for (YearMonth month = YearMonth.from(oldest); month.atDay(1).isBefore(horizon); month = month.plusMonths(1)) {
+                LocalDateTime from = month.atDay(1).atStartOfDay();
+                LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+                for (Long rdcId : stockMovementRepository.findRdcIdsWithMovementsBetween(from, to)) {
+                    if (failedRdcs.contains(rdcId)) {
+                        continue;
+                    }
+                    try {
+                        archived += archiveMonth(rdcId, month);
+                    } catch (RuntimeException e) {
+                        failedRdcs.add(rdcId);
+                        log.error("Failed to archive stock movements for RDC {} in {}; its later months wait for the next run",
+                                rdcId, month, e);
+                    }
+                }
+            }
+            if (failedRdcs.isEmpty()) {
+                log.info("Archived {} stock movements older than {}", archived, horizon);
+            } else {
+                log.warn("Archived {} stock movements older than {}; RDCs {} failed", archived, horizon, failedRdcs);
+            }
+            return archived;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Read archived movements of an RDC, optionally of one inventory row, newest first:
+     * those in [from, to) that come after the cursor, up to limit rows
+     */
+    public List<StockMovementResponse> readPage(Long rdcId, Long inventoryId, LocalDateTime from,
+                                                LocalDateTime to, KeysetCursor after, int limit) {
+        List<StockMovementResponse> page = new ArrayList<>();
+        for (StockMovementArchive archive : stockMovementArchiveRepository.findByRdcIdOrderByMonthStartDesc(rdcId)) {
+            if (archive.getNewestTimestamp().isBefore(from)) {
+                // This and every older archive ends before the window
+                break;
+            }
+            if (!archive.getOldestTimestamp().isBefore(to) || archive.getOldestTimestamp().isAfter(after.timestamp())) {
+                continue;
+            }
+            if (readArchive(archive, inventoryId, from, to, after, limit, page)) {
+                break;
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Append matching movements from one archive file to the page. With an index only the
+     * blocks that overlap the window, come after the cursor and hold the inventory row are
+     * inflated; files written before indexes existed are read whole.
+     *
+     * @return true once the page is full or the window's start has been passed
+     */
+    private boolean readArchive(StockMovementArchive archive, Long inventoryId, LocalDateTime from,
+                                LocalDateTime to, KeysetCursor after, int limit, List<StockMovementResponse> page) {
+        Path path = Paths.get(archive.getFilePath());
+        try {
+            ArchiveIndex index = readIndex(path);
+            if (index == null) {
+                try (InputStream in = Files.newInputStream(path)) {
+                    return readMovements(in, inventoryId, from, to, after, limit, page);
+                }
+            }
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                for (ArchiveBlock block : index.blocks()) {
+                    if (block.newest().isBefore(from)) {
+                        return true;
+                    }
+                    if (!block.oldest().isBefore(to) || block.oldest().isAfter(after.timestamp())
+                            || (inventoryId != null && Arrays.binarySearch(block.inventoryIds(), inventoryId) < 0)) {
+                        continue;
+                    }
+                    ByteBuffer compressed = ByteBuffer.allocate(Math.toIntExact(block.length()));
+                    while (compressed.hasRemaining()) {
+                        if (channel.read(compressed, block.offset() + compressed.position()) < 0) {
+                            throw new IOException("Block at " + block.offset() + " runs past the end of the file");
+                        }
+                    }
+                    if (readMovements(new ByteArrayInputStream(compressed.array()), inventoryId, from, to, after,
+                            limit, page)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read stock movement archive " + path, e);
+        }
+    }
+
+    /**
+     * @return true once the page is full or the window's start has been passed
+     */
+    private boolean readMovements(InputStream compressed, Long inventoryId, LocalDateTime from, LocalDateTime to,
+                                  KeysetCursor after, int limit, List<StockMovementResponse> page) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(compressed), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                StockMovementResponse movement = jsonMapper.readValue(line, StockMovementResponse.class);
+                LocalDateTime timestamp = movement.getTimestamp();
+                if (timestamp.isBefore(from)) {
+                    return true;
+                }
+                boolean afterCursor = timestamp.isBefore(after.timestamp())
+                        || (timestamp.isEqual(after.timestamp()) && movement.getMovementId() < after.id());
+                if (!timestamp.isBefore(to) || !afterCursor
+                        || (inventoryId != null && !inventoryId.equals(movement.getInventoryId()))) {
+                    continue;
+                }
+                page.add(movement);
+                if (page.size() >= limit) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private ArchiveIndex readIndex(Path archive) throws IOException {
+        Path index = indexPathFor(archive);
+        if (!Files.exists(index)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(index)) {
+            return jsonMapper.readValue(in, ArchiveIndex.class);
+        }
+    }
+
+    private long archiveMonth(Long rdcId, YearMonth month) {
+        LocalDate monthStart = month.atDay(1);
+        if (stockMovementArchiveRepository.existsByRdcIdAndMonthStart(rdcId, monthStart)) {
+            return 0;
+        }
+        LocalDateTime from = monthStart.atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        Path path = root.resolve(String.valueOf(rdcId)).resolve(month + ".jsonl.gz");
+
+        // The file is complete on disk before any row is deleted; a failure after this
+        // point leaves the rows in place and the next run writes the file again
+        MonthSummary summary = readOnlyTransactionTemplate.execute(status -> writeFile(rdcId, from, to, path));
+        if (summary == null || summary.count == 0) {
+            return 0;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            int deleted = stockMovementRepository.deleteArchived(rdcId, from, to);
+            if (deleted != summary.count) {
+                throw new IllegalStateException("Archived " + summary.count + " stock movements for RDC " + rdcId
+                        + " in " + month + " but " + deleted + " matched for deletion");
+            }
+            stockMovementArchiveRepository.save(StockMovementArchive.builder()
+                    .rdcId(rdcId)
+                    .monthStart(monthStart)
+                    .filePath(path.toString())
+                    .movementCount(summary.count)
+                    .sizeBytes(sizeOf(path))
+                    .oldestTimestamp(summary.oldest)
+                    .newestTimestamp(summary.newest)
+                    .archivedAt(LocalDateTime.now())
+                    .build());
+            updateCheckpoints(rdcId, summary);
+        });
+
+        log.info("Archived {} stock movements for RDC {} in {} to {}", summary.count, rdcId, month, path);
+        return summary.count;
+    }
+
+    private MonthSummary writeFile(Long rdcId, LocalDateTime from, LocalDateTime to, Path path) {
+        MonthSummary summary = new MonthSummary();
+        Path indexPath = indexPathFor(path);
+        try {
+            Files.createDirectories(path.getParent());
+            Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            Path indexTemp = Files.createTempFile(path.getParent(), indexPath.getFileName().toString(), ".tmp");
+            try {
+                List<ArchiveBlock> blocks = new ArrayList<>();
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp));
+                     Stream<StockMovementResponse> movements = stockMovementRepository.streamForArchive(rdcId, from, to)) {
+                    BlockWriter block = new BlockWriter(0);
+                    var iterator = movements.iterator();
+                    while (iterator.hasNext()) {
+                        StockMovementResponse movement = iterator.next();
+                        block.add(jsonMapper.writeValueAsString(movement), movement);
+                        summary.add(movement);
+                        if (block.count == blockMovements) {
+                            blocks.add(block.finish(out));
+                            block = new BlockWriter(blocks.get(blocks.size() - 1).end());
+                        }
+                    }
+                    if (block.count > 0) {
+                        blocks.add(block.finish(out));
+                    }
+                }
+                Files.write(indexTemp, jsonMapper.writeValueAsBytes(new ArchiveIndex(blocks)));
+                // Index first: a data file is never found without the index that describes it
+                Files.move(indexTemp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+                Files.deleteIfExists(indexTemp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write stock movement archive " + path, e);
+        }
+        return summary;
+    }
+
+    private static Path indexPathFor(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + ".idx");
+    }
+
+    private void updateCheckpoints(Long rdcId, MonthSummary summary) {
+        Map<Long, StockBalanceCheckpoint> existing = new HashMap<>();
+        for (StockBalanceCheckpoint checkpoint : stockBalanceCheckpointRepository.findAllById(summary.latest.keySet())) {
+            existing.put(checkpoint.getInventoryId(), checkpoint);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<StockBalanceCheckpoint> checkpoints = new ArrayList<>(summary.latest.size());
+        summary.latest.forEach((inventoryId, latest) -> {
+            StockBalanceCheckpoint checkpoint = existing.getOrDefault(inventoryId, StockBalanceCheckpoint.builder()
+                    .inventoryId(inventoryId)
+                    .archivedMovements(0L)
+                    .build());
+            checkpoint.setRdcId(rdcId);
+            checkpoint.setBalance(latest.getNewStock());
+            checkpoint.setLastMovementId(latest.getMovementId());
+            checkpoint.setLastMovementAt(latest.getTimestamp());
+            checkpoint.setArchivedMovements(checkpoint.getArchivedMovements() + summary.perInventory.get(inventoryId));
+            checkpoint.setUpdatedAt(now);
+            checkpoints.add(checkpoint);
+        });
+        stockBalanceCheckpointRepository.saveAll(checkpoints);
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Where each block of an archive file starts, what it spans and which inventory rows it holds
+     */
+    record ArchiveIndex(List<ArchiveBlock> blocks) {
+    }
+
+    /**
+     * One gzip member of an archive file; inventory ids are sorted for binary search
+     */
+    record ArchiveBlock(long offset, long length, LocalDateTime newest, LocalDateTime oldest, long[] inventoryIds) {
+
+        long end() {
+            return offset + length;
+        }
+    }
+
+    /**
+     * Compresses up to block-movements lines as one gzip member; concatenated members still
+     * read as one gzip stream, so the file needs no index to be read whole
+     */
+    private static final class BlockWriter {
+
+        private final long offset;
+        private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        private final Writer writer;
+        private final Set<Long> inventoryIds = new TreeSet<>();
+        private int count;
+        private LocalDateTime newest;
+        private LocalDateTime oldest;
+
+        private BlockWriter(long offset) throws IOException {
+            this.offset = offset;
+            this.writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(compressed), StandardCharsets.UTF_8));
+        }
+
+        private void add(String line, StockMovementResponse movement) throws IOException {
+            writer.write(line);
+            writer.write('\n');
+            if (newest == null) {
+                newest = movement.getTimestamp();
+            }
+            oldest = movement.getTimestamp();
+            inventoryIds.add(movement.getInventoryId());
+            count++;
+        }
+
+        private ArchiveBlock finish(OutputStream out) throws IOException {
+            writer.close();
+            compressed.writeTo(out);
+            long[] ids = inventoryIds.stream().mapToLong(Long::longValue).toArray();
+            return new ArchiveBlock(offset, compressed.size(), newest, oldest, ids);
+        }
+    }
+
+    /**
+     * Counts and per-row latest movements gathered while a month is written out
+     */
+    private static final class MonthSummary {
+
+        private long count;
+        private LocalDateTime oldest;
+        private LocalDateTime newest;
+        // Rows arrive newest first, so the first movement seen for a row is its latest
+        private final Map<Long, StockMovementResponse> latest = new LinkedHashMap<>();
+        private final Map<Long, Long> perInventory = new HashMap<>();
+
+        private void add(StockMovementResponse movement) {
+            if (newest == null) {
+                newest = movement.getTimestamp();
+            }
+            oldest = movement.getTimestamp();
+            count++;
+            latest.putIfAbsent(movement.getInventoryId(), movement);
+            perInventory.merge(movement.getInventoryId(), 1L, Long::sum);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.isdn.service;
+
+import com.isdn.model.StockMovement;
+import com.isdn.repository.StockMovementRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only writer for stock movements. Movements appended inside a transaction are
+ * held until just before it commits and then inserted together as JDBC batches, which
+ * the MySQL driver rewrites into multi-row inserts. The insert still runs in the
+ * business transaction, so a movement is stored exactly when its stock change is.
+ */
+@Service
+@Slf4j
+public class StockMovementJournal {
+
+    private final StockMovementRepository stockMovementRepository;
+    private final EntityManager entityManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${inventory.movements.batch-size:200}")
+    private int batchSize;
+
+    public StockMovementJournal(StockMovementRepository stockMovementRepository,
+                                EntityManager entityManager,
+                                MeterRegistry meterRegistry) {
+        this.stockMovementRepository = stockMovementRepository;
+        this.entityManager = entityManager;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Append a movement. Movements are written in the order they were appended, so the
+     * history of each inventory row keeps its order.
+     */
+    public void append(StockMovement movement) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            stockMovementRepository.save(movement);
+            return;
+        }
+
+        PendingMovements pending = (PendingMovements) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingMovements();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.movements.add(movement);
+    }
+
+    private void write(List<StockMovement> movements) {
+        Session session = entityManager.unwrap(Session.class);
+        Integer previousBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize);
+        try {
+            stockMovementRepository.saveAll(movements);
+            // Flush while the larger batch size is in effect
+            entityManager.flush();
+        } finally {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+        meterRegistry.summary("inventory.movements.batch").record(movements.size());
+        log.debug("Wrote {} stock movements", movements.size());
+    }
+
+    /**
+     * Movements appended by one transaction
+     */
+    private final class PendingMovements implements TransactionSynchronization {
+
+        private final List<StockMovement> movements = new ArrayList<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!movements.isEmpty()) {
+                write(movements);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(StockMovementJournal.this);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.isdn.service;
+
+import com.isdn.exception.BadRequestException;
+import com.isdn.model.OrderAllocation;
+import com.isdn.repository.InventoryRepository;
+import com.isdn.repository.InventoryRepositoryCustom.StockDelta;
+import com.isdn.repository.InventoryRepositoryCustom.StockLevel;
+import com.isdn.repository.OrderAllocationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Checks and decrements stock for a whole order in set-based statements:
+ * one read of every candidate inventory row, then one batch of conditional
+ * decrements. Rows that lost a race are re-planned with a locking read.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationService {
+
+    private final InventoryRepository inventoryRepository;
+    private final StockContentionMetrics contentionMetrics;
+    private final StockLedgerService stockLedgerService;
+
+    @Value("${inventory.reservation.max-attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * Reserve stock for all lines, or fail with a single error listing every short line.
+     * Must run inside the caller's transaction so the order and its stock commit together.
+     */
+    @Transactional
+    public List<Allocation> reserve(List<Line> lines) {
+        return reserve(lines, List.of());
+    }
+
+    /**
+     * Reserve stock, drawing from RDCs in the given preference order before the rest
+     */
+    @Transactional
+    public List<Allocation> reserve(List<Line> lines, List<Long> rdcPreference) {
+        Reservation reservation;
+        try {
+            reservation = tryReserve(lines, rdcPreference);
+        } catch (PessimisticLockingFailureException e) {
+            // A retry round's locking read can still deadlock against rows this checkout already
+            // decremented; the database has rolled the transaction back, so fail like a lost race
+            lines.forEach(line -> contentionMetrics.recordRetriesExhausted(line.sku()));
+            log.warn("Stock reservation hit a lock conflict, rolled back: {}", e.getMostSpecificCause().getMessage());
+            throw new BadRequestException("Stock is changing too quickly. Please try again");
+        }
+        if (!reservation.successful()) {
+            throw new BadRequestException(reservation.failure());
+        }
+        return reservation.allocations();
+    }
+
+    /**
+     * Like reserve, but reports a shortfall instead of throwing, after giving back any
+     * stock already taken. Lets a caller reserve many orders in one transaction without
+     * one short order rolling back the others.
+     */
+    @Transactional
+    public Reservation tryReserve(List<Line> lines, List<Long> rdcPreference) {
+        Map<Long, Integer> rdcRank = new HashMap<>();
+        for (int i = 0; i < rdcPreference.size(); i++) {
+            rdcRank.putIfAbsent(rdcPreference.get(i), i);
+        }
+        Map<Long, Line> requested = mergeLines(lines);
+        Map<Long, Integer> reservedSoFar = new HashMap<>();
+        List<Allocation> applied = new ArrayList<>();
+
+        Map<Long, Line> remaining = requested;
+        boolean lockingRead = false;
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            List<StockLevel> levels = inventoryRepository.findStockLevelsByProductIds(remaining.keySet(), lockingRead);
+            List<Allocation> plan = new ArrayList<>();
+            List<Shortfall> shortfalls = planAllocations(remaining, levels, rdcRank, plan);
+
+            if (!shortfalls.isEmpty()) {
+                release(applied);
+                return Reservation.failed(describeShortfalls(shortfalls, requested, reservedSoFar));
+            }
+
+            // Every checkout takes row locks in inventory id order, whatever RDC order it prefers
+            plan.sort(Comparator.comparingLong(Allocation::inventoryId));
+            int[] updateCounts = inventoryRepository.decrementStockIfAvailable(
+                    plan.stream().map(a -> new StockDelta(a.inventoryId(), a.quantity())).toList());
+
+            Map<Long, Line> lost = new LinkedHashMap<>();
+            for (int i = 0; i < updateCounts.length; i++) {
+                Allocation allocation = plan.get(i);
+                if (updateCounts[i] > 0) {
+                    applied.add(allocation);
+                    stockLedgerService.recordChange(allocation.inventoryId(), allocation.productId(),
+                            allocation.rdcId(), -allocation.quantity());
+                    reservedSoFar.merge(allocation.productId(), allocation.quantity(), Integer::sum);
+                } else {
+                    Line line = remaining.get(allocation.productId());
+                    contentionMetrics.recordConflict(line.sku());
+                    lost.merge(allocation.productId(), line.withQuantity(allocation.quantity()),
+                            (a, b) -> a.withQuantity(a.quantity() + b.quantity()));
+                }
+            }
+
+            if (lost.isEmpty()) {
+                log.info("Reserved {} lines across {} inventory rows", requested.size(), applied.size());
+                return new Reservation(applied, null);
+            }
+
+            log.warn("Stock changed concurrently for {} products, retrying reservation (attempt {}/{})",
+                    lost.size(), attempt, maxAttempts);
+            remaining = lost;
+            lockingRead = true;
+        }
+
+        remaining.values().forEach(line -> contentionMetrics.recordRetriesExhausted(line.sku()));
+        release(applied);
+        return Reservation.failed("Stock is changing too quickly. Please try again");
+    }
+
+    /**
+     * Give back stock taken by earlier rounds of a reservation that then failed
+     */
+    private void release(List<Allocation> applied) {
+        if (applied.isEmpty()) {
+            return;
+        }
+        inventoryRepository.incrementStock(
+                applied.stream().map(a -> new StockDelta(a.inventoryId(), a.quantity())).toList());
+        for (Allocation allocation : applied) {
+            stockLedgerService.recordChange(allocation.inventoryId(), allocation.productId(),
+                    allocation.rdcId(), allocation.quantity());
+        }
+    }
+
+    /**
+     * Allocate each line from preferred RDCs first, then from the inventory rows holding
+     * the most stock, which keeps the number of rows touched (and split shipments) low.
+     */
+    private List<Shortfall> planAllocations(Map<Long, Line> lines, List<StockLevel> levels,
+                                            Map<Long, Integer> rdcRank, List<Allocation> plan) {
+        Map<Long, List<StockLevel>> levelsByProduct = levels.stream()
+                .collect(Collectors.groupingBy(StockLevel::productId));
+
+        List<Shortfall> shortfalls = new ArrayList<>();
+        for (Line line : lines.values()) {
+            List<StockLevel> candidates = new ArrayList<>(levelsByProduct.getOrDefault(line.productId(), List.of()));
+            candidates.sort(Comparator.<StockLevel>comparingInt(level -> rdcRank.getOrDefault(level.rdcId(), Integer.MAX_VALUE))
+                    .thenComparing(Comparator.comparingInt(StockLevel::quantityOnHand).reversed()));
+
+            int remaining = line.quantity();
+            int available = 0;
+            for (StockLevel level : candidates) {
+                available += level.quantityOnHand();
+                if (remaining <= 0 || level.quantityOnHand() <= 0) {
+                    continue;
+                }
+                int take = Math.min(level.quantityOnHand(), remaining);
+                plan.add(new Allocation(level.inventoryId(), level.productId(), level.rdcId(), take));
+                remaining -= take;
+            }
+
+            if (remaining > 0) {
+                shortfalls.add(new Shortfall(line.productId(), line.productName(), available));
+            }
+        }
+        return shortfalls;
+    }
+
+    private String describeShortfalls(List<Shortfall> shortfalls, Map<Long, Line> requested,
+                                      Map<Long, Integer> reservedSoFar) {
+        return "Insufficient stock for " + shortfalls.size() + " item(s): " + shortfalls.stream()
+                .map(s -> s.productName() +
+                        " (requested " + requested.get(s.productId()).quantity() +
+                        ", available " + (s.available() + reservedSoFar.getOrDefault(s.productId(), 0)) + ")")
+                .collect(Collectors.joining("; "));
+    }
+
+    private Map<Long, Line> mergeLines(List<Line> lines) {
+        Map<Long, Line> merged = new LinkedHashMap<>();
+        for (Line line : lines) {
+            merged.merge(line.productId(), line, (a, b) -> a.withQuantity(a.quantity() + b.quantity()));
+        }
+        return merged;
+    }
+
+    public record Line(Long productId, String sku, String productName, int quantity) {
+
+        Line withQuantity(int newQuantity) {
+            return new Line(productId, sku, productName, newQuantity);
+        }
+    }
+
+    public record Allocation(Long inventoryId, Long productId, Long rdcId, int quantity) {
+
+        public static Allocation of(OrderAllocationRepository.AllocationView allocation) {
+            return new Allocation(allocation.getInventoryId(), allocation.getProductId(), allocation.getRdcId(),
+                    allocation.getQuantity());
+        }
+
+        public OrderAllocation toEntity() {
+            return OrderAllocation.builder()
+                    .inventoryId(inventoryId)
+                    .productId(productId)
+                    .rdcId(rdcId)
+                    .quantity(quantity)
+                    .build();
+        }
+    }
+
+    /**
+     * Outcome of tryReserve: the allocations taken, or why nothing was taken
+     */
+    public record Reservation(List<Allocation> allocations, String failure) {
+
+        static Reservation failed(String failure) {
+            return new Reservation(List.of(), failure);
+        }
+
+        public boolean successful() {
+            return failure == null;
+        }
+    }
+
+    private record Shortfall(Long productId, String productName, int available) {
+    }
+}
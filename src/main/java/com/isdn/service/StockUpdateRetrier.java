@@ -0,0 +1,69 @@
+package com.isdn.service;
+
+import com.isdn.exception.BadRequestException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs a versioned stock update in its own transaction and replays it when
+ * another writer changed the same inventory row first.
+ */
+@Component
+@Slf4j
+public class StockUpdateRetrier {
+
+    private final TransactionTemplate transactionTemplate;
+    private final StockContentionMetrics contentionMetrics;
+
+    @Value("${inventory.update.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${inventory.update.backoff-millis:20}")
+    private long backoffMillis;
+
+    public StockUpdateRetrier(PlatformTransactionManager transactionManager,
+                              StockContentionMetrics contentionMetrics) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.contentionMetrics = contentionMetrics;
+    }
+
+    /**
+     * Execute the update, retrying on optimistic lock conflicts.
+     * Each attempt runs in a fresh transaction so it re-reads the latest stock.
+     */
+    public <T> T execute(String sku, Supplier<T> update) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> update.get());
+            } catch (OptimisticLockingFailureException e) {
+                contentionMetrics.recordConflict(sku);
+
+                if (attempt >= maxAttempts) {
+                    contentionMetrics.recordRetriesExhausted(sku);
+                    log.warn("Giving up stock update for SKU {} after {} conflicting attempts", sku, attempt);
+                    throw new BadRequestException("Stock for " + sku + " is being updated concurrently. Please try again");
+                }
+
+                log.info("Concurrent stock update on SKU {}, retrying (attempt {}/{})", sku, attempt, maxAttempts);
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        try {
+            long jitter = ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+            Thread.sleep(backoffMillis * attempt + jitter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BadRequestException("Stock update interrupted");
+        }
+    }
+}
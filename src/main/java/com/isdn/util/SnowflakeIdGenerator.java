@@ -0,0 +1,67 @@
+package com.isdn.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered 63-bit ids: 41 bits of milliseconds since 2025-01-01, 10 bits of
+ * node id and a 12-bit per-millisecond sequence. Ids are unique across nodes
+ * without any coordination, and generation is a single CAS on one AtomicLong.
+ */
+@Component
+public class SnowflakeIdGenerator {
+
+    private static final long EPOCH_MILLIS = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeBits;
+
+    // Last issued (millis << SEQUENCE_BITS | sequence)
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(@Value("${ids.node-id:0}") long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalStateException("ids.node-id must be between 0 and " + MAX_NODE_ID + " but was " + nodeId);
+        }
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+    }
+
+    /**
+     * Next id. When the sequence for the current millisecond runs out, or the clock
+     * steps backwards, ids continue from the last issued millisecond instead of waiting.
+     */
+    public long nextId() {
+        for (;;) {
+            long current = state.get();
+            long lastMillis = current >>> SEQUENCE_BITS;
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+
+            long next;
+            if (now > lastMillis) {
+                next = now << SEQUENCE_BITS;
+            } else if ((current & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = current + 1;
+            } else {
+                next = (lastMillis + 1) << SEQUENCE_BITS;
+            }
+
+            if (state.compareAndSet(current, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * Next id with a prefix, e.g. "ORD-" + id
+     */
+    public String nextId(String prefix) {
+        return prefix + nextId();
+    }
+}
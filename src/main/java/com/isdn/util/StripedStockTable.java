@@ -0,0 +1,334 @@
+package com.isdn.util;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Lock-striped productId -> per-RDC stock counters held in primitive arrays.
+ * Each stripe is an open-addressing table guarded by its own StampedLock;
+ * reads use optimistic stamps so availability lookups neither block nor allocate.
+ */
+public final class StripedStockTable {
+
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long EMPTY = 0L;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    // RDC id per counter slot, replaced copy-on-write when a new RDC shows up
+    private volatile long[] rdcSlots = new long[0];
+
+    public StripedStockTable() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Total stock for a product across all RDCs (0 when unknown)
+     */
+    public int total(long productId) {
+        Stripe stripe = stripes[stripeOf(productId)];
+        long stamp = stripe.lock.tryOptimisticRead();
+        int total = stripe.sum(productId, -1);
+        if (!stripe.lock.validate(stamp) || total < 0) {
+            stamp = stripe.lock.readLock();
+            try {
+                total = stripe.sum(productId, -1);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return Math.max(total, 0);
+    }
+
+    /**
+     * Stock for a product at a single RDC (0 when unknown)
+     */
+    public int quantity(long productId, long rdcId) {
+        int slot = slotOf(rdcId);
+        if (slot < 0) {
+            return 0;
+        }
+        Stripe stripe = stripes[stripeOf(productId)];
+        long stamp = stripe.lock.tryOptimisticRead();
+        int quantity = stripe.sum(productId, slot);
+        if (!stripe.lock.validate(stamp) || quantity < 0) {
+            stamp = stripe.lock.readLock();
+            try {
+                quantity = stripe.sum(productId, slot);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return Math.max(quantity, 0);
+    }
+
+    /**
+     * Apply a delta and return the new quantity at that RDC
+     */
+    public int add(long productId, long rdcId, int delta) {
+        int slot = slotOrRegister(rdcId);
+        Stripe stripe = stripes[stripeOf(productId)];
+        long stamp = stripe.lock.writeLock();
+        try {
+            int[] counters = stripe.countersFor(productId, slot);
+            counters[slot] += delta;
+            stripe.version++;
+            return counters[slot];
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Overwrite the quantity at an RDC (used on load and reconciliation)
+     */
+    public void set(long productId, long rdcId, int quantity) {
+        int slot = slotOrRegister(rdcId);
+        Stripe stripe = stripes[stripeOf(productId)];
+        long stamp = stripe.lock.writeLock();
+        try {
+            stripe.countersFor(productId, slot)[slot] = quantity;
+            stripe.version++;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Set the quantity only if the stripe has not changed since the given version.
+     *
+     * @return true when the value was written
+     */
+    public boolean setIfUnchanged(long productId, long rdcId, int quantity, long expectedStripeVersion) {
+        int slot = slotOrRegister(rdcId);
+        Stripe stripe = stripes[stripeOf(productId)];
+        long stamp = stripe.lock.writeLock();
+        try {
+            if (stripe.version != expectedStripeVersion) {
+                return false;
+            }
+            stripe.countersFor(productId, slot)[slot] = quantity;
+            stripe.version++;
+            return true;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                stripe.reset();
+                stripe.version++;
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * RDC ids that currently have a counter slot
+     */
+    public long[] rdcIds() {
+        return rdcSlots.clone();
+    }
+
+    public int stripeCount() {
+        return STRIPES;
+    }
+
+    public int stripeOf(long productId) {
+        return (int) (mix(productId) >>> (64 - STRIPE_BITS));
+    }
+
+    /**
+     * Modification counter of a stripe, used to detect concurrent writes
+     */
+    public long stripeVersion(int stripeIndex) {
+        Stripe stripe = stripes[stripeIndex];
+        long stamp = stripe.lock.readLock();
+        try {
+            return stripe.version;
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Visit every (product, RDC) counter; each stripe is visited under its read lock
+     */
+    public void forEach(EntryVisitor visitor) {
+        long[] slots = rdcSlots;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                for (int i = 0; i < stripe.keys.length; i++) {
+                    long productId = stripe.keys[i];
+                    int[] counters = stripe.counts[i];
+                    if (productId == EMPTY || counters == null) {
+                        continue;
+                    }
+                    for (int slot = 0; slot < counters.length && slot < slots.length; slot++) {
+                        visitor.visit(productId, slots[slot], counters[slot]);
+                    }
+                }
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private int slotOf(long rdcId) {
+        long[] slots = rdcSlots;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == rdcId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int slotOrRegister(long rdcId) {
+        int slot = slotOf(rdcId);
+        return slot >= 0 ? slot : registerRdc(rdcId);
+    }
+
+    private synchronized int registerRdc(long rdcId) {
+        int slot = slotOf(rdcId);
+        if (slot >= 0) {
+            return slot;
+        }
+        long[] grown = Arrays.copyOf(rdcSlots, rdcSlots.length + 1);
+        grown[grown.length - 1] = rdcId;
+        rdcSlots = grown;
+        return grown.length - 1;
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(long productId, long rdcId, int quantity);
+    }
+
+    private static final class Stripe {
+
+        private final StampedLock lock = new StampedLock();
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[][] counts = new int[INITIAL_CAPACITY][];
+        private int size;
+        private long version;
+
+        /**
+         * Sum the counters of a product (slot -1 means all RDCs).
+         * Safe to call without a lock: returns -1 when it observes a torn table.
+         */
+        int sum(long productId, int slot) {
+            long[] k = keys;
+            int[][] c = counts;
+            if (k.length != c.length) {
+                return -1;
+            }
+            int mask = k.length - 1;
+            int index = (int) mix(productId) & mask;
+            for (int probes = 0; probes < k.length; probes++) {
+                long key = k[index];
+                if (key == EMPTY) {
+                    return 0;
+                }
+                if (key == productId) {
+                    int[] counters = c[index];
+                    if (counters == null) {
+                        return -1;
+                    }
+                    if (slot >= 0) {
+                        return slot < counters.length ? counters[slot] : 0;
+                    }
+                    int total = 0;
+                    for (int value : counters) {
+                        total += value;
+                    }
+                    return total;
+                }
+                index = (index + 1) & mask;
+            }
+            return 0;
+        }
+
+        /**
+         * Counter array for a product, created or widened as needed. Caller holds the write lock.
+         */
+        int[] countersFor(long productId, int slot) {
+            int index = indexOf(productId);
+            if (index < 0) {
+                if ((size + 1) * 2 > keys.length) {
+                    resize();
+                }
+                index = insertionIndex(productId);
+                keys[index] = productId;
+                counts[index] = new int[slot + 1];
+                size++;
+            } else if (counts[index].length <= slot) {
+                counts[index] = Arrays.copyOf(counts[index], slot + 1);
+            }
+            return counts[index];
+        }
+
+        void reset() {
+            keys = new long[INITIAL_CAPACITY];
+            counts = new int[INITIAL_CAPACITY][];
+            size = 0;
+        }
+
+        private int indexOf(long productId) {
+            int mask = keys.length - 1;
+            int index = (int) mix(productId) & mask;
+            while (keys[index] != EMPTY) {
+                if (keys[index] == productId) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        private int insertionIndex(long productId) {
+            int mask = keys.length - 1;
+            int index = (int) mix(productId) & mask;
+            while (keys[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[][] oldCounts = counts;
+            long[] newKeys = new long[oldKeys.length * 2];
+            int[][] newCounts = new int[oldKeys.length * 2][];
+            int mask = newKeys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == EMPTY) {
+                    continue;
+                }
+                int index = (int) mix(oldKeys[i]) & mask;
+                while (newKeys[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                newKeys[index] = oldKeys[i];
+                newCounts[index] = oldCounts[i];
+            }
+            // Publish counts before keys so an optimistic reader never pairs new keys with old counts
+            counts = newCounts;
+            keys = newKeys;
+        }
+    }
+}
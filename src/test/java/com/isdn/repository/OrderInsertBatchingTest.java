@@ -0,0 +1,114 @@
+package com.isdn.repository;
+
+import com.isdn.model.Category;
+import com.isdn.model.Order;
+import com.isdn.model.OrderItem;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.PaymentMethod;
+import com.isdn.model.Product;
+import com.isdn.model.Role;
+import com.isdn.model.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A 50-line order must reach the database as one order insert and one batched item
+ * insert, plus the sequence reads that hand out its ids, instead of 51 separate
+ * IDENTITY inserts.
+ */
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+class OrderInsertBatchingTest {
+
+    private static final int LINES = 50;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User customer;
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        customer = entityManager.persist(User.builder()
+                .username("customer")
+                .email("customer@example.com")
+                .password("secret")
+                .role(Role.CUSTOMER)
+                .active(true)
+                .build());
+        products = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            products.add(entityManager.persist(Product.builder()
+                    .sku("SKU-" + i)
+                    .name("Product " + i)
+                    .category(Category.values()[i % Category.values().length])
+                    .unitPrice(new BigDecimal("10.00"))
+                    .active(true)
+                    .build()));
+        }
+        entityManager.flush();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void fiftyLineOrdersAreInsertedInBatches() {
+        for (int o = 0; o < 3; o++) {
+            statistics.clear();
+
+            orderRepository.save(order("ORD-" + o));
+            entityManager.flush();
+
+            assertThat(statistics.getEntityInsertCount()).isEqualTo(LINES + 1);
+            // One order insert and one batch for its items, plus the sequence reads: at most
+            // one per 50 ids, and one extra the first time each pooled sequence is touched
+            assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(o == 0 ? 5 : 4);
+        }
+    }
+
+    private Order order(String orderNumber) {
+        Order order = Order.builder()
+                .orderNumber(orderNumber)
+                .user(customer)
+                .status(OrderStatus.PENDING)
+                .totalAmount(new BigDecimal("500.00"))
+                .deliveryAddress("1 Main Street")
+                .contactNumber("0770000000")
+                .paymentMethod(PaymentMethod.CASH_ON_DELIVERY)
+                .build();
+        for (Product product : products) {
+            OrderItem item = OrderItem.builder()
+                    .product(product)
+                    .quantity(1)
+                    .unitPrice(new BigDecimal("10.00"))
+                    .build();
+            item.calculateSubtotal();
+            order.addItem(item);
+        }
+        return order;
+    }
+}
@@ -0,0 +1,136 @@
+package com.isdn.service;
+
+import com.isdn.dto.request.BulkOrderRow;
+import com.isdn.service.BulkOrderService.CsvOrderReader;
+import com.isdn.service.BulkOrderService.ParsedOrder;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkOrderCsvReaderTest {
+
+    private static final String HEADER = "orderRef,sku,quantity,deliveryAddress,contactNumber,paymentMethod,notes";
+
+    @Test
+    void consecutiveRowsWithTheSameRefFormOneOrder() throws IOException {
+        List<ParsedOrder> orders = readAll(HEADER,
+                "PO-1,SKU-1,2,1 Main Street,0770000000,CASH_ON_DELIVERY,ring twice",
+                "PO-1,SKU-2,5,ignored,ignored,ignored,ignored",
+                "PO-2,SKU-1,1,2 Side Road,0771111111,ONLINE_PAYMENT,");
+
+        assertThat(orders).hasSize(2);
+
+        ParsedOrder first = orders.get(0);
+        assertThat(first.row()).isEqualTo(2);
+        assertThat(first.orderRef()).isEqualTo("PO-1");
+        assertThat(first.error()).isNull();
+        BulkOrderRow order = first.order();
+        // Order-level columns come from the first row only
+        assertThat(order.getDeliveryAddress()).isEqualTo("1 Main Street");
+        assertThat(order.getContactNumber()).isEqualTo("0770000000");
+        assertThat(order.getPaymentMethod()).isEqualTo("CASH_ON_DELIVERY");
+        assertThat(order.getNotes()).isEqualTo("ring twice");
+        assertThat(order.getItems()).containsExactly(
+                new BulkOrderRow.Item("SKU-1", 2), new BulkOrderRow.Item("SKU-2", 5));
+
+        assertThat(orders.get(1).row()).isEqualTo(4);
+        assertThat(orders.get(1).order().getItems()).containsExactly(new BulkOrderRow.Item("SKU-1", 1));
+    }
+
+    @Test
+    void headerIgnoresCaseUnderscoresAndColumnOrder() throws IOException {
+        List<ParsedOrder> orders = readAll(" PAYMENT_METHOD ,Quantity,SKU,contact_number,delivery_address,ORDER_REF",
+                "CASH_ON_DELIVERY,3,SKU-9,0770000000,1 Main Street,PO-7");
+
+        assertThat(orders).singleElement().satisfies(parsed -> {
+            assertThat(parsed.orderRef()).isEqualTo("PO-7");
+            assertThat(parsed.order().getPaymentMethod()).isEqualTo("CASH_ON_DELIVERY");
+            assertThat(parsed.order().getNotes()).isNull();
+            assertThat(parsed.order().getItems()).containsExactly(new BulkOrderRow.Item("SKU-9", 3));
+        });
+    }
+
+    @Test
+    void missingRequiredColumnsEndTheFileWithOneError() throws IOException {
+        List<ParsedOrder> orders = readAll("orderRef,sku,deliveryAddress",
+                "PO-1,SKU-1,1 Main Street");
+
+        assertThat(orders).singleElement().satisfies(parsed -> {
+            assertThat(parsed.row()).isEqualTo(1);
+            assertThat(parsed.order()).isNull();
+            assertThat(parsed.error()).isEqualTo(
+                    "CSV header is missing columns: quantity, contactnumber, paymentmethod");
+        });
+    }
+
+    @Test
+    void quotedFieldsKeepCommasAndEscapedQuotes() throws IOException {
+        List<ParsedOrder> orders = readAll(HEADER,
+                "PO-1,SKU-1,1,\"12, Temple Road, Kandy\",0770000000,CASH_ON_DELIVERY,\"say \"\"hello\"\"\"");
+
+        BulkOrderRow order = orders.get(0).order();
+        assertThat(order.getDeliveryAddress()).isEqualTo("12, Temple Road, Kandy");
+        assertThat(order.getNotes()).isEqualTo("say \"hello\"");
+    }
+
+    @Test
+    void badQuantityRejectsOnlyItsOrder() throws IOException {
+        List<ParsedOrder> orders = readAll(HEADER,
+                "PO-1,SKU-1,1,1 Main Street,0770000000,CASH_ON_DELIVERY,",
+                "PO-1,SKU-2,lots,1 Main Street,0770000000,CASH_ON_DELIVERY,",
+                "PO-2,SKU-1,,1 Main Street,0770000000,CASH_ON_DELIVERY,",
+                "PO-3,SKU-1,4,1 Main Street,0770000000,CASH_ON_DELIVERY,");
+
+        assertThat(orders).hasSize(3);
+        assertThat(orders.get(0).order()).isNull();
+        assertThat(orders.get(0).error()).isEqualTo("Invalid quantity on line 3");
+        assertThat(orders.get(1).error()).isEqualTo("Invalid quantity on line 4");
+        assertThat(orders.get(2).error()).isNull();
+        assertThat(orders.get(2).order().getItems()).containsExactly(new BulkOrderRow.Item("SKU-1", 4));
+    }
+
+    @Test
+    void blankLinesAreSkippedButStillCounted() throws IOException {
+        List<ParsedOrder> orders = readAll("", HEADER, "",
+                "PO-1,SKU-1,1,1 Main Street,0770000000,CASH_ON_DELIVERY,", "   ",
+                "PO-1,SKU-2,2,1 Main Street,0770000000,CASH_ON_DELIVERY,");
+
+        assertThat(orders).singleElement().satisfies(parsed -> {
+            assertThat(parsed.row()).isEqualTo(4);
+            assertThat(parsed.order().getItems()).hasSize(2);
+        });
+    }
+
+    @Test
+    void refsThatReappearLaterStartANewOrder() throws IOException {
+        List<ParsedOrder> orders = readAll(HEADER,
+                "PO-1,SKU-1,1,1 Main Street,0770000000,CASH_ON_DELIVERY,",
+                "PO-2,SKU-1,1,1 Main Street,0770000000,CASH_ON_DELIVERY,",
+                "PO-1,SKU-2,1,1 Main Street,0770000000,CASH_ON_DELIVERY,");
+
+        assertThat(orders).extracting(ParsedOrder::orderRef).containsExactly("PO-1", "PO-2", "PO-1");
+    }
+
+    @Test
+    void emptyInputHasNoOrders() throws IOException {
+        assertThat(readAll()).isEmpty();
+        assertThat(readAll(HEADER)).isEmpty();
+    }
+
+    private static List<ParsedOrder> readAll(String... lines) throws IOException {
+        CsvOrderReader reader = new CsvOrderReader(new BufferedReader(new StringReader(String.join("\n", lines))));
+        List<ParsedOrder> orders = new ArrayList<>();
+        for (ParsedOrder parsed = reader.next(); parsed != null; parsed = reader.next()) {
+            orders.add(parsed);
+        }
+        // Once exhausted the reader keeps returning null
+        assertThat(reader.next()).isNull();
+        return orders;
+    }
+}
@@ -0,0 +1,173 @@
+package com.isdn.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.isdn.config.InvoiceConfig;
+import com.isdn.model.EmailOutboxMessage;
+import com.isdn.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * The dispatcher against a real SMTP conversation: GreenMail in process for delivery, and
+ * a socket that never answers for a stalled server. A poll must return at once and leave
+ * the sending to the sender threads, which give up after the SMTP timeouts.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "email.outbox.messages-per-connection=5",
+        "email.outbox.stale-after-seconds=60",
+        "spring.mail.properties.mail.smtp.connectiontimeout=1000",
+        "spring.mail.properties.mail.smtp.timeout=3000",
+        "spring.mail.properties.mail.smtp.writetimeout=3000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({EmailOutboxDispatcher.class, EmailOutboxDispatcherTest.Mail.class})
+class EmailOutboxDispatcherTest {
+
+    @RegisterExtension
+    static final GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Autowired
+    private EmailOutboxDispatcher dispatcher;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private JavaMailSenderImpl mailSender;
+
+    @BeforeEach
+    void setUp() {
+        emailOutboxRepository.deleteAll();
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+    }
+
+    @Test
+    void deliversEveryDueMessageInChunksPerDomain() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            queue("customer" + i + "@example.com");
+        }
+        for (int i = 0; i < 4; i++) {
+            queue("buyer" + i + "@example.org");
+        }
+
+        dispatcher.dispatch();
+
+        assertThat(greenMail.waitForIncomingEmail(10_000, 12)).isTrue();
+        await().atMost(Duration.ofSeconds(10)).untilAsserted(() ->
+                assertThat(emailOutboxRepository.countByStatus(EmailOutboxMessage.Status.SENT)).isEqualTo(12));
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(Arrays.stream(received).map(this::recipient))
+                .contains("customer0@example.com", "buyer3@example.org");
+        assertThat(emailOutboxRepository.findAll()).allSatisfy(message -> {
+            assertThat(message.getAttempts()).isEqualTo(1);
+            assertThat(message.getSentAt()).isNotNull();
+        });
+    }
+
+    @Test
+    void stalledServerDoesNotBlockThePollAndTimesOut() throws Exception {
+        try (ServerSocket stalled = new ServerSocket(0)) {
+            // Accepts the connection and never sends the SMTP greeting
+            Thread acceptor = new Thread(() -> {
+                try (Socket ignored = stalled.accept()) {
+                    Thread.sleep(30_000);
+                } catch (Exception e) {
+                    // Closed by the test
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+            mailSender.setPort(stalled.getLocalPort());
+            Long messageId = queue("customer@example.com").getMessageId();
+
+            long started = System.nanoTime();
+            dispatcher.dispatch();
+            assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(3));
+
+            await().atMost(Duration.ofSeconds(15)).untilAsserted(() -> {
+                EmailOutboxMessage message = emailOutboxRepository.findById(messageId).orElseThrow();
+                assertThat(message.getStatus()).isEqualTo(EmailOutboxMessage.Status.PENDING);
+                assertThat(message.getAttempts()).isEqualTo(1);
+                assertThat(message.getLastError()).isNotNull();
+            });
+            acceptor.interrupt();
+        }
+    }
+
+    private EmailOutboxMessage queue(String recipient) {
+        return emailOutboxRepository.save(EmailOutboxMessage.builder()
+                .recipient(recipient)
+                .recipientDomain(recipient.substring(recipient.indexOf('@') + 1))
+                .subject("Your invoice")
+                .body("<p>Thank you for your order</p>")
+                .html(true)
+                .status(EmailOutboxMessage.Status.PENDING)
+                .attempts(0)
+                .nextAttemptAt(LocalDateTime.now().minusSeconds(1))
+                .build());
+    }
+
+    private String recipient(MimeMessage message) {
+        try {
+            return message.getAllRecipients()[0].toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @TestConfiguration
+    static class Mail {
+
+        @Bean
+        JavaMailSenderImpl mailSender() {
+            JavaMailSenderImpl sender = new JavaMailSenderImpl();
+            sender.setHost("localhost");
+            Properties properties = new Properties();
+            properties.put("mail.smtp.connectiontimeout", "1000");
+            properties.put("mail.smtp.timeout", "3000");
+            properties.put("mail.smtp.writetimeout", "3000");
+            sender.setJavaMailProperties(properties);
+            return sender;
+        }
+
+        @Bean
+        InvoiceConfig invoiceConfig() {
+            InvoiceConfig config = new InvoiceConfig();
+            config.setCompanyEmail("invoices@isdn.example");
+            return config;
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
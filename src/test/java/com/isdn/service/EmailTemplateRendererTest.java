@@ -0,0 +1,69 @@
+package com.isdn.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmailTemplateRendererTest {
+
+    // The template name is the template itself with a string resolver
+    private static final String TEMPLATE = "[(${customerName})]/[(${coupon} ?: 'none')]/[(${companyName})]";
+
+    private final EmailTemplateRenderer renderer = renderer(2, 10);
+
+    @AfterEach
+    void tearDown() {
+        renderer.shutdown();
+    }
+
+    @Test
+    void recipientVariablesDoNotLeakIntoTheNextRecipient() {
+        List<String> rendered = renderer.renderEach(TEMPLATE, Map.of("companyName", "ISDN"), List.of(
+                Map.of("customerName", "Alice", "coupon", "SAVE10"),
+                Map.of("customerName", "Bob"),
+                Map.of("customerName", "Carol", "companyName", "Override"),
+                Map.of("customerName", "Dave")));
+
+        assertThat(rendered).containsExactly(
+                "Alice/SAVE10/ISDN",
+                "Bob/none/ISDN",
+                "Carol/none/Override",
+                "Dave/none/ISDN");
+    }
+
+    @Test
+    void resultsStayInRecipientOrderAcrossBatches() {
+        List<Map<String, Object>> recipients = new ArrayList<>();
+        for (int i = 0; i < 95; i++) {
+            recipients.add(Map.of("customerName", "customer" + i));
+        }
+
+        List<String> rendered = renderer.renderEach(TEMPLATE, Map.of("companyName", "ISDN"), recipients);
+
+        assertThat(rendered).hasSize(95);
+        for (int i = 0; i < 95; i++) {
+            assertThat(rendered.get(i)).isEqualTo("customer" + i + "/none/ISDN");
+        }
+    }
+
+    private static EmailTemplateRenderer renderer(int parallelism, int batchSize) {
+        StringTemplateResolver resolver = new StringTemplateResolver();
+        resolver.setTemplateMode(TemplateMode.TEXT);
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+
+        EmailTemplateRenderer renderer = new EmailTemplateRenderer(templateEngine, new SimpleMeterRegistry(), parallelism);
+        ReflectionTestUtils.setField(renderer, "batchSize", batchSize);
+        return renderer;
+    }
+}
@@ -0,0 +1,152 @@
+package com.isdn.service;
+
+import com.isdn.exception.ConflictException;
+import com.isdn.model.IdempotencyRecord;
+import com.isdn.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Claims are fenced by their token: a stale claim can be taken over, and an owner whose
+ * claim was taken over while it ran can neither complete nor release it.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({IdempotencyService.class, IdempotencyServiceTest.Json.class})
+class IdempotencyServiceTest {
+
+    private static final String SCOPE = "orders.place";
+    private static final Long USER_ID = 7L;
+    private static final Map<String, String> REQUEST = Map.of("sku", "SKU-1");
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRecordRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void runsOnceAndReplaysTheResponse() {
+        AtomicInteger runs = new AtomicInteger();
+
+        IdempotencyService.Result<String> first = idempotencyService.execute(SCOPE, USER_ID, "key-1", REQUEST,
+                String.class, () -> "order-" + runs.incrementAndGet());
+        IdempotencyService.Result<String> retry = idempotencyService.execute(SCOPE, USER_ID, "key-1", REQUEST,
+                String.class, () -> "order-" + runs.incrementAndGet());
+
+        assertThat(first.replayed()).isFalse();
+        assertThat(retry.replayed()).isTrue();
+        assertThat(retry.body()).isEqualTo("order-1");
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void freshClaimsAreNotTakenOver() throws NoSuchAlgorithmException {
+        IdempotencyRecord claim = inProgress("key-2", "owner-token", LocalDateTime.now().minusSeconds(60));
+
+        assertThatThrownBy(() -> idempotencyService.execute(SCOPE, USER_ID, "key-2", REQUEST, String.class,
+                () -> "duplicate"))
+                .isInstanceOf(ConflictException.class);
+        assertThat(repository.findById(claim.getRecordId()).orElseThrow().getClaimToken()).isEqualTo("owner-token");
+    }
+
+    @Test
+    void staleClaimsAreTakenOverUnderANewToken() throws NoSuchAlgorithmException {
+        IdempotencyRecord claim = inProgress("key-3", "dead-owner", LocalDateTime.now().minusHours(1));
+
+        IdempotencyService.Result<String> result = idempotencyService.execute(SCOPE, USER_ID, "key-3", REQUEST,
+                String.class, () -> "order-3");
+
+        assertThat(result.body()).isEqualTo("order-3");
+        IdempotencyRecord after = repository.findById(claim.getRecordId()).orElseThrow();
+        assertThat(after.getStatus()).isEqualTo(IdempotencyRecord.Status.COMPLETED);
+        assertThat(after.getClaimToken()).isNotEqualTo("dead-owner");
+    }
+
+    @Test
+    void ownerWhoseClaimWasTakenOverRollsBackAndLeavesTheNewClaim() {
+        TransactionTemplate newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        assertThatThrownBy(() -> idempotencyService.execute(SCOPE, USER_ID, "key-4", REQUEST, String.class, () -> {
+            // While this request runs, another instance decides it is dead and takes the claim over
+            newTransaction.executeWithoutResult(status -> {
+                IdempotencyRecord record = repository.findAll().get(0);
+                record.setClaimToken("new-owner");
+                repository.save(record);
+            });
+            return "order-4";
+        })).isInstanceOf(ConflictException.class);
+
+        assertThat(repository.findAll()).singleElement().satisfies(record -> {
+            assertThat(record.getStatus()).isEqualTo(IdempotencyRecord.Status.IN_PROGRESS);
+            assertThat(record.getClaimToken()).isEqualTo("new-owner");
+            assertThat(record.getResponseBody()).isNull();
+        });
+    }
+
+    private IdempotencyRecord inProgress(String key, String token, LocalDateTime claimedAt)
+            throws NoSuchAlgorithmException {
+        return repository.save(IdempotencyRecord.builder()
+                .scope(SCOPE)
+                .userId(USER_ID)
+                .idempotencyKey(key)
+                .requestHash(hash())
+                .status(IdempotencyRecord.Status.IN_PROGRESS)
+                .claimedAt(claimedAt)
+                .claimToken(token)
+                .expiresAt(LocalDateTime.now().plusHours(24))
+                .build());
+    }
+
+    private String hash() throws NoSuchAlgorithmException {
+        // The same digest the service takes of a request body
+        byte[] body = jsonMapper.writeValueAsBytes(REQUEST);
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+    }
+
+    @TestConfiguration
+    static class Json {
+
+        @Bean
+        JsonMapper jsonMapper() {
+            return JsonMapper.builder().build();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.isdn.service;
+
+import com.isdn.model.EmailOutboxMessage;
+import com.isdn.model.InvoiceArchiveEntry;
+import com.isdn.repository.EmailOutboxRepository;
+import com.isdn.repository.InvoiceArchiveRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The nightly sweep must delete superseded invoice files and nothing an order or an
+ * unsent email still points at.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(InvoiceArchiveService.class)
+class InvoiceArchiveCleanupTest {
+
+    private static final Path ARCHIVE = tempDirectory();
+
+    @DynamicPropertySource
+    static void archiveDir(DynamicPropertyRegistry registry) {
+        registry.add("invoice.archive.dir", ARCHIVE::toString);
+    }
+
+    @Autowired
+    private InvoiceArchiveService invoiceArchiveService;
+
+    @Autowired
+    private InvoiceArchiveRepository invoiceArchiveRepository;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @MockitoBean
+    private InvoiceService invoiceService;
+
+    @Test
+    void deletesOnlyOldFilesNothingRefersTo() throws IOException {
+        Path current = archived("aa01", true);
+        Path queued = archived("bb02", true);
+        Path sent = archived("cc03", true);
+        Path superseded = archived("dd04", true);
+        Path fresh = archived("ee05", false);
+
+        invoiceArchiveRepository.save(InvoiceArchiveEntry.builder()
+                .orderId(1L)
+                .contentHash("aa01")
+                .sizeBytes(3L)
+                .archivedAt(LocalDateTime.now())
+                .build());
+        email(queued, EmailOutboxMessage.Status.PENDING);
+        email(sent, EmailOutboxMessage.Status.SENT);
+
+        assertThat(invoiceArchiveService.deleteUnreferenced()).isEqualTo(2);
+
+        assertThat(current).exists();
+        assertThat(queued).exists();
+        assertThat(fresh).exists();
+        assertThat(sent).doesNotExist();
+        assertThat(superseded).doesNotExist();
+    }
+
+    private static Path archived(String hash, boolean old) throws IOException {
+        Path path = ARCHIVE.resolve(hash.substring(0, 2)).resolve(hash + ".pdf");
+        Files.createDirectories(path.getParent());
+        Files.write(path, new byte[]{1, 2, 3});
+        if (old) {
+            Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        }
+        return path;
+    }
+
+    private void email(Path attachment, EmailOutboxMessage.Status status) {
+        emailOutboxRepository.save(EmailOutboxMessage.builder()
+                .recipient("customer@example.com")
+                .recipientDomain("example.com")
+                .subject("Invoice")
+                .body("Attached")
+                .html(false)
+                .attachmentName("invoice.pdf")
+                .attachmentPath(attachment.toAbsolutePath().toString())
+                .status(status)
+                .attempts(0)
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
+    }
+
+    private static Path tempDirectory() {
+        try {
+            return Files.createTempDirectory("invoice-archive");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
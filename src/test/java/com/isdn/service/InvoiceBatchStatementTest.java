@@ -0,0 +1,108 @@
+package com.isdn.service;
+
+import com.isdn.model.Order;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.User;
+import com.isdn.repository.OrderRepository;
+import com.isdn.service.InvoiceArchiveService.ArchivedInvoice;
+import com.isdn.service.InvoiceBatchService.Statement;
+import com.isdn.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Statements render on their own bounded pool and give up after the configured timeout
+ * instead of waiting behind whatever else is rendering.
+ */
+class InvoiceBatchStatementTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2026, 3);
+
+    private final InvoiceService invoiceService = mock(InvoiceService.class);
+    private final InvoiceArchiveService invoiceArchiveService = mock(InvoiceArchiveService.class);
+    private final User customer = User.builder().userId(7L).username("customer").build();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private InvoiceBatchService service;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void fullQueueRendersOnTheRequestingThread() {
+        service = service(1, 1, 30);
+        String requestThread = Thread.currentThread().getName();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        when(invoiceArchiveService.getOrRender(any(Long.class))).thenAnswer(invocation -> {
+            String thread = Thread.currentThread().getName();
+            threads.add(thread);
+            // The worker holds on until the queue has overflowed onto the request thread
+            if (thread.equals(requestThread)) {
+                release.countDown();
+            } else {
+                release.await();
+            }
+            Long orderId = invocation.getArgument(0);
+            return new ArchivedInvoice(orderId, "hash" + orderId, 1, Path.of("hash" + orderId + ".pdf"));
+        });
+
+        service.writeStatement(new Statement(customer, MONTH, orders(6)), new ByteArrayOutputStream());
+
+        assertThat(threads).contains(requestThread);
+        assertThat(threads).anyMatch(name -> name.startsWith("invoice-statement-"));
+        verify(invoiceService).writeStatement(eq(customer), eq(MONTH), anyList(), anyList(), any());
+    }
+
+    @Test
+    void slowRendersFailTheStatementAfterTheTimeout() {
+        service = service(2, 10, 1);
+        when(invoiceArchiveService.getOrRender(any(Long.class))).thenAnswer(invocation -> {
+            release.await();
+            return null;
+        });
+
+        long started = System.nanoTime();
+        assertThatThrownBy(() -> service.writeStatement(new Statement(customer, MONTH, orders(4)),
+                new ByteArrayOutputStream()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("did not render within 1s");
+
+        assertThat(System.nanoTime() - started).isLessThan(10_000_000_000L);
+        verify(invoiceService, never()).writeStatement(any(), any(), anyList(), anyList(), any());
+    }
+
+    private InvoiceBatchService service(int parallelism, int queueCapacity, long timeoutSeconds) {
+        return new InvoiceBatchService(mock(OrderRepository.class), mock(UserService.class), invoiceService,
+                invoiceArchiveService, mock(SnowflakeIdGenerator.class), new SimpleMeterRegistry(),
+                4, parallelism, queueCapacity, timeoutSeconds);
+    }
+
+    private static List<Order> orders(int count) {
+        return LongStream.rangeClosed(1, count)
+                .mapToObj(id -> Order.builder().orderId(id).orderNumber("ORD-" + id).status(OrderStatus.DELIVERED).build())
+                .toList();
+    }
+}
@@ -0,0 +1,202 @@
+package com.isdn.service;
+
+import com.isdn.model.EmailOutboxMessage;
+import com.isdn.model.InvoiceJob;
+import com.isdn.model.InvoiceJobStatus;
+import com.isdn.model.Order;
+import com.isdn.model.User;
+import com.isdn.repository.EmailOutboxRepository;
+import com.isdn.repository.InvoiceJobRepository;
+import com.isdn.repository.OrderRepository;
+import com.isdn.service.InvoiceArchiveService.ArchivedInvoice;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * A worker whose job was requeued as stale and claimed by another worker must neither
+ * queue a second invoice email nor overwrite the newer worker's outcome.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({InvoiceJobService.class, EmailService.class, InvoiceJobServiceTest.Metrics.class})
+class InvoiceJobServiceTest {
+
+    private static final long ORDER_ID = 42L;
+
+    @Autowired
+    private InvoiceJobService invoiceJobService;
+
+    @Autowired
+    private InvoiceJobRepository invoiceJobRepository;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private OrderRepository orderRepository;
+
+    @MockitoBean
+    private InvoiceArchiveService invoiceArchiveService;
+
+    @MockitoBean
+    private EmailTemplateRenderer emailTemplateRenderer;
+
+    private final AtomicInteger renders = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        emailOutboxRepository.deleteAll();
+        invoiceJobRepository.deleteAll();
+        ReflectionTestUtils.setField(invoiceJobService, "maxAttempts", 5);
+        ReflectionTestUtils.setField(invoiceJobService, "initialBackoffMillis", 30_000L);
+        ReflectionTestUtils.setField(invoiceJobService, "maxBackoffMillis", 3_600_000L);
+
+        User customer = User.builder().username("hardware-mart").email("orders@hardware-mart.example").build();
+        Order order = Order.builder().orderId(ORDER_ID).orderNumber("ORD-42").user(customer).build();
+        when(orderRepository.findForInvoiceById(ORDER_ID)).thenReturn(Optional.of(order));
+        when(emailTemplateRenderer.render(anyString(), anyMap())).thenReturn("<p>Invoice</p>");
+    }
+
+    @Test
+    void ownerCompletesItsJob() {
+        Long jobId = pendingJob();
+        when(invoiceArchiveService.getOrRender(any(Order.class))).thenAnswer(invocation -> archived());
+
+        process(jobId);
+
+        InvoiceJob job = invoiceJobRepository.findById(jobId).orElseThrow();
+        assertThat(job.getStatus()).isEqualTo(InvoiceJobStatus.SENT);
+        assertThat(job.getCompletedAt()).isNotNull();
+        assertThat(emailOutboxRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void staleOwnerCannotSendTheInvoiceAgain() {
+        Long jobId = pendingJob();
+        when(invoiceArchiveService.getOrRender(any(Order.class))).thenAnswer(invocation -> {
+            if (renders.incrementAndGet() == 1) {
+                takeOver(jobId);
+            }
+            return archived();
+        });
+
+        process(jobId);
+
+        InvoiceJob job = invoiceJobRepository.findById(jobId).orElseThrow();
+        assertThat(job.getStatus()).isEqualTo(InvoiceJobStatus.SENT);
+        assertThat(job.getAttempts()).isEqualTo(2);
+        assertThat(emailOutboxRepository.findAll()).singleElement()
+                .extracting(EmailOutboxMessage::getRecipient).isEqualTo("orders@hardware-mart.example");
+        assertThat(meterRegistry.counter("invoices.jobs.claim_lost").count()).isEqualTo(1);
+    }
+
+    @Test
+    void staleOwnerFailureDoesNotOverwriteTheNewerOutcome() {
+        Long jobId = pendingJob();
+        when(invoiceArchiveService.getOrRender(any(Order.class))).thenAnswer(invocation -> {
+            if (renders.incrementAndGet() == 1) {
+                takeOver(jobId);
+                throw new IllegalStateException("renderer crashed");
+            }
+            return archived();
+        });
+
+        process(jobId);
+
+        InvoiceJob job = invoiceJobRepository.findById(jobId).orElseThrow();
+        assertThat(job.getStatus()).isEqualTo(InvoiceJobStatus.SENT);
+        assertThat(job.getLastError()).isNull();
+        assertThat(emailOutboxRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void requeuedButUnclaimedJobIsStillCompletedByItsOwner() {
+        Long jobId = pendingJob();
+        when(invoiceArchiveService.getOrRender(any(Order.class))).thenAnswer(invocation -> {
+            releaseStale();
+            return archived();
+        });
+
+        process(jobId);
+
+        // Nobody else holds the job, so the one email queued stands and the job is not run again
+        assertThat(invoiceJobRepository.findById(jobId).orElseThrow().getStatus()).isEqualTo(InvoiceJobStatus.SENT);
+        assertThat(emailOutboxRepository.count()).isEqualTo(1);
+    }
+
+    /**
+     * The poller requeues the job as stale and another worker claims and finishes it
+     */
+    private void takeOver(Long jobId) {
+        releaseStale();
+        process(jobId);
+    }
+
+    private void releaseStale() {
+        LocalDateTime now = LocalDateTime.now();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                invoiceJobRepository.releaseStale(now.plusSeconds(1), now));
+    }
+
+    private void process(Long jobId) {
+        ReflectionTestUtils.invokeMethod(invoiceJobService, "process", jobId);
+    }
+
+    private Long pendingJob() {
+        LocalDateTime now = LocalDateTime.now();
+        return invoiceJobRepository.save(InvoiceJob.builder()
+                .orderId(ORDER_ID)
+                .status(InvoiceJobStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .updatedAt(now)
+                .build()).getJobId();
+    }
+
+    private static ArchivedInvoice archived() {
+        return new ArchivedInvoice(ORDER_ID, "ab12", 3L, Path.of("invoices", "ab12.pdf"));
+    }
+
+    @TestConfiguration
+    static class Metrics {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.isdn.service;
+
+import com.isdn.config.InvoiceConfig;
+import com.isdn.model.Category;
+import com.isdn.model.Order;
+import com.isdn.model.OrderItem;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.PaymentMethod;
+import com.isdn.model.Product;
+import com.isdn.model.Role;
+import com.isdn.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvoiceServiceTest {
+
+    private InvoiceService invoiceService;
+
+    @BeforeEach
+    void setUp() {
+        InvoiceConfig config = new InvoiceConfig();
+        config.setCompanyName("ISDN Distribution");
+        config.setCompanyAddress("100 Galle Road, Colombo 03");
+        config.setCompanyPhone("+94 11 234 5678");
+        config.setCompanyEmail("accounts@isdn.lk");
+        invoiceService = new InvoiceService(config, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void sameOrderVersionRendersToIdenticalBytes() throws InterruptedException {
+        byte[] first = invoiceService.generateInvoice(order(LocalDateTime.of(2026, 3, 14, 9, 30)));
+        // Long enough for a clock-based date or ID to differ
+        Thread.sleep(1100);
+        byte[] second = invoiceService.generateInvoice(order(LocalDateTime.of(2026, 3, 14, 9, 30)));
+
+        assertThat(second).isEqualTo(first);
+    }
+
+    @Test
+    void changedOrderRendersToDifferentBytes() {
+        byte[] before = invoiceService.generateInvoice(order(LocalDateTime.of(2026, 3, 14, 9, 30)));
+        byte[] after = invoiceService.generateInvoice(order(LocalDateTime.of(2026, 3, 14, 10, 0)));
+
+        assertThat(after).isNotEqualTo(before);
+    }
+
+    private static Order order(LocalDateTime updatedAt) {
+        Order order = Order.builder()
+                .orderId(1L)
+                .orderNumber("ORD-1")
+                .user(User.builder()
+                        .userId(1L)
+                        .username("retailer")
+                        .email("retailer@example.com")
+                        .role(Role.CUSTOMER)
+                        .build())
+                .status(OrderStatus.CONFIRMED)
+                .totalAmount(new BigDecimal("251.00"))
+                .deliveryAddress("12 Temple Road, Kandy")
+                .contactNumber("0770000000")
+                .paymentMethod(PaymentMethod.CASH_ON_DELIVERY)
+                .orderDate(LocalDateTime.of(2026, 3, 14, 9, 0))
+                .updatedAt(updatedAt)
+                .build();
+        OrderItem item = OrderItem.builder()
+                .product(Product.builder()
+                        .productId(1L)
+                        .sku("SKU-1")
+                        .name("Tea 400g")
+                        .category(Category.BEVERAGES)
+                        .unitPrice(new BigDecimal("125.50"))
+                        .build())
+                .quantity(2)
+                .unitPrice(new BigDecimal("125.50"))
+                .build();
+        item.calculateSubtotal();
+        order.addItem(item);
+        return order;
+    }
+}
@@ -0,0 +1,102 @@
+package com.isdn.service;
+
+import com.isdn.repository.InventoryRepository;
+import com.isdn.repository.InventoryRepositoryCustom.ReorderPoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LowStockTrackerTest {
+
+    private static final long RDC = 1L;
+
+    private final InventoryRepository inventoryRepository = mock(InventoryRepository.class);
+    private final LowStockTracker tracker = new LowStockTracker(inventoryRepository, new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        tracker.shutdown();
+    }
+
+    @Test
+    void refreshAllPicksUpEditedReorderLevelsAndDropsDeletedRows() {
+        when(inventoryRepository.findAllReorderPoints()).thenReturn(List.of(point(10L, 1L, 10), point(11L, 2L, 10)));
+        tracker.load((productId, rdcId) -> 15);
+        assertThat(tracker.getLowStock(RDC)).isEmpty();
+
+        // Product 1's level raised above its stock; product 2's row deleted
+        when(inventoryRepository.findAllReorderPoints()).thenReturn(List.of(point(10L, 1L, 20)));
+        tracker.refreshAll((productId, rdcId) -> 15);
+
+        assertThat(tracker.getLowStock(RDC)).singleElement().satisfies(item -> {
+            assertThat(item.getProductId()).isEqualTo(1L);
+            assertThat(item.getReorderLevel()).isEqualTo(20);
+            assertThat(item.getStatus()).isEqualTo("LOW_STOCK");
+        });
+        assertThat(rowCount()).isEqualTo(1);
+
+        when(inventoryRepository.findAllReorderPoints()).thenReturn(List.of(point(10L, 1L, 5)));
+        tracker.refreshAll((productId, rdcId) -> 15);
+
+        assertThat(tracker.getLowStock(RDC)).isEmpty();
+    }
+
+    @Test
+    void heartbeatsAreSentOffTheSchedulerThreadAndNeverPileUp() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Semaphore sent = new Semaphore(0);
+        AtomicInteger sends = new AtomicInteger();
+        tracker.subscribe(null, new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                sends.incrementAndGet();
+                sent.release();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        // The first send stalls the publisher; the calls below must return regardless
+        tracker.heartbeat();
+        assertThat(sent.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        tracker.heartbeat();
+        tracker.heartbeat();
+        tracker.heartbeat();
+        release.countDown();
+
+        // Only one of the three queued behind the stalled send
+        assertThat(sent.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(sent.tryAcquire(200, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(sends).hasValue(2);
+
+        tracker.heartbeat();
+        assertThat(sent.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static ReorderPoint point(Long inventoryId, Long productId, int reorderLevel) {
+        return new ReorderPoint(inventoryId, productId, RDC, "Product " + productId, "SKU-" + productId,
+                "North RDC", reorderLevel, LocalDateTime.of(2026, 1, 1, 0, 0));
+    }
+
+    private int rowCount() {
+        return ((Map<?, ?>) ReflectionTestUtils.getField(tracker, "rows")).size();
+    }
+}
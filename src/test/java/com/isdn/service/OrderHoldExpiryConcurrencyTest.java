@@ -0,0 +1,338 @@
+package com.isdn.service;
+
+import com.isdn.config.PayHereConfig;
+import com.isdn.dto.request.PayHereNotifyRequest;
+import com.isdn.exception.BadRequestException;
+import com.isdn.model.Category;
+import com.isdn.model.Inventory;
+import com.isdn.model.Order;
+import com.isdn.model.OrderItem;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.Payment;
+import com.isdn.model.PaymentMethod;
+import com.isdn.model.PaymentStatus;
+import com.isdn.model.Product;
+import com.isdn.model.RDC;
+import com.isdn.model.Region;
+import com.isdn.model.Role;
+import com.isdn.model.User;
+import com.isdn.repository.InventoryRepository;
+import com.isdn.repository.OrderRepository;
+import com.isdn.repository.PaymentRepository;
+import com.isdn.repository.ProductRepository;
+import com.isdn.repository.RDCRepository;
+import com.isdn.repository.UserRepository;
+import com.isdn.service.StockHoldService.OrderHoldsExpired;
+import com.isdn.service.StockReservationService.Allocation;
+import com.isdn.util.SnowflakeIdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unpaid online orders whose payment hold expires while staff confirm them or PayHere
+ * reports the payment. Every order must end up either confirmed with its stock still
+ * taken, or cancelled with its stock back on exactly the inventory rows it came from;
+ * never confirmed with its stock returned.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "inventory.holds.payment-in-flight-minutes=60",
+        "spring.datasource.url=jdbc:h2:mem:hold_expiry;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000",
+        "spring.datasource.hikari.maximum-pool-size=16"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({OrderService.class, PaymentService.class})
+class OrderHoldExpiryConcurrencyTest {
+
+    private static final int ORDERS = 48;
+    private static final int EXPIRY_BATCH = 6;
+    private static final int STOCK_PER_ROW = 1_000;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private RDCRepository rdcRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private StockHoldService stockHoldService;
+
+    @MockitoBean
+    private StockLedgerService stockLedgerService;
+
+    @MockitoBean
+    private StockReservationService stockReservationService;
+
+    @MockitoBean
+    private OrderEventService orderEventService;
+
+    @MockitoBean
+    private RdcAllocationService rdcAllocationService;
+
+    @MockitoBean
+    private UserService userService;
+
+    @MockitoBean
+    private InvoiceJobService invoiceJobService;
+
+    @MockitoBean
+    private SnowflakeIdGenerator idGenerator;
+
+    @MockitoBean
+    private PayHereHashService payHereHashService;
+
+    @MockitoBean
+    private PayHereConfig payHereConfig;
+
+    private List<Inventory> rows;
+    private Map<Long, List<Allocation>> allocationsByOrder;
+    private List<Long> orderIds;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository.deleteAll();
+        orderRepository.deleteAll();
+        inventoryRepository.deleteAll();
+        productRepository.deleteAll();
+        rdcRepository.deleteAll();
+        userRepository.deleteAll();
+
+        when(payHereHashService.verifyNotificationHash(anyString(), anyString(), any(), any(), any(), anyString()))
+                .thenReturn(true);
+
+        User customer = userRepository.save(User.builder()
+                .username("customer")
+                .email("customer@example.com")
+                .password("secret")
+                .role(Role.CUSTOMER)
+                .active(true)
+                .build());
+        Product product = productRepository.save(Product.builder()
+                .sku("HELD-1")
+                .name("Held product")
+                .category(Category.BEVERAGES)
+                .unitPrice(new BigDecimal("10.00"))
+                .active(true)
+                .build());
+        rows = new ArrayList<>();
+        for (Region region : List.of(Region.NORTH, Region.SOUTH)) {
+            RDC rdc = rdcRepository.save(RDC.builder()
+                    .name(region + " RDC")
+                    .region(region)
+                    .address("1 Main Street")
+                    .contactNumber("0110000000")
+                    .active(true)
+                    .build());
+            rows.add(inventoryRepository.save(Inventory.builder()
+                    .product(product)
+                    .rdc(rdc)
+                    .quantityOnHand(STOCK_PER_ROW)
+                    .reorderLevel(10)
+                    .build()));
+        }
+
+        // Every order's stock is split across both RDCs, unevenly, as the allocator would
+        allocationsByOrder = new LinkedHashMap<>();
+        orderIds = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            int north = 1 + i % 3;
+            int south = 1 + i % 2;
+            Order order = Order.builder()
+                    .orderNumber("ORD-" + i)
+                    .user(customer)
+                    .rdc(rows.get(0).getRdc())
+                    .status(OrderStatus.PENDING)
+                    .totalAmount(new BigDecimal("10.00").multiply(BigDecimal.valueOf(north + south)))
+                    .deliveryAddress("1 Main Street")
+                    .contactNumber("0770000000")
+                    .paymentMethod(PaymentMethod.ONLINE_PAYMENT)
+                    .build();
+            order.addItem(OrderItem.builder()
+                    .product(product)
+                    .quantity(north + south)
+                    .unitPrice(new BigDecimal("10.00"))
+                    .build());
+            List<Allocation> allocations = List.of(
+                    new Allocation(rows.get(0).getInventoryId(), product.getProductId(), rows.get(0).getRdc().getRdcId(), north),
+                    new Allocation(rows.get(1).getInventoryId(), product.getProductId(), rows.get(1).getRdc().getRdcId(), south));
+            for (Allocation allocation : allocations) {
+                order.addAllocation(allocation.toEntity());
+            }
+            order = orderRepository.save(order);
+            allocationsByOrder.put(order.getOrderId(), allocations);
+            orderIds.add(order.getOrderId());
+
+            paymentRepository.save(Payment.builder()
+                    .paymentReference("PAY-" + i)
+                    .order(order)
+                    .user(customer)
+                    .amount(order.getTotalAmount())
+                    .currency("LKR")
+                    .status(PaymentStatus.PENDING)
+                    .payhereOrderId("PH-" + i)
+                    .build());
+        }
+
+        // Most customers left the gateway long ago; every fourth is still paying
+        for (int i = 0; i < ORDERS; i++) {
+            if (i % 4 != 0) {
+                jdbcTemplate.update("UPDATE payments SET updated_at = ? WHERE payhere_order_id = ?",
+                        LocalDateTime.now().minusHours(2), "PH-" + i);
+            }
+        }
+    }
+
+    @Test
+    void expiryNeverCancelsAnOrderThatWasConfirmedOrPaid() throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < ORDERS; from += EXPIRY_BATCH) {
+            Map<Long, List<Allocation>> batch = new LinkedHashMap<>();
+            for (Long orderId : orderIds.subList(from, from + EXPIRY_BATCH)) {
+                batch.put(orderId, allocationsByOrder.get(orderId));
+            }
+            tasks.add(() -> {
+                orderService.onOrderHoldsExpired(new OrderHoldsExpired(batch));
+                return null;
+            });
+        }
+        for (int i = 0; i < ORDERS; i++) {
+            Long orderId = orderIds.get(i);
+            String payhereOrderId = "PH-" + i;
+            tasks.add(i % 2 == 0
+                    ? () -> {
+                        try {
+                            orderService.confirmOrder(orderId);
+                        } catch (BadRequestException e) {
+                            // Cancelled by the sweeper first
+                        }
+                        return null;
+                    }
+                    : () -> {
+                        paymentService.handlePayHereNotify(successNotification(payhereOrderId));
+                        return null;
+                    });
+        }
+        Collections.shuffle(tasks, new Random(42));
+
+        runConcurrently(tasks);
+
+        Map<Long, Integer> restoredPerRow = new HashMap<>();
+        int cancelled = 0;
+        for (int i = 0; i < ORDERS; i++) {
+            Long orderId = orderIds.get(i);
+            Order order = orderRepository.findById(orderId).orElseThrow();
+            assertThat(order.getStatus()).isIn(OrderStatus.CONFIRMED, OrderStatus.CANCELLED);
+            if (i % 4 == 0) {
+                // Payment still in flight when the hold expired: held again, never cancelled
+                assertThat(order.getStatus()).isEqualTo(OrderStatus.CONFIRMED);
+            }
+            if (order.getStatus() == OrderStatus.CANCELLED) {
+                cancelled++;
+                for (Allocation allocation : allocationsByOrder.get(orderId)) {
+                    restoredPerRow.merge(allocation.inventoryId(), allocation.quantity(), Integer::sum);
+                }
+                verify(invoiceJobService, never()).enqueue(orderId);
+                verify(stockHoldService, never()).holdOrderAfterCommit(eq(orderId), any());
+                Payment payment = paymentRepository.findByPayhereOrderId("PH-" + i).orElseThrow();
+                if (payment.getStatus() == PaymentStatus.SUCCESS) {
+                    assertThat(payment.isRefundRequired()).isTrue();
+                }
+            }
+        }
+
+        // Each row got back exactly what cancelled orders took from it, nothing from confirmed ones
+        for (Inventory row : rows) {
+            int quantity = inventoryRepository.findById(row.getInventoryId()).orElseThrow().getQuantityOnHand();
+            assertThat(quantity).isEqualTo(STOCK_PER_ROW + restoredPerRow.getOrDefault(row.getInventoryId(), 0));
+        }
+        assertThat(cancelled).isPositive().isLessThan(ORDERS);
+    }
+
+    private static PayHereNotifyRequest successNotification(String payhereOrderId) {
+        PayHereNotifyRequest request = new PayHereNotifyRequest();
+        request.setMerchant_id("1211149");
+        request.setOrder_id(payhereOrderId);
+        request.setPayment_id("PH-PAYMENT-" + payhereOrderId);
+        request.setPayhere_amount("30.00");
+        request.setPayhere_currency("LKR");
+        request.setStatus_code(2);
+        request.setStatus_message("Successfully completed");
+        request.setMd5sig("signature");
+        return request;
+    }
+
+    private static void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.CursorPageResponse;
+import com.isdn.dto.response.OrderResponse;
+import com.isdn.model.Category;
+import com.isdn.model.Order;
+import com.isdn.model.OrderItem;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.PaymentMethod;
+import com.isdn.model.Product;
+import com.isdn.model.RDC;
+import com.isdn.model.Region;
+import com.isdn.model.Role;
+import com.isdn.model.User;
+import com.isdn.util.SnowflakeIdGenerator;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Order listings must cost a fixed number of SQL statements per page however many
+ * orders, items and products the page holds: one for the page's ids and one for the
+ * orders with their items, products and RDC.
+ */
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(OrderService.class)
+class OrderListingStatementCountTest {
+
+    private static final int ORDERS = 60;
+    private static final int ITEMS_PER_ORDER = 8;
+    private static final int PAGE_SIZE = 50;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private StockReservationService stockReservationService;
+
+    @MockitoBean
+    private StockLedgerService stockLedgerService;
+
+    @MockitoBean
+    private StockHoldService stockHoldService;
+
+    @MockitoBean
+    private OrderEventService orderEventService;
+
+    @MockitoBean
+    private RdcAllocationService rdcAllocationService;
+
+    @MockitoBean
+    private UserService userService;
+
+    @MockitoBean
+    private InvoiceJobService invoiceJobService;
+
+    @MockitoBean
+    private SnowflakeIdGenerator idGenerator;
+
+    private Statistics statistics;
+    private User customer;
+    private List<RDC> rdcs;
+
+    @BeforeEach
+    void setUp() {
+        customer = entityManager.persist(User.builder()
+                .username("customer")
+                .email("customer@example.com")
+                .password("secret")
+                .role(Role.CUSTOMER)
+                .active(true)
+                .build());
+
+        rdcs = new ArrayList<>();
+        for (Region region : List.of(Region.NORTH, Region.SOUTH, Region.EAST)) {
+            rdcs.add(entityManager.persist(RDC.builder()
+                    .name(region + " RDC")
+                    .region(region)
+                    .address("1 Main Street")
+                    .contactNumber("0110000000")
+                    .active(true)
+                    .build()));
+        }
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            products.add(entityManager.persist(Product.builder()
+                    .sku("SKU-" + i)
+                    .name("Product " + i)
+                    .category(Category.values()[i % Category.values().length])
+                    .unitPrice(new BigDecimal("10.00"))
+                    .active(true)
+                    .build()));
+        }
+
+        for (int o = 0; o < ORDERS; o++) {
+            Order order = Order.builder()
+                    .orderNumber("ORD-" + o)
+                    .user(customer)
+                    .rdc(rdcs.get(o % rdcs.size()))
+                    .status(OrderStatus.PENDING)
+                    .totalAmount(new BigDecimal("80.00"))
+                    .deliveryAddress("1 Main Street")
+                    .contactNumber("0770000000")
+                    .paymentMethod(PaymentMethod.CASH_ON_DELIVERY)
+                    .build();
+            for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+                order.addItem(OrderItem.builder()
+                        .product(products.get((o + i) % products.size()))
+                        .quantity(1)
+                        .unitPrice(new BigDecimal("10.00"))
+                        .build());
+            }
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void allOrdersPageUsesTwoStatements() {
+        CursorPageResponse<OrderResponse> page = orderService.getAllOrders(null, PAGE_SIZE);
+
+        assertFullPage(page);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void everyPageCostsTheSame() {
+        CursorPageResponse<OrderResponse> first = orderService.getOrdersByStatus(OrderStatus.PENDING, null, PAGE_SIZE);
+        long firstPage = statistics.getPrepareStatementCount();
+        entityManager.clear();
+        statistics.clear();
+
+        CursorPageResponse<OrderResponse> second = orderService.getOrdersByStatus(OrderStatus.PENDING,
+                first.getNextCursor(), PAGE_SIZE);
+
+        assertThat(second.getItems()).hasSize(ORDERS - PAGE_SIZE);
+        assertThat(firstPage).isEqualTo(2);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void userAndRdcPagesUseFixedStatementCounts() {
+        orderService.getUserOrders(customer.getUserId(), null, PAGE_SIZE);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        entityManager.clear();
+        statistics.clear();
+
+        // One extra statement checks the RDC exists
+        orderService.getOrdersByRdc(rdcs.get(0).getRdcId(), null, PAGE_SIZE);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+
+    private void assertFullPage(CursorPageResponse<OrderResponse> page) {
+        assertThat(page.getItems()).hasSize(PAGE_SIZE);
+        assertThat(page.getHasMore()).isTrue();
+        // Touch everything the response exposes; any lazy load here would add statements
+        assertThat(page.getItems()).allSatisfy(order -> {
+            assertThat(order.getItems()).hasSize(ITEMS_PER_ORDER);
+            assertThat(order.getRdcName()).isNotNull();
+            assertThat(order.getItems()).allSatisfy(item -> assertThat(item.getProductSku()).startsWith("SKU-"));
+        });
+    }
+}
@@ -0,0 +1,135 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.ProjectionStatusResponse;
+import com.isdn.model.OrderEvent;
+import com.isdn.model.ProjectionGap;
+import com.isdn.repository.ProjectionGapRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Event ids committed out of order: the projector must read past an id that is not yet
+ * visible, apply its event once it commits, and after the gap timeout leave it to
+ * reconciliation. A gap timeout of zero makes every unfilled gap time out on the next run.
+ */
+@DataJpaTest(showSql = false, properties = "orders.projection.gap-timeout-seconds=0")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({OrderProjectionService.class, OrderProjectionGapTest.Projections.class})
+class OrderProjectionGapTest {
+
+    @Autowired
+    private OrderProjectionService projectionService;
+
+    @Autowired
+    private ProjectionGapRepository gapRepository;
+
+    @Autowired
+    private RecordingProjection projection;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        projection.applied.clear();
+    }
+
+    @Test
+    void eventsCommittedLateBehindTheCheckpointAreStillApplied() {
+        insertEvents(1, 2, 4, 5);
+        projectionService.project();
+
+        assertThat(projection.applied).containsExactly(1L, 2L, 4L, 5L);
+        assertThat(gapRepository.findAll()).extracting(ProjectionGap::getEventId).containsExactly(3L);
+
+        insertEvents(3, 6);
+        projectionService.project();
+
+        assertThat(projection.applied).containsExactly(1L, 2L, 4L, 5L, 3L, 6L);
+        assertThat(gapRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    void timedOutGapsAreAbandonedAndReconciled() {
+        insertEvents(1, 3);
+        projectionService.project();
+        // Event 2 is still missing, so this run abandons its gap
+        projectionService.project();
+
+        assertThat(gapRepository.findAll()).singleElement().satisfies(gap -> {
+            assertThat(gap.getEventId()).isEqualTo(2L);
+            assertThat(gap.getAbandonedAt()).isNotNull();
+        });
+        assertThat(status().getAbandonedGaps()).isEqualTo(1L);
+
+        insertEvents(2);
+        projectionService.project();
+        assertThat(projection.applied).containsExactly(1L, 3L);
+
+        projectionService.reconcile();
+        assertThat(projection.applied).containsExactly(1L, 3L, 2L);
+        assertThat(gapRepository.findAll()).isEmpty();
+        assertThat(status().getOpenGaps()).isZero();
+        assertThat(status().getAbandonedGaps()).isZero();
+    }
+
+    private ProjectionStatusResponse status() {
+        return projectionService.getStatuses().get(0);
+    }
+
+    private void insertEvents(long... eventIds) {
+        // Explicit ids stand in for AUTO_INCREMENT values taken by transactions that commit out of order
+        for (long eventId : eventIds) {
+            entityManager.createNativeQuery("INSERT INTO order_events (event_id, order_id, user_id, to_status, " +
+                            "total_amount, occurred_at) VALUES (?, ?, 1, 'PENDING', 10.00, ?)")
+                    .setParameter(1, eventId)
+                    .setParameter(2, eventId)
+                    .setParameter(3, LocalDateTime.now())
+                    .executeUpdate();
+        }
+    }
+
+    static class RecordingProjection implements OrderEventProjection {
+
+        private final List<Long> applied = new ArrayList<>();
+
+        @Override
+        public String name() {
+            return "recording";
+        }
+
+        @Override
+        public void apply(List<OrderEvent> events) {
+            events.forEach(event -> applied.add(event.getEventId()));
+        }
+
+        @Override
+        public void reset() {
+            applied.clear();
+        }
+    }
+
+    @TestConfiguration
+    static class Projections {
+
+        @Bean
+        RecordingProjection recordingProjection() {
+            return new RecordingProjection();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.AllocationQualityResponse;
+import com.isdn.model.RDC;
+import com.isdn.model.Region;
+import com.isdn.repository.InventoryRepository;
+import com.isdn.repository.InventoryRepositoryCustom.StockLevel;
+import com.isdn.repository.RDCRepository;
+import com.isdn.service.RdcAllocationService.Decision;
+import com.isdn.service.StockReservationService.Allocation;
+import com.isdn.service.StockReservationService.Line;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * RDC ranking against the real stock ledger. The small fixture has one RDC per region:
+ * Jaffna (1, North), Kandy (2, Central), Colombo (3, West), Galle (4, South) and
+ * Trincomalee (5, East). Orders are delivered to Colombo, about 95 km from Kandy.
+ */
+class RdcAllocationServiceTest {
+
+    private static final BigDecimal COLOMBO_LATITUDE = new BigDecimal("6.9271");
+    private static final BigDecimal COLOMBO_LONGITUDE = new BigDecimal("79.8612");
+
+    private final RDCRepository rdcRepository = mock(RDCRepository.class);
+    private final InventoryRepository inventoryRepository = mock(InventoryRepository.class);
+    private final StockLedgerService stockLedgerService =
+            new StockLedgerService(inventoryRepository, mock(LowStockTracker.class));
+    private final RdcAllocationService rdcAllocationService =
+            new RdcAllocationService(rdcRepository, stockLedgerService, new SimpleMeterRegistry());
+
+    private final List<StockLevel> stock = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(rdcAllocationService, "splitPenaltyKm", 50.0);
+        ReflectionTestUtils.setField(rdcAllocationService, "crossRegionPenaltyKm", 150.0);
+
+        when(rdcRepository.findByActiveTrue()).thenReturn(List.of(
+                rdc(1L, Region.NORTH, "9.6615", "80.0255"),
+                rdc(2L, Region.CENTRAL, "7.2906", "80.6337"),
+                rdc(3L, Region.WEST, "6.9271", "79.8612"),
+                rdc(4L, Region.SOUTH, "6.0535", "80.2210"),
+                rdc(5L, Region.EAST, "8.5874", "81.2152")));
+        when(inventoryRepository.findAllStockLevels()).thenReturn(stock);
+        // Every RDC holds 10 of products 1 to 3
+        for (long rdcId = 1; rdcId <= 5; rdcId++) {
+            for (long productId = 1; productId <= 3; productId++) {
+                stock(rdcId, productId, 10);
+            }
+        }
+    }
+
+    @Test
+    void regionalRdcCoveringTheOrderIsChosenWithoutScoringOtherRegions() {
+        load();
+
+        Decision decision = rdcAllocationService.decide(cart(5, 5, 5), COLOMBO_LATITUDE, COLOMBO_LONGITUDE, Region.WEST);
+
+        assertThat(decision.rdcPreference()).startsWith(3L).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L);
+        assertThat(decision.distanceKmByRdc()).containsOnlyKeys(3L);
+        assertThat(decision.distanceKmByRdc().get(3L)).isCloseTo(0.0, within(0.001));
+    }
+
+    @Test
+    void oneShortLineIsCheaperThanShippingFromAnotherRegion() {
+        stock(3L, 1L, 2);
+        load();
+
+        Decision decision = rdcAllocationService.decide(cart(5, 5, 5), COLOMBO_LATITUDE, COLOMBO_LONGITUDE, Region.WEST);
+
+        // Falls back to scoring every RDC, but 50 km of split penalty still beats the 95 km to Kandy
+        assertThat(decision.distanceKmByRdc()).containsOnlyKeys(1L, 2L, 3L, 4L, 5L);
+        assertThat(decision.rdcPreference()).startsWith(3L, 2L);
+    }
+
+    @Test
+    void regionThatCannotShipTheOrderFallsBackToTheNearestCoveringRdc() {
+        stock(3L, 1L, 2);
+        stock(3L, 2L, 0);
+        load();
+
+        Decision decision = rdcAllocationService.decide(cart(5, 5, 5), COLOMBO_LATITUDE, COLOMBO_LONGITUDE, Region.WEST);
+
+        assertThat(decision.rdcPreference()).containsExactly(2L, 3L, 4L, 5L, 1L);
+        assertThat(decision.distanceKmByRdc().get(2L)).isCloseTo(94.5, within(1.0));
+    }
+
+    @Test
+    void regionCentroidStandsInForMissingCoordinates() {
+        stock(2L, 1L, 0);
+        load();
+
+        // Central has only Kandy, which is short, so every RDC is scored from Kandy's position;
+        // one split line there still beats the 95 km to Colombo
+        Decision decision = rdcAllocationService.decide(cart(5, 5, 5), null, null, Region.CENTRAL);
+
+        assertThat(decision.rdcPreference().get(0)).isEqualTo(2L);
+        assertThat(decision.rdcPreference().get(1)).isEqualTo(3L);
+        assertThat(decision.distanceKmByRdc().get(2L)).isCloseTo(0.0, within(0.001));
+    }
+
+    @Test
+    void shippingRdcIsTheOneShippingTheMostUnits() {
+        load();
+        Decision decision = new Decision(List.of(3L, 2L, 4L), Map.of());
+
+        assertThat(rdcAllocationService.shippingRdc(decision, List.of(
+                allocation(2L, 5), allocation(3L, 4)))).isEqualTo(2L);
+        // Equal units go to the preferred RDC, whatever the allocation order
+        assertThat(rdcAllocationService.shippingRdc(decision, List.of(
+                allocation(2L, 4), allocation(3L, 4)))).isEqualTo(3L);
+        assertThat(rdcAllocationService.shippingRdc(decision, List.of(
+                allocation(4L, 3), allocation(2L, 3)))).isEqualTo(2L);
+        // Stock from an RDC the index did not know about yet
+        assertThat(rdcAllocationService.shippingRdc(decision, List.of(allocation(9L, 1)))).isEqualTo(9L);
+    }
+
+    @Test
+    void snapshotReportsSplitRateAndAverageDistance() {
+        stock(3L, 2L, 0);
+        load();
+
+        Decision local = rdcAllocationService.decide(cart(5), COLOMBO_LATITUDE, COLOMBO_LONGITUDE, Region.WEST);
+        rdcAllocationService.recordOutcome(local, List.of(allocation(3L, 5)));
+
+        Decision split = rdcAllocationService.decide(cart(5, 5), COLOMBO_LATITUDE, COLOMBO_LONGITUDE, Region.WEST);
+        // Kandy ships the most units, so the order counts at Kandy's distance
+        rdcAllocationService.recordOutcome(split, List.of(allocation(2L, 6), allocation(3L, 4)));
+        // A decision whose reservation then failed is timed but has no outcome
+        rdcAllocationService.decide(cart(50), COLOMBO_LATITUDE, COLOMBO_LONGITUDE, Region.WEST);
+
+        AllocationQualityResponse snapshot = rdcAllocationService.snapshot();
+        assertThat(snapshot.getDecisions()).isEqualTo(2);
+        assertThat(snapshot.getSplitShipments()).isEqualTo(1);
+        assertThat(snapshot.getSplitRate()).isEqualTo(0.5);
+        assertThat(snapshot.getAverageDistanceKm())
+                .isCloseTo(split.distanceKmByRdc().get(2L) / 2, within(0.001))
+                .isCloseTo(47.2, within(0.5));
+        assertThat(snapshot.getAverageDecisionMicros()).isPositive();
+    }
+
+    @Test
+    void realisticOrderIsDecidedInUnderAMillisecond() {
+        // 25 RDCs, five around each regional hub, stocking 2,000 products; 1 row in 5 is out of stock
+        String[][] hubs = {{"9.6615", "80.0255"}, {"7.2906", "80.6337"}, {"6.9271", "79.8612"},
+                {"6.0535", "80.2210"}, {"8.5874", "81.2152"}};
+        Region[] regions = {Region.NORTH, Region.CENTRAL, Region.WEST, Region.SOUTH, Region.EAST};
+        Random random = new Random(7);
+        List<RDC> rdcs = new ArrayList<>();
+        stock.clear();
+        for (int hub = 0; hub < hubs.length; hub++) {
+            for (int site = 0; site < 5; site++) {
+                long rdcId = hub * 5L + site + 1;
+                rdcs.add(rdc(rdcId, regions[hub],
+                        new BigDecimal(hubs[hub][0]).add(BigDecimal.valueOf(random.nextDouble() * 0.4 - 0.2)).toPlainString(),
+                        new BigDecimal(hubs[hub][1]).add(BigDecimal.valueOf(random.nextDouble() * 0.4 - 0.2)).toPlainString()));
+                for (long productId = 1; productId <= 2_000; productId++) {
+                    int quantity = random.nextInt(5) == 0 ? 0 : random.nextInt(200);
+                    stock.add(new StockLevel(rdcId * 10_000 + productId, productId, rdcId, quantity));
+                }
+            }
+        }
+        when(rdcRepository.findByActiveTrue()).thenReturn(rdcs);
+        load();
+
+        List<List<Line>> carts = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            carts.add(LongStream.range(0, 40)
+                    .mapToObj(n -> new Line(1L + random.nextInt(2_000), "SKU", "Product", 1 + random.nextInt(20)))
+                    .toList());
+        }
+
+        // Warm up first so the JIT has compiled the scoring loop
+        for (int i = 0; i < 5_000; i++) {
+            rdcAllocationService.decide(carts.get(i % carts.size()), COLOMBO_LATITUDE, COLOMBO_LONGITUDE, Region.WEST);
+        }
+        int runs = 1_000;
+        long started = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            Decision decision = rdcAllocationService.decide(carts.get(i % carts.size()), null, null, Region.SOUTH);
+            assertThat(decision.rdcPreference()).hasSize(25);
+        }
+        double averageMicros = (System.nanoTime() - started) / 1000.0 / runs;
+
+        assertThat(averageMicros).as("average decision time in microseconds").isLessThan(1_000.0);
+    }
+
+    private void load() {
+        stockLedgerService.load();
+        rdcAllocationService.refreshIndex();
+    }
+
+    private void stock(long rdcId, long productId, int quantity) {
+        stock.removeIf(level -> level.rdcId() == rdcId && level.productId() == productId);
+        stock.add(new StockLevel(rdcId * 10_000 + productId, productId, rdcId, quantity));
+    }
+
+    private static List<Line> cart(int... quantities) {
+        List<Line> lines = new ArrayList<>();
+        for (int i = 0; i < quantities.length; i++) {
+            lines.add(new Line(i + 1L, "SKU-" + (i + 1), "Product " + (i + 1), quantities[i]));
+        }
+        return lines;
+    }
+
+    private static Allocation allocation(Long rdcId, int quantity) {
+        return new Allocation(rdcId * 10_000 + 1, 1L, rdcId, quantity);
+    }
+
+    private static RDC rdc(Long rdcId, Region region, String latitude, String longitude) {
+        return RDC.builder()
+                .rdcId(rdcId)
+                .name("RDC " + rdcId)
+                .region(region)
+                .latitude(new BigDecimal(latitude))
+                .longitude(new BigDecimal(longitude))
+                .build();
+    }
+}
@@ -0,0 +1,166 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.SalesRollupRow;
+import com.isdn.model.Category;
+import com.isdn.model.Order;
+import com.isdn.model.OrderEvent;
+import com.isdn.model.OrderItem;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.PaymentMethod;
+import com.isdn.model.Product;
+import com.isdn.model.RDC;
+import com.isdn.model.Region;
+import com.isdn.model.Role;
+import com.isdn.model.RollupGranularity;
+import com.isdn.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * An order with lines in several categories must count once in whole-order reports and
+ * once in each of its categories in category reports.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({SalesRollupProjection.class, SalesRollupService.class})
+class SalesRollupProjectionTest {
+
+    @Autowired
+    private SalesRollupProjection projection;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User customer;
+    private RDC rdc;
+    private Map<Category, Product> products;
+    private int orders;
+
+    @BeforeEach
+    void setUp() {
+        customer = entityManager.persist(User.builder()
+                .username("customer")
+                .email("customer@example.com")
+                .password("secret")
+                .role(Role.CUSTOMER)
+                .active(true)
+                .build());
+        rdc = entityManager.persist(RDC.builder()
+                .name("North RDC")
+                .region(Region.NORTH)
+                .address("1 Main Street")
+                .contactNumber("0110000000")
+                .active(true)
+                .build());
+        products = List.of(Category.BEVERAGES, Category.PACKAGED_FOODS, Category.PERSONAL_CARE).stream()
+                .collect(Collectors.toMap(Function.identity(), category -> entityManager.persist(Product.builder()
+                        .sku("SKU-" + category)
+                        .name(category.getDisplayName())
+                        .category(category)
+                        .unitPrice(new BigDecimal("10.00"))
+                        .active(true)
+                        .build())));
+    }
+
+    @Test
+    void multiCategoryOrdersCountOnceInTotals() {
+        Order mixed = order(Category.BEVERAGES, Category.PACKAGED_FOODS, Category.PERSONAL_CARE);
+        Order single = order(Category.BEVERAGES);
+        projection.apply(List.of(confirmed(mixed), confirmed(single)));
+
+        SalesRollupRow total = salesRollupService.getSales(RollupGranularity.DAY, LocalDate.now(), LocalDate.now(),
+                null, null, null, null).getRows().get(0);
+        assertThat(total.getBookedOrders()).isEqualTo(2);
+        assertThat(total.getBookedUnits()).isEqualTo(4);
+        assertThat(total.getBookedRevenue()).isEqualByComparingTo("40.00");
+
+        SalesRollupRow byRdc = salesRollupService.getSales(RollupGranularity.MONTH, LocalDate.now(), LocalDate.now(),
+                rdc.getRdcId(), Region.NORTH, null, List.of("rdc")).getRows().get(0);
+        assertThat(byRdc.getBookedOrders()).isEqualTo(2);
+
+        Map<Category, Long> ordersByCategory = salesRollupService.getSales(RollupGranularity.DAY, LocalDate.now(),
+                        LocalDate.now(), null, null, null, List.of("category")).getRows().stream()
+                .collect(Collectors.toMap(SalesRollupRow::getCategory, SalesRollupRow::getBookedOrders));
+        assertThat(ordersByCategory).containsOnly(
+                Map.entry(Category.BEVERAGES, 2L),
+                Map.entry(Category.PACKAGED_FOODS, 1L),
+                Map.entry(Category.PERSONAL_CARE, 1L));
+    }
+
+    @Test
+    void cancellingMovesTheOrderOnce() {
+        Order mixed = order(Category.BEVERAGES, Category.PACKAGED_FOODS);
+        projection.apply(List.of(confirmed(mixed)));
+        projection.apply(List.of(event(mixed, OrderStatus.CONFIRMED, OrderStatus.CANCELLED)));
+
+        SalesRollupRow total = salesRollupService.getSales(RollupGranularity.HOUR, LocalDate.now(), LocalDate.now(),
+                null, null, null, null).getRows().get(0);
+        assertThat(total.getBookedOrders()).isZero();
+        assertThat(total.getCancelledOrders()).isEqualTo(1);
+        assertThat(total.getCancelledRevenue()).isEqualByComparingTo("20.00");
+
+        SalesRollupRow beverages = salesRollupService.getSales(RollupGranularity.HOUR, LocalDate.now(),
+                LocalDate.now(), null, null, Category.BEVERAGES, null).getRows().get(0);
+        assertThat(beverages.getCancelledOrders()).isEqualTo(1);
+        assertThat(beverages.getCancelledRevenue()).isEqualByComparingTo("10.00");
+    }
+
+    private Order order(Category... categories) {
+        Order order = Order.builder()
+                .orderNumber("ORD-" + ++orders)
+                .user(customer)
+                .rdc(rdc)
+                .status(OrderStatus.CONFIRMED)
+                .totalAmount(new BigDecimal("10.00").multiply(BigDecimal.valueOf(categories.length)))
+                .deliveryAddress("1 Main Street")
+                .contactNumber("0770000000")
+                .paymentMethod(PaymentMethod.CASH_ON_DELIVERY)
+                .build();
+        for (Category category : categories) {
+            OrderItem item = OrderItem.builder()
+                    .product(products.get(category))
+                    .quantity(1)
+                    .unitPrice(new BigDecimal("10.00"))
+                    .build();
+            item.calculateSubtotal();
+            order.addItem(item);
+        }
+        Order saved = entityManager.persistAndFlush(order);
+        entityManager.clear();
+        return saved;
+    }
+
+    private OrderEvent confirmed(Order order) {
+        return event(order, OrderStatus.PENDING, OrderStatus.CONFIRMED);
+    }
+
+    private OrderEvent event(Order order, OrderStatus from, OrderStatus to) {
+        return OrderEvent.builder()
+                .orderId(order.getOrderId())
+                .userId(customer.getUserId())
+                .rdcId(rdc.getRdcId())
+                .fromStatus(from)
+                .toStatus(to)
+                .totalAmount(order.getTotalAmount())
+                .build();
+    }
+}
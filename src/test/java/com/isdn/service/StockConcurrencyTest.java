@@ -0,0 +1,203 @@
+package com.isdn.service;
+
+import com.isdn.exception.BadRequestException;
+import com.isdn.model.Category;
+import com.isdn.model.Inventory;
+import com.isdn.model.Product;
+import com.isdn.model.RDC;
+import com.isdn.model.Region;
+import com.isdn.repository.InventoryRepository;
+import com.isdn.repository.ProductRepository;
+import com.isdn.repository.RDCRepository;
+import com.isdn.service.StockReservationService.Line;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 64 threads drawing stock from the same product at once, through the set-based
+ * reservation path and through the versioned read-modify-write path. Whatever
+ * succeeds or fails, the rows must end up at the initial stock minus exactly what
+ * the successful calls took, never below zero, and the ledger must agree.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "inventory.update.max-attempts=50",
+        "inventory.update.backoff-millis=2",
+        "spring.datasource.url=jdbc:h2:mem:stock_concurrency;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000",
+        "spring.datasource.hikari.maximum-pool-size=16"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({StockReservationService.class, StockUpdateRetrier.class, StockContentionMetrics.class,
+        StockLedgerService.class, LowStockTracker.class, StockConcurrencyTest.Metrics.class})
+class StockConcurrencyTest {
+
+    private static final int THREADS = 64;
+    private static final int STOCK_PER_RDC = 60;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private StockUpdateRetrier stockUpdateRetrier;
+
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private RDCRepository rdcRepository;
+
+    private Product product;
+    private List<Inventory> rows;
+
+    @BeforeEach
+    void setUp() {
+        inventoryRepository.deleteAll();
+        productRepository.deleteAll();
+        rdcRepository.deleteAll();
+
+        product = productRepository.save(Product.builder()
+                .sku("HOT-1")
+                .name("Hot product")
+                .category(Category.BEVERAGES)
+                .unitPrice(new BigDecimal("100.00"))
+                .active(true)
+                .build());
+        rows = new ArrayList<>();
+        for (Region region : List.of(Region.NORTH, Region.SOUTH)) {
+            RDC rdc = rdcRepository.save(RDC.builder()
+                    .name(region + " RDC")
+                    .region(region)
+                    .address("1 Main Street")
+                    .contactNumber("0110000000")
+                    .active(true)
+                    .build());
+            rows.add(inventoryRepository.save(Inventory.builder()
+                    .product(product)
+                    .rdc(rdc)
+                    .quantityOnHand(STOCK_PER_RDC)
+                    .reorderLevel(10)
+                    .build()));
+        }
+        stockLedgerService.load();
+    }
+
+    @Test
+    void reservationsNeverOversellOrDrift() throws Exception {
+        List<Integer> taken = runConcurrently(thread -> {
+            int quantity = 1 + thread % 3;
+            try {
+                stockReservationService.reserve(List.of(new Line(product.getProductId(), "HOT-1", "Hot product", quantity)));
+                return quantity;
+            } catch (BadRequestException e) {
+                return 0;
+            }
+        });
+
+        int totalTaken = taken.stream().mapToInt(Integer::intValue).sum();
+        int initial = STOCK_PER_RDC * rows.size();
+        assertThat(totalTaken).isPositive().isLessThanOrEqualTo(initial);
+        assertStock(initial - totalTaken);
+    }
+
+    @Test
+    void versionedUpdatesRetryWithoutLosingAny() throws Exception {
+        Long inventoryId = rows.get(0).getInventoryId();
+        List<Integer> taken = runConcurrently(thread -> {
+            try {
+                return stockUpdateRetrier.execute("HOT-1", () -> {
+                    Inventory inventory = inventoryRepository.findById(inventoryId).orElseThrow();
+                    if (inventory.getQuantityOnHand() < 1) {
+                        throw new BadRequestException("Insufficient stock");
+                    }
+                    inventory.setQuantityOnHand(inventory.getQuantityOnHand() - 1);
+                    inventoryRepository.save(inventory);
+                    stockLedgerService.recordChange(inventoryId, product.getProductId(),
+                            inventory.getRdc().getRdcId(), -1);
+                    return 1;
+                });
+            } catch (BadRequestException e) {
+                return 0;
+            }
+        });
+
+        int totalTaken = taken.stream().mapToInt(Integer::intValue).sum();
+        assertThat(totalTaken).isPositive();
+        assertStock(STOCK_PER_RDC * rows.size() - totalTaken);
+    }
+
+    private void assertStock(int expectedTotal) {
+        List<Inventory> after = inventoryRepository.findByProduct_ProductId(product.getProductId());
+        assertThat(after).allSatisfy(inventory -> assertThat(inventory.getQuantityOnHand()).isNotNegative());
+        assertThat(after.stream().mapToInt(Inventory::getQuantityOnHand).sum()).isEqualTo(expectedTotal);
+        // Ledger deltas are applied after commit, so once every thread is done it must match the rows
+        assertThat(stockLedgerService.getAvailableStock(product.getProductId())).isEqualTo(expectedTotal);
+    }
+
+    private List<Integer> runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                futures.add(executor.submit((Callable<Integer>) () -> {
+                    start.await();
+                    return task.run(thread);
+                }));
+            }
+            start.countDown();
+
+            List<Integer> results = new ArrayList<>();
+            for (Future<Integer> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        int run(int thread) throws Exception;
+    }
+
+    @TestConfiguration
+    static class Metrics {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.StockHoldResponse;
+import com.isdn.model.OrderStatus;
+import com.isdn.model.PaymentMethod;
+import com.isdn.repository.OrderAllocationRepository;
+import com.isdn.repository.OrderAllocationRepository.AllocationView;
+import com.isdn.repository.OrderRepository;
+import com.isdn.repository.OrderRepository.PendingPaymentView;
+import com.isdn.service.StockHoldService.OrderHoldsExpired;
+import com.isdn.service.StockReservationService.Allocation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cart and payment holds against a ledger holding product 1 at two RDCs:
+ * 10 units at RDC 1 and 4 at RDC 2.
+ */
+class StockHoldServiceTest {
+
+    private static final long PRODUCT = 1L;
+
+    private final StockLedgerService stockLedgerService = mock(StockLedgerService.class);
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final OrderAllocationRepository orderAllocationRepository = mock(OrderAllocationRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final StockHoldService stockHoldService =
+            new StockHoldService(stockLedgerService, orderRepository, orderAllocationRepository, eventPublisher);
+
+    @BeforeEach
+    void setUp() {
+        when(stockLedgerService.isLoaded()).thenReturn(true);
+        when(stockLedgerService.getRdcIds()).thenReturn(new long[]{1, 2});
+        when(stockLedgerService.getAvailableStock(PRODUCT)).thenReturn(14);
+        when(stockLedgerService.getAvailableStock(PRODUCT, 1L)).thenReturn(10);
+        when(stockLedgerService.getAvailableStock(PRODUCT, 2L)).thenReturn(4);
+
+        ReflectionTestUtils.setField(stockHoldService, "cartTtlMinutes", 15L);
+        ReflectionTestUtils.setField(stockHoldService, "paymentTtlMinutes", 30L);
+        ReflectionTestUtils.setField(stockHoldService, "sweepBatchSize", 200);
+        ReflectionTestUtils.setField(stockHoldService, "restoreLookbackHours", 24L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockHoldService.stop();
+    }
+
+    @Test
+    void cartHoldsAreSplitAcrossRdcsAndReportedPerRdc() {
+        assertThat(stockHoldService.holdCartItem(100L, PRODUCT, 12)).isTrue();
+
+        // Largest free stock first: all of RDC 1, then 2 from RDC 2
+        assertThat(stockHoldService.getHoldReport(1L)).singleElement().satisfies(row -> {
+            assertThat(row.getQuantityOnHand()).isEqualTo(10);
+            assertThat(row.getHeldByCarts()).isEqualTo(10);
+            assertThat(row.getAvailableToPromise()).isZero();
+        });
+        assertThat(stockHoldService.getHoldReport(2L)).singleElement().satisfies(row -> {
+            assertThat(row.getHeldByCarts()).isEqualTo(2);
+            assertThat(row.getAvailableToPromise()).isEqualTo(2);
+        });
+
+        // The holding cart still sees everything, other carts only what is left
+        assertThat(stockHoldService.getAvailableToPromise(100L, PRODUCT)).isEqualTo(14);
+        assertThat(stockHoldService.getAvailableToPromise(200L, PRODUCT)).isEqualTo(2);
+        assertThat(stockHoldService.holdCartItem(200L, PRODUCT, 3)).isFalse();
+
+        // Replacing a hold frees the old quantity first
+        assertThat(stockHoldService.holdCartItem(100L, PRODUCT, 5)).isTrue();
+        assertThat(stockHoldService.holdCartItem(200L, PRODUCT, 9)).isTrue();
+        assertThat(stockHoldService.getAvailableToPromise(300L, PRODUCT)).isZero();
+    }
+
+    @Test
+    void cartHoldsExpireAfterTheirTtl() throws Exception {
+        ReflectionTestUtils.setField(stockHoldService, "cartTtlMinutes", 0L);
+        stockHoldService.start();
+
+        assertThat(stockHoldService.holdCartItem(100L, PRODUCT, 12)).isTrue();
+
+        awaitUntil(() -> stockHoldService.getAvailableToPromise(200L, PRODUCT) == 14);
+        assertThat(stockHoldService.getHoldReport(null)).isEmpty();
+    }
+
+    @Test
+    void expiredOrderHoldsAreReleasedInOneBatch() {
+        ReflectionTestUtils.setField(stockHoldService, "paymentTtlMinutes", 0L);
+        for (long orderId = 1; orderId <= 3; orderId++) {
+            stockHoldService.holdOrderAfterCommit(orderId, List.of(new Allocation(10 + orderId, PRODUCT, 1L, 2)));
+        }
+        assertThat(awaitingPayment(1L)).isEqualTo(6);
+
+        stockHoldService.start();
+
+        OrderHoldsExpired event = expiredEvent();
+        assertThat(event.allocationsByOrderId()).containsOnlyKeys(1L, 2L, 3L);
+        assertThat(event.allocationsByOrderId().get(2L)).containsExactly(new Allocation(12L, PRODUCT, 1L, 2));
+        assertThat(stockHoldService.getHoldReport(null)).isEmpty();
+    }
+
+    @Test
+    void releasedOrderHoldsNeverExpire() {
+        stockHoldService.holdOrderAfterCommit(1L, List.of(new Allocation(11L, PRODUCT, 1L, 2)));
+        stockHoldService.releaseOrderHold(1L);
+        assertThat(stockHoldService.getHoldReport(null)).isEmpty();
+
+        // Held again, e.g. because the customer was still at the payment gateway
+        stockHoldService.holdOrderAfterCommit(1L, List.of(new Allocation(11L, PRODUCT, 1L, 2)));
+        stockHoldService.holdOrderAfterCommit(1L, List.of(new Allocation(11L, PRODUCT, 1L, 2)));
+        assertThat(awaitingPayment(1L)).isEqualTo(2);
+    }
+
+    @Test
+    void failedReleaseIsRetriedLater() throws Exception {
+        ReflectionTestUtils.setField(stockHoldService, "paymentTtlMinutes", 0L);
+        doThrow(new IllegalStateException("database down")).when(eventPublisher).publishEvent(any(Object.class));
+        stockHoldService.holdOrderAfterCommit(1L, List.of(new Allocation(11L, PRODUCT, 2L, 3)));
+
+        stockHoldService.start();
+
+        // The stock stays held for payment until the retry succeeds
+        verify(eventPublisher, timeout(5_000)).publishEvent(any(Object.class));
+        awaitUntil(() -> awaitingPayment(2L) == 3);
+    }
+
+    @Test
+    void startupRebuildRestoresPersistedAllocations() {
+        LocalDateTime placedAt = LocalDateTime.now().minusMinutes(5);
+        when(orderRepository.findByStatusAndPaymentMethodAndOrderDateAfter(
+                eq(OrderStatus.PENDING), eq(PaymentMethod.ONLINE_PAYMENT), any()))
+                .thenReturn(List.of(pending(1L, placedAt), pending(2L, placedAt)));
+        when(orderAllocationRepository.findByOrderIds(List.of(1L, 2L))).thenReturn(List.of(
+                allocation(1L, 11L, 1L, 4),
+                allocation(1L, 12L, 2L, 1),
+                allocation(2L, 12L, 2L, 2)));
+
+        stockHoldService.start();
+
+        assertThat(awaitingPayment(1L)).isEqualTo(4);
+        assertThat(awaitingPayment(2L)).isEqualTo(3);
+
+        // Expiry hands the persisted rows to OrderService, not an empty list
+        ReflectionTestUtils.setField(stockHoldService, "paymentTtlMinutes", -60L);
+        stockHoldService.stop();
+        stockHoldService.start();
+
+        OrderHoldsExpired event = expiredEvent();
+        assertThat(event.allocationsByOrderId().get(1L)).containsExactly(
+                new Allocation(11L, PRODUCT, 1L, 4), new Allocation(12L, PRODUCT, 2L, 1));
+        assertThat(event.allocationsByOrderId().get(2L)).containsExactly(new Allocation(12L, PRODUCT, 2L, 2));
+    }
+
+    private OrderHoldsExpired expiredEvent() {
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, timeout(5_000)).publishEvent(event.capture());
+        assertThat(event.getValue()).isInstanceOf(OrderHoldsExpired.class);
+        return (OrderHoldsExpired) event.getValue();
+    }
+
+    private int awaitingPayment(long rdcId) {
+        return stockHoldService.getHoldReport(rdcId).stream().mapToInt(StockHoldResponse::getAwaitingPayment).sum();
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition met within 5s").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static PendingPaymentView pending(Long orderId, LocalDateTime orderDate) {
+        return new PendingPaymentView() {
+            @Override
+            public Long getOrderId() {
+                return orderId;
+            }
+
+            @Override
+            public LocalDateTime getOrderDate() {
+                return orderDate;
+            }
+        };
+    }
+
+    private static AllocationView allocation(Long orderId, Long inventoryId, Long rdcId, int quantity) {
+        return new AllocationView() {
+            @Override
+            public Long getOrderId() {
+                return orderId;
+            }
+
+            @Override
+            public Long getInventoryId() {
+                return inventoryId;
+            }
+
+            @Override
+            public Long getProductId() {
+                return PRODUCT;
+            }
+
+            @Override
+            public Long getRdcId() {
+                return rdcId;
+            }
+
+            @Override
+            public Integer getQuantity() {
+                return quantity;
+            }
+        };
+    }
+}
@@ -0,0 +1,273 @@
+package com.isdn.service;
+
+import com.isdn.dto.response.StockMovementResponse;
+import com.isdn.model.Category;
+import com.isdn.model.Inventory;
+import com.isdn.model.MovementType;
+import com.isdn.model.Product;
+import com.isdn.model.RDC;
+import com.isdn.model.Region;
+import com.isdn.model.Role;
+import com.isdn.model.StockMovement;
+import com.isdn.model.StockMovementArchive;
+import com.isdn.model.User;
+import com.isdn.repository.InventoryRepository;
+import com.isdn.repository.ProductRepository;
+import com.isdn.repository.RDCRepository;
+import com.isdn.repository.StockBalanceCheckpointRepository;
+import com.isdn.repository.StockMovementArchiveRepository;
+import com.isdn.repository.StockMovementRepository;
+import com.isdn.repository.UserRepository;
+import com.isdn.util.KeysetCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.FileSystemUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Archive files are written in indexed blocks so a history page for one inventory row only
+ * inflates the blocks holding that row, and a month that cannot be archived leaves the
+ * other RDCs' months to be archived.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "inventory.archive.horizon-months=12",
+        "inventory.archive.block-movements=5"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({StockMovementArchiveService.class, StockMovementArchiveServiceTest.Json.class})
+class StockMovementArchiveServiceTest {
+
+    private static final Path ARCHIVE = tempDirectory();
+    private static final YearMonth MONTH = YearMonth.now().minusMonths(24);
+    private static final LocalDateTime WINDOW_START = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    @DynamicPropertySource
+    static void archiveDir(DynamicPropertyRegistry registry) {
+        registry.add("inventory.archive.dir", ARCHIVE::toString);
+    }
+
+    @Autowired
+    private StockMovementArchiveService archiveService;
+
+    @MockitoSpyBean
+    private StockMovementRepository stockMovementRepository;
+
+    @Autowired
+    private StockMovementArchiveRepository stockMovementArchiveRepository;
+
+    @Autowired
+    private StockBalanceCheckpointRepository stockBalanceCheckpointRepository;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private RDCRepository rdcRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User clerk;
+    private RDC north;
+    private RDC south;
+    private Inventory northA;
+    private Inventory northB;
+    private Inventory southA;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // H2 rejects the MySQL streaming fetch size on streamForArchive; same rows, same order
+        doAnswer(invocation -> {
+            LocalDateTime to = invocation.getArgument(2);
+            return stockMovementRepository.findPageByRdcAfter(invocation.getArgument(0), invocation.getArgument(1),
+                    to, to, Long.MAX_VALUE, Limit.unlimited()).stream();
+        }).when(stockMovementRepository).streamForArchive(any(), any(), any());
+
+        FileSystemUtils.deleteRecursively(ARCHIVE);
+        Files.createDirectories(ARCHIVE);
+        stockMovementArchiveRepository.deleteAll();
+        stockBalanceCheckpointRepository.deleteAll();
+        stockMovementRepository.deleteAll();
+        inventoryRepository.deleteAll();
+        productRepository.deleteAll();
+        rdcRepository.deleteAll();
+        userRepository.deleteAll();
+
+        clerk = userRepository.save(User.builder()
+                .username("clerk")
+                .email("clerk@example.com")
+                .password("secret")
+                .role(Role.RDC_STAFF)
+                .active(true)
+                .build());
+        north = rdc(Region.NORTH);
+        south = rdc(Region.SOUTH);
+        northA = inventory(north, "A");
+        northB = inventory(north, "B");
+        southA = inventory(south, "C");
+    }
+
+    @Test
+    void inventoryReadsOnlyInflateBlocksHoldingThatRow() throws IOException {
+        // Newest first: ten movements of B fill the first two blocks, then A and B alternate
+        List<Long> northAIds = new ArrayList<>();
+        for (int day = 1; day <= 25; day++) {
+            Inventory row = day > 15 || day % 2 == 0 ? northB : northA;
+            long id = movement(row, MONTH.atDay(day).atTime(12, 0));
+            if (row == northA) {
+                northAIds.add(0, id);
+            }
+        }
+
+        assertThat(archiveService.archive()).isEqualTo(25);
+        StockMovementArchive archive = stockMovementArchiveRepository.findByRdcIdOrderByMonthStartDesc(north.getRdcId()).get(0);
+        Path file = Paths.get(archive.getFilePath());
+        assertThat(file.resolveSibling(file.getFileName() + ".idx")).exists();
+
+        List<StockMovementResponse> whole = archiveService.readPage(north.getRdcId(), northA.getInventoryId(),
+                WINDOW_START, LocalDateTime.now(), KeysetCursor.FIRST, 100);
+        assertThat(whole).extracting(StockMovementResponse::getMovementId).containsExactlyElementsOf(northAIds);
+
+        List<Long> paged = new ArrayList<>();
+        KeysetCursor cursor = KeysetCursor.FIRST;
+        List<StockMovementResponse> page;
+        do {
+            page = archiveService.readPage(north.getRdcId(), northA.getInventoryId(),
+                    WINDOW_START, LocalDateTime.now(), cursor, 3);
+            page.forEach(movement -> paged.add(movement.getMovementId()));
+            if (!page.isEmpty()) {
+                StockMovementResponse last = page.get(page.size() - 1);
+                cursor = new KeysetCursor(last.getTimestamp(), last.getMovementId());
+            }
+        } while (page.size() == 3);
+        assertThat(paged).containsExactlyElementsOf(northAIds);
+
+        // Garble the first block, which only holds B: reads for A never touch it
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 0}), 0);
+        }
+        assertThat(archiveService.readPage(north.getRdcId(), northA.getInventoryId(),
+                WINDOW_START, LocalDateTime.now(), KeysetCursor.FIRST, 100)).hasSize(northAIds.size());
+        assertThatThrownBy(() -> archiveService.readPage(north.getRdcId(), null,
+                WINDOW_START, LocalDateTime.now(), KeysetCursor.FIRST, 100))
+                .isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    void failedMonthIsLoggedAndOtherRdcsStillArchive() throws IOException {
+        for (int day = 1; day <= 4; day++) {
+            movement(northA, MONTH.atDay(day).atTime(9, 0));
+            movement(southA, MONTH.atDay(day).atTime(9, 0));
+            movement(southA, MONTH.plusMonths(1).atDay(day).atTime(9, 0));
+        }
+        // A plain file where the south RDC's archive directory belongs makes its months fail
+        Files.writeString(ARCHIVE.resolve(String.valueOf(south.getRdcId())), "not a directory");
+
+        assertThat(archiveService.archive()).isEqualTo(4);
+
+        assertThat(stockMovementArchiveRepository.findByRdcIdOrderByMonthStartDesc(north.getRdcId())).hasSize(1);
+        assertThat(stockMovementArchiveRepository.findByRdcIdOrderByMonthStartDesc(south.getRdcId())).isEmpty();
+        assertThat(stockMovementRepository.count()).isEqualTo(8);
+    }
+
+    private long movement(Inventory inventory, LocalDateTime timestamp) {
+        StockMovement movement = stockMovementRepository.save(StockMovement.builder()
+                .inventory(inventory)
+                .rdcId(inventory.getRdc().getRdcId())
+                .movementType(MovementType.ADJUSTMENT)
+                .quantity(1)
+                .previousStock(100)
+                .newStock(101)
+                .reason("count")
+                .performedBy(clerk)
+                .build());
+        // The timestamp column is set on insert, so backdate it afterwards
+        jdbcTemplate.update("UPDATE stock_movements SET timestamp = ? WHERE movement_id = ?",
+                timestamp, movement.getMovementId());
+        return movement.getMovementId();
+    }
+
+    private RDC rdc(Region region) {
+        return rdcRepository.save(RDC.builder()
+                .name(region + " RDC")
+                .region(region)
+                .address("1 Main Street")
+                .contactNumber("0110000000")
+                .active(true)
+                .build());
+    }
+
+    private Inventory inventory(RDC rdc, String sku) {
+        Product product = productRepository.save(Product.builder()
+                .sku(sku + "-" + rdc.getRegion())
+                .name("Product " + sku)
+                .category(Category.BEVERAGES)
+                .unitPrice(new BigDecimal("10.00"))
+                .active(true)
+                .build());
+        return inventoryRepository.save(Inventory.builder()
+                .product(product)
+                .rdc(rdc)
+                .quantityOnHand(100)
+                .reorderLevel(10)
+                .build());
+    }
+
+    private static Path tempDirectory() {
+        try {
+            return Files.createTempDirectory("stock-archive");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @TestConfiguration
+    static class Json {
+
+        @Bean
+        JsonMapper jsonMapper() {
+            return JsonMapper.builder().build();
+        }
+    }
+}
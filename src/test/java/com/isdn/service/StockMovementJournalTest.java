@@ -0,0 +1,266 @@
+package com.isdn.service;
+
+import com.isdn.model.Category;
+import com.isdn.model.Inventory;
+import com.isdn.model.MovementType;
+import com.isdn.model.Product;
+import com.isdn.model.RDC;
+import com.isdn.model.Region;
+import com.isdn.model.Role;
+import com.isdn.model.StockMovement;
+import com.isdn.model.User;
+import com.isdn.repository.InventoryRepository;
+import com.isdn.repository.ProductRepository;
+import com.isdn.repository.RDCRepository;
+import com.isdn.repository.StockMovementRepository;
+import com.isdn.repository.UserRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Movements appended in a transaction are written together just before it commits, in
+ * append order, as JDBC batches, and not at all when it rolls back.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "inventory.movements.batch-size=200",
+        "spring.datasource.hikari.maximum-pool-size=16"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({StockMovementJournal.class, StockMovementJournalTest.Metrics.class})
+class StockMovementJournalTest {
+
+    private static final int ROWS = 4;
+
+    @Autowired
+    private StockMovementJournal journal;
+
+    @Autowired
+    private StockMovementRepository stockMovementRepository;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private RDCRepository rdcRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+    private User clerk;
+    private List<Inventory> rows;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        stockMovementRepository.deleteAll();
+        inventoryRepository.deleteAll();
+        productRepository.deleteAll();
+        rdcRepository.deleteAll();
+        userRepository.deleteAll();
+
+        clerk = userRepository.save(User.builder()
+                .username("clerk")
+                .email("clerk@example.com")
+                .password("secret")
+                .role(Role.RDC_STAFF)
+                .active(true)
+                .build());
+        RDC rdc = rdcRepository.save(RDC.builder()
+                .name("North RDC")
+                .region(Region.NORTH)
+                .address("1 Main Street")
+                .contactNumber("0110000000")
+                .active(true)
+                .build());
+        rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            Product product = productRepository.save(Product.builder()
+                    .sku("SKU-" + i)
+                    .name("Product " + i)
+                    .category(Category.BEVERAGES)
+                    .unitPrice(new BigDecimal("10.00"))
+                    .active(true)
+                    .build());
+            rows.add(inventoryRepository.save(Inventory.builder()
+                    .product(product)
+                    .rdc(rdc)
+                    .quantityOnHand(1_000)
+                    .reorderLevel(10)
+                    .build()));
+        }
+    }
+
+    @Test
+    void writesMovementsInAppendOrderAtCommit() {
+        transaction.executeWithoutResult(status -> {
+            for (int i = 1; i <= 10; i++) {
+                journal.append(movement(rows.get(i % 2), i, "append-" + i));
+            }
+            // Nothing reaches the table until the transaction commits
+            assertThat(stockMovementRepository.count()).isZero();
+        });
+
+        List<StockMovement> written = stockMovementRepository.findAll(Sort.by("movementId"));
+        assertThat(written).extracting(StockMovement::getQuantity)
+                .containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+    }
+
+    @Test
+    void rollbackDropsTheWholeBatch() {
+        assertThatThrownBy(() -> transaction.executeWithoutResult(status -> {
+            for (int i = 1; i <= 5; i++) {
+                journal.append(movement(rows.get(0), i, "doomed"));
+            }
+            throw new IllegalStateException("stock change failed");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(stockMovementRepository.count()).isZero();
+
+        // The next transaction on the same thread starts with an empty journal
+        transaction.executeWithoutResult(status -> journal.append(movement(rows.get(0), 1, "after rollback")));
+        assertThat(stockMovementRepository.findAll()).extracting(StockMovement::getReason)
+                .containsExactly("after rollback");
+    }
+
+    @Test
+    void insertsTheTransactionsMovementsAsOneBatch() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        DistributionSummary batches = meterRegistry.summary("inventory.movements.batch");
+        long batchesBefore = batches.count();
+        statistics.clear();
+
+        transaction.executeWithoutResult(status -> {
+            for (int i = 1; i <= 150; i++) {
+                journal.append(movement(rows.get(i % ROWS), i, "bulk"));
+            }
+        });
+
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(150);
+        // Sequence blocks of 50 plus one prepared insert, not one statement per movement
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(6);
+        assertThat(batches.count()).isEqualTo(batchesBefore + 1);
+        assertThat(batches.max()).isEqualTo(150);
+    }
+
+    /**
+     * 16 threads committing 25 transactions of 20 movements each: every movement is
+     * stored, and within each transaction ids follow append order.
+     */
+    @Test
+    void keepsEveryMovementAndItsOrderUnderLoad() throws Exception {
+        int threads = 16;
+        int transactionsPerThread = 25;
+        int movementsPerTransaction = 20;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int k = 0; k < transactionsPerThread; k++) {
+                        int tx = k;
+                        transaction.executeWithoutResult(status -> {
+                            for (int i = 0; i < movementsPerTransaction; i++) {
+                                journal.append(movement(rows.get(thread % ROWS), i, thread + ":" + tx));
+                            }
+                        });
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(120, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<StockMovement> written = stockMovementRepository.findAll(Sort.by("movementId"));
+        assertThat(written).hasSize(threads * transactionsPerThread * movementsPerTransaction);
+
+        Map<String, List<Integer>> byTransaction = new HashMap<>();
+        for (StockMovement movement : written) {
+            byTransaction.computeIfAbsent(movement.getReason(), reason -> new ArrayList<>()).add(movement.getQuantity());
+        }
+        assertThat(byTransaction).hasSize(threads * transactionsPerThread);
+        List<Integer> appendOrder = new ArrayList<>();
+        for (int i = 0; i < movementsPerTransaction; i++) {
+            appendOrder.add(i);
+        }
+        assertThat(byTransaction.values()).allSatisfy(quantities -> assertThat(quantities).isEqualTo(appendOrder));
+    }
+
+    private StockMovement movement(Inventory inventory, int quantity, String reason) {
+        return StockMovement.builder()
+                .inventory(inventory)
+                .rdcId(inventory.getRdc().getRdcId())
+                .movementType(MovementType.ADJUSTMENT)
+                .quantity(quantity)
+                .previousStock(1_000)
+                .newStock(1_000 + quantity)
+                .reason(reason)
+                .performedBy(clerk)
+                .build();
+    }
+
+    @TestConfiguration
+    static class Metrics {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.isdn.util;
+
+import com.isdn.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+    @Test
+    void roundTripsTimestampAndId() {
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2026, 3, 14, 9, 26, 53, 589_000_000), 42L);
+
+        assertThat(KeysetCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void encodesAsUrlSafeBase64WithoutPadding() {
+        String encoded = new KeysetCursor(LocalDateTime.of(2026, 1, 1, 0, 0), Long.MAX_VALUE).encode();
+
+        assertThat(encoded).matches("[A-Za-z0-9_-]+");
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {"   "})
+    void blankCursorMeansFirstPage(String cursor) {
+        assertThat(KeysetCursor.decode(cursor)).isSameAs(KeysetCursor.FIRST);
+    }
+
+    @Test
+    void firstSortsAfterAnyRealRow() {
+        KeysetCursor latest = new KeysetCursor(LocalDateTime.of(2999, 1, 1, 0, 0), Long.MAX_VALUE - 1);
+
+        assertThat(KeysetCursor.FIRST.timestamp()).isAfter(latest.timestamp());
+        assertThat(KeysetCursor.FIRST.id()).isGreaterThan(latest.id());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"not base64!", "2026-01-01T00:00", "2026-01-01T00:00|abc", "yesterday|1"})
+    void rejectsMalformedCursors(String raw) {
+        String cursor = raw.contains("!") ? raw
+                : Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> KeysetCursor.decode(cursor))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Invalid cursor");
+    }
+}
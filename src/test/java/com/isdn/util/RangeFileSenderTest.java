@@ -0,0 +1,60 @@
+package com.isdn.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RangeFileSenderTest {
+
+    private static final long SIZE = 1000;
+
+    @Test
+    void closedRangeIsInclusive() {
+        assertThat(RangeFileSender.parseRange("bytes=0-499", SIZE)).containsExactly(0, 499);
+        assertThat(RangeFileSender.parseRange("bytes=500-500", SIZE)).containsExactly(500, 500);
+    }
+
+    @Test
+    void openEndedRangeRunsToTheLastByte() {
+        assertThat(RangeFileSender.parseRange("bytes=900-", SIZE)).containsExactly(900, 999);
+    }
+
+    @Test
+    void endPastTheFileIsClamped() {
+        assertThat(RangeFileSender.parseRange("bytes=990-5000", SIZE)).containsExactly(990, 999);
+    }
+
+    @Test
+    void suffixRangeTakesTheLastBytes() {
+        assertThat(RangeFileSender.parseRange("bytes=-100", SIZE)).containsExactly(900, 999);
+        // A suffix longer than the file means the whole file
+        assertThat(RangeFileSender.parseRange("bytes=-5000", SIZE)).containsExactly(0, 999);
+    }
+
+    @Test
+    void whitespaceAroundTheSpecIsIgnored() {
+        assertThat(RangeFileSender.parseRange("bytes= 10 - 19 ", SIZE)).containsExactly(10, 19);
+    }
+
+    @Test
+    void startAtOrPastTheEndIsUnsatisfiable() {
+        assertThat(RangeFileSender.parseRange("bytes=1000-", SIZE)).isNull();
+        assertThat(RangeFileSender.parseRange("bytes=2000-3000", SIZE)).isNull();
+    }
+
+    @Test
+    void emptySuffixOrEmptyFileIsUnsatisfiable() {
+        assertThat(RangeFileSender.parseRange("bytes=-0", SIZE)).isNull();
+        assertThat(RangeFileSender.parseRange("bytes=-10", 0)).isNull();
+        assertThat(RangeFileSender.parseRange("bytes=0-", 0)).isNull();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"items=0-10", "bytes=0-10,20-30", "bytes=10", "bytes=a-b", "bytes=-x",
+            "bytes=20-10", "bytes=-", "bytes=99999999999999999999-"})
+    void malformedOrMultiRangeHeadersAreIgnored(String header) {
+        assertThat(RangeFileSender.parseRange(header, SIZE)).isEmpty();
+    }
+}
@@ -0,0 +1,105 @@
+package com.isdn.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnowflakeIdGeneratorTest {
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_BITS = 10;
+
+    @Test
+    void idsAreStrictlyIncreasingAndPositive() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3);
+
+        long previous = 0;
+        // Far more than one millisecond's 4096 sequence values, so rollover is exercised
+        for (int i = 0; i < 100_000; i++) {
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void nodeIdIsEmbeddedInEveryId() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1023);
+
+        for (int i = 0; i < 10_000; i++) {
+            long node = (generator.nextId() >>> SEQUENCE_BITS) & ((1L << NODE_BITS) - 1);
+            assertThat(node).isEqualTo(1023);
+        }
+    }
+
+    @Test
+    void nodesNeverCollide() {
+        SnowflakeIdGenerator first = new SnowflakeIdGenerator(1);
+        SnowflakeIdGenerator second = new SnowflakeIdGenerator(2);
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 50_000; i++) {
+            assertThat(ids.add(first.nextId())).isTrue();
+            assertThat(ids.add(second.nextId())).isTrue();
+        }
+    }
+
+    @Test
+    void concurrentCallersGetUniqueIds() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0);
+        int threads = 16;
+        int idsPerThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long[] ids = new long[idsPerThread];
+                    for (int i = 0; i < idsPerThread; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+
+            Set<Long> all = new HashSet<>(threads * idsPerThread * 2);
+            for (Future<long[]> future : futures) {
+                long previous = 0;
+                for (long id : future.get(60, TimeUnit.SECONDS)) {
+                    // Each caller also sees its own ids in increasing order
+                    assertThat(id).isGreaterThan(previous);
+                    previous = id;
+                    all.add(id);
+                }
+            }
+            assertThat(all).hasSize(threads * idsPerThread);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void prefixedIdsStartWithPrefix() {
+        assertThat(new SnowflakeIdGenerator(0).nextId("ORD-")).matches("ORD-\\d+");
+    }
+
+    @Test
+    void rejectsNodeIdsOutOfRange() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(-1)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(1024)).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,141 @@
+package com.isdn.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedStockTableTest {
+
+    private final StripedStockTable table = new StripedStockTable();
+
+    @Test
+    void unknownProductsAndRdcsReadAsZero() {
+        assertThat(table.total(42)).isZero();
+        assertThat(table.quantity(42, 1)).isZero();
+
+        table.add(42, 1, 5);
+        assertThat(table.quantity(42, 2)).isZero();
+        assertThat(table.quantity(43, 1)).isZero();
+    }
+
+    @Test
+    void addReturnsNewQuantityAndTotalSumsRdcs() {
+        assertThat(table.add(7, 1, 10)).isEqualTo(10);
+        assertThat(table.add(7, 2, 4)).isEqualTo(4);
+        assertThat(table.add(7, 1, -3)).isEqualTo(7);
+
+        assertThat(table.quantity(7, 1)).isEqualTo(7);
+        assertThat(table.quantity(7, 2)).isEqualTo(4);
+        assertThat(table.total(7)).isEqualTo(11);
+        assertThat(table.rdcIds()).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void negativeCountersReadAsZero() {
+        table.add(7, 1, -5);
+
+        assertThat(table.quantity(7, 1)).isZero();
+        assertThat(table.total(7)).isZero();
+        // The counter itself keeps the true figure so later deltas still add up
+        assertThat(table.add(7, 1, 8)).isEqualTo(3);
+    }
+
+    @Test
+    void setOverwritesOneRdc() {
+        table.add(7, 1, 10);
+        table.add(7, 2, 10);
+        table.set(7, 1, 2);
+
+        assertThat(table.quantity(7, 1)).isEqualTo(2);
+        assertThat(table.total(7)).isEqualTo(12);
+    }
+
+    @Test
+    void setIfUnchangedRejectsWritesAfterAConcurrentChange() {
+        table.add(7, 1, 10);
+        int stripe = table.stripeOf(7);
+        long version = table.stripeVersion(stripe);
+
+        table.add(7, 1, -1);
+        assertThat(table.setIfUnchanged(7, 1, 50, version)).isFalse();
+        assertThat(table.quantity(7, 1)).isEqualTo(9);
+
+        assertThat(table.setIfUnchanged(7, 1, 50, table.stripeVersion(stripe))).isTrue();
+        assertThat(table.quantity(7, 1)).isEqualTo(50);
+    }
+
+    @Test
+    void clearDropsEveryCounterAndInvalidatesVersions() {
+        table.add(7, 1, 10);
+        int stripe = table.stripeOf(7);
+        long version = table.stripeVersion(stripe);
+
+        table.clear();
+
+        assertThat(table.total(7)).isZero();
+        assertThat(table.stripeVersion(stripe)).isGreaterThan(version);
+    }
+
+    @Test
+    void growsPastInitialCapacityAndVisitsEveryCounter() {
+        Map<Long, Integer> expected = new HashMap<>();
+        for (long productId = 1; productId <= 5_000; productId++) {
+            int quantity = (int) (productId % 97);
+            table.set(productId, 1 + productId % 3, quantity);
+            expected.put(productId, quantity);
+        }
+
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertThat(table.total(entry.getKey())).isEqualTo(entry.getValue());
+        }
+
+        Map<Long, Integer> visited = new HashMap<>();
+        table.forEach((productId, rdcId, quantity) -> visited.merge(productId, quantity, Integer::sum));
+        assertThat(visited).isEqualTo(expected);
+    }
+
+    @Test
+    void concurrentDeltasAreNeverLost() throws Exception {
+        int threads = 32;
+        int deltasPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long rdcId = 1 + t % 4;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < deltasPerThread; i++) {
+                        // Products share stripes with their neighbours, so writers contend
+                        table.add(1 + i % 8, rdcId, 1);
+                        table.total(1 + i % 8);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int total = 0;
+        for (long productId = 1; productId <= 8; productId++) {
+            total += table.total(productId);
+        }
+        assertThat(total).isEqualTo(threads * deltasPerThread);
+    }
+}